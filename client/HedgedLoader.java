@@ -0,0 +1,375 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A client that loads files with hedged reads, to cut the tail latency caused by a slow Dstore.
+ * The controller is asked for every Dstore with the file using LOAD_HEDGED. The file is loaded from
+ * the first, and if no data has arrived from it within the hedge delay, from the next as well. The
+ * first copy to arrive in full is used, and the other loads are cancelled by closing their
+ * sockets. A load that fails moves straight on to the next Dstore.
+ *
+ * <p>The hedge delay is the larger of the controller's delay, which comes from the Dstore's own
+ * 95th percentile load time, and the 95th percentile of the time this client has waited for the
+ * first byte of recent loads.
+ *
+ * @author George Peppard
+ */
+public class HedgedLoader implements Closeable {
+
+  /**
+   * The number of recent times to first byte kept.
+   */
+  private static final int WINDOW_SIZE = 100;
+
+  /**
+   * The socket connected to the controller.
+   */
+  private final Socket controller;
+
+  /**
+   * The reader for the controller's replies.
+   */
+  private final BufferedReader in;
+
+  /**
+   * The writer for requests to the controller.
+   */
+  private final PrintWriter out;
+
+  /**
+   * How long a load may take in total, in milliseconds.
+   */
+  private final int timeoutMs;
+
+  /**
+   * Whether loads are hedged. If not, a Dstore is only given up on when its load fails.
+   */
+  private final boolean hedging;
+
+  /**
+   * The recent times to first byte, in milliseconds.
+   */
+  private final Deque<Long> firstByteMs = new ArrayDeque<>();
+
+  /**
+   * The number of hedged loads sent.
+   */
+  private int hedges = 0;
+
+  /**
+   * The number of loads won by a hedged load.
+   */
+  private int hedgeWins = 0;
+
+  /**
+   * Connects to the controller.
+   *
+   * @param controllerPort the controller's port
+   * @param timeoutMs      how long a load may take in total, in milliseconds
+   * @param hedging        whether to hedge loads
+   * @throws IOException if the controller cannot be reached
+   */
+  public HedgedLoader(int controllerPort, int timeoutMs, boolean hedging) throws IOException {
+    this.controller = new Socket("localhost", controllerPort);
+    this.controller.setSoTimeout(timeoutMs);
+    this.in = new BufferedReader(new InputStreamReader(controller.getInputStream()));
+    this.out = new PrintWriter(controller.getOutputStream(), true);
+    this.timeoutMs = timeoutMs;
+    this.hedging = hedging;
+  }
+
+  /**
+   * Loads a file.
+   *
+   * @param fileName the name of the file
+   * @return the contents of the file
+   * @throws IOException if the file cannot be loaded from any Dstore in time
+   */
+  public byte[] load(String fileName) throws IOException {
+    out.println("LOAD_HEDGED " + fileName);
+    var reply = in.readLine();
+    if (reply == null || !reply.startsWith("LOAD_HEDGED ")) {
+      throw new IOException("cannot load " + fileName + ": " + reply);
+    }
+
+    var parts = reply.split(" ");
+    var size = Integer.parseInt(parts[1]);
+    var hedgeMs = Math.max(Long.parseLong(parts[2]), getFirstBytePercentile(95));
+    var ports = Arrays.stream(parts, 3, parts.length).mapToInt(Integer::parseInt).toArray();
+    if (size == 0) {
+      return new byte[0];
+    }
+
+    var start = System.nanoTime();
+    var deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    var attempts = new ArrayList<Attempt>();
+    var lastLaunch = start;
+
+    attempts.add(new Attempt(ports[0], fileName, size));
+
+    try {
+      while (true) {
+        var winner = attempts.stream().filter(Attempt::isSucceeded).findFirst().orElse(null);
+        if (winner != null) {
+          if (winner != attempts.get(0)) {
+            hedgeWins++;
+          }
+
+          recordFirstByte(winner.getFirstByteNanos() - winner.getStartNanos());
+          return winner.getData();
+        }
+
+        var now = System.nanoTime();
+        var running = attempts.stream().filter(a -> !a.isDone()).toList();
+        var anyStarted = running.stream().anyMatch(Attempt::hasStarted);
+        var canLaunch = attempts.size() < ports.length;
+
+        if (now >= deadline) {
+          throw new IOException("timed out loading " + fileName);
+        }
+
+        // move on straight away if every load failed, or hedge if none has begun streaming
+        var hedgeAt = lastLaunch + TimeUnit.MILLISECONDS.toNanos(hedgeMs);
+        if (canLaunch && (running.isEmpty() || hedging && !anyStarted && now >= hedgeAt)) {
+          if (!running.isEmpty()) {
+            hedges++;
+          }
+
+          attempts.add(new Attempt(ports[attempts.size()], fileName, size));
+          lastLaunch = now;
+          continue;
+        }
+
+        if (running.isEmpty()) {
+          throw new IOException("no Dstore could serve " + fileName);
+        }
+
+        var waitUntil = canLaunch && hedging && !anyStarted ? Math.min(hedgeAt, deadline)
+            : deadline;
+        awaitAny(running, waitUntil - now);
+      }
+    } finally {
+      attempts.forEach(Attempt::cancel);
+    }
+  }
+
+  /**
+   * Returns the number of hedged loads sent.
+   */
+  public int getHedges() {
+    return hedges;
+  }
+
+  /**
+   * Returns the number of loads won by a hedged load.
+   */
+  public int getHedgeWins() {
+    return hedgeWins;
+  }
+
+  @Override
+  public void close() throws IOException {
+    controller.close();
+  }
+
+  /**
+   * Waits for any of the loads to make progress.
+   *
+   * @param attempts  the loads that are running
+   * @param waitNanos the longest time to wait, in nanoseconds
+   */
+  private void awaitAny(List<Attempt> attempts, long waitNanos) {
+    var futures = new ArrayList<CompletableFuture<?>>();
+    for (var attempt : attempts) {
+      futures.add(attempt.getResult());
+      if (!attempt.hasStarted()) {
+        futures.add(attempt.getStarted());
+      }
+    }
+
+    try {
+      CompletableFuture.anyOf(futures.toArray(CompletableFuture[]::new))
+          .get(Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // the caller checks the state of every load
+    }
+  }
+
+  /**
+   * Records how long a load waited for its first byte.
+   *
+   * @param nanos the wait in nanoseconds
+   */
+  private void recordFirstByte(long nanos) {
+    firstByteMs.addLast(TimeUnit.NANOSECONDS.toMillis(nanos));
+    if (firstByteMs.size() > WINDOW_SIZE) {
+      firstByteMs.removeFirst();
+    }
+  }
+
+  /**
+   * Returns a percentile of the recent times to first byte.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the percentile in milliseconds, or 0 if no loads have finished
+   */
+  private long getFirstBytePercentile(double percentile) {
+    if (firstByteMs.isEmpty()) {
+      return 0;
+    }
+
+    var sorted = firstByteMs.stream().sorted().toList();
+    var index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+    return sorted.get(Math.max(0, index));
+  }
+
+  /**
+   * One load of a file from one Dstore, running on a thread of its own.
+   */
+  private static class Attempt {
+
+    /**
+     * The socket connected to the Dstore.
+     */
+    private volatile Socket socket;
+
+    /**
+     * Whether the load has been cancelled. This is checked once the socket is connected, as an
+     * attempt cancelled while still connecting has no socket to close.
+     */
+    private volatile boolean cancelled = false;
+
+    /**
+     * Completed when the first byte of the file arrives.
+     */
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+
+    /**
+     * Completed with the contents of the file, or exceptionally if the load fails.
+     */
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+    /**
+     * When the load started, from {@link System#nanoTime()}.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * When the first byte arrived, from {@link System#nanoTime()}.
+     */
+    private volatile long firstByteNanos;
+
+    /**
+     * Starts loading a file from a Dstore.
+     *
+     * @param port     the Dstore's port
+     * @param fileName the name of the file
+     * @param size     the size of the file in bytes
+     */
+    Attempt(int port, String fileName, int size) {
+      var thread = new Thread(() -> run(port, fileName, size), "Hedged Load " + port);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /**
+     * Loads the file.
+     *
+     * @param port     the Dstore's port
+     * @param fileName the name of the file
+     * @param size     the size of the file in bytes
+     */
+    private void run(int port, String fileName, int size) {
+      try (var dstore = new Socket("localhost", port)) {
+        socket = dstore;
+        if (cancelled) {
+          throw new IOException("cancelled");
+        }
+
+        new PrintWriter(dstore.getOutputStream(), true).println("LOAD_DATA " + fileName);
+
+        InputStream stream = dstore.getInputStream();
+        var first = stream.read();
+        if (first < 0) {
+          throw new IOException("Dstore closed the connection");
+        }
+
+        firstByteNanos = System.nanoTime();
+        started.complete(null);
+
+        var data = new byte[size];
+        data[0] = (byte) first;
+        var read = 1 + stream.readNBytes(data, 1, size - 1);
+        if (read < size) {
+          throw new IOException("Dstore sent " + read + " of " + size + " bytes");
+        }
+
+        result.complete(data);
+      } catch (IOException e) {
+        result.completeExceptionally(e);
+      }
+    }
+
+    /**
+     * Stops the load if it is still running.
+     */
+    void cancel() {
+      cancelled = true;
+      var socket = this.socket;
+      if (!result.isDone() && socket != null) {
+        try {
+          socket.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+
+    boolean hasStarted() {
+      return started.isDone();
+    }
+
+    boolean isDone() {
+      return result.isDone();
+    }
+
+    boolean isSucceeded() {
+      return result.isDone() && !result.isCompletedExceptionally();
+    }
+
+    byte[] getData() {
+      return result.join();
+    }
+
+    CompletableFuture<Void> getStarted() {
+      return started;
+    }
+
+    CompletableFuture<byte[]> getResult() {
+      return result;
+    }
+
+    long getStartNanos() {
+      return startNanos;
+    }
+
+    long getFirstByteNanos() {
+      return firstByteNanos;
+    }
+  }
+}
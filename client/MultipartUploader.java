@@ -0,0 +1,250 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A client that stores large files in parts. The controller is asked to start a multipart store
+ * with STORE_MULTIPART, and every part is sent to every Dstore it names, over several connections
+ * to each Dstore at once. The store is then committed with STORE_MULTIPART_COMMIT. If the
+ * controller replies with the parts that are missing, because a connection failed part way, just
+ * those parts are sent again before committing again.
+ *
+ * @author George Peppard
+ */
+public class MultipartUploader implements Closeable {
+
+  /**
+   * The number of times a store is committed before giving up on it.
+   */
+  private static final int MAX_COMMITS = 3;
+
+  /**
+   * The socket connected to the controller.
+   */
+  private final Socket controller;
+
+  /**
+   * The reader for the controller's replies.
+   */
+  private final BufferedReader in;
+
+  /**
+   * The writer for requests to the controller.
+   */
+  private final PrintWriter out;
+
+  /**
+   * The timeout for each read, in milliseconds.
+   */
+  private final int timeoutMs;
+
+  /**
+   * The number of connections used to send parts to each Dstore.
+   */
+  private final int streamsPerDstore;
+
+  /**
+   * The threads that send parts.
+   */
+  private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+    var thread = new Thread(r, "Multipart Upload");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * The number of parts that have been sent again after the controller said they were missing.
+   */
+  private int resentParts = 0;
+
+  /**
+   * Connects to the controller.
+   *
+   * @param controllerPort   the controller's port
+   * @param timeoutMs        the timeout for each read, in milliseconds
+   * @param streamsPerDstore the number of connections to send parts to each Dstore over
+   * @throws IOException if the controller cannot be reached
+   */
+  public MultipartUploader(int controllerPort, int timeoutMs, int streamsPerDstore)
+      throws IOException {
+    this.controller = new Socket("localhost", controllerPort);
+    this.controller.setSoTimeout(timeoutMs);
+    this.in = new BufferedReader(new InputStreamReader(controller.getInputStream()));
+    this.out = new PrintWriter(controller.getOutputStream(), true);
+    this.timeoutMs = timeoutMs;
+    this.streamsPerDstore = Math.max(1, streamsPerDstore);
+  }
+
+  /**
+   * Stores a file in parts.
+   *
+   * @param fileName the name of the file
+   * @param data     the contents of the file
+   * @param partSize the size of each part in bytes
+   * @throws IOException if the file cannot be stored
+   */
+  public void store(String fileName, byte[] data, int partSize) throws IOException {
+    out.println("STORE_MULTIPART " + fileName + " " + data.length + " " + partSize);
+    var reply = in.readLine();
+    if (reply == null || !reply.startsWith("STORE_MULTIPART_TO ")) {
+      throw new IOException("cannot store " + fileName + ": " + reply);
+    }
+
+    var parts = reply.split(" ");
+    var uploadId = Long.parseLong(parts[1]);
+    var partCount = Math.max(1, (data.length + partSize - 1) / partSize);
+
+    var missing = new LinkedHashMap<Integer, List<Integer>>();
+    for (int i = 2; i < parts.length; i++) {
+      var indexes = new ArrayList<Integer>();
+      for (int index = 0; index < partCount; index++) {
+        indexes.add(index);
+      }
+      missing.put(Integer.parseInt(parts[i]), indexes);
+    }
+
+    for (int commit = 0; commit < MAX_COMMITS; commit++) {
+      sendParts(fileName, uploadId, data, partSize, missing);
+
+      out.println("STORE_MULTIPART_COMMIT " + fileName);
+      reply = in.readLine();
+      if ("STORE_COMPLETE".equals(reply)) {
+        return;
+      }
+
+      if (reply == null || !reply.startsWith("STORE_MULTIPART_MISSING")) {
+        throw new IOException("cannot commit " + fileName + ": " + reply);
+      }
+
+      missing = parseMissing(reply);
+      resentParts += missing.values().stream().mapToInt(List::size).sum();
+    }
+
+    throw new IOException("parts of " + fileName + " are still missing after " + MAX_COMMITS
+        + " commits");
+  }
+
+  /**
+   * Returns the number of parts that have been sent again because they were missing.
+   */
+  public int getResentParts() {
+    return resentParts;
+  }
+
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    controller.close();
+  }
+
+  /**
+   * Sends parts to Dstores and waits for them to be sent. A connection that fails stops sending,
+   * and the parts it did not send are left for the controller to report as missing.
+   *
+   * @param fileName the name of the file
+   * @param uploadId the ID the controller gave the upload
+   * @param data     the contents of the file
+   * @param partSize the size of each part in bytes
+   * @param parts    the indexes of the parts to send to each Dstore, by port
+   */
+  private void sendParts(String fileName, long uploadId, byte[] data, int partSize,
+      Map<Integer, List<Integer>> parts) {
+    var senders = new ArrayList<Future<?>>();
+
+    parts.forEach((port, indexes) -> {
+      Queue<Integer> queue = new ConcurrentLinkedQueue<>(indexes);
+      for (int i = 0; i < Math.min(streamsPerDstore, indexes.size()); i++) {
+        senders.add(executor.submit(
+            () -> sendPartsTo(port, queue, fileName, uploadId, data, partSize)));
+      }
+    });
+
+    for (var sender : senders) {
+      try {
+        sender.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        // the commit finds out which parts did not arrive
+      }
+    }
+  }
+
+  /**
+   * Sends parts to one Dstore over one connection until none are left.
+   *
+   * @param port     the Dstore's port
+   * @param queue    the indexes of the parts left to send to the Dstore
+   * @param fileName the name of the file
+   * @param uploadId the ID the controller gave the upload
+   * @param data     the contents of the file
+   * @param partSize the size of each part in bytes
+   */
+  private void sendPartsTo(int port, Queue<Integer> queue, String fileName, long uploadId,
+      byte[] data, int partSize) {
+    try (var dstore = new Socket("localhost", port)) {
+      dstore.setSoTimeout(timeoutMs);
+      var reader = new BufferedReader(new InputStreamReader(dstore.getInputStream()));
+      OutputStream stream = dstore.getOutputStream();
+
+      Integer index;
+      while ((index = queue.poll()) != null) {
+        var offset = index * partSize;
+        var length = Math.min(partSize, data.length - offset);
+
+        var request = "STORE_PART " + fileName + " " + uploadId + " " + data.length + " "
+            + partSize + " " + index + "\n";
+        stream.write(request.getBytes(StandardCharsets.UTF_8));
+        stream.flush();
+
+        if (!"ACK".equals(reader.readLine())) {
+          throw new IOException(port + " did not acknowledge part " + index);
+        }
+
+        stream.write(data, offset, length);
+        stream.flush();
+      }
+    } catch (IOException e) {
+      // the commit finds out which parts did not arrive
+    }
+  }
+
+  /**
+   * Parses a STORE_MULTIPART_MISSING reply.
+   *
+   * @param reply the reply
+   * @return the indexes of the missing parts, by Dstore port
+   */
+  private static LinkedHashMap<Integer, List<Integer>> parseMissing(String reply) {
+    var missing = new LinkedHashMap<Integer, List<Integer>>();
+
+    for (var entry : Arrays.stream(reply.split(" ")).skip(1).toList()) {
+      var split = entry.split(":");
+      if (split.length < 2) {
+        continue;
+      }
+
+      missing.put(Integer.parseInt(split[0]),
+          Arrays.stream(split[1].split(",")).map(Integer::valueOf).toList());
+    }
+
+    return missing;
+  }
+}
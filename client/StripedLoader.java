@@ -0,0 +1,197 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A client that downloads a file as ranges from every Dstore with a copy at once, so that the
+ * download is not limited by one Dstore's disk and network. The controller is asked for every
+ * location of the file with LOCATE, the file is split into stripes, and the stripes are fetched
+ * with ranged LOAD_DATA requests spread over the Dstores. A stripe that fails is fetched from the
+ * next Dstore instead. Files that were stored in parts are split on part boundaries.
+ *
+ * @author George Peppard
+ */
+public class StripedLoader implements Closeable {
+
+  /**
+   * The smallest stripe, in bytes, so that small files are not split into many tiny requests.
+   */
+  private static final int MIN_STRIPE_BYTES = 64 * 1024;
+
+  /**
+   * The socket connected to the controller.
+   */
+  private final Socket controller;
+
+  /**
+   * The reader for the controller's replies.
+   */
+  private final BufferedReader in;
+
+  /**
+   * The writer for requests to the controller.
+   */
+  private final PrintWriter out;
+
+  /**
+   * How long a download may take in total, in milliseconds.
+   */
+  private final int timeoutMs;
+
+  /**
+   * The most stripes fetched from each Dstore at once.
+   */
+  private final int streamsPerDstore;
+
+  /**
+   * The threads that fetch stripes.
+   */
+  private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+    var thread = new Thread(r, "Striped Load");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Connects to the controller.
+   *
+   * @param controllerPort   the controller's port
+   * @param timeoutMs        how long a download may take in total, in milliseconds
+   * @param streamsPerDstore the most stripes to fetch from each Dstore at once
+   * @throws IOException if the controller cannot be reached
+   */
+  public StripedLoader(int controllerPort, int timeoutMs, int streamsPerDstore)
+      throws IOException {
+    this.controller = new Socket("localhost", controllerPort);
+    this.controller.setSoTimeout(timeoutMs);
+    this.in = new BufferedReader(new InputStreamReader(controller.getInputStream()));
+    this.out = new PrintWriter(controller.getOutputStream(), true);
+    this.timeoutMs = timeoutMs;
+    this.streamsPerDstore = Math.max(1, streamsPerDstore);
+  }
+
+  /**
+   * Downloads a file from every Dstore with a copy.
+   *
+   * @param fileName the name of the file
+   * @return the contents of the file
+   * @throws IOException if part of the file cannot be fetched from any Dstore in time
+   */
+  public byte[] load(String fileName) throws IOException {
+    out.println("LOCATE " + fileName);
+    var reply = in.readLine();
+    while (reply != null && reply.startsWith("INVALIDATE ")) {
+      reply = in.readLine();
+    }
+
+    if (reply == null || !reply.startsWith("LOCATE ")) {
+      throw new IOException("cannot load " + fileName + ": " + reply);
+    }
+
+    var parts = reply.split(" ");
+    var size = Integer.parseInt(parts[2]);
+    var partSize = Integer.parseInt(parts[5]);
+    var ports = Arrays.stream(parts, 6, parts.length).mapToInt(Integer::parseInt).toArray();
+    return load(fileName, size, partSize, ports);
+  }
+
+  /**
+   * Downloads a file from the given Dstores.
+   *
+   * @param fileName the name of the file
+   * @param size     the size of the file in bytes
+   * @param partSize the size of each part if the file was stored in parts, or 0
+   * @param ports    the ports of the Dstores with a copy
+   * @return the contents of the file
+   * @throws IOException if part of the file cannot be fetched from any Dstore in time
+   */
+  public byte[] load(String fileName, int size, int partSize, int[] ports) throws IOException {
+    var data = new byte[size];
+    var streams = ports.length * streamsPerDstore;
+    var stripeBytes = Math.max(MIN_STRIPE_BYTES, (size + streams - 1) / streams);
+    if (partSize > 0) {
+      var wholeParts = ((long) stripeBytes + partSize - 1) / partSize;
+      stripeBytes = (int) Math.min(size, wholeParts * partSize);
+    }
+
+    var stripes = new ArrayList<Future<?>>();
+    for (int offset = 0, i = 0; offset < size; offset += stripeBytes, i++) {
+      var stripeOffset = offset;
+      var length = Math.min(stripeBytes, size - offset);
+      var first = i % ports.length;
+
+      stripes.add(executor.submit(() -> {
+        fetchStripe(fileName, data, stripeOffset, length, ports, first);
+        return null;
+      }));
+    }
+
+    var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    try {
+      for (var stripe : stripes) {
+        stripe.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      }
+    } catch (ExecutionException e) {
+      throw new IOException("cannot load " + fileName, e.getCause());
+    } catch (InterruptedException | TimeoutException e) {
+      throw new IOException("timed out loading " + fileName, e);
+    } finally {
+      stripes.forEach(s -> s.cancel(true));
+    }
+
+    return data;
+  }
+
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    controller.close();
+  }
+
+  /**
+   * Fetches one stripe into place, trying each Dstore in turn from the given one.
+   *
+   * @param fileName the name of the file
+   * @param data     the array the file is being assembled in
+   * @param offset   the offset of the stripe
+   * @param length   the length of the stripe
+   * @param ports    the ports of the Dstores with a copy
+   * @param first    the index of the Dstore to try first
+   * @throws IOException if no Dstore can send the stripe
+   */
+  private void fetchStripe(String fileName, byte[] data, int offset, int length, int[] ports,
+      int first) throws IOException {
+    IOException failure = null;
+
+    for (int attempt = 0; attempt < ports.length; attempt++) {
+      var port = ports[(first + attempt) % ports.length];
+      try (var dstore = new Socket("localhost", port)) {
+        dstore.setSoTimeout(timeoutMs);
+        new PrintWriter(dstore.getOutputStream(), true)
+            .println("LOAD_DATA " + fileName + " " + offset + " " + length);
+
+        var read = dstore.getInputStream().readNBytes(data, offset, length);
+        if (read == length) {
+          return;
+        }
+
+        failure = new IOException(port + " sent " + read + " of " + length + " bytes");
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+
+    throw failure;
+  }
+}
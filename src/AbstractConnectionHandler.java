@@ -1,17 +1,22 @@
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A Runnable that handles socket connections for a single connected client. It is extended by
@@ -21,6 +26,21 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public abstract class AbstractConnectionHandler implements Runnable {
 
+  /**
+   * The most messages sent in, or accepted in, one BATCH frame.
+   */
+  private static final int MAX_BATCH_MESSAGES = 256;
+
+  /**
+   * The executor that sends batches once their window has passed, shared by every handler.
+   */
+  private static final ScheduledExecutorService BATCH_FLUSHER =
+      Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "ACH Batch Flusher");
+        thread.setDaemon(true);
+        return thread;
+      });
+
   /**
    * The socket connection we are handling.
    */
@@ -31,18 +51,14 @@ public abstract class AbstractConnectionHandler implements Runnable {
    */
   protected final PrintWriter out;
 
-  /**
-   * The input text stream.
-   */
-  protected final BufferedReader in;
-
   /**
    * The raw output stream.
    */
   protected final OutputStream outRaw;
 
   /**
-   * The raw input stream.
+   * The raw input stream. Text lines and raw data are both read from this buffered stream, so
+   * that data sent straight after a message line is never lost to a separate text buffer.
    */
   protected final InputStream inRaw;
 
@@ -92,6 +108,23 @@ public abstract class AbstractConnectionHandler implements Runnable {
    */
   protected final Object sendLock = new Object();
 
+  /**
+   * The messages waiting to be sent in the next BATCH frame. Guarded by {@link #sendLock}.
+   */
+  private final List<Message> pendingBatch = new ArrayList<>();
+
+  /**
+   * How long a message may wait for others to be batched with it, in microseconds, or 0 if
+   * messages are never batched.
+   */
+  private volatile long batchWindowUs = 0;
+
+  /**
+   * When a message was last written to the socket, from {@link System#nanoTime()}. Guarded by
+   * {@link #sendLock}.
+   */
+  private long lastSendNanos = System.nanoTime();
+
   /**
    * Initialises a new instance of the handler.
    *
@@ -102,9 +135,8 @@ public abstract class AbstractConnectionHandler implements Runnable {
     this.socket = socket;
 
     this.outRaw = this.socket.getOutputStream();
-    this.inRaw = this.socket.getInputStream();
+    this.inRaw = new BufferedInputStream(this.socket.getInputStream());
     this.out = new PrintWriter(this.outRaw);
-    this.in = new BufferedReader(new InputStreamReader(this.inRaw));
   }
 
   /**
@@ -145,20 +177,41 @@ public abstract class AbstractConnectionHandler implements Runnable {
           continue;
         }
 
-        message = ((char) firstByte) + in.readLine();
-        Logger.info(log("> in > {}"), message);
+        message = readLine(firstByte);
+
+        if (message.startsWith(Protocol.BATCH + " ")) {
+          var count = parseBatchCount(message);
+          if (count > 0) {
+            socket.setSoTimeout(0);
+            readBatch(message, count);
+          } else {
+            Logger.info(log("> in > {}"), message);
+            Logger.warn(log("rejected malformed or unexpected batch header"));
+          }
+
+          continue;
+        }
 
         var parts = message.split(" ");
         Message parsedMessage = null;
         try {
           parsedMessage = parseMessage(parts[0], Arrays.copyOfRange(parts, 1, parts.length));
         } catch (UnsupportedOperationException e) {
+          Logger.info(log("> in > {}"), message);
           Logger.warn(log("no handler for message type, will do nothing: {}"), e.getMessage());
         } catch (Exception e) {
+          Logger.info(log("> in > {}"), message);
           Logger.warn(log("failed to parse message, perhaps it was malformed? {}"), e.getMessage());
         }
 
-        if (parsedMessage != null) {
+        if (parsedMessage != null && !parsedMessage.isQuiet()) {
+          Logger.info(log("> in > {}"), message);
+        }
+
+        if (parsedMessage instanceof StreamedMessage streamed) {
+          socket.setSoTimeout(0);
+          readStreamedPayloads(streamed);
+        } else if (parsedMessage != null) {
           socket.setSoTimeout(0);
           messageQueue.add(parsedMessage);
         }
@@ -186,6 +239,111 @@ public abstract class AbstractConnectionHandler implements Runnable {
     }
   }
 
+  /**
+   * Reads the remainder of a text line from the input stream.
+   *
+   * @param firstByte the first byte of the line, which has already been read
+   * @return the line, without its terminator
+   * @throws IOException if the stream cannot be read
+   */
+  private String readLine(int firstByte) throws IOException {
+    var line = new ByteArrayOutputStream();
+    int b = firstByte;
+
+    while (b != -1 && b != '\n') {
+      line.write(b);
+      b = inRaw.read();
+    }
+
+    var string = line.toString();
+    return string.endsWith("\r") ? string.substring(0, string.length() - 1) : string;
+  }
+
+  /**
+   * Returns the number of messages a BATCH header says follow it, if batches are accepted on this
+   * connection and the number is valid.
+   *
+   * @param header the line that started the frame
+   * @return the number of messages, or -1 if the header must be rejected
+   */
+  private int parseBatchCount(String header) {
+    if (!acceptsBatches()) {
+      return -1;
+    }
+
+    try {
+      var count = Integer.parseInt(header.substring(Protocol.BATCH.length() + 1).trim());
+      return count > 0 && count <= MAX_BATCH_MESSAGES ? count : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Reads the messages in a BATCH frame and queues them to be processed together.
+   *
+   * @param header the line that started the frame
+   * @param count  the number of messages in the frame, which has been checked
+   * @throws IOException if the messages cannot be read
+   */
+  private void readBatch(String header, int count) throws IOException {
+    Logger.info(log("> in > {}"), header);
+    var messages = new ArrayList<Message>(count);
+
+    for (int i = 0; i < count; i++) {
+      var first = inRaw.read();
+      if (first == -1) {
+        throw new IOException("connection closed part way through a batch");
+      }
+
+      var line = readLine(first);
+      var parts = line.split(" ");
+      Message parsed;
+      try {
+        parsed = parseMessage(parts[0], Arrays.copyOfRange(parts, 1, parts.length));
+      } catch (Exception e) {
+        Logger.warn(log("failed to parse batched message {}: {}"), line, e.getMessage());
+        continue;
+      }
+
+      // the payloads of a streamed message would follow it inside the frame, and can't be told
+      // apart from the messages after it, so the rest of the stream can't be trusted
+      if (parsed instanceof StreamedMessage) {
+        throw new IOException("streamed message " + parts[0] + " inside a batch");
+      }
+
+      if (!parsed.isQuiet()) {
+        Logger.info(log("> in > {}"), line);
+      }
+
+      messages.add(parsed);
+    }
+
+    messageQueue.add(new BatchMessage(messages));
+  }
+
+  /**
+   * Reads the payloads that follow a streamed message, queueing a message for each one as soon as
+   * it has arrived so that it can be processed while the next is still being received.
+   *
+   * @param streamed the message describing the payloads
+   * @throws IOException if the payloads cannot be read
+   */
+  private void readStreamedPayloads(StreamedMessage streamed) throws IOException {
+    var sizes = streamed.getPayloadSizes();
+
+    for (int i = 0; i < sizes.length; i++) {
+      var payload = inRaw.readNBytes(sizes[i]);
+      if (payload.length < sizes[i]) {
+        throw new IOException("connection closed part way through a streamed payload");
+      }
+
+      Logger.info(log("> in > {} bytes (streamed payload {} of {})"), payload.length, i + 1,
+          sizes.length);
+      messageQueue.add(streamed.withPayload(i, payload));
+    }
+  }
+
   /**
    * Returns whether this handler should allow a queue hold.
    */
@@ -257,13 +415,28 @@ public abstract class AbstractConnectionHandler implements Runnable {
         return;
       }
 
+      if (message instanceof BatchMessage batch) {
+        batch.getMessages().forEach(this::processMessage);
+      } else {
+        processMessage(message);
+      }
+    }
+  }
+
+  /**
+   * Processes one message, logging rather than throwing any exception from its handler.
+   *
+   * @param message the message to process
+   */
+  private void processMessage(Message message) {
+    if (!message.isQuiet()) {
       Logger.info("Now processing {}", message.getClass().getSimpleName());
+    }
 
-      try {
-        handleMessage(message);
-      } catch (Exception e) {
-        Logger.error("exception while handling message: {}", e.getMessage());
-      }
+    try {
+      handleMessage(message);
+    } catch (Exception e) {
+      Logger.error("exception while handling message: {}", e.getMessage());
     }
   }
 
@@ -288,6 +461,15 @@ public abstract class AbstractConnectionHandler implements Runnable {
     // implementations should override this method if they require it
   }
 
+  /**
+   * Returns whether BATCH frames are accepted on this connection. Only the connection between the
+   * controller and a Dstore uses them, so this is false by default, and a BATCH header from
+   * anything else is rejected like any other malformed line.
+   */
+  protected boolean acceptsBatches() {
+    return false;
+  }
+
   /**
    * Parses a message from the raw text content. Implementations must override this method to parse
    * the messages they can handle.
@@ -328,29 +510,126 @@ public abstract class AbstractConnectionHandler implements Runnable {
    */
   public void send(Message message, int timeout) {
     synchronized (sendLock) {
-      Logger.info(log("< out < {}"), message);
+      flushBatch();
+
+      if (!message.isQuiet()) {
+        Logger.info(log("< out < {}"), message);
+      }
 
       try {
         socket.setSoTimeout(timeout);
         out.println(message.toString());
         out.flush();
+        lastSendNanos = System.nanoTime();
       } catch (Exception e) {
         Logger.error(log("caught exception while sending message: {}"), e.getMessage());
       }
     }
   }
 
+  /**
+   * Sends a message in the next BATCH frame, if batching is enabled, so that messages sent close
+   * together share one write. Like Nagle's algorithm, a message is sent straight away if nothing
+   * has been sent within the batch window, so batching only delays messages on a busy connection.
+   * Otherwise the frame is sent once the window since the last write has passed, or the frame is
+   * full. A message sent with {@link #send(Message)} sends any waiting frame first, so the order of
+   * messages is kept.
+   *
+   * @param message the message to send
+   */
+  public void sendBatched(Message message) {
+    if (batchWindowUs <= 0) {
+      send(message);
+      return;
+    }
+
+    synchronized (sendLock) {
+      var waitNanos = lastSendNanos + batchWindowUs * 1000 - System.nanoTime();
+      if (pendingBatch.isEmpty() && waitNanos <= 0) {
+        send(message);
+        return;
+      }
+
+      pendingBatch.add(message);
+
+      if (pendingBatch.size() >= MAX_BATCH_MESSAGES) {
+        flushBatch();
+      } else if (pendingBatch.size() == 1) {
+        BATCH_FLUSHER.schedule(() -> {
+          synchronized (sendLock) {
+            flushBatch();
+          }
+        }, Math.max(0, waitNanos), TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  /**
+   * Sets how long a message sent with {@link #sendBatched(Message)} may wait for others to be
+   * batched with it. The other end must understand BATCH frames.
+   *
+   * @param batchWindowUs the window in microseconds, or 0 to send every message straight away
+   */
+  public void setBatchWindow(long batchWindowUs) {
+    this.batchWindowUs = batchWindowUs;
+  }
+
+  /**
+   * Sends the messages waiting to be batched, as one frame. A single message is sent on its own.
+   * The caller must hold {@link #sendLock}.
+   */
+  private void flushBatch() {
+    if (pendingBatch.isEmpty()) {
+      return;
+    }
+
+    var frame = new StringBuilder();
+    if (pendingBatch.size() > 1) {
+      frame.append(Protocol.BATCH).append(' ').append(pendingBatch.size()).append('\n');
+    }
+
+    for (var message : pendingBatch) {
+      if (!message.isQuiet()) {
+        Logger.info(log("< out < {}"), message);
+      }
+
+      frame.append(message.toString()).append('\n');
+    }
+
+    pendingBatch.clear();
+
+    try {
+      out.print(frame);
+      out.flush();
+      lastSendNanos = System.nanoTime();
+    } catch (Exception e) {
+      Logger.error(log("caught exception while sending message: {}"), e.getMessage());
+    }
+  }
+
   /**
    * Sends some bytes as raw data across the socket.
    *
    * @param bytes the byte array to send
    */
   public void sendBytes(byte[] bytes) {
+    sendBytes(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Sends part of a byte array as raw data across the socket.
+   *
+   * @param bytes  the byte array to send from
+   * @param offset the index of the first byte to send
+   * @param length the number of bytes to send
+   */
+  public void sendBytes(byte[] bytes, int offset, int length) {
     synchronized (sendLock) {
-      Logger.info(log("< out < {} bytes"), bytes.length);
+      flushBatch();
+      Logger.info(log("< out < {} bytes"), length);
 
       try {
-        outRaw.write(bytes);
+        outRaw.write(bytes, offset, length);
       } catch (IOException e) {
         Logger.error(log("caught exception while sending message: {}"), e.getMessage());
       }
@@ -380,4 +659,11 @@ public abstract class AbstractConnectionHandler implements Runnable {
   public AcknowledgementService getAcknowledgementService() {
     return acknowledgementService;
   }
+
+  /**
+   * Returns the number of messages waiting to be processed.
+   */
+  public int getQueueDepth() {
+    return messageQueue.size();
+  }
 }
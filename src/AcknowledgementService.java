@@ -1,4 +1,6 @@
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 /**
@@ -13,6 +15,12 @@ public class AcknowledgementService {
    */
   private CompletableFuture<Void> ackFuture;
 
+  /**
+   * The futures waiting on acknowledgements for a specific key, such as a file name. Unlike
+   * {@link #ackFuture}, any number of these can be outstanding at once.
+   */
+  private final Map<String, CompletableFuture<String>> keyedAckFutures = new ConcurrentHashMap<>();
+
   /**
    * Handles an ACK message being received.
    */
@@ -26,6 +34,31 @@ public class AcknowledgementService {
     ackFuture = null;
   }
 
+  /**
+   * Handles an acknowledgement for a specific key being received.
+   *
+   * @param key the key that has been acknowledged
+   */
+  public void handleAck(String key) {
+    handleAck(key, null);
+  }
+
+  /**
+   * Handles an acknowledgement for a specific key that carries a value, such as an offset.
+   *
+   * @param key   the key that has been acknowledged
+   * @param value the value that was acknowledged
+   */
+  public void handleAck(String key, String value) {
+    var future = keyedAckFutures.remove(key);
+    if (future == null) {
+      Logger.warn("Ignoring acknowledgement for {} as nothing is waiting", key);
+      return;
+    }
+
+    future.complete(value);
+  }
+
   /**
    * Returns the Future that can be used to wait for an ACK.
    *
@@ -39,4 +72,20 @@ public class AcknowledgementService {
     ackFuture = new CompletableFuture<>();
     return ackFuture;
   }
+
+  /**
+   * Returns the Future that can be used to wait for an acknowledgement of a specific key.
+   *
+   * @param key the key that will be acknowledged
+   * @return a future that will be completed with the acknowledged value, if any, when the key is
+   *     acknowledged
+   */
+  public CompletableFuture<String> getFuture(String key) {
+    var future = new CompletableFuture<String>();
+    if (keyedAckFutures.put(key, future) != null) {
+      Logger.warn("Overwriting previous future for {}", key);
+    }
+
+    return future;
+  }
 }
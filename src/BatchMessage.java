@@ -0,0 +1,32 @@
+import java.util.List;
+
+/**
+ * Several messages that arrived together in one BATCH frame. They are queued as one, and
+ * processed one after the other in a single pass of the message processor.
+ *
+ * @author George Peppard
+ */
+public class BatchMessage extends Message {
+
+  private final List<Message> messages;
+
+  public BatchMessage(List<Message> messages) {
+    super(Protocol.BATCH);
+
+    this.messages = messages;
+  }
+
+  @Override
+  public boolean isQuiet() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + messages.size();
+  }
+
+  public List<Message> getMessages() {
+    return messages;
+  }
+}
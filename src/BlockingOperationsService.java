@@ -18,11 +18,6 @@ public class BlockingOperationsService {
    */
   private int currentStoreOperations = 0;
 
-  /**
-   * The number of current remove operations that are ongoing.
-   */
-  private int currentRemoveOperations = 0;
-
   /**
    * Whether a rebalance operation is ongoing.
    */
@@ -70,25 +65,8 @@ public class BlockingOperationsService {
   }
 
   /**
-   * Record a remove operation as having started. This will block rebalance operations.
-   */
-  public synchronized void startRemove() {
-    currentRemoveOperations++;
-    Logger.info("Remove operation started, there are now {} running", currentRemoveOperations);
-  }
-
-  /**
-   * Record a remove operation as having finished.
-   */
-  public synchronized void finishRemove() {
-    currentRemoveOperations--;
-    this.notify();
-    Logger.info("Remove operation finished, there are now {} running", currentRemoveOperations);
-  }
-
-  /**
-   * Record a rebalance operation as having started. This method will block until store and remove
-   * messages are all finished, and will start a queue hold so no further operations start.
+   * Record a rebalance operation as having started. This method will block until store operations
+   * are all finished, and will start a queue hold so no further operations start.
    *
    * @throws AlreadyRebalancingException if there is already an ongoing rebalance operation
    * @throws InterruptedException        if the wait is interrupted
@@ -100,8 +78,8 @@ public class BlockingOperationsService {
     }
 
     startQueueHold();
-    while (currentStoreOperations > 0 || currentRemoveOperations > 0) {
-      Logger.info("Waiting for store or remove operations to finish before rebalancing");
+    while (currentStoreOperations > 0) {
+      Logger.info("Waiting for store operations to finish before rebalancing");
       this.wait();
     }
 
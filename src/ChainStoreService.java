@@ -0,0 +1,119 @@
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A service that stores files arriving in a {@link StoreChainMessage} and forwards them to the next
+ * Dstore in the chain. Each segment is forwarded before it is written locally, so every Dstore in
+ * the chain is receiving the file at the same time. If the next Dstore cannot be reached, this
+ * Dstore still stores its own copy; the controller notices the missing acknowledgements and has
+ * the file copied elsewhere.
+ *
+ * @author George Peppard
+ */
+public class ChainStoreService {
+
+  /**
+   * The service container.
+   */
+  private final DstoreServiceContainer services;
+
+  /**
+   * The connections to the next Dstore in each chain, by file name.
+   */
+  private final Map<String, DstoreConnectionHandler> forwards = new ConcurrentHashMap<>();
+
+  /**
+   * Initialises the service.
+   *
+   * @param services the service container
+   */
+  public ChainStoreService(DstoreServiceContainer services) {
+    this.services = services;
+  }
+
+  /**
+   * Forwards and stores one segment of a file. The file is acknowledged to the controller once its
+   * last segment has been stored.
+   *
+   * @param segment the segment, with its content
+   */
+  public void handleSegment(StoreChainMessage segment) {
+    var name = segment.getFileName();
+    var content = segment.getContent();
+    var last = segment.getOffset() + content.length >= segment.getFileSize();
+
+    if (segment.getOffset() == 0) {
+      startForwarding(segment);
+    }
+
+    var forward = forwards.get(name);
+    if (forward != null) {
+      forward.sendBytes(content);
+    }
+
+    try {
+      if (!services.getLocalFileService().appendPartial(name, segment.getFileSize(),
+          segment.getOffset(), content)) {
+        stopForwarding(name);
+        return;
+      }
+    } catch (IOException e) {
+      Logger.error("Failed to store segment of {}: {}", name, e.getMessage());
+      stopForwarding(name);
+      return;
+    }
+
+    if (last) {
+      stopForwarding(name);
+      services.getDstore().getControllerHandler().sendBatched(new StoreAckMessage(name));
+      Logger.info("Stored chained file {} of size {}", name, segment.getFileSize());
+    }
+  }
+
+  /**
+   * Connects to the next Dstore in the chain, if there is one, and tells it what is coming.
+   *
+   * @param segment the first segment of the file
+   */
+  private void startForwarding(StoreChainMessage segment) {
+    stopForwarding(segment.getFileName());
+
+    var next = segment.forNextDstore();
+    if (next == null) {
+      return;
+    }
+
+    var port = segment.getNextPorts().get(0);
+    try {
+      var handler = new DstoreConnectionHandler(new Socket(WellKnownHosts.LOCALHOST, port),
+          services);
+      new Thread(handler, "Chain Connection Handler for " + port).start();
+
+      handler.send(next);
+      forwards.put(segment.getFileName(), handler);
+    } catch (IOException e) {
+      Logger.error("Failed to connect to next Dstore in chain at port {}: {}", port,
+          e.getMessage());
+    }
+  }
+
+  /**
+   * Closes the connection to the next Dstore in a chain, if there is one.
+   *
+   * @param name the name of the file
+   */
+  private void stopForwarding(String name) {
+    var handler = forwards.remove(name);
+    if (handler == null) {
+      return;
+    }
+
+    try {
+      handler.close();
+    } catch (IOException e) {
+      Logger.error("Could not close chain connection: {}", e.getMessage());
+    }
+  }
+}
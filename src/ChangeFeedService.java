@@ -0,0 +1,140 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A service that pushes changes to the namespace to watching clients, so that they do not need to
+ * poll LIST. Every file that is stored or removed is given the next sequence number, and the most
+ * recent changes are kept so that a client that reconnects can resume from the last one it saw.
+ * Each watching client has its own bounded queue and sending thread, so publishing a change never
+ * blocks, and a slow client never holds up a store, a remove or the other clients. A client that
+ * falls too far behind is told to list the files again.
+ *
+ * @author George Peppard
+ */
+public class ChangeFeedService {
+
+  /**
+   * The default number of recent changes kept for clients to resume from.
+   */
+  private static final int DEFAULT_HISTORY = 10000;
+
+  /**
+   * The default number of changes that may be queued for one client.
+   */
+  private static final int DEFAULT_QUEUE = 1000;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The number of recent changes kept.
+   */
+  private final int historySize = Math.max(1,
+      Settings.getInt(Settings.CONTROLLER_WATCH_HISTORY, DEFAULT_HISTORY));
+
+  /**
+   * The most recent changes, oldest first. Guarded by this service.
+   */
+  private final Deque<WatchEventMessage> history = new ArrayDeque<>();
+
+  /**
+   * The number of changes that may be queued for one client.
+   */
+  private final int queueSize = Math.max(1,
+      Settings.getInt(Settings.CONTROLLER_WATCH_QUEUE, DEFAULT_QUEUE));
+
+  /**
+   * The watching clients.
+   */
+  private final List<WatchSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+  /**
+   * The sequence number of the latest change. Guarded by this service.
+   */
+  private long sequence = 0;
+
+  /**
+   * Initialises the service.
+   *
+   * @param services the service container
+   */
+  public ChangeFeedService(ControllerServiceContainer services) {
+    this.services = services;
+
+    services.getMetricsService().registerGauge("watch.subscribers", subscriptions::size);
+  }
+
+  /**
+   * Records that a file has been stored or removed.
+   *
+   * @param kind     {@link Protocol#STORE_COMPLETE} or {@link Protocol#REMOVE_COMPLETE}
+   * @param fileName the name of the file
+   */
+  public synchronized void publish(String kind, String fileName) {
+    var event = new WatchEventMessage(++sequence, kind, fileName);
+
+    history.addLast(event);
+    if (history.size() > historySize) {
+      history.removeFirst();
+    }
+
+    for (var subscription : subscriptions) {
+      if (!subscription.offer(event)) {
+        Logger.warn("Watcher fell {} changes behind, resetting it", queueSize);
+        services.getMetricsService().increment("watch.overflows");
+      }
+    }
+
+    services.getMetricsService().increment("watch.events");
+  }
+
+  /**
+   * Subscribes a client to changes, first sending it any it missed since the given sequence
+   * number. If those are no longer kept, or the sequence number is from before the controller
+   * restarted, the client is told to list the files again instead.
+   *
+   * @param client the client
+   * @param prefix the prefix of the files the client is interested in
+   * @param from   the sequence number of the last change the client saw, or -1 for none
+   */
+  public synchronized void subscribe(ControllerConnectionHandler client, String prefix,
+      long from) {
+    var resume = from >= 0 && from < sequence;
+    var missed = from > sequence
+        || resume && (history.isEmpty() || history.getFirst().getSequence() > from + 1);
+
+    // only a snapshot is taken here, and the subscription's own thread sends it
+    var initial = new ArrayList<WatchEventMessage>();
+    initial.add(new WatchEventMessage(sequence, WatchEventMessage.SUBSCRIBED, null));
+    if (missed) {
+      Logger.info("Changes after {} are no longer kept, resetting watcher", from);
+      initial.add(new WatchEventMessage(sequence, WatchEventMessage.RESET, null));
+    } else if (resume) {
+      history.stream().filter(e -> e.getSequence() > from).forEach(initial::add);
+    }
+
+    var subscription = new WatchSubscription(client, IndexService.getNameKey(prefix), sequence,
+        initial, queueSize);
+    subscriptions.add(subscription);
+    subscription.start();
+  }
+
+  /**
+   * Unsubscribes a client, such as when it disconnects.
+   *
+   * @param client the client
+   */
+  public void unsubscribe(ControllerConnectionHandler client) {
+    for (var subscription : subscriptions) {
+      if (subscription.getClient() == client) {
+        subscriptions.remove(subscription);
+        subscription.stop();
+      }
+    }
+  }
+}
@@ -19,7 +19,7 @@ public class ControllerConnectionHandler extends AbstractConnectionHandler {
   /**
    * The port the Dstore we are connected to is running on, or 0 if this is not a Dstore.
    */
-  protected int dstorePort = 0;
+  protected volatile int dstorePort = 0;
 
   /**
    * Initialises a new handler.
@@ -44,9 +44,28 @@ public class ControllerConnectionHandler extends AbstractConnectionHandler {
       case Protocol.LOAD -> LoadMessage.parse(args);
       case Protocol.RELOAD -> ReloadMessage.parse(args);
       case Protocol.REMOVE -> RemoveMessage.parse(args);
-      case Protocol.REMOVE_ACK -> RemoveAckMessage.parse(args);
       case Protocol.LIST -> !isDstore() ? new ListMessage() : ListResponseMessage.parse(args);
-      case Protocol.REBALANCE_COMPLETE -> new RebalanceCompleteMessage();
+      case Protocol.REBALANCE_COMPLETE -> RebalanceCompleteMessage.parse(args);
+      case Protocol.REBALANCE_PROGRESS -> RebalanceProgressMessage.parse(args);
+      case Protocol.METRICS -> new MetricsMessage();
+      case Protocol.DIGEST -> DigestResponseMessage.parse(args);
+      case Protocol.LIST_BUCKETS -> ListBucketsResponseMessage.parse(args);
+      case Protocol.LIST_FILE -> ListFileResponseMessage.parse(args);
+      case Protocol.HEARTBEAT -> HeartbeatResponseMessage.parse(args);
+      case Protocol.STATS -> isDstore() ? DstoreStatsMessage.parse(args) : new StatsMessage();
+      case Protocol.HOT -> new HotMessage();
+      case Protocol.PURGE -> PurgeMessage.parse(args);
+      case Protocol.STORE_BULK -> StoreBulkMessage.parse(args);
+      case Protocol.LOAD_BULK -> LoadBulkMessage.parse(args);
+      case Protocol.REMOVE_BULK -> RemoveBulkMessage.parse(args);
+      case Protocol.REMOVE_PREFIX -> RemoveBulkMessage.parsePrefix(args);
+      case Protocol.LIST_PAGE -> ListPageMessage.parse(args);
+      case Protocol.WATCH -> WatchMessage.parse(args);
+      case Protocol.LOCATE -> LocateMessage.parse(args);
+      case Protocol.LOAD_HEDGED -> LoadHedgedMessage.parse(args);
+      case Protocol.STORE_MULTIPART -> StoreMultipartMessage.parse(args);
+      case Protocol.STORE_PART_ACK -> StorePartAckMessage.parse(args);
+      case Protocol.STORE_MULTIPART_COMMIT -> StoreMultipartCommitMessage.parse(args);
       default -> super.parseMessage(type, args);
     };
   }
@@ -68,12 +87,20 @@ public class ControllerConnectionHandler extends AbstractConnectionHandler {
     sc.getBlockingOperationsService().deregisterListener(
         (QueueHoldEndEventListener) this::stopProcessing);
 
+    sc.getChangeFeedService().unsubscribe(this);
+    sc.getLeaseService().release(this);
+
     if (isDstore()) {
       sc.getDstoreService().leave(dstorePort);
       Logger.info(log("lost Dstore!"));
     }
   }
 
+  @Override
+  protected boolean acceptsBatches() {
+    return isDstore();
+  }
+
   @Override
   protected IMessageHandlerFactory getHandlerFactory() {
     return handlerFactory;
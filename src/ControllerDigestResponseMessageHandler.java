@@ -0,0 +1,25 @@
+/**
+ * A handler for the DIGEST and LIST_BUCKETS replies from a Dstore.
+ *
+ * @author George Peppard
+ */
+public class ControllerDigestResponseMessageHandler extends ControllerMessageHandler<Message> {
+
+  public ControllerDigestResponseMessageHandler(Message message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Passes the reply to the digest reconciliation that is waiting for it.
+   */
+  @Override
+  public void handle() {
+    var dstore = services.getDstoreService().getDstore(handler.getDstorePort());
+    if (dstore == null) {
+      return;
+    }
+
+    services.getIndexService().handleDigestReply(dstore, message);
+  }
+}
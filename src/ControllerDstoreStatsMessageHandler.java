@@ -0,0 +1,26 @@
+/**
+ * A handler for the statistics a Dstore reports every so often.
+ *
+ * @author George Peppard
+ */
+public class ControllerDstoreStatsMessageHandler extends
+    ControllerMessageHandler<DstoreStatsMessage> {
+
+  public ControllerDstoreStatsMessageHandler(DstoreStatsMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Records the statistics on the Dstore's model.
+   */
+  @Override
+  public void handle() {
+    var dstore = services.getDstoreService().getDstore(handler.getDstorePort());
+    if (dstore == null) {
+      return;
+    }
+
+    dstore.setStats(message.getStats());
+  }
+}
@@ -0,0 +1,26 @@
+/**
+ * A handler for a Dstore's answer to a heartbeat.
+ *
+ * @author George Peppard
+ */
+public class ControllerHeartbeatResponseMessageHandler extends
+    ControllerMessageHandler<HeartbeatResponseMessage> {
+
+  public ControllerHeartbeatResponseMessageHandler(HeartbeatResponseMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Records the heartbeat with the heartbeat service.
+   */
+  @Override
+  public void handle() {
+    var dstore = services.getDstoreService().getDstore(handler.getDstorePort());
+    if (dstore == null) {
+      return;
+    }
+
+    services.getHeartbeatService().handleHeartbeat(dstore, message);
+  }
+}
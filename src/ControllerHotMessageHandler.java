@@ -0,0 +1,20 @@
+/**
+ * A handler for the HOT admin message.
+ *
+ * @author George Peppard
+ */
+public class ControllerHotMessageHandler extends ControllerMessageHandler<HotMessage> {
+
+  public ControllerHotMessageHandler(HotMessage message, ControllerServiceContainer services,
+      ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns the most requested files in the current window.
+   */
+  @Override
+  public void handle() {
+    handler.send(new HotMessage(services.getHeavyHitterService().getTop()));
+  }
+}
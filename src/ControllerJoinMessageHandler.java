@@ -5,6 +5,11 @@
  */
 public class ControllerJoinMessageHandler extends ControllerMessageHandler<JoinMessage> {
 
+  /**
+   * The default time a message to a Dstore is held to be batched with others, in microseconds.
+   */
+  private static final long DEFAULT_BATCH_WINDOW_US = 1000;
+
   public ControllerJoinMessageHandler(JoinMessage message, ControllerServiceContainer services,
       ControllerConnectionHandler handler) {
     super(message, services, handler);
@@ -12,18 +17,18 @@ public class ControllerJoinMessageHandler extends ControllerMessageHandler<JoinM
 
   /**
    * Tells interested services that we are a new Dstore and requests a rebalance so this Dstore can
-   * get some files.
+   * get some files. Dstores that join close together share a single rebalance. Control messages
+   * to the Dstore are batched from now on, as only Dstores understand BATCH frames.
    */
   @Override
   public void handle() {
     var port = message.getPort();
-    services.getDstoreService().join(port, handler);
+    // set first, as the Dstore may answer the first message it is sent with a BATCH
     handler.setDstorePort(port);
+    services.getDstoreService().join(port, handler);
+    handler.setBatchWindow(
+        Settings.getLong(Settings.CONTROLLER_BATCH_WINDOW_US, DEFAULT_BATCH_WINDOW_US));
 
-    if (services.getDstoreService().hasEnoughDstores()) {
-      services.getIndexService().runAdHocRebalance();
-    } else {
-      Logger.info("Not running rebalance as not enough Dstores");
-    }
+    services.getRebalanceScheduler().requestMembershipRebalance();
   }
 }
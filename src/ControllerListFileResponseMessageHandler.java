@@ -0,0 +1,26 @@
+/**
+ * A handler for the LIST_FILE reply from a Dstore.
+ *
+ * @author George Peppard
+ */
+public class ControllerListFileResponseMessageHandler extends
+    ControllerMessageHandler<ListFileResponseMessage> {
+
+  public ControllerListFileResponseMessageHandler(ListFileResponseMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Passes the result to the verification that is waiting for it.
+   */
+  @Override
+  public void handle() {
+    var dstore = services.getDstoreService().getDstore(handler.getDstorePort());
+    if (dstore == null) {
+      return;
+    }
+
+    services.getReadRepairService().handleVerification(dstore, message);
+  }
+}
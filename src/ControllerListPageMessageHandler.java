@@ -0,0 +1,47 @@
+/**
+ * A handler for the LIST_PAGE message.
+ *
+ * @author George Peppard
+ */
+public class ControllerListPageMessageHandler extends ControllerMessageHandler<ListPageMessage> {
+
+  /**
+   * The default number of files on a page.
+   */
+  private static final int DEFAULT_PAGE_SIZE = 1000;
+
+  /**
+   * The default most files on a page.
+   */
+  private static final int DEFAULT_MAX_PAGE_SIZE = 10000;
+
+  public ControllerListPageMessageHandler(ListPageMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns one page of the available files from the sorted name index, with a continuation token
+   * if there are more. One file past the end of the page is looked up to tell whether there are.
+   */
+  @Override
+  public void handle() {
+    var maxLimit = Math.max(1,
+        Settings.getInt(Settings.CONTROLLER_LIST_PAGE_MAX_SIZE, DEFAULT_MAX_PAGE_SIZE));
+    var limit = message.getLimit() > 0 ? message.getLimit()
+        : Math.max(1, Settings.getInt(Settings.CONTROLLER_LIST_PAGE_SIZE, DEFAULT_PAGE_SIZE));
+    limit = Math.min(limit, maxLimit);
+
+    var files = services.getIndexService()
+        .getAvailableFilesPage(message.getPrefix(), message.getAfter(), limit + 1);
+
+    String next = null;
+    if (files.size() > limit) {
+      files = files.subList(0, limit);
+      next = IndexService.getNameKey(files.get(limit - 1).getName());
+    }
+
+    handler.send(new ListPageResponseMessage(next,
+        files.stream().map(IndexedFile::getName).toList()));
+  }
+}
@@ -0,0 +1,52 @@
+import java.util.LinkedHashMap;
+
+/**
+ * A handler for the LOAD_BULK message.
+ *
+ * @author George Peppard
+ */
+public class ControllerLoadBulkMessageHandler extends ControllerMessageHandler<LoadBulkMessage> {
+
+  public ControllerLoadBulkMessageHandler(LoadBulkMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Chooses a Dstore to load each file from, in the same way as a LOAD, and sends them all in a
+   * single reply. No load operation is kept for the files, so a client that cannot load one of
+   * them should fall back to a LOAD and RELOAD of that file.
+   */
+  @Override
+  public void handle() {
+    if (!services.getDstoreService().hasEnoughDstores()) {
+      handler.send(new ErrorNotEnoughDstoresMessage());
+      return;
+    }
+
+    var replies = new LinkedHashMap<String, Message>();
+
+    for (var name : message.getFileNames()) {
+      services.getHeavyHitterService().record(name);
+
+      var file = services.getIndexService().getAvailableFileByName(name);
+      if (file == null) {
+        replies.put(name, new ErrorFileDoesNotExistMessage());
+        continue;
+      }
+
+      var dstore = new LoadOperation(file, handler,
+          services.getReadRepairService().getSuspectDstores(file)).getNextDstore();
+      if (dstore == null) {
+        replies.put(name, new ErrorLoadMessage());
+        continue;
+      }
+
+      file.recordLoad();
+      replies.put(name, new LoadFromMessage(dstore.getPort(), file.getSize()));
+    }
+
+    services.getMetricsService().add("bulk.load.files", message.getFileNames().size());
+    handler.send(new LoadBulkFromMessage(replies));
+  }
+}
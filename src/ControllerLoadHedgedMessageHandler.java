@@ -0,0 +1,63 @@
+import java.util.stream.Stream;
+
+/**
+ * A handler for the LOAD_HEDGED message.
+ *
+ * @author George Peppard
+ */
+public class ControllerLoadHedgedMessageHandler extends
+    ControllerMessageHandler<LoadHedgedMessage> {
+
+  /**
+   * The default shortest hedge delay, in milliseconds.
+   */
+  private static final long DEFAULT_MIN_DELAY_MS = 5;
+
+  public ControllerLoadHedgedMessageHandler(LoadHedgedMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Chooses the first Dstore as LOAD would, and sends it along with every other Dstore with the
+   * file and the delay after which the client should hedge. No load operation is kept, so hedged
+   * loads never use up the Dstores a later RELOAD would be sent to. The delay is the first
+   * Dstore's heartbeat round trip plus the 95th percentile of its load times, so roughly one load
+   * in twenty is hedged.
+   */
+  @Override
+  public void handle() {
+    services.getHeavyHitterService().record(message.getFileName());
+
+    if (!services.getDstoreService().hasEnoughDstores()) {
+      handler.send(new ErrorNotEnoughDstoresMessage());
+      return;
+    }
+
+    var file = services.getIndexService().getAvailableFileByName(message.getFileName());
+    if (file == null) {
+      handler.send(new ErrorFileDoesNotExistMessage());
+      return;
+    }
+
+    var operation = new LoadOperation(file, handler,
+        services.getReadRepairService().getSuspectDstores(file));
+    var first = operation.getNextDstore();
+    if (first == null) {
+      handler.send(new ErrorLoadMessage());
+      return;
+    }
+
+    file.recordLoad();
+
+    var loadP95Us = first.getStats() != null ? first.getStats().getLoadP95Us() : 0;
+    var hedgeMs = Math.max(
+        Settings.getLong(Settings.CONTROLLER_HEDGE_MIN_DELAY_MS, DEFAULT_MIN_DELAY_MS),
+        (long) Math.ceil(first.getLatencyMs() + loadP95Us / 1000.0));
+    var ports = Stream.concat(Stream.of(first), operation.getRemainingDstores().stream())
+        .mapToInt(DstoreModel::getPort).toArray();
+
+    services.getMetricsService().increment("load.hedged-requests");
+    handler.send(new LoadHedgedResponseMessage(file.getSize(), hedgeMs, ports));
+  }
+}
@@ -15,6 +15,8 @@ public class ControllerLoadMessageHandler extends ControllerMessageHandler<LoadM
    */
   @Override
   public void handle() {
+    services.getHeavyHitterService().record(message.getFileName());
+
     if (!services.getDstoreService().hasEnoughDstores()) {
       handler.send(new ErrorNotEnoughDstoresMessage());
       return;
@@ -0,0 +1,51 @@
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * A handler for the LOCATE message.
+ *
+ * @author George Peppard
+ */
+public class ControllerLocateMessageHandler extends ControllerMessageHandler<LocateMessage> {
+
+  public ControllerLocateMessageHandler(LocateMessage message, ControllerServiceContainer services,
+      ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Sends the client every Dstore with the file and a lease on them. The least loaded Dstores are
+   * listed first, and those under suspicion or still storing the file last. The load is counted
+   * once here, as the client's cached loads never reach the controller.
+   */
+  @Override
+  public void handle() {
+    services.getHeavyHitterService().record(message.getFileName());
+
+    if (!services.getDstoreService().hasEnoughDstores()) {
+      handler.send(new ErrorNotEnoughDstoresMessage());
+      return;
+    }
+
+    var file = services.getIndexService().getAvailableFileByName(message.getFileName());
+    if (file == null) {
+      handler.send(new ErrorFileDoesNotExistMessage());
+      return;
+    }
+
+    var version = file.getVersion();
+    var leaseMs = services.getLeaseService().grant(handler, file);
+    var suspects = services.getReadRepairService().getSuspectDstores(file);
+    var dstores = file.getDstores();
+
+    var ports = Stream.concat(
+            dstores.stream().filter(d -> !suspects.contains(d) && !file.isStorePending(d))
+                .sorted(Comparator.comparingInt(DstoreModel::getLoad)),
+            dstores.stream().filter(d -> suspects.contains(d) || file.isStorePending(d)))
+        .mapToInt(DstoreModel::getPort).toArray();
+
+    file.recordLoad();
+    handler.send(new LocateResponseMessage(file.getName(), file.getSize(), version, leaseMs,
+        file.getPartSize(), ports));
+  }
+}
@@ -45,10 +45,6 @@ public class ControllerMessageHandlerFactory implements IMessageHandlerFactory {
       return new ControllerRemoveMessageHandler((RemoveMessage) message, sc, handler);
     }
 
-    if (message instanceof RemoveAckMessage) {
-      return new ControllerRemoveAckMessageHandler((RemoveAckMessage) message, sc, handler);
-    }
-
     if (message instanceof ListMessage) {
       return new ControllerListMessageHandler((ListMessage) message, sc, handler);
     }
@@ -69,6 +65,88 @@ public class ControllerMessageHandlerFactory implements IMessageHandlerFactory {
       return new ControllerRebalanceCompleteMessageHandler((RebalanceCompleteMessage) message, sc, handler);
     }
 
+    if (message instanceof RebalanceProgressMessage) {
+      return new ControllerRebalanceProgressMessageHandler((RebalanceProgressMessage) message, sc,
+          handler);
+    }
+
+    if (message instanceof MetricsMessage) {
+      return new ControllerMetricsMessageHandler((MetricsMessage) message, sc, handler);
+    }
+
+    if (message instanceof DigestResponseMessage
+        || message instanceof ListBucketsResponseMessage) {
+      return new ControllerDigestResponseMessageHandler(message, sc, handler);
+    }
+
+    if (message instanceof ListFileResponseMessage) {
+      return new ControllerListFileResponseMessageHandler((ListFileResponseMessage) message, sc,
+          handler);
+    }
+
+    if (message instanceof HeartbeatResponseMessage) {
+      return new ControllerHeartbeatResponseMessageHandler((HeartbeatResponseMessage) message, sc,
+          handler);
+    }
+
+    if (message instanceof DstoreStatsMessage) {
+      return new ControllerDstoreStatsMessageHandler((DstoreStatsMessage) message, sc, handler);
+    }
+
+    if (message instanceof StatsMessage) {
+      return new ControllerStatsMessageHandler((StatsMessage) message, sc, handler);
+    }
+
+    if (message instanceof PurgeMessage) {
+      return new ControllerPurgeMessageHandler((PurgeMessage) message, sc, handler);
+    }
+
+    if (message instanceof HotMessage) {
+      return new ControllerHotMessageHandler((HotMessage) message, sc, handler);
+    }
+
+    if (message instanceof StoreBulkMessage) {
+      return new ControllerStoreBulkMessageHandler((StoreBulkMessage) message, sc, handler);
+    }
+
+    if (message instanceof LoadBulkMessage) {
+      return new ControllerLoadBulkMessageHandler((LoadBulkMessage) message, sc, handler);
+    }
+
+    if (message instanceof RemoveBulkMessage) {
+      return new ControllerRemoveBulkMessageHandler((RemoveBulkMessage) message, sc, handler);
+    }
+
+    if (message instanceof ListPageMessage) {
+      return new ControllerListPageMessageHandler((ListPageMessage) message, sc, handler);
+    }
+
+    if (message instanceof WatchMessage) {
+      return new ControllerWatchMessageHandler((WatchMessage) message, sc, handler);
+    }
+
+    if (message instanceof LocateMessage) {
+      return new ControllerLocateMessageHandler((LocateMessage) message, sc, handler);
+    }
+
+    if (message instanceof LoadHedgedMessage) {
+      return new ControllerLoadHedgedMessageHandler((LoadHedgedMessage) message, sc, handler);
+    }
+
+    if (message instanceof StoreMultipartMessage) {
+      return new ControllerStoreMultipartMessageHandler((StoreMultipartMessage) message, sc,
+          handler);
+    }
+
+    if (message instanceof StorePartAckMessage) {
+      return new ControllerStorePartAckMessageHandler((StorePartAckMessage) message, sc, handler);
+    }
+
+    if (message instanceof StoreMultipartCommitMessage) {
+      return new ControllerStoreMultipartCommitMessageHandler(
+          (StoreMultipartCommitMessage) message, sc, handler);
+    }
+
     throw new UnsupportedOperationException("no handler type defined for this message");
   }
 }
@@ -0,0 +1,20 @@
+/**
+ * A handler for the METRICS admin message.
+ *
+ * @author George Peppard
+ */
+public class ControllerMetricsMessageHandler extends ControllerMessageHandler<MetricsMessage> {
+
+  public ControllerMetricsMessageHandler(MetricsMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns a snapshot of the controller's metrics.
+   */
+  @Override
+  public void handle() {
+    handler.send(new MetricsMessage(services.getMetricsService().snapshot()));
+  }
+}
@@ -0,0 +1,26 @@
+/**
+ * A handler for a Dstore confirming that it has deleted removed files.
+ *
+ * @author George Peppard
+ */
+public class ControllerPurgeMessageHandler extends ControllerMessageHandler<PurgeMessage> {
+
+  public ControllerPurgeMessageHandler(PurgeMessage message, ControllerServiceContainer services,
+      ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Passes the confirmation to the tombstone service.
+   */
+  @Override
+  public void handle() {
+    var dstore = services.getDstoreService().getDstore(handler.getDstorePort());
+    if (dstore == null) {
+      return;
+    }
+
+    services.getTombstoneService().handlePurged(dstore, message.getAskId(),
+        message.getFileNames());
+  }
+}
@@ -22,6 +22,6 @@ public class ControllerRebalanceCompleteMessageHandler extends ControllerMessage
     var dstore = services.getDstoreService().getDstore(handler.getDstorePort());
     if (dstore == null) return;
 
-    services.getIndexService().handleRebalanceComplete(dstore);
+    services.getIndexService().handleRebalanceComplete(dstore, message.getChunk());
   }
 }
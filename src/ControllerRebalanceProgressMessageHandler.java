@@ -0,0 +1,26 @@
+/**
+ * A handler for the REBALANCE_PROGRESS message.
+ *
+ * @author George Peppard
+ */
+public class ControllerRebalanceProgressMessageHandler extends
+    ControllerMessageHandler<RebalanceProgressMessage> {
+
+  public ControllerRebalanceProgressMessageHandler(RebalanceProgressMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Commits the reported step of the rebalance to the index.
+   */
+  @Override
+  public void handle() {
+    var dstore = services.getDstoreService().getDstore(handler.getDstorePort());
+    if (dstore == null) {
+      return;
+    }
+
+    services.getIndexService().handleRebalanceProgress(dstore, message);
+  }
+}
@@ -11,10 +11,13 @@ public class ControllerReloadMessageHandler extends ControllerMessageHandler<Rel
   }
 
   /**
-   * Find a new Dstore to load the file from, if we can, or fail.
+   * Find a new Dstore to load the file from, if we can, or fail. The Dstore the client could not
+   * load from is reported to the {@link ReadRepairService}.
    */
   @Override
   public void handle() {
+    services.getHeavyHitterService().record(message.getFileName());
+
     var loadOp = services.getIndexService().getLoadOperationForClientAndFileName(handler, message.getFileName());
 
     if (loadOp == null) {
@@ -22,6 +25,11 @@ public class ControllerReloadMessageHandler extends ControllerMessageHandler<Rel
       return;
     }
 
+    var failedDstore = loadOp.getLastDstore();
+    if (failedDstore != null) {
+      services.getReadRepairService().reportFailedLoad(loadOp.getFile(), failedDstore);
+    }
+
     var nextDstore = loadOp.getNextDstore();
 
     if (nextDstore == null) {
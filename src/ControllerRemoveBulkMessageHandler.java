@@ -0,0 +1,43 @@
+import java.util.ArrayList;
+
+/**
+ * A handler for the REMOVE_BULK and REMOVE_PREFIX messages.
+ *
+ * @author George Peppard
+ */
+public class ControllerRemoveBulkMessageHandler extends
+    ControllerMessageHandler<RemoveBulkMessage> {
+
+  public ControllerRemoveBulkMessageHandler(RemoveBulkMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Removes the named files, or those matching the prefix, in one pass over the index, and tells
+   * the client which were removed in a single reply. The copies on the Dstores are deleted in the
+   * background by the tombstone service, as for a single remove.
+   */
+  @Override
+  public void handle() {
+    var indexService = services.getIndexService();
+    var files = new ArrayList<IndexedFile>();
+
+    if (message.getPrefix() != null) {
+      files.addAll(indexService.getAvailableFilesByPrefix(message.getPrefix()));
+    } else {
+      for (var name : message.getFileNames()) {
+        var file = indexService.getAvailableFileByName(name);
+        if (file != null) {
+          files.add(file);
+        }
+      }
+    }
+
+    var removed = indexService.removeFiles(files);
+
+    services.getMetricsService().add("bulk.remove.files", removed.size());
+    handler.send(new RemoveBulkCompleteMessage(
+        removed.stream().map(IndexedFile::getName).toList()));
+  }
+}
@@ -26,6 +26,61 @@ public class ControllerServiceContainer {
   private final BlockingOperationsService blockingOperationsService = new BlockingOperationsService(
       this);
 
+  /**
+   * The metrics service.
+   */
+  private final MetricsService metricsService = new MetricsService();
+
+  /**
+   * The rebalance scheduler.
+   */
+  private final RebalanceScheduler rebalanceScheduler;
+
+  /**
+   * The repair service.
+   */
+  private final RepairService repairService;
+
+  /**
+   * The read repair service.
+   */
+  private final ReadRepairService readRepairService;
+
+  /**
+   * The heartbeat service.
+   */
+  private final HeartbeatService heartbeatService;
+
+  /**
+   * The hot file service.
+   */
+  private final HotFileService hotFileService;
+
+  /**
+   * The heavy hitter service.
+   */
+  private final HeavyHitterService heavyHitterService = new HeavyHitterService();
+
+  /**
+   * The tombstone service.
+   */
+  private final TombstoneService tombstoneService;
+
+  /**
+   * The change feed service.
+   */
+  private final ChangeFeedService changeFeedService;
+
+  /**
+   * The lease service.
+   */
+  private final LeaseService leaseService;
+
+  /**
+   * The multipart upload service.
+   */
+  private final MultipartUploadService multipartUploadService;
+
   /**
    * Initialises a new service container.
    *
@@ -34,6 +89,15 @@ public class ControllerServiceContainer {
   public ControllerServiceContainer(Controller controller) {
     this.controller = controller;
     this.indexService = new IndexService(this);
+    this.rebalanceScheduler = new RebalanceScheduler(this);
+    this.repairService = new RepairService(this);
+    this.readRepairService = new ReadRepairService(this);
+    this.heartbeatService = new HeartbeatService(this);
+    this.hotFileService = new HotFileService(this);
+    this.tombstoneService = new TombstoneService(this);
+    this.changeFeedService = new ChangeFeedService(this);
+    this.leaseService = new LeaseService(this);
+    this.multipartUploadService = new MultipartUploadService(this);
     Logger.info("initialised controller service container - you should only see this message once");
   }
 
@@ -64,4 +128,81 @@ public class ControllerServiceContainer {
   public BlockingOperationsService getBlockingOperationsService() {
     return blockingOperationsService;
   }
+
+  /**
+   * Returns the metrics service.
+   */
+  public MetricsService getMetricsService() {
+    return metricsService;
+  }
+
+  /**
+   * Returns the rebalance scheduler.
+   */
+  public RebalanceScheduler getRebalanceScheduler() {
+    return rebalanceScheduler;
+  }
+
+  /**
+   * Returns the repair service.
+   */
+  public RepairService getRepairService() {
+    return repairService;
+  }
+
+  /**
+   * Returns the read repair service.
+   */
+  public ReadRepairService getReadRepairService() {
+    return readRepairService;
+  }
+
+  /**
+   * Returns the heartbeat service.
+   */
+  public HeartbeatService getHeartbeatService() {
+    return heartbeatService;
+  }
+
+  /**
+   * Returns the hot file service.
+   */
+  public HotFileService getHotFileService() {
+    return hotFileService;
+  }
+
+  /**
+   * Returns the heavy hitter service.
+   */
+  public HeavyHitterService getHeavyHitterService() {
+    return heavyHitterService;
+  }
+
+  /**
+   * Returns the tombstone service.
+   */
+  public TombstoneService getTombstoneService() {
+    return tombstoneService;
+  }
+
+  /**
+   * Returns the change feed service.
+   */
+  public ChangeFeedService getChangeFeedService() {
+    return changeFeedService;
+  }
+
+  /**
+   * Returns the lease service.
+   */
+  public LeaseService getLeaseService() {
+    return leaseService;
+  }
+
+  /**
+   * Returns the multipart upload service.
+   */
+  public MultipartUploadService getMultipartUploadService() {
+    return multipartUploadService;
+  }
 }
@@ -0,0 +1,30 @@
+import java.util.LinkedHashMap;
+
+/**
+ * A handler for the STATS admin message.
+ *
+ * @author George Peppard
+ */
+public class ControllerStatsMessageHandler extends ControllerMessageHandler<StatsMessage> {
+
+  public ControllerStatsMessageHandler(StatsMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns the statistics each Dstore last reported. Dstores that have not reported yet are
+   * left out.
+   */
+  @Override
+  public void handle() {
+    var stats = new LinkedHashMap<Integer, DstoreStats>();
+    for (var dstore : services.getDstoreService().getAllDstores()) {
+      if (dstore.getStats() != null) {
+        stats.put(dstore.getPort(), dstore.getStats());
+      }
+    }
+
+    handler.send(new StatsMessage(stats));
+  }
+}
@@ -15,6 +15,7 @@ public class ControllerStoreAckMessageHandler extends ControllerMessageHandler<S
    */
   @Override
   public void handle() {
-    services.getIndexService().acknowledgeSuccessfulStore(message.getFileName());
+    services.getIndexService().acknowledgeSuccessfulStore(message.getFileName(),
+        handler.getDstorePort());
   }
 }
@@ -0,0 +1,58 @@
+import java.util.LinkedHashMap;
+
+/**
+ * A handler for the STORE_BULK message.
+ *
+ * @author George Peppard
+ */
+public class ControllerStoreBulkMessageHandler extends ControllerMessageHandler<StoreBulkMessage> {
+
+  public ControllerStoreBulkMessageHandler(StoreBulkMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Places every file in the request in one pass over the index, and tells the client where to
+   * send each of them in a single reply. Files that cannot be stored are given an error instead,
+   * without failing the rest.
+   */
+  @Override
+  public void handle() {
+    var replicationFactor = services.getController().getReplicationFactor();
+
+    if (!services.getDstoreService().hasEnoughDstores(replicationFactor)) {
+      handler.send(new ErrorNotEnoughDstoresMessage());
+      return;
+    }
+
+    var replies = new LinkedHashMap<String, Message>();
+    var files = new LinkedHashMap<String, Integer>();
+
+    message.getFiles().forEach((name, size) -> {
+      services.getHeavyHitterService().record(name);
+
+      if (!services.getTombstoneService().awaitPurged(name)) {
+        replies.put(name, new ErrorFileAlreadyExistsMessage());
+      } else {
+        replies.put(name, null);
+        files.put(name, size);
+      }
+    });
+
+    var results = services.getIndexService().addFiles(files, replicationFactor, handler);
+    results.forEach((name, result) -> {
+      if (result.isFailure()) {
+        replies.put(name, result.getMessage());
+        return;
+      }
+
+      var ports = services.getIndexService().getFileByName(name).getDstores().stream()
+          .mapToInt(DstoreModel::getPort).toArray();
+      replies.put(name, new StoreToMessage(ports));
+    });
+
+    services.getMetricsService().add("bulk.store.files", message.getFiles().size());
+    handler.send(new StoreBulkToMessage(replies));
+  }
+}
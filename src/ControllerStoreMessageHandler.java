@@ -17,13 +17,22 @@ public class ControllerStoreMessageHandler extends ControllerMessageHandler<Stor
   public void handle() {
     var name = message.getFileName();
     var size = message.getFileSize();
+    var replicationFactor = message.getReplicationFactor() > 0 ? message.getReplicationFactor()
+        : services.getController().getReplicationFactor();
 
-    if (!services.getDstoreService().hasEnoughDstores()) {
+    services.getHeavyHitterService().record(name);
+
+    if (!services.getDstoreService().hasEnoughDstores(replicationFactor)) {
       handler.send(new ErrorNotEnoughDstoresMessage());
       return;
     }
 
-    var result = services.getIndexService().addFile(name, size, handler);
+    if (!services.getTombstoneService().awaitPurged(name)) {
+      handler.send(new ErrorFileAlreadyExistsMessage());
+      return;
+    }
+
+    var result = services.getIndexService().addFile(name, size, replicationFactor, handler);
     if (result.isFailure()) {
       handler.send(result.getMessage());
       return;
@@ -0,0 +1,28 @@
+/**
+ * A handler for the STORE_MULTIPART_COMMIT message.
+ *
+ * @author George Peppard
+ */
+public class ControllerStoreMultipartCommitMessageHandler extends
+    ControllerMessageHandler<StoreMultipartCommitMessage> {
+
+  public ControllerStoreMultipartCommitMessageHandler(StoreMultipartCommitMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Commits the multipart store of the file. The client is sent STORE_COMPLETE, the parts that
+   * are still missing, or an error if the file is not being stored in parts.
+   */
+  @Override
+  public void handle() {
+    try {
+      if (!services.getMultipartUploadService().commit(message.getFileName(), handler)) {
+        handler.send(new ErrorFileDoesNotExistMessage());
+      }
+    } catch (InterruptedException e) {
+      Logger.error("Commit of multipart store of {} interrupted", message.getFileName());
+    }
+  }
+}
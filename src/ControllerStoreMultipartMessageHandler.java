@@ -0,0 +1,47 @@
+/**
+ * A handler for the STORE_MULTIPART message.
+ *
+ * @author George Peppard
+ */
+public class ControllerStoreMultipartMessageHandler extends
+    ControllerMessageHandler<StoreMultipartMessage> {
+
+  public ControllerStoreMultipartMessageHandler(StoreMultipartMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Starts a multipart store, and tells the client which upload it is and which Dstores to send
+   * every part to. A part size that is not positive stores the file as a single part.
+   */
+  @Override
+  public void handle() {
+    var name = message.getFileName();
+    var size = message.getFileSize();
+    var partSize = message.getPartSize() > 0 ? message.getPartSize() : Math.max(1, size);
+    var replicationFactor = services.getController().getReplicationFactor();
+
+    services.getHeavyHitterService().record(name);
+
+    if (!services.getDstoreService().hasEnoughDstores(replicationFactor)) {
+      handler.send(new ErrorNotEnoughDstoresMessage());
+      return;
+    }
+
+    if (!services.getTombstoneService().awaitPurged(name)) {
+      handler.send(new ErrorFileAlreadyExistsMessage());
+      return;
+    }
+
+    var upload = services.getMultipartUploadService().start(name, size, partSize,
+        replicationFactor);
+    if (upload == null) {
+      handler.send(new ErrorFileAlreadyExistsMessage());
+      return;
+    }
+
+    var ports = upload.getFile().getDstores().stream().mapToInt(DstoreModel::getPort).toArray();
+    handler.send(new StoreMultipartToMessage(upload.getUploadId(), ports));
+  }
+}
@@ -0,0 +1,22 @@
+/**
+ * A handler for the STORE_PART_ACK message.
+ *
+ * @author George Peppard
+ */
+public class ControllerStorePartAckMessageHandler extends
+    ControllerMessageHandler<StorePartAckMessage> {
+
+  public ControllerStorePartAckMessageHandler(StorePartAckMessage message,
+      ControllerServiceContainer services, ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Tells the multipart upload service that the Dstore has stored a part.
+   */
+  @Override
+  public void handle() {
+    services.getMultipartUploadService().handlePartStored(message.getFileName(),
+        handler.getDstorePort(), message.getIndex());
+  }
+}
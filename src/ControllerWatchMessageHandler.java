@@ -0,0 +1,21 @@
+/**
+ * A handler for the WATCH message.
+ *
+ * @author George Peppard
+ */
+public class ControllerWatchMessageHandler extends ControllerMessageHandler<WatchMessage> {
+
+  public ControllerWatchMessageHandler(WatchMessage message, ControllerServiceContainer services,
+      ControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Subscribes the client to changes to the namespace. It should use a connection of its own for
+   * watching, as changes may arrive at any time.
+   */
+  @Override
+  public void handle() {
+    services.getChangeFeedService().subscribe(handler, message.getPrefix(), message.getFrom());
+  }
+}
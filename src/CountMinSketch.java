@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * A count-min sketch, which estimates how many times each key has been counted in a fixed amount
+ * of memory. Each key is counted in one cell of every row, and its estimate is the smallest of
+ * those cells. Estimates are never too low, and are too high by at most a small fraction of the
+ * total count, depending on the width.
+ *
+ * @author George Peppard
+ * @see <a href="https://doi.org/10.1016/j.jalgor.2003.12.001">An improved data stream summary:
+ *     the count-min sketch and its applications</a>
+ */
+public class CountMinSketch {
+
+  /**
+   * The number of cells in each row.
+   */
+  private final int width;
+
+  /**
+   * The counts, by row then cell.
+   */
+  private final long[][] table;
+
+  /**
+   * Creates an empty sketch.
+   *
+   * @param width the number of cells in each row
+   * @param depth the number of rows
+   */
+  public CountMinSketch(int width, int depth) {
+    this.width = width;
+    this.table = new long[depth][width];
+  }
+
+  /**
+   * Counts a key.
+   *
+   * @param key   the key
+   * @param count the amount to count it by
+   */
+  public void add(String key, long count) {
+    var hash = mix(key.hashCode());
+    for (int row = 0; row < table.length; row++) {
+      table[row][getCell(hash, row)] += count;
+    }
+  }
+
+  /**
+   * Returns the estimated count of a key.
+   *
+   * @param key the key
+   * @return the estimate, which is never less than the true count
+   */
+  public long estimate(String key) {
+    var hash = mix(key.hashCode());
+    var estimate = Long.MAX_VALUE;
+    for (int row = 0; row < table.length; row++) {
+      estimate = Math.min(estimate, table[row][getCell(hash, row)]);
+    }
+
+    return estimate;
+  }
+
+  /**
+   * Resets every count to zero.
+   */
+  public void clear() {
+    for (var row : table) {
+      Arrays.fill(row, 0);
+    }
+  }
+
+  /**
+   * Returns the cell a hash falls in for a row. The cells for each row are derived from the two
+   * halves of one hash, which is as good as independent hashes for a sketch.
+   *
+   * @param hash the hash of the key
+   * @param row  the row
+   * @return the cell
+   */
+  private int getCell(long hash, int row) {
+    var combined = (int) hash + row * (int) (hash >>> 32);
+    return Math.floorMod(combined, width);
+  }
+
+  /**
+   * Spreads the bits of a value, so that similar values have unrelated hashes.
+   *
+   * @param value the value to mix
+   * @return the mixed value
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+}
@@ -0,0 +1,35 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A message from the controller asking a Dstore for the hashes of some nodes of its
+ * {@link FileDigestTree}.
+ *
+ * @author George Peppard
+ */
+public class DigestMessage extends Message {
+
+  private final List<Integer> nodes;
+
+  public DigestMessage(List<Integer> nodes) {
+    super(Protocol.DIGEST);
+
+    this.nodes = nodes;
+  }
+
+  public static DigestMessage parse(String[] args) {
+    var count = Integer.parseInt(args[0]);
+    return new DigestMessage(Arrays.stream(args, 1, 1 + count).map(Integer::parseInt).toList());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + nodes.size() + " " + nodes.stream().map(String::valueOf)
+        .collect(Collectors.joining(" "));
+  }
+
+  public List<Integer> getNodes() {
+    return nodes;
+  }
+}
@@ -0,0 +1,43 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A message from a Dstore containing the hashes of the {@link FileDigestTree} nodes the controller
+ * asked for. Hashes are sent in hexadecimal.
+ *
+ * @author George Peppard
+ */
+public class DigestResponseMessage extends Message {
+
+  private final Map<Integer, Long> hashes;
+
+  public DigestResponseMessage(Map<Integer, Long> hashes) {
+    super(Protocol.DIGEST);
+
+    this.hashes = hashes;
+  }
+
+  public static DigestResponseMessage parse(String[] args) {
+    var count = Integer.parseInt(args[0]);
+    var hashes = new LinkedHashMap<Integer, Long>();
+
+    for (int i = 0; i < count; i++) {
+      hashes.put(Integer.parseInt(args[1 + i * 2]), Long.parseUnsignedLong(args[2 + i * 2], 16));
+    }
+
+    return new DigestResponseMessage(hashes);
+  }
+
+  @Override
+  public String toString() {
+    var args = new StringBuilder().append(hashes.size());
+    hashes.forEach((node, hash) -> args.append(" ").append(node).append(" ")
+        .append(Long.toHexString(hash)));
+
+    return super.toString() + " " + args;
+  }
+
+  public Map<Integer, Long> getHashes() {
+    return hashes;
+  }
+}
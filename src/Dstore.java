@@ -3,6 +3,7 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Comparator;
 
 /**
  * The main Dstore class.
@@ -156,13 +157,17 @@ public class Dstore {
     }
 
     Logger.info("Clearing storage directory");
-    Files.list(fileStorageDirectory).forEach(f -> {
-      try {
-        Files.delete(f);
-      } catch (IOException e) {
-        Logger.error("Cannot delete file! {}", f.getFileName());
-      }
-    });
+    try (var contents = Files.walk(fileStorageDirectory)) {
+      // deepest first, so directories such as the partial file directory are empty when deleted
+      contents.filter(f -> !f.equals(fileStorageDirectory)).sorted(Comparator.reverseOrder())
+          .forEach(f -> {
+            try {
+              Files.delete(f);
+            } catch (IOException e) {
+              Logger.error("Cannot delete file! {}", f.getFileName());
+            }
+          });
+    }
   }
 
   /**
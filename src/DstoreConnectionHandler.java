@@ -37,9 +37,17 @@ public class DstoreConnectionHandler extends AbstractConnectionHandler {
   protected Message parseMessage(String type, String[] args) throws UnsupportedOperationException {
     return switch (type) {
       case Protocol.STORE -> StoreMessage.parse(args);
+      case Protocol.STORE_CHAIN -> StoreChainMessage.parse(args);
+      case Protocol.STORE_PART -> StorePartMessage.parse(args);
       case Protocol.LOAD_DATA -> LoadDataMessage.parse(args);
       case Protocol.REBALANCE_STORE -> RebalanceStoreMessage.parse(args);
+      case Protocol.REBALANCE_MANIFEST -> RebalanceManifestMessage.parse(args);
+      case Protocol.REBALANCE_STORE_ACK -> RebalanceStoreAckMessage.parse(args);
+      case Protocol.REBALANCE_RESUME -> RebalanceResumeMessage.parse(args);
+      case Protocol.REBALANCE_RESUME_FROM -> RebalanceResumeFromMessage.parse(args);
       case Protocol.ACK -> new AckMessage();
+      case Protocol.METRICS -> new MetricsMessage();
+      case Protocol.REBALANCE_RATE -> RebalanceRateMessage.parse(args);
       default -> super.parseMessage(type, args);
     };
   }
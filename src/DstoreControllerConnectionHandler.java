@@ -9,6 +9,12 @@ import java.net.Socket;
  */
 public class DstoreControllerConnectionHandler extends AbstractConnectionHandler {
 
+  /**
+   * The default time a message to the controller is held to be batched with others, in
+   * microseconds.
+   */
+  private static final long DEFAULT_BATCH_WINDOW_US = 1000;
+
   /**
    * The service container.
    */
@@ -39,6 +45,7 @@ public class DstoreControllerConnectionHandler extends AbstractConnectionHandler
 
     Logger.info("Trying to join controller as Dstore");
     send(new JoinMessage(services.getDstore().getPort()));
+    setBatchWindow(Settings.getLong(Settings.DSTORE_BATCH_WINDOW_US, DEFAULT_BATCH_WINDOW_US));
   }
 
   @Override
@@ -50,6 +57,11 @@ public class DstoreControllerConnectionHandler extends AbstractConnectionHandler
     System.exit(ExitCodes.EXIT_SOCKET_ERR);
   }
 
+  @Override
+  protected boolean acceptsBatches() {
+    return true;
+  }
+
   @Override
   protected IMessageHandlerFactory getHandlerFactory() {
     return messageHandlerFactory;
@@ -58,9 +70,16 @@ public class DstoreControllerConnectionHandler extends AbstractConnectionHandler
   @Override
   protected Message parseMessage(String type, String[] args) throws UnsupportedOperationException {
     return switch (type) {
-      case Protocol.REMOVE -> RemoveMessage.parse(args);
       case Protocol.LIST -> new ListMessage();
       case Protocol.REBALANCE -> RebalanceMessage.parse(args);
+      case Protocol.REBALANCE_PART -> RebalanceMessage.parsePart(args);
+      case Protocol.DIGEST -> DigestMessage.parse(args);
+      case Protocol.LIST_BUCKETS -> ListBucketsMessage.parse(args);
+      case Protocol.REPLICATE -> ReplicateMessage.parse(args);
+      case Protocol.LIST_FILE -> ListFileMessage.parse(args);
+      case Protocol.PURGE -> PurgeMessage.parse(args);
+      case Protocol.HEARTBEAT -> HeartbeatMessage.parse(args);
+      case Protocol.STORE_MULTIPART_ABORT -> StoreMultipartAbortMessage.parse(args);
       default -> super.parseMessage(type, args);
     };
   }
@@ -27,10 +27,6 @@ public class DstoreControllerMessageHandlerFactory implements IMessageHandlerFac
 
   @Override
   public IMessageHandler<? extends Message> create(Message message) {
-    if (message instanceof RemoveMessage) {
-      return new DstoreRemoveMessageHandler((RemoveMessage) message, services, handler);
-    }
-
     if (message instanceof ListMessage) {
       return new DstoreListMessageHandler((ListMessage) message, services, handler);
     }
@@ -39,6 +35,35 @@ public class DstoreControllerMessageHandlerFactory implements IMessageHandlerFac
       return new DstoreRebalanceMessageHandler((RebalanceMessage) message, services, handler);
     }
 
+    if (message instanceof DigestMessage) {
+      return new DstoreDigestMessageHandler((DigestMessage) message, services, handler);
+    }
+
+    if (message instanceof ListBucketsMessage) {
+      return new DstoreListBucketsMessageHandler((ListBucketsMessage) message, services, handler);
+    }
+
+    if (message instanceof PurgeMessage) {
+      return new DstorePurgeMessageHandler((PurgeMessage) message, services, handler);
+    }
+
+    if (message instanceof ReplicateMessage) {
+      return new DstoreReplicateMessageHandler((ReplicateMessage) message, services, handler);
+    }
+
+    if (message instanceof ListFileMessage) {
+      return new DstoreListFileMessageHandler((ListFileMessage) message, services, handler);
+    }
+
+    if (message instanceof HeartbeatMessage) {
+      return new DstoreHeartbeatMessageHandler((HeartbeatMessage) message, services, handler);
+    }
+
+    if (message instanceof StoreMultipartAbortMessage) {
+      return new DstoreStoreMultipartAbortMessageHandler((StoreMultipartAbortMessage) message,
+          services, handler);
+    }
+
     throw new UnsupportedOperationException("no handler type defined for this message");
   }
 }
@@ -0,0 +1,29 @@
+import java.util.LinkedHashMap;
+
+/**
+ * A handler for the DIGEST message.
+ *
+ * @author George Peppard
+ */
+public class DstoreDigestMessageHandler extends DstoreControllerMessageHandler<DigestMessage> {
+
+  public DstoreDigestMessageHandler(DigestMessage message, DstoreServiceContainer services,
+      DstoreControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns the hashes of the requested nodes of the local digest tree. Nodes that do not exist
+   * are left out.
+   */
+  @Override
+  public void handle() {
+    var tree = services.getLocalFileService().getDigestTree();
+    var hashes = new LinkedHashMap<Integer, Long>();
+
+    message.getNodes().stream().filter(FileDigestTree::isNode)
+        .forEach(node -> hashes.put(node, tree.getNodeHash(node)));
+
+    handler.send(new DigestResponseMessage(hashes));
+  }
+}
@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Finds the files the controller thinks a Dstore has, but the Dstore does not. The controller
+ * builds a {@link FileDigestTree} of the files it expects the Dstore to have and compares it with
+ * the Dstore's own tree, descending only into nodes whose hashes differ. Only the files in the
+ * buckets that differ are then listed, so a Dstore that is in step with the index is checked with
+ * a single small message.
+ *
+ * @author George Peppard
+ */
+public class DstoreDigestReconciliation {
+
+  /**
+   * The Dstore being reconciled.
+   */
+  private final DstoreModel dstore;
+
+  /**
+   * The files the index says the Dstore has, by name.
+   */
+  private final Map<String, IndexedFile> expectedFiles;
+
+  /**
+   * The tree over the files the index says the Dstore has.
+   */
+  private final FileDigestTree expectedTree = new FileDigestTree();
+
+  /**
+   * The future completed by the Dstore's next reply.
+   */
+  private CompletableFuture<Message> reply;
+
+  /**
+   * The number of digest nodes that have been compared.
+   */
+  private int nodesCompared = 0;
+
+  /**
+   * Creates a new reconciliation.
+   *
+   * @param dstore        the Dstore being reconciled
+   * @param expectedFiles the files the index says the Dstore has, by name
+   */
+  public DstoreDigestReconciliation(DstoreModel dstore, Map<String, IndexedFile> expectedFiles) {
+    this.dstore = dstore;
+    this.expectedFiles = expectedFiles;
+
+    expectedFiles.values().forEach(f -> expectedTree.add(f.getName(), f.getSize()));
+  }
+
+  /**
+   * Compares the trees and returns the files the Dstore does not have, or has a copy of with the
+   * wrong size.
+   *
+   * @param deadline when to give up waiting for the Dstore, from {@link System#nanoTime()}
+   * @return the files that are missing from the Dstore, or null if the Dstore sent a reply of the
+   *     wrong type, so nothing can be concluded from this round
+   * @throws InterruptedException if the reconciliation is interrupted
+   * @throws TimeoutException     if the Dstore does not reply by the deadline
+   */
+  public Set<IndexedFile> run(long deadline) throws InterruptedException, TimeoutException {
+    var nodes = List.of(0);
+    var buckets = new ArrayList<Integer>();
+
+    while (!nodes.isEmpty()) {
+      var response = request(new DigestMessage(nodes), DigestResponseMessage.class, deadline);
+      if (response == null) {
+        return null;
+      }
+
+      var hashes = response.getHashes();
+      var differing = new ArrayList<Integer>();
+
+      for (var node : nodes) {
+        nodesCompared++;
+        var hash = hashes.get(node);
+        if (hash != null && hash == expectedTree.getNodeHash(node)) {
+          continue;
+        }
+
+        if (FileDigestTree.isBucket(node)) {
+          buckets.add(FileDigestTree.getBucketOfNode(node));
+          continue;
+        }
+
+        var firstChild = FileDigestTree.getFirstChild(node);
+        for (int i = 0; i < FileDigestTree.FANOUT; i++) {
+          differing.add(firstChild + i);
+        }
+      }
+
+      nodes = differing;
+    }
+
+    var missing = new HashSet<IndexedFile>();
+    if (buckets.isEmpty()) {
+      return missing;
+    }
+
+    var listing = request(new ListBucketsMessage(buckets), ListBucketsResponseMessage.class,
+        deadline);
+    if (listing == null) {
+      return null;
+    }
+
+    var reported = listing.getFiles();
+    var wanted = new HashSet<>(buckets);
+
+    expectedFiles.forEach((name, file) -> {
+      if (!wanted.contains(FileDigestTree.getBucket(name))) {
+        return;
+      }
+
+      var size = reported.get(name);
+      if (size == null || size != file.getSize()) {
+        missing.add(file);
+      }
+    });
+
+    Logger.info("Digest reconciliation of {} compared {} nodes and listed {} buckets", dstore,
+        nodesCompared, buckets.size());
+    return missing;
+  }
+
+  /**
+   * Handles a reply from the Dstore.
+   *
+   * @param message the reply
+   */
+  public synchronized void handleReply(Message message) {
+    if (reply == null) {
+      Logger.warn("Ignoring unexpected digest reply from {}", dstore);
+      return;
+    }
+
+    reply.complete(message);
+    reply = null;
+  }
+
+  /**
+   * Returns the Dstore being reconciled.
+   */
+  public DstoreModel getDstore() {
+    return dstore;
+  }
+
+  /**
+   * Sends a request to the Dstore and waits for its reply.
+   *
+   * @param message  the request
+   * @param type     the type of reply expected
+   * @param deadline when to give up waiting, from {@link System#nanoTime()}
+   * @param <T>      the type of reply expected
+   * @return the reply, or null if it was not of the expected type
+   * @throws InterruptedException if the wait is interrupted
+   * @throws TimeoutException     if the Dstore does not reply by the deadline
+   */
+  private <T extends Message> T request(Message message, Class<T> type, long deadline)
+      throws InterruptedException, TimeoutException {
+    CompletableFuture<Message> future;
+    synchronized (this) {
+      future = reply = new CompletableFuture<>();
+    }
+
+    dstore.getHandler().send(message);
+
+    Message received;
+    try {
+      received = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("digest reply future failed", e);
+    }
+
+    if (!type.isInstance(received)) {
+      Logger.warn("{} replied to {} with {}, expected {}", dstore,
+          message.getClass().getSimpleName(), received.getClass().getSimpleName(),
+          type.getSimpleName());
+      return null;
+    }
+
+    return type.cast(received);
+  }
+}
@@ -0,0 +1,27 @@
+/**
+ * A handler for the HEARTBEAT message.
+ *
+ * @author George Peppard
+ */
+public class DstoreHeartbeatMessageHandler extends
+    DstoreControllerMessageHandler<HeartbeatMessage> {
+
+  public DstoreHeartbeatMessageHandler(HeartbeatMessage message, DstoreServiceContainer services,
+      DstoreControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Answers the heartbeat with how busy this Dstore is. The answer is sent from the message
+   * processor, so a Dstore that has stopped processing messages stops answering heartbeats.
+   */
+  @Override
+  public void handle() {
+    var fileCount = services.getLocalFileService().getLocalFiles().size();
+    var activeLoads = (int) services.getMetricsService().get("load.active");
+    var activeTransfers = services.getRebalanceTransferService().getPendingTransfers();
+
+    handler.send(new HeartbeatResponseMessage(message.getSequence(), fileCount, activeLoads,
+        activeTransfers));
+  }
+}
@@ -0,0 +1,27 @@
+import java.util.LinkedHashMap;
+
+/**
+ * A handler for the LIST_BUCKETS message.
+ *
+ * @author George Peppard
+ */
+public class DstoreListBucketsMessageHandler extends
+    DstoreControllerMessageHandler<ListBucketsMessage> {
+
+  public DstoreListBucketsMessageHandler(ListBucketsMessage message,
+      DstoreServiceContainer services, DstoreControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns the name and size of every local file in the requested buckets of the digest tree.
+   */
+  @Override
+  public void handle() {
+    var files = new LinkedHashMap<String, Integer>();
+    services.getLocalFileService().getLocalFilesInBuckets(message.getBuckets())
+        .forEach(f -> files.put(f.getName(), f.getSize()));
+
+    handler.send(new ListBucketsResponseMessage(files));
+  }
+}
@@ -0,0 +1,24 @@
+/**
+ * A handler for the LIST_FILE message.
+ *
+ * @author George Peppard
+ */
+public class DstoreListFileMessageHandler extends DstoreControllerMessageHandler<ListFileMessage> {
+
+  public DstoreListFileMessageHandler(ListFileMessage message, DstoreServiceContainer services,
+      DstoreControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns the size of the local copy of the file on disk, so the controller can tell whether it
+   * is missing or damaged.
+   */
+  @Override
+  public void handle() {
+    var file = services.getLocalFileService().getLocalFileByName(message.getFileName());
+    var size = file == null ? -1 : services.getLocalFileService().getSizeOnDisk(file);
+
+    handler.sendBatched(new ListFileResponseMessage(message.getFileName(), size));
+  }
+}
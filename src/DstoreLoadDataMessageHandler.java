@@ -13,7 +13,9 @@ public class DstoreLoadDataMessageHandler extends DstoreClientMessageHandler<Loa
   }
 
   /**
-   * Finds the file in the local index and sends its contents raw over the socket.
+   * Finds the file in the local index and sends its contents raw over the socket. If a range was
+   * requested, only that part of the file is read, with a positional read. A range that does not
+   * fit in the file closes the connection, as the client cannot be sent an error in place of data.
    */
   @Override
   public void handle() {
@@ -25,11 +27,34 @@ public class DstoreLoadDataMessageHandler extends DstoreClientMessageHandler<Loa
       return;
     }
 
+    if (message.isRange() && (message.getOffset() < 0 || message.getLength() < 0
+        || (long) message.getOffset() + message.getLength() > file.getSize())) {
+      Logger.warn("Range {}+{} is outside {}, closing connection", message.getOffset(),
+          message.getLength(), fName);
+      try {
+        handler.close();
+      } catch (IOException ignored) {
+      }
+      return;
+    }
+
+    var metrics = services.getMetricsService();
+    metrics.add("load.active", 1);
+    var start = System.nanoTime();
+
     try {
-      var content = services.getLocalFileService().getFileContent(file);
+      var content = message.isRange()
+          ? services.getLocalFileService().getFileContent(file, message.getOffset(),
+              message.getLength())
+          : services.getLocalFileService().getFileContent(file);
       handler.sendBytes(content);
+      metrics.increment(message.isRange() ? "load.range-requests" : "load.requests");
+      metrics.add("load.bytes", content.length);
+      metrics.record("load.serve-us", (System.nanoTime() - start) / 1000);
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      metrics.add("load.active", -1);
     }
 
   }
@@ -34,6 +34,10 @@ public class DstoreMessageHandlerFactory implements IMessageHandlerFactory {
       return new DstoreStoreMessageHandler((StoreMessage) message, services, handler);
     }
 
+    if (message instanceof StoreChainMessage) {
+      return new DstoreStoreChainMessageHandler((StoreChainMessage) message, services, handler);
+    }
+
     if (message instanceof LoadDataMessage) {
       return new DstoreLoadDataMessageHandler((LoadDataMessage) message, services, handler);
     }
@@ -42,10 +46,38 @@ public class DstoreMessageHandlerFactory implements IMessageHandlerFactory {
       return new DstoreRebalanceStoreMessageHandler((RebalanceStoreMessage) message, services, handler);
     }
 
+    if (message instanceof RebalanceStoreAckMessage) {
+      return new DstoreRebalanceStoreAckMessageHandler((RebalanceStoreAckMessage) message,
+          services, handler);
+    }
+
+    if (message instanceof RebalanceResumeMessage) {
+      return new DstoreRebalanceResumeMessageHandler((RebalanceResumeMessage) message, services,
+          handler);
+    }
+
+    if (message instanceof RebalanceResumeFromMessage) {
+      return new DstoreRebalanceResumeFromMessageHandler((RebalanceResumeFromMessage) message,
+          services, handler);
+    }
+
     if (message instanceof AckMessage) {
       return new DstoreAckMessageHandler((AckMessage) message, services, handler);
     }
 
+    if (message instanceof MetricsMessage) {
+      return new DstoreMetricsMessageHandler((MetricsMessage) message, services, handler);
+    }
+
+    if (message instanceof RebalanceRateMessage) {
+      return new DstoreRebalanceRateMessageHandler((RebalanceRateMessage) message, services,
+          handler);
+    }
+
+    if (message instanceof StorePartMessage) {
+      return new DstoreStorePartMessageHandler((StorePartMessage) message, services, handler);
+    }
+
     throw new UnsupportedOperationException("no handler type defined for this message");
   }
 }
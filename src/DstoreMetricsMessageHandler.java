@@ -0,0 +1,20 @@
+/**
+ * A handler for the METRICS admin message.
+ *
+ * @author George Peppard
+ */
+public class DstoreMetricsMessageHandler extends DstoreClientMessageHandler<MetricsMessage> {
+
+  public DstoreMetricsMessageHandler(MetricsMessage message, DstoreServiceContainer services,
+      DstoreConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Returns a snapshot of this Dstore's metrics.
+   */
+  @Override
+  public void handle() {
+    handler.send(new MetricsMessage(services.getMetricsService().snapshot()));
+  }
+}
@@ -1,10 +1,17 @@
 import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A model representing a Dstore.
  */
 public class DstoreModel {
 
+  /**
+   * The weight given to each new heartbeat round trip time in the moving average.
+   */
+  private static final double LATENCY_SMOOTHING = 0.3;
+
   /**
    * The port it is listening on.
    */
@@ -20,16 +27,63 @@ public class DstoreModel {
    */
   private final ControllerConnectionHandler handler;
 
+  /**
+   * The detector that decides whether the Dstore is suspected of having failed.
+   */
+  private final FailureDetector failureDetector;
+
+  /**
+   * Whether the Dstore is suspected of having failed, because it has stopped answering
+   * heartbeats.
+   */
+  private volatile boolean suspect = false;
+
+  /**
+   * The number of files the Dstore said it stores in its last heartbeat.
+   */
+  private volatile int fileCount = 0;
+
+  /**
+   * The number of loads the Dstore said it was serving in its last heartbeat.
+   */
+  private volatile int activeLoads = 0;
+
+  /**
+   * The number of rebalance transfers the Dstore said it was running or had queued in its last
+   * heartbeat.
+   */
+  private volatile int activeTransfers = 0;
+
+  /**
+   * The number of loads the controller has sent to the Dstore since its last heartbeat, which
+   * its reported load does not include yet.
+   */
+  private final AtomicInteger recentAssignments = new AtomicInteger();
+
+  /**
+   * The exponentially weighted moving average of the Dstore's heartbeat round trip time, in
+   * milliseconds.
+   */
+  private volatile double latencyMs = 0;
+
+  /**
+   * The statistics the Dstore last reported, or null if it has not reported any yet.
+   */
+  private volatile DstoreStats stats = null;
+
   /**
    * Creates a new Dstore.
    *
-   * @param port    the port the Dstore says it is listening on
-   * @param handler the handler the Dstore is connected to
+   * @param port            the port the Dstore says it is listening on
+   * @param handler         the handler the Dstore is connected to
+   * @param failureDetector the detector for the Dstore's heartbeats
    */
-  public DstoreModel(int port, ControllerConnectionHandler handler) {
+  public DstoreModel(int port, ControllerConnectionHandler handler,
+      FailureDetector failureDetector) {
     this.port = port;
     this.createdAt = LocalDateTime.now();
     this.handler = handler;
+    this.failureDetector = failureDetector;
   }
 
   /**
@@ -53,6 +107,124 @@ public class DstoreModel {
     return handler;
   }
 
+  /**
+   * Returns the detector for the Dstore's heartbeats.
+   */
+  public FailureDetector getFailureDetector() {
+    return failureDetector;
+  }
+
+  /**
+   * Returns whether the Dstore is suspected of having failed.
+   */
+  public boolean isSuspect() {
+    return suspect;
+  }
+
+  /**
+   * Sets whether the Dstore is suspected of having failed.
+   *
+   * @param suspect whether the Dstore is suspected
+   */
+  public void setSuspect(boolean suspect) {
+    this.suspect = suspect;
+  }
+
+  /**
+   * Records the statistics the Dstore sent in a heartbeat.
+   *
+   * @param fileCount       the number of files it stores
+   * @param activeLoads     the number of loads it is serving
+   * @param activeTransfers the number of rebalance transfers it is running or has queued
+   */
+  public void setLoad(int fileCount, int activeLoads, int activeTransfers) {
+    this.fileCount = fileCount;
+    this.activeLoads = activeLoads;
+    this.activeTransfers = activeTransfers;
+    recentAssignments.set(0);
+  }
+
+  /**
+   * Records that a client has been sent to load a file from the Dstore.
+   */
+  public void recordAssignment() {
+    recentAssignments.incrementAndGet();
+  }
+
+  /**
+   * Returns how busy the Dstore is: the loads and rebalance transfers it reported in its last
+   * heartbeat, plus the loads sent to it since.
+   */
+  public int getLoad() {
+    return activeLoads + activeTransfers + recentAssignments.get();
+  }
+
+  /**
+   * Records the round trip time of a heartbeat.
+   *
+   * @param roundTripMs the round trip time in milliseconds
+   */
+  public void recordLatency(long roundTripMs) {
+    latencyMs = latencyMs == 0 ? roundTripMs
+        : LATENCY_SMOOTHING * roundTripMs + (1 - LATENCY_SMOOTHING) * latencyMs;
+  }
+
+  /**
+   * Returns the moving average of the Dstore's heartbeat round trip time, in milliseconds.
+   */
+  public double getLatencyMs() {
+    return latencyMs;
+  }
+
+  /**
+   * Returns the number of files the Dstore said it stores in its last heartbeat.
+   */
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * Returns the number of loads the Dstore said it was serving in its last heartbeat.
+   */
+  public int getActiveLoads() {
+    return activeLoads;
+  }
+
+  /**
+   * Returns the number of rebalance transfers the Dstore said it was running or had queued in its
+   * last heartbeat.
+   */
+  public int getActiveTransfers() {
+    return activeTransfers;
+  }
+
+  /**
+   * Returns the statistics the Dstore last reported, or null if it has not reported any yet.
+   */
+  public DstoreStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Records the statistics the Dstore has reported.
+   *
+   * @param stats the statistics
+   */
+  public void setStats(DstoreStats stats) {
+    this.stats = stats;
+  }
+
+  /**
+   * Returns whether the Dstore is known to have too little free space to store a file.
+   *
+   * @param size the size of the file in bytes
+   * @return whether the Dstore has reported less free space than the file needs
+   */
+  public boolean isLowOnSpace(long size) {
+    var current = stats;
+    return current != null && current.getFreeBytes() >= 0 && current.getFreeBytes() < size;
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (this == obj) {
@@ -75,6 +247,11 @@ public class DstoreModel {
     }
   }
 
+  @Override
+  public int hashCode() {
+    return Objects.hash(port, createdAt);
+  }
+
   @Override
   public String toString() {
     return "Dstore[port=" + getPort() + "]";
@@ -0,0 +1,42 @@
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * A handler for the PURGE message.
+ *
+ * @author George Peppard
+ */
+public class DstorePurgeMessageHandler extends DstoreControllerMessageHandler<PurgeMessage> {
+
+  public DstorePurgeMessageHandler(PurgeMessage message, DstoreServiceContainer services,
+      DstoreControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Deletes each listed file, and tells the controller which are now gone. Files this Dstore does
+   * not have are already gone. Files that cannot be deleted are left out, so the controller asks
+   * again later. The reply carries the ID of the request it answers.
+   */
+  @Override
+  public void handle() {
+    var purged = new ArrayList<String>();
+
+    for (var name : message.getFileNames()) {
+      var file = services.getLocalFileService().getLocalFileByName(name);
+
+      try {
+        if (file != null) {
+          services.getLocalFileService().removeFile(file);
+        }
+
+        purged.add(name);
+      } catch (IOException e) {
+        Logger.error("Failed to purge local file {}: {}", name, e.getMessage());
+      }
+    }
+
+    Logger.info("Purged {} removed files", purged.size());
+    handler.sendBatched(new PurgeMessage(message.getAskId(), purged));
+  }
+}
@@ -1,5 +1,5 @@
 /**
- * A handler for the REBALANCE message.
+ * A handler for the REBALANCE and REBALANCE_PART messages.
  *
  * @author George Peppard
  */
@@ -18,13 +18,14 @@ public class DstoreRebalanceMessageHandler extends DstoreControllerMessageHandle
   }
 
   /**
-   * Spins up a rebalance operation which orchestrates the rebalance.
+   * Queues a rebalance operation which orchestrates the rebalance. Chunks of a plan are run one at
+   * a time, in the order they arrive.
    */
   @Override
   public void handle() {
-    Logger.info("Starting rebalance on a new thread");
+    Logger.info("Queueing rebalance chunk {}", message.getChunk());
 
     var op = new DstoreRebalanceOperation(services, message);
-    new Thread(op, "Rebalancer").start();
+    services.getRebalanceTransferService().submitPlan(op);
   }
 }
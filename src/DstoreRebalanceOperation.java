@@ -3,7 +3,12 @@ import java.net.Socket;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -17,6 +22,21 @@ import java.util.stream.Collectors;
  */
 public class DstoreRebalanceOperation implements Runnable {
 
+  /**
+   * The default maximum number of segments streamed in one batch.
+   */
+  private static final int DEFAULT_BATCH_FILES = 256;
+
+  /**
+   * The default number of bytes after which a batch is closed.
+   */
+  private static final long DEFAULT_BATCH_BYTES = 8 * 1024 * 1024;
+
+  /**
+   * The default size of the segments that large files are split into.
+   */
+  private static final int DEFAULT_SEGMENT_BYTES = 1024 * 1024;
+
   /**
    * The service container.
    */
@@ -27,6 +47,17 @@ public class DstoreRebalanceOperation implements Runnable {
    */
   private final RebalanceMessage rebalance;
 
+  /**
+   * The names of files that could not be sent to at least one Dstore. These are kept rather than
+   * removed, so a failed transfer never loses a copy of a file.
+   */
+  private final Set<String> failedFiles = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Whether to send REBALANCE_COMPLETE to the controller when the operation has finished.
+   */
+  private final boolean reportCompletion;
+
   /**
    * Creates the operation.
    *
@@ -34,8 +65,31 @@ public class DstoreRebalanceOperation implements Runnable {
    * @param rebalance the rebalance message
    */
   public DstoreRebalanceOperation(DstoreServiceContainer services, RebalanceMessage rebalance) {
+    this(services, rebalance, true);
+  }
+
+  /**
+   * Creates the operation.
+   *
+   * @param services         the service container
+   * @param rebalance        the rebalance message, or a plan built by the Dstore itself
+   * @param reportCompletion whether to send REBALANCE_COMPLETE when the operation has finished
+   */
+  public DstoreRebalanceOperation(DstoreServiceContainer services, RebalanceMessage rebalance,
+      boolean reportCompletion) {
     this.services = services;
     this.rebalance = rebalance;
+    this.reportCompletion = reportCompletion;
+  }
+
+  /**
+   * Returns the acknowledgement key used to wait for the resume offset of a file.
+   *
+   * @param fileName the name of the file
+   * @return the key
+   */
+  public static String getResumeKey(String fileName) {
+    return Protocol.REBALANCE_RESUME + " " + fileName;
   }
 
   /**
@@ -43,7 +97,7 @@ public class DstoreRebalanceOperation implements Runnable {
    */
   @Override
   public void run() {
-    Logger.info("Started rebalance");
+    Logger.info("Started rebalance (chunk {})", rebalance.getChunk());
 
     var filesForStores = new HashMap<Integer, List<LocalFile>>();
     rebalance.getFilesToSend().forEach((file, port) -> {
@@ -69,10 +123,8 @@ public class DstoreRebalanceOperation implements Runnable {
 
     var latch = new CountDownLatch(filesForStores.size());
     Logger.info("Starting inter-Dstore rebalance");
-    filesForStores.forEach((port, files) -> {
-      new Thread(() -> interStoreRebalance(latch, port, files),
-          "DS Rebalance Orchestration Worker for " + port).start();
-    });
+    filesForStores.forEach((port, files) -> services.getRebalanceTransferService()
+        .submit(() -> interStoreRebalance(latch, port, files)));
 
     try {
       latch.await();
@@ -89,16 +141,40 @@ public class DstoreRebalanceOperation implements Runnable {
         continue;
       }
 
+      if (failedFiles.contains(file.getName())) {
+        Logger.warn("Keeping file {} as it could not be sent everywhere", file.getName());
+        continue;
+      }
+
       Logger.info("Removing file {}", file.getName());
       try {
         services.getLocalFileService().removeFile(file);
+        reportProgress(RebalanceProgressMessage.removed(file.getName()));
       } catch (IOException e) {
         Logger.warn("Failed to remove file {}: {}", fileName, e.getMessage());
       }
     }
 
+    if (!reportCompletion) {
+      Logger.info("Rebalance is complete");
+      return;
+    }
+
     Logger.info("Rebalance is complete, informing controller");
-    services.getDstore().getControllerHandler().send(new RebalanceCompleteMessage());
+    services.getDstore().getControllerHandler()
+        .send(new RebalanceCompleteMessage(rebalance.getChunk()));
+  }
+
+  /**
+   * Sends files to one other Dstore on the calling thread, without the rest of the plan. This is
+   * for single copies that are already running as a transfer in the
+   * {@link RebalanceTransferService}.
+   *
+   * @param port  the port to send the files to
+   * @param files the files to send
+   */
+  public void sendTo(int port, List<LocalFile> files) {
+    interStoreRebalance(port, files);
   }
 
   /**
@@ -109,6 +185,21 @@ public class DstoreRebalanceOperation implements Runnable {
    * @param files the files to send
    */
   private void interStoreRebalance(CountDownLatch latch, int port, List<LocalFile> files) {
+    try {
+      interStoreRebalance(port, files);
+    } finally {
+      latch.countDown();
+    }
+  }
+
+  /**
+   * Performs one Dstore->Dstore rebalance, which may contain multiple files. The file content is
+   * sent through the {@link RebalanceTransferService} so that it is rate limited.
+   *
+   * @param port  the port to send the files to
+   * @param files the files to send
+   */
+  private void interStoreRebalance(int port, List<LocalFile> files) {
     DstoreConnectionHandler handler;
     try {
       var conn = new Socket(WellKnownHosts.LOCALHOST, port);
@@ -116,9 +207,33 @@ public class DstoreRebalanceOperation implements Runnable {
       new Thread(handler, "Rebalance Connection Handler for " + port).start();
     } catch (IOException e) {
       Logger.error("Failed to connect to Dstore at port {}: {}", port, e.getMessage());
+      files.forEach(f -> failedFiles.add(f.getName()));
       return;
     }
 
+    if (Settings.getInt(Settings.DSTORE_REBALANCE_BATCH_FILES, DEFAULT_BATCH_FILES) > 1) {
+      streamFiles(handler, port, files);
+    } else {
+      sendFilesIndividually(handler, port, files);
+    }
+
+    try {
+      handler.close();
+    } catch (IOException e) {
+      Logger.error("Could not close Dstore connection handler: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Sends files one at a time, waiting for the other Dstore to ACK each REBALANCE_STORE before the
+   * content is sent.
+   *
+   * @param handler the connection to the other Dstore
+   * @param port    the port of the other Dstore
+   * @param files   the files to send
+   */
+  private void sendFilesIndividually(DstoreConnectionHandler handler, int port,
+      List<LocalFile> files) {
     for (var file : files) {
       Logger.info("Sending file {}", file.getName());
 
@@ -128,6 +243,7 @@ public class DstoreRebalanceOperation implements Runnable {
       } catch (IOException e) {
         Logger.error("Failed to get file {} from local storage: {}", file.getName(),
             e.getMessage());
+        failedFiles.add(file.getName());
         continue;
       }
 
@@ -139,19 +255,173 @@ public class DstoreRebalanceOperation implements Runnable {
         future.get(services.getDstore().getTimeoutMs(), TimeUnit.MILLISECONDS);
       } catch (InterruptedException | ExecutionException | TimeoutException e) {
         Logger.warn("Failed to send file {}", file.getName());
+        failedFiles.add(file.getName());
         continue;
       }
 
-      handler.sendBytes(fileContent);
+      try {
+        services.getRebalanceTransferService().send(handler, fileContent);
+      } catch (InterruptedException e) {
+        Logger.warn("Interrupted while sending file {}, abandoning transfer", file.getName());
+        failedFiles.add(file.getName());
+        break;
+      }
+
       Logger.info("Sent file {} to :{}", file.getName(), port);
+      reportProgress(RebalanceProgressMessage.sent(file.getName(), port));
     }
+  }
+
+  /**
+   * Streams files in batches of segments. Each batch is announced with a
+   * {@link RebalanceManifestMessage} and its content follows back-to-back, so there is no round
+   * trip per file. Files larger than one segment are resumed from wherever an earlier, interrupted
+   * transfer to the same Dstore got to. The other Dstore acknowledges each file as it is stored,
+   * and each acknowledgement is reported to the controller straight away.
+   *
+   * @param handler the connection to the other Dstore
+   * @param port    the port of the other Dstore
+   * @param files   the files to send
+   */
+  private void streamFiles(DstoreConnectionHandler handler, int port, List<LocalFile> files) {
+    var maxSegments = Settings.getInt(Settings.DSTORE_REBALANCE_BATCH_FILES, DEFAULT_BATCH_FILES);
+    var maxBytes = Settings.getLong(Settings.DSTORE_REBALANCE_BATCH_BYTES, DEFAULT_BATCH_BYTES);
+    var segmentBytes = Math.max(1,
+        Settings.getInt(Settings.DSTORE_REBALANCE_SEGMENT_BYTES, DEFAULT_SEGMENT_BYTES));
+
+    var offsets = getResumeOffsets(handler, files, segmentBytes);
+    var acks = new LinkedHashMap<String, CompletableFuture<String>>();
+    var batch = new ArrayList<FileSegment>();
+    var contents = new ArrayList<byte[]>();
+    long batchBytes = 0;
 
     try {
-      handler.close();
-    } catch (IOException e) {
-      Logger.error("Could not close Dstore connection handler: {}", e.getMessage());
+      for (var file : files) {
+        var offset = offsets.getOrDefault(file.getName(), 0);
+        if (offset > 0) {
+          Logger.info("Resuming file {} to :{} from byte {}", file.getName(), port, offset);
+          services.getMetricsService().add("rebalance.bytes-resumed", offset);
+        }
+
+        var ack = handler.getAcknowledgementService().getFuture(file.getName());
+        ack.thenRun(() -> reportProgress(RebalanceProgressMessage.sent(file.getName(), port)));
+        acks.put(file.getName(), ack);
+
+        do {
+          var length = Math.min(segmentBytes, file.getSize() - offset);
+
+          byte[] content;
+          try {
+            content = services.getLocalFileService().getFileContent(file, offset, length);
+          } catch (IOException e) {
+            Logger.error("Failed to get file {} from local storage: {}", file.getName(),
+                e.getMessage());
+            break;
+          }
+
+          batch.add(new FileSegment(file.getName(), file.getSize(), offset, length));
+          contents.add(content);
+          batchBytes += length;
+          offset += length;
+
+          if (batch.size() >= maxSegments || batchBytes >= maxBytes) {
+            sendBatch(handler, port, batch, contents);
+            batch.clear();
+            contents.clear();
+            batchBytes = 0;
+          }
+        } while (offset < file.getSize());
+      }
+
+      if (!batch.isEmpty()) {
+        sendBatch(handler, port, batch, contents);
+      }
+    } catch (InterruptedException e) {
+      Logger.warn("Interrupted while streaming files to :{}, abandoning transfer", port);
+    }
+
+    var deadline = System.currentTimeMillis() + services.getDstore().getTimeoutMs();
+    acks.forEach((name, ack) -> {
+      try {
+        ack.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        Logger.info("Sent file {} to :{}", name, port);
+      } catch (InterruptedException | ExecutionException | TimeoutException e) {
+        Logger.warn("Failed to send file {} to :{}", name, port);
+        failedFiles.add(name);
+      }
+    });
+  }
+
+  /**
+   * Sends a manifest followed by the content of every segment it lists.
+   *
+   * @param handler  the connection to the other Dstore
+   * @param port     the port of the other Dstore
+   * @param batch    the segments to send
+   * @param contents the content of each segment
+   * @throws InterruptedException if the transfer is interrupted while throttled
+   */
+  private void sendBatch(DstoreConnectionHandler handler, int port, List<FileSegment> batch,
+      List<byte[]> contents) throws InterruptedException {
+    handler.send(new RebalanceManifestMessage(List.copyOf(batch)));
+
+    long bytes = 0;
+    for (var content : contents) {
+      services.getRebalanceTransferService().send(handler, content);
+      bytes += content.length;
+    }
+
+    Logger.info("Streamed {} segments ({} bytes) to :{}", batch.size(), bytes, port);
+  }
+
+  /**
+   * Asks the other Dstore how much of each large file it already has from an earlier transfer.
+   * Files that fit in a single segment are never resumed, so they are not asked about.
+   *
+   * @param handler      the connection to the other Dstore
+   * @param files        the files that will be sent
+   * @param segmentBytes the segment size
+   * @return the offset to start each large file from
+   */
+  private Map<String, Integer> getResumeOffsets(DstoreConnectionHandler handler,
+      List<LocalFile> files, int segmentBytes) {
+    var sizes = new LinkedHashMap<String, Integer>();
+    files.stream().filter(f -> f.getSize() > segmentBytes)
+        .forEach(f -> sizes.put(f.getName(), f.getSize()));
+
+    var offsets = new HashMap<String, Integer>();
+    if (sizes.isEmpty()) {
+      return offsets;
     }
 
-    latch.countDown();
+    var futures = new HashMap<String, CompletableFuture<String>>();
+    sizes.keySet().forEach(
+        name -> futures.put(name, handler.getAcknowledgementService().getFuture(
+            getResumeKey(name))));
+    handler.send(new RebalanceResumeMessage(sizes));
+
+    var deadline = System.currentTimeMillis() + services.getDstore().getTimeoutMs();
+    futures.forEach((name, future) -> {
+      try {
+        var offset = Integer.parseInt(
+            future.get(Math.max(0, deadline - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS));
+        offsets.put(name, Math.min(offset, sizes.get(name)));
+      } catch (InterruptedException | ExecutionException | TimeoutException
+               | NumberFormatException e) {
+        Logger.warn("No resume offset for file {}, sending it in full", name);
+      }
+    });
+
+    return offsets;
+  }
+
+  /**
+   * Reports a step of the rebalance to the controller so that it is committed straight away.
+   *
+   * @param progress the progress message
+   */
+  private void reportProgress(RebalanceProgressMessage progress) {
+    services.getDstore().getControllerHandler().sendBatched(progress);
   }
 }
@@ -0,0 +1,22 @@
+/**
+ * A handler for the REBALANCE_RATE admin message.
+ *
+ * @author George Peppard
+ */
+public class DstoreRebalanceRateMessageHandler extends
+    DstoreClientMessageHandler<RebalanceRateMessage> {
+
+  public DstoreRebalanceRateMessageHandler(RebalanceRateMessage message,
+      DstoreServiceContainer services, DstoreConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Changes the rebalance rate limit and acknowledges the change.
+   */
+  @Override
+  public void handle() {
+    services.getRebalanceTransferService().setRate(message.getBytesPerSecond());
+    handler.send(new AckMessage());
+  }
+}
@@ -0,0 +1,22 @@
+/**
+ * A handler for the REBALANCE_RESUME_FROM message.
+ *
+ * @author George Peppard
+ */
+public class DstoreRebalanceResumeFromMessageHandler extends
+    DstoreClientMessageHandler<RebalanceResumeFromMessage> {
+
+  public DstoreRebalanceResumeFromMessageHandler(RebalanceResumeFromMessage message,
+      DstoreServiceContainer services, DstoreConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Passes each offset to the rebalance operation waiting on it.
+   */
+  @Override
+  public void handle() {
+    message.getOffsets().forEach((name, offset) -> handler.getAcknowledgementService()
+        .handleAck(DstoreRebalanceOperation.getResumeKey(name), String.valueOf(offset)));
+  }
+}
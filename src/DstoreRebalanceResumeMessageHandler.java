@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+/**
+ * A handler for the REBALANCE_RESUME message.
+ *
+ * @author George Peppard
+ */
+public class DstoreRebalanceResumeMessageHandler extends
+    DstoreClientMessageHandler<RebalanceResumeMessage> {
+
+  public DstoreRebalanceResumeMessageHandler(RebalanceResumeMessage message,
+      DstoreServiceContainer services, DstoreConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Replies with how much of each file has already been received, so the sender can skip it.
+   */
+  @Override
+  public void handle() {
+    var offsets = new LinkedHashMap<String, Integer>();
+
+    message.getFileSizes().forEach((name, size) -> {
+      try {
+        offsets.put(name, services.getLocalFileService().getPartialLength(name, size));
+      } catch (IOException e) {
+        Logger.warn("Cannot inspect partial file {}, it will be resent: {}", name,
+            e.getMessage());
+        offsets.put(name, 0);
+      }
+    });
+
+    handler.send(new RebalanceResumeFromMessage(offsets));
+  }
+}
@@ -0,0 +1,21 @@
+/**
+ * A handler for the REBALANCE_STORE_ACK message.
+ *
+ * @author George Peppard
+ */
+public class DstoreRebalanceStoreAckMessageHandler extends
+    DstoreClientMessageHandler<RebalanceStoreAckMessage> {
+
+  public DstoreRebalanceStoreAckMessageHandler(RebalanceStoreAckMessage message,
+      DstoreServiceContainer services, DstoreConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Tells the acknowledgement service that the file has been stored by the other Dstore.
+   */
+  @Override
+  public void handle() {
+    handler.getAcknowledgementService().handleAck(message.getFileName());
+  }
+}
@@ -23,10 +23,17 @@ public class DstoreRebalanceStoreMessageHandler extends
   }
 
   /**
-   * Receives the requested file from the connected client.
+   * Receives the requested file from the connected client. If the file arrived as part of a
+   * {@link RebalanceManifestMessage} its content is already here, so it is stored straight away
+   * without waiting on the sender.
    */
   @Override
   public void handle() {
+    if (message.getContent() != null) {
+      storeStreamedFile();
+      return;
+    }
+
     var fileContent = handler.getNextNBytes(message.getFileSize());
 
     handler.send(new AckMessage());
@@ -47,4 +54,32 @@ public class DstoreRebalanceStoreMessageHandler extends
 
     Logger.info("Stored rebalanced file {} of size {}", message.getFileName(), message.getFileSize());
   }
+
+  /**
+   * Stores a file segment whose content was streamed after a manifest, and acknowledges the file
+   * once its last segment has been stored.
+   */
+  private void storeStreamedFile() {
+    var content = message.getContent();
+
+    try {
+      if (!services.getLocalFileService().appendPartial(message.getFileName(),
+          message.getFileSize(), message.getOffset(), content)) {
+        return;
+      }
+    } catch (IOException e) {
+      Logger.warn("Failed to store file {}: {}", message.getFileName(), e.getMessage());
+      return;
+    }
+
+    if (message.getOffset() + content.length < message.getFileSize()) {
+      Logger.info("Stored bytes {} to {} of rebalanced file {}", message.getOffset(),
+          message.getOffset() + content.length, message.getFileName());
+      return;
+    }
+
+    handler.send(new RebalanceStoreAckMessage(message.getFileName()));
+    Logger.info("Stored streamed rebalanced file {} of size {}", message.getFileName(),
+        message.getFileSize());
+  }
 }
@@ -0,0 +1,39 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A handler for the REPLICATE message.
+ *
+ * @author George Peppard
+ */
+public class DstoreReplicateMessageHandler extends
+    DstoreControllerMessageHandler<ReplicateMessage> {
+
+  public DstoreReplicateMessageHandler(ReplicateMessage message, DstoreServiceContainer services,
+      DstoreControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Queues the file to be sent to the other Dstore as a single transfer, so that it runs as soon as
+   * a transfer worker is free, under the same rate limit as rebalance transfers, rather than
+   * waiting behind rebalance plans. The controller learns the copy has been made from the
+   * REBALANCE_PROGRESS message this sends; no REBALANCE_COMPLETE is sent, as the copy is not part
+   * of a rebalance.
+   */
+  @Override
+  public void handle() {
+    var file = services.getLocalFileService().getLocalFileByName(message.getFileName());
+    if (file == null) {
+      Logger.warn("Cannot replicate nonexistent local file {}", message.getFileName());
+      return;
+    }
+
+    var plan = new RebalanceMessage(Map.of(message.getFileName(), new int[]{message.getPort()}),
+        new String[0]);
+
+    var op = new DstoreRebalanceOperation(services, plan, false);
+    services.getRebalanceTransferService()
+        .submit(() -> op.sendTo(message.getPort(), List.of(file)));
+  }
+}
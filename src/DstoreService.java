@@ -1,5 +1,7 @@
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -41,7 +43,7 @@ public class DstoreService {
    * @return the created Dstore model
    */
   public synchronized DstoreModel join(int port, ControllerConnectionHandler handler) {
-    var dstore = new DstoreModel(port, handler);
+    var dstore = new DstoreModel(port, handler, services.getHeartbeatService().createDetector());
     dstores.add(dstore);
 
     Logger.info("New Dstore at port {} added", port);
@@ -54,14 +56,20 @@ public class DstoreService {
    *
    * @param port the port of the Dstore
    */
-  public synchronized void leave(int port) {
-    var dstore = getDstore(port);
-    if (dstore == null) {
-      return; // we never knew about this Dstore anyway
+  public void leave(int port) {
+    DstoreModel dstore;
+    synchronized (this) {
+      dstore = getDstore(port);
+      if (dstore == null) {
+        return; // we never knew about this Dstore anyway
+      }
+
+      // removed first, so that the repairs this starts never pick the lost Dstore as a target
+      dstores.remove(dstore);
     }
 
+    // outside the lock, as the index calls back into this service while holding its own
     services.getIndexService().removeDstore(dstore);
-    dstores.remove(dstore);
 
     Logger.info("Lost Dstore at port {}", port);
   }
@@ -76,29 +84,89 @@ public class DstoreService {
   }
 
   /**
-   * Returns the next Dstore for allocation.
+   * Returns the next Dstores for allocation. Dstores suspected of having failed, or that have
+   * reported too little free space for the file, are skipped unless there are not enough other
+   * Dstores.
+   *
+   * @param count the number of Dstores
+   * @param size  the size of the file in bytes
    */
-  public synchronized List<DstoreModel> getNext(int count) {
+  public synchronized List<DstoreModel> getNext(int count, long size) {
+    var candidates = dstores.stream().filter(d -> !d.isSuspect() && !d.isLowOnSpace(size))
+        .toList();
+    if (candidates.size() < count) {
+      candidates = dstores.stream().filter(d -> !d.isSuspect()).toList();
+    }
+    if (candidates.size() < count) {
+      candidates = dstores;
+    }
+
     var stores = new ArrayList<DstoreModel>();
 
     for (int i = 0; i < count; i++) {
-      stores.add(dstores.get(nextAllocation++ % dstores.size()));
+      stores.add(candidates.get(nextAllocation++ % candidates.size()));
     }
 
     return Collections.unmodifiableList(stores);
   }
 
+  /**
+   * Returns the next Dstore for allocation that is not one of the given Dstores, is not suspected
+   * of having failed, and has not reported too little free space for the file.
+   *
+   * @param excluded the Dstores that must not be returned
+   * @param size     the size of the file in bytes
+   * @return the Dstore, or null if every Dstore is excluded, suspected or full
+   */
+  public synchronized DstoreModel getNextExcluding(Collection<DstoreModel> excluded, long size) {
+    for (int i = 0; i < dstores.size(); i++) {
+      var dstore = dstores.get(nextAllocation++ % dstores.size());
+      if (!excluded.contains(dstore) && !dstore.isSuspect() && !dstore.isLowOnSpace(size)) {
+        return dstore;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the least busy Dstore that is not one of the given Dstores, is not suspected of having
+   * failed, and has not reported too little free space for the file. Ties are broken by the number
+   * of files each Dstore stores.
+   *
+   * @param excluded the Dstores that must not be returned
+   * @param size     the size of the file in bytes
+   * @return the Dstore, or null if every Dstore is excluded, suspected or full
+   */
+  public synchronized DstoreModel getLeastLoadedExcluding(Collection<DstoreModel> excluded,
+      long size) {
+    return dstores.stream()
+        .filter(d -> !excluded.contains(d) && !d.isSuspect() && !d.isLowOnSpace(size))
+        .min(Comparator.comparingInt(DstoreModel::getLoad)
+            .thenComparingInt(DstoreModel::getFileCount))
+        .orElse(null);
+  }
+
   /**
    * Returns whether there are enough Dstores to perform operations.
    */
   public synchronized boolean hasEnoughDstores() {
-    return dstores.size() >= services.getController().getReplicationFactor();
+    return hasEnoughDstores(services.getController().getReplicationFactor());
+  }
+
+  /**
+   * Returns whether there are enough Dstores to store a file with a replication factor.
+   *
+   * @param replicationFactor the number of copies of the file
+   */
+  public synchronized boolean hasEnoughDstores(int replicationFactor) {
+    return dstores.size() >= replicationFactor;
   }
 
   /**
    * Returns all Dstores.
    */
   public synchronized List<DstoreModel> getAllDstores() {
-    return Collections.unmodifiableList(dstores);
+    return List.copyOf(dstores);
   }
 }
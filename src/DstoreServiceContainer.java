@@ -13,6 +13,26 @@ public class DstoreServiceContainer {
    */
   private final LocalFileService localFileService = new LocalFileService(this);
 
+  /**
+   * The metrics service.
+   */
+  private final MetricsService metricsService = new MetricsService();
+
+  /**
+   * The rebalance transfer service.
+   */
+  private final RebalanceTransferService rebalanceTransferService;
+
+  /**
+   * The service that reports statistics to the controller.
+   */
+  private final DstoreStatsReporter statsReporter;
+
+  /**
+   * The chain store service.
+   */
+  private final ChainStoreService chainStoreService = new ChainStoreService(this);
+
   /**
    * Initialises the container.
    *
@@ -20,6 +40,8 @@ public class DstoreServiceContainer {
    */
   public DstoreServiceContainer(Dstore dstore) {
     this.dstore = dstore;
+    this.rebalanceTransferService = new RebalanceTransferService(this);
+    this.statsReporter = new DstoreStatsReporter(this);
     Logger.info("initialised dstore service container - you should only see this message once");
   }
 
@@ -36,4 +58,32 @@ public class DstoreServiceContainer {
   public LocalFileService getLocalFileService() {
     return localFileService;
   }
+
+  /**
+   * Returns the metrics service.
+   */
+  public MetricsService getMetricsService() {
+    return metricsService;
+  }
+
+  /**
+   * Returns the rebalance transfer service.
+   */
+  public RebalanceTransferService getRebalanceTransferService() {
+    return rebalanceTransferService;
+  }
+
+  /**
+   * Returns the service that reports statistics to the controller.
+   */
+  public DstoreStatsReporter getStatsReporter() {
+    return statsReporter;
+  }
+
+  /**
+   * Returns the chain store service.
+   */
+  public ChainStoreService getChainStoreService() {
+    return chainStoreService;
+  }
 }
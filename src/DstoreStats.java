@@ -0,0 +1,184 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The capacity and load statistics a Dstore reports to the controller. They are sent as
+ * {@code name=value} pairs, so either side can add statistics without breaking the other.
+ *
+ * @author George Peppard
+ */
+public class DstoreStats {
+
+  /**
+   * The number of files stored.
+   */
+  private final long fileCount;
+
+  /**
+   * The number of bytes of files stored.
+   */
+  private final long bytesStored;
+
+  /**
+   * The number of bytes free on the disk holding the file storage directory, or -1 if unknown.
+   */
+  private final long freeBytes;
+
+  /**
+   * The size of the disk holding the file storage directory in bytes, or -1 if unknown.
+   */
+  private final long totalBytes;
+
+  /**
+   * The number of loads being served.
+   */
+  private final long activeLoads;
+
+  /**
+   * The number of rebalance transfers running or queued.
+   */
+  private final long activeTransfers;
+
+  /**
+   * The number of messages from the controller waiting to be processed.
+   */
+  private final long queueDepth;
+
+  /**
+   * The average time taken by file reads and writes since the last report, in microseconds.
+   */
+  private final long ioLatencyUs;
+
+  /**
+   * The 95th percentile of the time taken to serve a load, in microseconds.
+   */
+  private final long loadP95Us;
+
+  /**
+   * Creates a new set of statistics.
+   *
+   * @param fileCount       the number of files stored
+   * @param bytesStored     the number of bytes of files stored
+   * @param freeBytes       the number of bytes free on the disk, or -1 if unknown
+   * @param totalBytes      the size of the disk in bytes, or -1 if unknown
+   * @param activeLoads     the number of loads being served
+   * @param activeTransfers the number of rebalance transfers running or queued
+   * @param queueDepth      the number of controller messages waiting to be processed
+   * @param ioLatencyUs     the average time taken by file reads and writes, in microseconds
+   * @param loadP95Us       the 95th percentile of the time taken to serve a load, in microseconds
+   */
+  public DstoreStats(long fileCount, long bytesStored, long freeBytes, long totalBytes,
+      long activeLoads, long activeTransfers, long queueDepth, long ioLatencyUs, long loadP95Us) {
+    this.fileCount = fileCount;
+    this.bytesStored = bytesStored;
+    this.freeBytes = freeBytes;
+    this.totalBytes = totalBytes;
+    this.activeLoads = activeLoads;
+    this.activeTransfers = activeTransfers;
+    this.queueDepth = queueDepth;
+    this.ioLatencyUs = ioLatencyUs;
+    this.loadP95Us = loadP95Us;
+  }
+
+  /**
+   * Reads statistics from {@code name=value} pairs. Missing or unknown statistics are ignored.
+   *
+   * @param values the pairs
+   * @return the statistics
+   */
+  public static DstoreStats fromMap(Map<String, Long> values) {
+    return new DstoreStats(values.getOrDefault("files", 0L), values.getOrDefault("bytes", 0L),
+        values.getOrDefault("free", -1L), values.getOrDefault("total", -1L),
+        values.getOrDefault("loads", 0L), values.getOrDefault("transfers", 0L),
+        values.getOrDefault("queue", 0L), values.getOrDefault("io-us", 0L),
+        values.getOrDefault("load-p95-us", 0L));
+  }
+
+  /**
+   * Returns the statistics as {@code name=value} pairs.
+   */
+  public Map<String, Long> toMap() {
+    var values = new LinkedHashMap<String, Long>();
+    values.put("files", fileCount);
+    values.put("bytes", bytesStored);
+    values.put("free", freeBytes);
+    values.put("total", totalBytes);
+    values.put("loads", activeLoads);
+    values.put("transfers", activeTransfers);
+    values.put("queue", queueDepth);
+    values.put("io-us", ioLatencyUs);
+    values.put("load-p95-us", loadP95Us);
+
+    return values;
+  }
+
+  /**
+   * Returns the number of files stored.
+   */
+  public long getFileCount() {
+    return fileCount;
+  }
+
+  /**
+   * Returns the number of bytes of files stored.
+   */
+  public long getBytesStored() {
+    return bytesStored;
+  }
+
+  /**
+   * Returns the number of bytes free on the disk, or -1 if unknown.
+   */
+  public long getFreeBytes() {
+    return freeBytes;
+  }
+
+  /**
+   * Returns the size of the disk in bytes, or -1 if unknown.
+   */
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Returns the number of loads being served.
+   */
+  public long getActiveLoads() {
+    return activeLoads;
+  }
+
+  /**
+   * Returns the number of rebalance transfers running or queued.
+   */
+  public long getActiveTransfers() {
+    return activeTransfers;
+  }
+
+  /**
+   * Returns the number of controller messages waiting to be processed.
+   */
+  public long getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * Returns the average time taken by file reads and writes, in microseconds.
+   */
+  public long getIoLatencyUs() {
+    return ioLatencyUs;
+  }
+
+  /**
+   * Returns the 95th percentile of the time taken to serve a load, in microseconds.
+   */
+  public long getLoadP95Us() {
+    return loadP95Us;
+  }
+
+  @Override
+  public String toString() {
+    return toMap().entrySet().stream().map(e -> e.getKey() + "=" + e.getValue())
+        .collect(Collectors.joining(","));
+  }
+}
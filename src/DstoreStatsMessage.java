@@ -0,0 +1,42 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * A message a Dstore sends to the controller every so often with its {@link DstoreStats}.
+ *
+ * @author George Peppard
+ */
+public class DstoreStatsMessage extends Message {
+
+  private final DstoreStats stats;
+
+  public DstoreStatsMessage(DstoreStats stats) {
+    super(Protocol.STATS);
+
+    this.stats = stats;
+  }
+
+  public static DstoreStatsMessage parse(String[] args) {
+    var values = new LinkedHashMap<String, Long>();
+    Arrays.stream(args).map(a -> a.split("=", 2)).filter(a -> a.length == 2)
+        .forEach(a -> values.put(a[0], Long.parseLong(a[1])));
+
+    return new DstoreStatsMessage(DstoreStats.fromMap(values));
+  }
+
+  @Override
+  public boolean isQuiet() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + stats.toMap().entrySet().stream()
+        .map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(" "));
+  }
+
+  public DstoreStats getStats() {
+    return stats;
+  }
+}
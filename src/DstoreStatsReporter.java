@@ -0,0 +1,104 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service that sends the controller this Dstore's {@link DstoreStats} every so often, so that
+ * the controller can avoid giving new files to a Dstore that is running out of space and can see
+ * how busy each Dstore is. The report is sent from its own thread, so it still arrives while the
+ * Dstore is busy with a rebalance.
+ *
+ * @author George Peppard
+ */
+public class DstoreStatsReporter {
+
+  /**
+   * The default time between reports, in milliseconds.
+   */
+  private static final long DEFAULT_INTERVAL_MS = 5000;
+
+  /**
+   * The service container.
+   */
+  private final DstoreServiceContainer services;
+
+  /**
+   * The executor that sends the reports.
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "DST Stats Reporter");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * The number of file reads and writes when the last report was sent.
+   */
+  private long lastIoOps = 0;
+
+  /**
+   * The time spent on file reads and writes when the last report was sent, in microseconds.
+   */
+  private long lastIoTimeUs = 0;
+
+  /**
+   * The average time taken by file reads and writes in the last interval that had any, in
+   * microseconds.
+   */
+  private long ioLatencyUs = 0;
+
+  /**
+   * Initialises the service and starts sending reports.
+   *
+   * @param services the service container
+   */
+  public DstoreStatsReporter(DstoreServiceContainer services) {
+    this.services = services;
+
+    var intervalMs = Math.max(100,
+        Settings.getLong(Settings.DSTORE_STATS_INTERVAL_MS, DEFAULT_INTERVAL_MS));
+    executor.scheduleAtFixedRate(this::report, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Sends a report to the controller, if this Dstore is connected to it.
+   */
+  public void report() {
+    var controller = services.getDstore().getControllerHandler();
+    if (controller == null) {
+      return;
+    }
+
+    try {
+      controller.send(new DstoreStatsMessage(collect(controller)));
+    } catch (RuntimeException e) {
+      Logger.warn("Failed to report statistics: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Collects the current statistics. The I/O latency is the average over the reads and writes
+   * since the last report, or the previous average if there have been none.
+   *
+   * @param controller the connection to the controller
+   * @return the statistics
+   */
+  private synchronized DstoreStats collect(DstoreControllerConnectionHandler controller) {
+    var files = services.getLocalFileService();
+    var metrics = services.getMetricsService();
+
+    var ioOps = metrics.get("io.ops");
+    var ioTimeUs = metrics.get("io.time-us");
+    if (ioOps > lastIoOps) {
+      ioLatencyUs = (ioTimeUs - lastIoTimeUs) / (ioOps - lastIoOps);
+    }
+    lastIoOps = ioOps;
+    lastIoTimeUs = ioTimeUs;
+
+    return new DstoreStats(files.getLocalFiles().size(), files.getBytesStored(),
+        files.getFreeSpace(), files.getTotalSpace(), metrics.get("load.active"),
+        services.getRebalanceTransferService().getPendingTransfers(), controller.getQueueDepth(),
+        ioLatencyUs, metrics.getPercentile("load.serve-us", 95));
+  }
+}
@@ -0,0 +1,21 @@
+/**
+ * A handler for the STORE_CHAIN message.
+ *
+ * @author George Peppard
+ */
+public class DstoreStoreChainMessageHandler extends
+    DstoreClientMessageHandler<StoreChainMessage> {
+
+  public DstoreStoreChainMessageHandler(StoreChainMessage message,
+      DstoreServiceContainer services, DstoreConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Passes a segment that has arrived to the chain store service.
+   */
+  @Override
+  public void handle() {
+    services.getChainStoreService().handleSegment(message);
+  }
+}
@@ -44,7 +44,7 @@ public class DstoreStoreMessageHandler extends DstoreClientMessageHandler<StoreM
       Logger.info("Got {} bytes from client", bytes.length);
 
       services.getLocalFileService().addFile(file, size, bytes);
-      services.getDstore().getControllerHandler().send(new StoreAckMessage(file));
+      services.getDstore().getControllerHandler().sendBatched(new StoreAckMessage(file));
     } catch (IOException e) {
       Logger.error("Failed to store file: {}", e.getMessage());
     }
@@ -0,0 +1,29 @@
+import java.io.IOException;
+
+/**
+ * A handler for the STORE_MULTIPART_ABORT message.
+ *
+ * @author George Peppard
+ */
+public class DstoreStoreMultipartAbortMessageHandler extends
+    DstoreControllerMessageHandler<StoreMultipartAbortMessage> {
+
+  public DstoreStoreMultipartAbortMessageHandler(StoreMultipartAbortMessage message,
+      DstoreServiceContainer services, DstoreControllerConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Discards the parts of the abandoned upload that have been written so far.
+   */
+  @Override
+  public void handle() {
+    try {
+      services.getLocalFileService().abortMultipart(message.getFileName(),
+          message.getUploadId());
+    } catch (IOException e) {
+      Logger.error("Failed to discard the parts of {}: {}", message.getFileName(),
+          e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A handler for the STORE_PART message.
+ *
+ * @author George Peppard
+ */
+public class DstoreStorePartMessageHandler extends DstoreClientMessageHandler<StorePartMessage> {
+
+  public DstoreStorePartMessageHandler(StorePartMessage message, DstoreServiceContainer services,
+      DstoreConnectionHandler handler) {
+    super(message, services, handler);
+  }
+
+  /**
+   * Receives one part of a multipart store, writes it into place, and tells the controller. Once
+   * every part has been written, the controller is also told the whole file has been stored. A
+   * part that does not fit in the file closes the connection, as the client would otherwise send
+   * bytes that would be read as messages.
+   */
+  @Override
+  public void handle() {
+    var name = message.getFileName();
+    var size = message.getFileSize();
+    var partSize = message.getPartSize();
+    var offset = (long) message.getIndex() * partSize;
+
+    if (partSize <= 0 || message.getIndex() < 0 || offset > 0 && offset >= size) {
+      Logger.warn("Part {} of {} does not fit in the file, closing connection",
+          message.getIndex(), name);
+      try {
+        handler.close();
+      } catch (IOException ignored) {
+      }
+      return;
+    }
+
+    var future = handler.getNextNBytes((int) Math.min(partSize, size - offset));
+    if (future == null) {
+      Logger.info("Another operation is waiting on bytes");
+      return;
+    }
+
+    handler.send(new AckMessage());
+
+    byte[] bytes;
+    try {
+      bytes = future.get();
+    } catch (ExecutionException | InterruptedException e) {
+      Logger.warn("Store part operation interrupted: {}", e.getMessage());
+      return;
+    }
+
+    try {
+      var complete = services.getLocalFileService().storePart(name, message.getUploadId(), size,
+          partSize, message.getIndex(), bytes);
+
+      var controller = services.getDstore().getControllerHandler();
+      controller.sendBatched(new StorePartAckMessage(name, message.getIndex()));
+      services.getMetricsService().increment("store.parts");
+
+      if (complete) {
+        Logger.info("Stored every part of {}", name);
+        controller.sendBatched(new StoreAckMessage(name));
+      }
+    } catch (IOException e) {
+      Logger.error("Failed to store part {} of {}: {}", message.getIndex(), name,
+          e.getMessage());
+    }
+  }
+}
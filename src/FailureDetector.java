@@ -0,0 +1,118 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A phi accrual failure detector for one Dstore. Rather than deciding a Dstore has failed after a
+ * fixed timeout, it keeps the recent intervals between heartbeats and gives a suspicion level,
+ * phi, for how unlikely it is that the next heartbeat is simply late. A phi of 1 means there is
+ * about a 10% chance the Dstore is fine, 2 means about 1%, and so on.
+ *
+ * @author George Peppard
+ * @see <a href="https://doi.org/10.1109/RELDIS.2004.1353004">The phi accrual failure detector</a>
+ */
+public class FailureDetector {
+
+  /**
+   * The number of intervals kept.
+   */
+  private static final int WINDOW_SIZE = 100;
+
+  /**
+   * The smallest standard deviation used, in milliseconds, so that very regular heartbeats do not
+   * make the detector suspect a Dstore after a tiny delay.
+   */
+  private static final double MIN_STD_DEVIATION_MS = 100;
+
+  /**
+   * The length of pause that is always tolerated on top of the usual interval, in milliseconds.
+   */
+  private final long acceptablePauseMs;
+
+  /**
+   * The recent intervals between heartbeats, in milliseconds.
+   */
+  private final Deque<Long> intervals = new ArrayDeque<>();
+
+  /**
+   * The sum of the intervals.
+   */
+  private double sum = 0;
+
+  /**
+   * The sum of the squares of the intervals.
+   */
+  private double sumOfSquares = 0;
+
+  /**
+   * When the last heartbeat arrived, in milliseconds, or 0 if none has.
+   */
+  private long lastHeartbeatMs = 0;
+
+  /**
+   * Creates a new detector.
+   *
+   * @param expectedIntervalMs how often heartbeats are expected, in milliseconds, which is used
+   *                           until real intervals have been seen
+   * @param acceptablePauseMs  the length of pause always tolerated, in milliseconds
+   */
+  public FailureDetector(long expectedIntervalMs, long acceptablePauseMs) {
+    this.acceptablePauseMs = acceptablePauseMs;
+
+    // seed the window so the first few heartbeats are judged against the expected interval
+    addInterval(expectedIntervalMs - expectedIntervalMs / 4);
+    addInterval(expectedIntervalMs + expectedIntervalMs / 4);
+  }
+
+  /**
+   * Records a heartbeat arriving.
+   *
+   * @param nowMs the current time in milliseconds
+   */
+  public synchronized void heartbeat(long nowMs) {
+    if (lastHeartbeatMs != 0) {
+      addInterval(nowMs - lastHeartbeatMs);
+    }
+
+    lastHeartbeatMs = nowMs;
+  }
+
+  /**
+   * Returns the suspicion level for the Dstore.
+   *
+   * @param nowMs the current time in milliseconds
+   * @return phi, which is 0 if no heartbeat has arrived yet
+   */
+  public synchronized double phi(long nowMs) {
+    if (lastHeartbeatMs == 0) {
+      return 0;
+    }
+
+    var mean = sum / intervals.size() + acceptablePauseMs;
+    var variance = sumOfSquares / intervals.size() - Math.pow(sum / intervals.size(), 2);
+    var stdDeviation = Math.max(MIN_STD_DEVIATION_MS, Math.sqrt(Math.max(0, variance)));
+
+    // logistic approximation of the normal distribution's cumulative distribution function
+    var y = (nowMs - lastHeartbeatMs - mean) / stdDeviation;
+    var e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+    var pLater = nowMs - lastHeartbeatMs > mean ? e / (1 + e) : 1 - 1 / (1 + e);
+
+    return -Math.log10(Math.max(pLater, Double.MIN_VALUE));
+  }
+
+  /**
+   * Adds an interval to the window, dropping the oldest if it is full.
+   *
+   * @param intervalMs the interval in milliseconds
+   */
+  private void addInterval(long intervalMs) {
+    if (intervals.size() >= WINDOW_SIZE) {
+      var oldest = intervals.removeFirst();
+      sum -= oldest;
+      sumOfSquares -= (double) oldest * oldest;
+    }
+
+    intervals.addLast(intervalMs);
+    sum += intervalMs;
+    sumOfSquares += (double) intervalMs * intervalMs;
+  }
+}
@@ -0,0 +1,179 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A hash tree over a set of files, used to find the differences between the files the controller
+ * expects a Dstore to have and the files it really has without sending either list in full.
+ *
+ * <p>Files are placed in one of {@link #BUCKET_COUNT} buckets by the hash of their name. Each
+ * bucket's hash is the XOR of the hashes of the name and size of every file in it, so a file can be
+ * added or removed in constant time. Every other node in the tree has {@link #FANOUT} children and
+ * its hash is the XOR of theirs. Nodes are numbered from the root downwards, so the root is node 0
+ * and the children of node {@code n} are {@code n * FANOUT + 1} to {@code n * FANOUT + FANOUT}.
+ *
+ * @author George Peppard
+ */
+public class FileDigestTree {
+
+  /**
+   * The number of children of each node that is not a bucket.
+   */
+  public static final int FANOUT = 16;
+
+  /**
+   * The number of levels below the root.
+   */
+  public static final int DEPTH = 3;
+
+  /**
+   * The number of buckets, which are the leaves of the tree.
+   */
+  public static final int BUCKET_COUNT = (int) Math.pow(FANOUT, DEPTH);
+
+  /**
+   * The number of the first bucket node. Every node before it has children.
+   */
+  private static final int FIRST_BUCKET_NODE = (BUCKET_COUNT - 1) / (FANOUT - 1);
+
+  /**
+   * The hash of each bucket.
+   */
+  private final long[] buckets = new long[BUCKET_COUNT];
+
+  /**
+   * Adds a file to the tree.
+   *
+   * @param name the name of the file
+   * @param size the size of the file in bytes
+   */
+  public synchronized void add(String name, int size) {
+    buckets[getBucket(name)] ^= hash(name, size);
+  }
+
+  /**
+   * Removes a file from the tree. The file must have been added with the same size.
+   *
+   * @param name the name of the file
+   * @param size the size of the file in bytes
+   */
+  public synchronized void remove(String name, int size) {
+    // XOR is its own inverse
+    add(name, size);
+  }
+
+  /**
+   * Returns the hash of a node.
+   *
+   * @param node the number of the node
+   * @return the hash of every file below the node
+   */
+  public synchronized long getNodeHash(int node) {
+    var level = 0;
+    var first = 0;
+    var width = 1;
+
+    while (node >= first + width) {
+      first += width;
+      width *= FANOUT;
+      level++;
+    }
+
+    var span = (int) Math.pow(FANOUT, DEPTH - level);
+    var start = (node - first) * span;
+
+    var hash = 0L;
+    for (int i = start; i < start + span; i++) {
+      hash ^= buckets[i];
+    }
+
+    return hash;
+  }
+
+  /**
+   * Returns whether a node number is valid in this tree.
+   *
+   * @param node the number of the node
+   * @return whether the node exists
+   */
+  public static boolean isNode(int node) {
+    return node >= 0 && node < FIRST_BUCKET_NODE + BUCKET_COUNT;
+  }
+
+  /**
+   * Returns whether a node is a bucket.
+   *
+   * @param node the number of the node
+   * @return whether the node is a leaf of the tree
+   */
+  public static boolean isBucket(int node) {
+    return node >= FIRST_BUCKET_NODE;
+  }
+
+  /**
+   * Returns the bucket number of a bucket node.
+   *
+   * @param node the number of the node
+   * @return the number of the bucket
+   */
+  public static int getBucketOfNode(int node) {
+    return node - FIRST_BUCKET_NODE;
+  }
+
+  /**
+   * Returns the number of the first child of a node. The others follow it.
+   *
+   * @param node the number of the node, which must not be a bucket
+   * @return the number of its first child
+   */
+  public static int getFirstChild(int node) {
+    return node * FANOUT + 1;
+  }
+
+  /**
+   * Returns the bucket a file belongs in.
+   *
+   * @param name the name of the file
+   * @return the number of the bucket
+   */
+  public static int getBucket(String name) {
+    return (int) (mix(fnv(name)) >>> 32) & (BUCKET_COUNT - 1);
+  }
+
+  /**
+   * Returns the hash of a file's name and size.
+   *
+   * @param name the name of the file
+   * @param size the size of the file in bytes
+   * @return the hash
+   */
+  private static long hash(String name, int size) {
+    return mix(fnv(name) ^ mix(size));
+  }
+
+  /**
+   * Returns the 64-bit FNV-1a hash of a string's UTF-8 bytes.
+   *
+   * @param value the string to hash
+   * @return the hash
+   */
+  private static long fnv(String value) {
+    var hash = 0xcbf29ce484222325L;
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+
+    return hash;
+  }
+
+  /**
+   * Spreads the bits of a value, so that similar values have unrelated hashes.
+   *
+   * @param value the value to mix
+   * @return the mixed value
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+}
@@ -16,11 +16,6 @@ public enum FileOperationResult {
    */
   FILE_ALREADY_EXISTS(ErrorFileAlreadyExistsMessage.class),
 
-  /**
-   * An operation that failed due to the file already being removed.
-   */
-  FILE_ALREADY_REMOVING(ErrorFileAlreadyExistsMessage.class),
-
   /**
    * An operation that failed due to the file not existing.
    */
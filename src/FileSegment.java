@@ -0,0 +1,77 @@
+/**
+ * A contiguous range of a file's content, used when a file is sent in several parts.
+ *
+ * @author George Peppard
+ */
+public class FileSegment {
+
+  /**
+   * The name of the file.
+   */
+  private final String name;
+
+  /**
+   * The size of the whole file in bytes.
+   */
+  private final int fileSize;
+
+  /**
+   * The offset of the first byte of the segment.
+   */
+  private final int offset;
+
+  /**
+   * The number of bytes in the segment.
+   */
+  private final int length;
+
+  /**
+   * Creates a new segment.
+   *
+   * @param name     the name of the file
+   * @param fileSize the size of the whole file in bytes
+   * @param offset   the offset of the first byte of the segment
+   * @param length   the number of bytes in the segment
+   */
+  public FileSegment(String name, int fileSize, int offset, int length) {
+    this.name = name;
+    this.fileSize = fileSize;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Returns the name of the file.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the size of the whole file in bytes.
+   */
+  public int getFileSize() {
+    return fileSize;
+  }
+
+  /**
+   * Returns the offset of the first byte of the segment.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns the number of bytes in the segment.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Returns whether this segment ends at the end of the file.
+   */
+  public boolean isLast() {
+    return offset + length >= fileSize;
+  }
+}
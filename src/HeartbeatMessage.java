@@ -0,0 +1,34 @@
+/**
+ * A heartbeat sent by the controller to a Dstore, which the Dstore answers with a
+ * {@link HeartbeatResponseMessage}.
+ *
+ * @author George Peppard
+ */
+public class HeartbeatMessage extends Message {
+
+  private final long sequence;
+
+  public HeartbeatMessage(long sequence) {
+    super(Protocol.HEARTBEAT);
+
+    this.sequence = sequence;
+  }
+
+  public static HeartbeatMessage parse(String[] args) {
+    return new HeartbeatMessage(Long.parseLong(args[0]));
+  }
+
+  @Override
+  public boolean isQuiet() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + sequence;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+}
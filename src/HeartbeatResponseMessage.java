@@ -0,0 +1,56 @@
+/**
+ * A Dstore's answer to a heartbeat, carrying some statistics about how busy it is: the number of
+ * files it stores, the number of loads it is serving, and the number of rebalance transfers it is
+ * running or has queued.
+ *
+ * @author George Peppard
+ */
+public class HeartbeatResponseMessage extends Message {
+
+  private final long sequence;
+  private final int fileCount;
+  private final int activeLoads;
+  private final int activeTransfers;
+
+  public HeartbeatResponseMessage(long sequence, int fileCount, int activeLoads,
+      int activeTransfers) {
+    super(Protocol.HEARTBEAT);
+
+    this.sequence = sequence;
+    this.fileCount = fileCount;
+    this.activeLoads = activeLoads;
+    this.activeTransfers = activeTransfers;
+  }
+
+  public static HeartbeatResponseMessage parse(String[] args) {
+    return new HeartbeatResponseMessage(Long.parseLong(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+  }
+
+  @Override
+  public boolean isQuiet() {
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + sequence + " " + fileCount + " " + activeLoads + " "
+        + activeTransfers;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public int getFileCount() {
+    return fileCount;
+  }
+
+  public int getActiveLoads() {
+    return activeLoads;
+  }
+
+  public int getActiveTransfers() {
+    return activeTransfers;
+  }
+}
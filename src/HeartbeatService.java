@@ -0,0 +1,180 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service that sends heartbeats to every Dstore and decides which Dstores are suspected of
+ * having failed. A Dstore whose process has hung keeps its socket open, so it is only noticed
+ * through its heartbeats stopping. Suspected Dstores are not given new files and are only used to
+ * serve loads when no other Dstore can, until their heartbeats resume. Heartbeats are sent on
+ * threads of their own, so that a Dstore that has stopped reading cannot hold up the checks on the
+ * others.
+ *
+ * @author George Peppard
+ * @see FailureDetector
+ */
+public class HeartbeatService {
+
+  /**
+   * The default time between heartbeats, in milliseconds.
+   */
+  private static final long DEFAULT_INTERVAL_MS = 1000;
+
+  /**
+   * The default suspicion level above which a Dstore is suspected.
+   */
+  private static final double DEFAULT_PHI_THRESHOLD = 8;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The executor that sends heartbeats and checks suspicion levels.
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "CLR Heartbeat");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * The threads that send heartbeats.
+   */
+  private final ExecutorService sender = Executors.newCachedThreadPool(r -> {
+    var thread = new Thread(r, "CLR Heartbeat Sender");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * When the heartbeat still being sent to each Dstore was started, in milliseconds. A Dstore is
+   * sent no more heartbeats until it has finished, so one that has stopped reading ties up at most
+   * one thread. If the send takes longer than the controller's timeout, the Dstore is suspected
+   * straight away.
+   */
+  private final Map<DstoreModel, Long> sending = new ConcurrentHashMap<>();
+
+  /**
+   * The time between heartbeats, in milliseconds.
+   */
+  private final long intervalMs = Math.max(10,
+      Settings.getLong(Settings.CONTROLLER_HEARTBEAT_INTERVAL_MS, DEFAULT_INTERVAL_MS));
+
+  /**
+   * The suspicion level above which a Dstore is suspected.
+   */
+  private final double phiThreshold = Settings.getDouble(
+      Settings.CONTROLLER_HEARTBEAT_PHI_THRESHOLD, DEFAULT_PHI_THRESHOLD);
+
+  /**
+   * The sequence number of the next heartbeat.
+   */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * When the latest heartbeat was sent, in milliseconds.
+   */
+  private volatile long lastSentMs = 0;
+
+  /**
+   * Initialises the service and starts sending heartbeats.
+   *
+   * @param services the service container
+   */
+  public HeartbeatService(ControllerServiceContainer services) {
+    this.services = services;
+
+    executor.scheduleAtFixedRate(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    services.getMetricsService().registerGauge("heartbeat.suspects",
+        () -> services.getDstoreService().getAllDstores().stream()
+            .filter(DstoreModel::isSuspect).count());
+  }
+
+  /**
+   * Creates the failure detector for a Dstore that has just joined.
+   *
+   * @return the detector
+   */
+  public FailureDetector createDetector() {
+    return new FailureDetector(intervalMs, intervalMs);
+  }
+
+  /**
+   * Handles a Dstore answering a heartbeat.
+   *
+   * @param dstore  the Dstore
+   * @param message its answer
+   */
+  public void handleHeartbeat(DstoreModel dstore, HeartbeatResponseMessage message) {
+    var now = System.currentTimeMillis();
+    dstore.getFailureDetector().heartbeat(now);
+
+    // answers to older heartbeats are late, and would overstate the latency
+    if (message.getSequence() == sequence.get()) {
+      dstore.recordLatency(now - lastSentMs);
+    }
+
+    dstore.setLoad(message.getFileCount(), message.getActiveLoads(),
+        message.getActiveTransfers());
+
+    if (dstore.isSuspect()) {
+      Logger.info("{} is answering heartbeats again, no longer suspected", dstore);
+      dstore.setSuspect(false);
+      services.getMetricsService().increment("heartbeat.recovered");
+    }
+  }
+
+  /**
+   * Sends a heartbeat to every Dstore and updates which Dstores are suspected.
+   */
+  private void tick() {
+    var now = System.currentTimeMillis();
+    lastSentMs = now;
+    var heartbeat = new HeartbeatMessage(sequence.incrementAndGet());
+
+    for (var dstore : services.getDstoreService().getAllDstores()) {
+      var phi = dstore.getFailureDetector().phi(now);
+      if (phi > phiThreshold && !dstore.isSuspect()) {
+        Logger.warn("{} has missed heartbeats (phi {}), suspecting it", dstore,
+            String.format("%.1f", phi));
+        dstore.setSuspect(true);
+        services.getMetricsService().increment("heartbeat.suspected");
+      }
+
+      var sendingSince = sending.putIfAbsent(dstore, now);
+      if (sendingSince == null) {
+        sender.execute(() -> send(dstore, heartbeat));
+        continue;
+      }
+
+      services.getMetricsService().increment("heartbeat.send-blocked");
+      if (now - sendingSince > services.getController().getTimeoutMs() && !dstore.isSuspect()) {
+        Logger.warn("{} has not read a heartbeat for {} ms, suspecting it", dstore,
+            now - sendingSince);
+        dstore.setSuspect(true);
+        services.getMetricsService().increment("heartbeat.suspected");
+      }
+    }
+  }
+
+  /**
+   * Sends a heartbeat to a Dstore.
+   *
+   * @param dstore    the Dstore
+   * @param heartbeat the heartbeat
+   */
+  private void send(DstoreModel dstore, HeartbeatMessage heartbeat) {
+    try {
+      dstore.getHandler().send(heartbeat);
+    } finally {
+      sending.remove(dstore);
+    }
+  }
+}
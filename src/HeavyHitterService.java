@@ -0,0 +1,171 @@
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A service that finds the most requested files in a fixed amount of memory, however many files
+ * there are. Every LOAD, RELOAD and STORE is counted in a {@link CountMinSketch}, and the files
+ * with the highest estimates are kept as candidates for the top K.
+ *
+ * <p>Requests are counted over a sliding window, which is split into slots with a sketch each.
+ * When a slot falls out of the window its sketch is cleared and reused, so the counts always cover
+ * between the window and the window less one slot.
+ *
+ * @author George Peppard
+ */
+public class HeavyHitterService {
+
+  /**
+   * The default number of most requested files kept track of.
+   */
+  private static final int DEFAULT_TOP_K = 10;
+
+  /**
+   * The default number of cells in each row of a sketch.
+   */
+  private static final int DEFAULT_WIDTH = 2048;
+
+  /**
+   * The default number of rows in a sketch.
+   */
+  private static final int DEFAULT_DEPTH = 4;
+
+  /**
+   * The default length of the window, in milliseconds.
+   */
+  private static final long DEFAULT_WINDOW_MS = 60000;
+
+  /**
+   * The number of slots the window is split into.
+   */
+  private static final int SLOTS = 6;
+
+  /**
+   * The number of most requested files kept track of.
+   */
+  private final int topK = Math.max(1,
+      Settings.getInt(Settings.CONTROLLER_HEAVY_HITTERS_TOP_K, DEFAULT_TOP_K));
+
+  /**
+   * The length of each slot, in milliseconds.
+   */
+  private final long slotMs = Math.max(1,
+      Settings.getLong(Settings.CONTROLLER_HEAVY_HITTERS_WINDOW_MS, DEFAULT_WINDOW_MS) / SLOTS);
+
+  /**
+   * The sketch for each slot, used in turn.
+   */
+  private final CountMinSketch[] sketches = new CountMinSketch[SLOTS];
+
+  /**
+   * The number of the current slot, counted from the epoch.
+   */
+  private long currentSlot;
+
+  /**
+   * The files with the highest estimates, by name key, and their estimates when last checked.
+   */
+  private final Map<String, Long> candidates = new HashMap<>();
+
+  /**
+   * The name each candidate was last requested by, by name key.
+   */
+  private final Map<String, String> candidateNames = new HashMap<>();
+
+  /**
+   * Initialises the service.
+   */
+  public HeavyHitterService() {
+    var width = Math.max(16,
+        Settings.getInt(Settings.CONTROLLER_HEAVY_HITTERS_WIDTH, DEFAULT_WIDTH));
+    var depth = Math.max(1,
+        Settings.getInt(Settings.CONTROLLER_HEAVY_HITTERS_DEPTH, DEFAULT_DEPTH));
+
+    for (int i = 0; i < SLOTS; i++) {
+      sketches[i] = new CountMinSketch(width, depth);
+    }
+
+    currentSlot = System.currentTimeMillis() / slotMs;
+  }
+
+  /**
+   * Counts a request for a file. Requests are counted by {@link IndexService#getNameKey(String)},
+   * so every spelling of a name counts towards the same file.
+   *
+   * @param name the name of the file
+   */
+  public synchronized void record(String name) {
+    advance();
+    var key = IndexService.getNameKey(name);
+    sketches[(int) (currentSlot % SLOTS)].add(key, 1);
+
+    var estimate = estimate(key);
+    if (candidates.containsKey(key) || candidates.size() < topK) {
+      candidates.put(key, estimate);
+      candidateNames.put(key, name);
+      return;
+    }
+
+    // K is small, so finding the lowest candidate by scanning is cheaper than keeping a heap
+    // ordered while every candidate's estimate keeps changing
+    var lowest = candidates.entrySet().stream().min(Map.Entry.comparingByValue()).orElseThrow();
+    if (estimate > lowest.getValue()) {
+      candidates.remove(lowest.getKey());
+      candidateNames.remove(lowest.getKey());
+      candidates.put(key, estimate);
+      candidateNames.put(key, name);
+    }
+  }
+
+  /**
+   * Returns the most requested files in the window, with the most requested first.
+   *
+   * @return the estimated number of requests for each file
+   */
+  public synchronized Map<String, Long> getTop() {
+    advance();
+
+    var top = new LinkedHashMap<String, Long>();
+    candidates.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+        .forEach(e -> top.put(candidateNames.get(e.getKey()), e.getValue()));
+
+    return top;
+  }
+
+  /**
+   * Moves the window on to the current time, clearing the slots that have fallen out of it and
+   * updating the candidates' estimates.
+   */
+  private void advance() {
+    var slot = System.currentTimeMillis() / slotMs;
+    if (slot <= currentSlot) {
+      return;
+    }
+
+    for (var s = currentSlot + 1; s <= Math.min(slot, currentSlot + SLOTS); s++) {
+      sketches[(int) (s % SLOTS)].clear();
+    }
+    currentSlot = slot;
+
+    candidates.replaceAll((key, count) -> estimate(key));
+    candidates.values().removeIf(count -> count == 0);
+    candidateNames.keySet().retainAll(candidates.keySet());
+  }
+
+  /**
+   * Returns the estimated number of requests for a file in the window.
+   *
+   * @param key the name key of the file
+   * @return the estimate
+   */
+  private long estimate(String key) {
+    var estimate = 0L;
+    for (var sketch : sketches) {
+      estimate += sketch.estimate(key);
+    }
+
+    return estimate;
+  }
+}
@@ -0,0 +1,106 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, such as latencies, with buckets that grow with the value so
+ * that every value is counted to within about 6% using a fixed amount of memory. Values are
+ * recorded without locking.
+ *
+ * @author George Peppard
+ */
+public class Histogram {
+
+  /**
+   * The number of bits of each value kept below its highest set bit, giving 16 buckets for every
+   * power of two.
+   */
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /**
+   * The number of buckets for every power of two.
+   */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /**
+   * The count in each bucket.
+   */
+  private final AtomicLongArray counts =
+      new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+  /**
+   * Records a value. Negative values are recorded as 0.
+   *
+   * @param value the value
+   */
+  public void record(long value) {
+    counts.incrementAndGet(getBucket(Math.max(0, value)));
+  }
+
+  /**
+   * Returns the number of values recorded.
+   */
+  public long getCount() {
+    var count = 0L;
+    for (int i = 0; i < counts.length(); i++) {
+      count += counts.get(i);
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns a percentile of the recorded values.
+   *
+   * @param percentile the percentile, between 0 and 100
+   * @return the highest value in the bucket holding the percentile, or 0 if nothing is recorded
+   */
+  public long getPercentile(double percentile) {
+    var count = getCount();
+    if (count == 0) {
+      return 0;
+    }
+
+    var rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    var seen = 0L;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return getBucketUpperBound(i);
+      }
+    }
+
+    return getBucketUpperBound(counts.length() - 1);
+  }
+
+  /**
+   * Returns the bucket a value is counted in.
+   *
+   * @param value the value
+   * @return the index of the bucket
+   */
+  private static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the highest value counted in a bucket.
+   *
+   * @param bucket the index of the bucket
+   * @return the value
+   */
+  private static long getBucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    var exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    var subBucket = bucket % SUB_BUCKETS;
+    var shift = exponent - SUB_BUCKET_BITS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+}
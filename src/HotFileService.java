@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service that gives files which are loaded often extra copies, so that their loads are spread
+ * over more Dstores. Each file's load rate is updated every so often. A file gets one extra copy
+ * for every multiple of the threshold rate, which the {@link RepairService} places on the least
+ * busy Dstores. Once the file cools to well below the rate that earned its copies, it is wanted on
+ * fewer Dstores again, and the next rebalance removes the copies it no longer needs.
+ *
+ * @author George Peppard
+ */
+public class HotFileService {
+
+  /**
+   * The default load rate, in loads per second, at which a file is given an extra copy.
+   */
+  private static final double DEFAULT_THRESHOLD = 10;
+
+  /**
+   * The default most extra copies a file is given.
+   */
+  private static final int DEFAULT_MAX_EXTRA_REPLICAS = 2;
+
+  /**
+   * The default time between updates of the load rates, in milliseconds.
+   */
+  private static final long DEFAULT_INTERVAL_MS = 5000;
+
+  /**
+   * The weight given to the latest interval in each file's moving average load rate.
+   */
+  private static final double RATE_SMOOTHING = 0.5;
+
+  /**
+   * The fraction of the rate that earned a file its extra copies that it must fall below before
+   * they are taken away, so that a file near the threshold does not keep gaining and losing them.
+   */
+  private static final double COOLING_FACTOR = 0.5;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The executor that updates the load rates.
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "CLR Hot Files");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * The load rate, in loads per second, at which a file is given an extra copy.
+   */
+  private final double threshold = Math.max(0.001,
+      Settings.getDouble(Settings.CONTROLLER_HOT_THRESHOLD, DEFAULT_THRESHOLD));
+
+  /**
+   * The most extra copies a file is given.
+   */
+  private final int maxExtraReplicas = Math.max(0,
+      Settings.getInt(Settings.CONTROLLER_HOT_MAX_EXTRA_REPLICAS, DEFAULT_MAX_EXTRA_REPLICAS));
+
+  /**
+   * The time between updates of the load rates, in milliseconds.
+   */
+  private final long intervalMs = Math.max(100,
+      Settings.getLong(Settings.CONTROLLER_HOT_INTERVAL_MS, DEFAULT_INTERVAL_MS));
+
+  /**
+   * Initialises the service and starts updating load rates.
+   *
+   * @param services the service container
+   */
+  public HotFileService(ControllerServiceContainer services) {
+    this.services = services;
+
+    executor.scheduleAtFixedRate(this::tick, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    services.getMetricsService().registerGauge("hot.files",
+        () -> services.getIndexService().getFiles().stream()
+            .filter(f -> f.getExtraReplicas() > 0).count());
+  }
+
+  /**
+   * Updates the load rate of every file, and changes how many extra copies each file wants.
+   */
+  private void tick() {
+    try {
+      var dstoreCount = services.getDstoreService().getAllDstores().size();
+      var heated = new ArrayList<IndexedFile>();
+
+      for (var file : services.getIndexService().getFiles()) {
+        var loads = file.takeRecentLoads();
+        var rate = RATE_SMOOTHING * loads * 1000 / intervalMs
+            + (1 - RATE_SMOOTHING) * file.getLoadRate();
+        file.setLoadRate(rate);
+
+        var extra = file.getExtraReplicas();
+        var maxExtra = Math.min(maxExtraReplicas, dstoreCount - file.getReplicationFactor());
+        var wanted = Math.max(0, Math.min(maxExtra, (int) (rate / threshold)));
+
+        if (wanted > extra) {
+          Logger.info("{} is hot ({} loads/s), wanting {} extra copies", file.getName(),
+              String.format("%.1f", rate), wanted);
+          file.setExtraReplicas(wanted);
+          heated.add(file);
+          services.getMetricsService().increment("hot.heated");
+        } else if (wanted < extra && rate < extra * threshold * COOLING_FACTOR) {
+          Logger.info("{} has cooled ({} loads/s), wanting {} extra copies", file.getName(),
+              String.format("%.1f", rate), wanted);
+          file.setExtraReplicas(wanted);
+          services.getMetricsService().increment("hot.cooled");
+        }
+      }
+
+      if (!heated.isEmpty()) {
+        services.getRepairService().enqueue(heated);
+      }
+    } catch (RuntimeException e) {
+      Logger.error("Failed to update file load rates: {}", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,37 @@
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A message asking the controller for the most requested files, or containing them as
+ * {@code name=count} pairs with the most requested first.
+ *
+ * @author George Peppard
+ */
+public class HotMessage extends Message {
+
+  private final Map<String, Long> files;
+
+  public HotMessage() {
+    this(Map.of());
+  }
+
+  public HotMessage(Map<String, Long> files) {
+    super(Protocol.HOT);
+
+    this.files = files;
+  }
+
+  @Override
+  public String toString() {
+    if (files.isEmpty()) {
+      return super.toString();
+    }
+
+    return super.toString() + " " + files.entrySet().stream()
+        .map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(" "));
+  }
+
+  public Map<String, Long> getFiles() {
+    return files;
+  }
+}
@@ -1,11 +1,21 @@
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A service to manage the central file index.
@@ -18,9 +28,23 @@ public class IndexService {
   private final ControllerServiceContainer services;
 
   /**
-   * The list of all files stored in the index.
+   * The files stored in the index, in the order they were added. Files are dropped from it once
+   * they are {@link IndexedFileState#GONE}.
    */
-  private final List<IndexedFile> index = new ArrayList<>();
+  private final Set<IndexedFile> index = new LinkedHashSet<>();
+
+  /**
+   * The files in the index that are not {@link IndexedFileState#GONE}, by lower case name. The
+   * names are kept sorted so that files can be listed a page at a time, or by prefix, without
+   * going through the whole index.
+   */
+  private final NavigableMap<String, IndexedFile> filesByName = new ConcurrentSkipListMap<>();
+
+  /**
+   * The digest reconciliations that are waiting on replies from Dstores, by Dstore port.
+   */
+  private final Map<Integer, DstoreDigestReconciliation> digestReconciliations =
+      new ConcurrentHashMap<>();
 
   /**
    * The list of all file load operations.
@@ -38,70 +62,59 @@ public class IndexService {
   private List<ReportedDstoreFileList> refreshFileLists;
 
   /**
-   * The service that executes rebalance operations periodically.
+   * The currently executing rebalance operation, if any.
    */
-  private final ScheduledExecutorService rebalanceExecutorService = Executors.newSingleThreadScheduledExecutor();
+  private RebalanceOperation currentRebalanceOperation;
 
   /**
-   * The currently executing rebalance operation, if any.
+   * The number of Dstores that must store a file before the store is complete, or 0 for all of
+   * them.
    */
-  private RebalanceOperation currentRebalanceOperation;
+  private final int writeQuorum = Math.max(0,
+      Settings.getInt(Settings.CONTROLLER_STORE_WRITE_QUORUM, 0));
 
   /**
-   * Initialises the service and sets up scheduled tasks.
+   * Initialises the service.
    *
    * @param services the service container
    */
   public IndexService(ControllerServiceContainer services) {
     this.services = services;
-
-    Logger.info("Initialising periodic rebalance with period {}s",
-        services.getController().getRebalancePeriodSecs());
-    rebalanceExecutorService.scheduleAtFixedRate(this::runScheduledRebalance,
-        services.getController().getRebalancePeriodSecs(),
-        services.getController().getRebalancePeriodSecs(), TimeUnit.SECONDS);
   }
 
   /**
    * Adds a file to the index.
    *
-   * @param name   the name of the file
-   * @param size   the size of the file in bytes
-   * @param client the client that is storing the file
+   * @param name              the name of the file
+   * @param size              the size of the file in bytes
+   * @param replicationFactor the number of copies of the file to store
+   * @param client            the client that is storing the file
    * @return the result
    */
-  public synchronized FileOperationResult addFile(String name, int size,
+  public synchronized FileOperationResult addFile(String name, int size, int replicationFactor,
       ControllerConnectionHandler client) {
-    if (getFileByName(name) != null) {
+    var file = createFile(name, size, replicationFactor);
+    if (file == null) {
       return FileOperationResult.FILE_ALREADY_EXISTS;
     }
 
     services.getBlockingOperationsService().startStore();
-    Logger.info("Adding file {} of size {}", name, size);
-
-    var stores = services.getDstoreService()
-        .getNext(services.getController().getReplicationFactor());
-    var file = new IndexedFile(name, size, stores);
-    index.add(file);
 
     Runnable stateUpdater = () -> {
-      try {
-        var success = file.getStoreLatch()
-            .await(services.getController().getTimeoutMs(), TimeUnit.MILLISECONDS);
+      var start = System.nanoTime();
+      var deadline = start
+          + TimeUnit.MILLISECONDS.toNanos(services.getController().getTimeoutMs());
 
-        if (!success) {
-          Logger.error("Store operation timeout for file {}", file.getName());
-          file.setState(IndexedFileState.GONE);
+      try {
+        if (!awaitStored(file, start, deadline)) {
           return;
         }
 
-        file.setState(IndexedFileState.AVAILABLE);
         client.send(new StoreCompleteMessage());
-
-        Logger.info("Store complete for {}", file.getName());
+        awaitReplicas(file, deadline);
       } catch (InterruptedException e) {
         Logger.error("Store operation interrupted for file {}", file.getName());
-        file.setState(IndexedFileState.GONE);
+        markGone(file);
       } finally {
         services.getBlockingOperationsService().finishStore();
       }
@@ -113,7 +126,228 @@ public class IndexService {
   }
 
   /**
-   * Removes a file by name, contacting any Dstores that have it to remove the file as well.
+   * Adds many files to the index in one pass, for a bulk store. A single thread waits for all of
+   * the files to be stored, and the client is sent one {@link StoreBulkCompleteMessage} listing
+   * those that were stored in time.
+   *
+   * @param files             the sizes of the files, by name
+   * @param replicationFactor the number of copies of each file to store
+   * @param client            the client that is storing the files
+   * @return the result for each file, by name
+   */
+  public synchronized Map<String, FileOperationResult> addFiles(Map<String, Integer> files,
+      int replicationFactor, ControllerConnectionHandler client) {
+    var results = new LinkedHashMap<String, FileOperationResult>();
+    var added = new ArrayList<IndexedFile>();
+
+    files.forEach((name, size) -> {
+      var file = createFile(name, size, replicationFactor);
+      results.put(name, file != null ? FileOperationResult.SUCCESS
+          : FileOperationResult.FILE_ALREADY_EXISTS);
+
+      if (file != null) {
+        services.getBlockingOperationsService().startStore();
+        added.add(file);
+      }
+    });
+
+    if (added.isEmpty()) {
+      return results;
+    }
+
+    Runnable stateUpdater = () -> {
+      var start = System.nanoTime();
+      var timeout = TimeUnit.MILLISECONDS.toNanos(services.getController().getTimeoutMs());
+      var deadline = start + timeout;
+      var stored = new ArrayList<IndexedFile>();
+
+      try {
+        // the client uploads the files one after another, so the timeout runs from the last one
+        // to be stored rather than from the start of the whole batch
+        for (var file : added) {
+          if (awaitStored(file, start, deadline)) {
+            stored.add(file);
+            deadline = Math.max(deadline, System.nanoTime() + timeout);
+          }
+        }
+
+        client.send(new StoreBulkCompleteMessage(
+            stored.stream().map(IndexedFile::getName).toList()));
+
+        for (var file : stored) {
+          awaitReplicas(file, deadline);
+        }
+      } catch (InterruptedException e) {
+        Logger.error("Bulk store operation interrupted for {} files", added.size());
+        added.stream().filter(f -> f.getState() == IndexedFileState.STORE_IN_PROGRESS)
+            .forEach(this::markGone);
+      } finally {
+        added.forEach(f -> services.getBlockingOperationsService().finishStore());
+      }
+    };
+
+    new Thread(stateUpdater, "CLR IS Bulk Store " + added.size() + " StateUpdater").start();
+
+    return results;
+  }
+
+  /**
+   * Adds a file that will be stored in parts to the index. Unlike {@link #addFile}, nothing waits
+   * for the Dstores to store it, as the {@link MultipartUploadService} follows the parts and
+   * finishes or abandons the store. The upload does not count as a store operation, so it does not
+   * hold up rebalances, until the client commits it.
+   *
+   * @param name              the name of the file
+   * @param size              the size of the file in bytes
+   * @param partSize          the size of each part in bytes
+   * @param replicationFactor the number of copies of the file to store
+   * @return the file, or null if one with the same name exists
+   */
+  public synchronized IndexedFile addMultipartFile(String name, int size, int partSize,
+      int replicationFactor) {
+    var file = createFile(name, size, replicationFactor);
+    if (file != null) {
+      file.setPartSize(partSize);
+    }
+
+    return file;
+  }
+
+  /**
+   * Finishes a multipart store once a write quorum of Dstores has every part. The client is
+   * answered, and the remaining Dstores are waited for in the background as for any other store.
+   * The store operation started by the commit is finished once they have been.
+   *
+   * @param file       the file, which a write quorum of Dstores has stored
+   * @param startNanos when the store started, from {@link System#nanoTime()}
+   * @param client     the client that is storing the file
+   */
+  public void completeMultipartStore(IndexedFile file, long startNanos,
+      ControllerConnectionHandler client) {
+    markStored(file, startNanos);
+    client.send(new StoreCompleteMessage());
+
+    Runnable stateUpdater = () -> {
+      var deadline = System.nanoTime()
+          + TimeUnit.MILLISECONDS.toNanos(services.getController().getTimeoutMs());
+
+      try {
+        awaitReplicas(file, deadline);
+      } catch (InterruptedException e) {
+        Logger.error("Store operation interrupted for file {}", file.getName());
+      } finally {
+        services.getBlockingOperationsService().finishStore();
+      }
+    };
+
+    new Thread(stateUpdater, "CLR IS File " + file.getName() + " StateUpdater").start();
+  }
+
+  /**
+   * Gives up on a multipart store that the client has stopped sending parts for.
+   *
+   * @param file the file being stored
+   */
+  public void abandonMultipartStore(IndexedFile file) {
+    Logger.warn("Multipart store of {} abandoned", file.getName());
+    markGone(file);
+  }
+
+  /**
+   * Places a new file on Dstores and adds it to the index, unless a file with its name exists.
+   *
+   * @param name              the name of the file
+   * @param size              the size of the file in bytes
+   * @param replicationFactor the number of copies of the file to store
+   * @return the file, or null if one with the same name exists
+   */
+  private IndexedFile createFile(String name, int size, int replicationFactor) {
+    if (getFileByName(name) != null) {
+      return null;
+    }
+
+    Logger.info("Adding file {} of size {}", name, size);
+
+    var stores = services.getDstoreService().getNext(replicationFactor, size);
+    var file = new IndexedFile(name, size, stores, replicationFactor,
+        writeQuorum > 0 ? writeQuorum : replicationFactor);
+    filesByName.put(getNameKey(name), file);
+    index.add(file);
+
+    return file;
+  }
+
+  /**
+   * Waits for a write quorum of Dstores to store a file, and marks it as available, or as gone if
+   * the deadline passes first.
+   *
+   * @param file          the file being stored
+   * @param startNanos    when the store started, from {@link System#nanoTime()}
+   * @param deadlineNanos when the store must be finished by, from {@link System#nanoTime()}
+   * @return whether the file was stored in time
+   * @throws InterruptedException if the wait is interrupted
+   */
+  private boolean awaitStored(IndexedFile file, long startNanos, long deadlineNanos)
+      throws InterruptedException {
+    if (!file.getStoreLatch().await(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+      Logger.error("Store operation timeout for file {}", file.getName());
+      markGone(file);
+      return false;
+    }
+
+    markStored(file, startNanos);
+    return true;
+  }
+
+  /**
+   * Marks a file that a write quorum of Dstores has stored as available.
+   *
+   * @param file       the file
+   * @param startNanos when the store started, from {@link System#nanoTime()}
+   */
+  private void markStored(IndexedFile file, long startNanos) {
+    file.setState(IndexedFileState.AVAILABLE);
+    services.getChangeFeedService().publish(Protocol.STORE_COMPLETE, file.getName());
+    services.getMetricsService().record("store.latency-ms",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+    Logger.info("Store complete for {}", file.getName());
+  }
+
+  /**
+   * Waits for the rest of a stored file's Dstores to store it, and repairs the file if some do not
+   * before the deadline.
+   *
+   * @param file          the file, which a write quorum of Dstores has stored
+   * @param deadlineNanos when the store must be finished by, from {@link System#nanoTime()}
+   * @throws InterruptedException if the wait is interrupted
+   */
+  private void awaitReplicas(IndexedFile file, long deadlineNanos) throws InterruptedException {
+    // the client has its answer, but the remaining copies still have until the deadline
+    if (!file.getReplicaLatch().await(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+      handleLateReplicas(file);
+    }
+  }
+
+  /**
+   * Drops the Dstores that did not store a file in time from its list, and queues the file to be
+   * copied to other Dstores instead.
+   *
+   * @param file the file, which a write quorum of Dstores has stored
+   */
+  private void handleLateReplicas(IndexedFile file) {
+    var late = file.getDstores().stream().filter(file::isStorePending).toList();
+
+    Logger.warn("{} did not store {} in time, repairing it", late, file.getName());
+    late.forEach(d -> dropReplica(file, d));
+    file.clearPendingStores();
+    services.getMetricsService().add("store.late-replicas", late.size());
+
+    services.getRepairService().enqueue(List.of(file));
+  }
+
+  /**
+   * Removes a file by name.
    *
    * @param fileName the name of the file
    * @param client   the client that requested the removal
@@ -131,7 +365,8 @@ public class IndexService {
   }
 
   /**
-   * Removes a file, contacting any Dstores that have it to remove the file as well.
+   * Removes a file. The client is answered as soon as a tombstone has been recorded, and the
+   * {@link TombstoneService} deletes the copies on the Dstores in the background.
    *
    * @param file   the file
    * @param client the client that requested the removal
@@ -139,104 +374,118 @@ public class IndexService {
    */
   public synchronized FileOperationResult removeFile(IndexedFile file,
       ControllerConnectionHandler client) {
-    if (file.getState() == IndexedFileState.REMOVE_IN_PROGRESS) {
-      return FileOperationResult.FILE_ALREADY_REMOVING;
-    } else if (file.getState() != IndexedFileState.AVAILABLE) {
+    if (file.getState() != IndexedFileState.AVAILABLE) {
       return FileOperationResult.FILE_NOT_EXISTS;
     }
 
-    services.getBlockingOperationsService().startRemove();
     Logger.info("Removing file {}", file.getName());
 
-    file.startRemove();
-    var dstoreHandlers = file.getDstores().stream().map(DstoreModel::getHandler).toList();
-
-    Runnable removeOperation = () -> {
-      for (var handler : dstoreHandlers) {
-        handler.send(new RemoveMessage(file.getName()));
-      }
+    markGone(file);
+    services.getTombstoneService().add(file);
+    services.getLeaseService().invalidate(file);
+    services.getChangeFeedService().publish(Protocol.REMOVE_COMPLETE, file.getName());
+    client.send(new RemoveCompleteMessage());
 
-      try {
-        var success = file.getRemoveLatch()
-            .await(services.getController().getTimeoutMs(), TimeUnit.MILLISECONDS);
+    return FileOperationResult.SUCCESS;
+  }
 
-        if (!success) {
-          Logger.error("Remove operation timeout for file {}", file.getName());
-          file.setState(IndexedFileState.AVAILABLE);
-          return;
-        }
+  /**
+   * Removes many files in one pass, for a bulk remove. Files that are not available are skipped.
+   * The client is not answered, so that it can be sent one reply for all of the files.
+   *
+   * @param files the files to remove
+   * @return the files that were removed
+   */
+  public synchronized List<IndexedFile> removeFiles(Collection<IndexedFile> files) {
+    var removed = new ArrayList<IndexedFile>();
 
-        file.setState(IndexedFileState.GONE);
-        client.send(new RemoveCompleteMessage());
-      } catch (InterruptedException e) {
-        Logger.error("Remove operation interrupted for file {}", file.getName());
-        file.setState(IndexedFileState.AVAILABLE);
-      } finally {
-        services.getBlockingOperationsService().finishRemove();
+    for (var file : files) {
+      if (file.getState() != IndexedFileState.AVAILABLE) {
+        continue;
       }
-    };
 
-    new Thread(removeOperation, "CLR IS File " + file.getName() + " remove operation").start();
-    return FileOperationResult.SUCCESS;
+      markGone(file);
+      services.getTombstoneService().add(file);
+      services.getLeaseService().invalidate(file);
+      services.getChangeFeedService().publish(Protocol.REMOVE_COMPLETE, file.getName());
+      removed.add(file);
+    }
+
+    Logger.info("Removed {} of {} files in bulk", removed.size(), files.size());
+    return removed;
   }
 
   /**
    * Removes a Dstore from the index, changing all files that are stored on it to remove the
-   * reference to this store.
+   * reference to this store. The files are then queued to be copied to other Dstores.
    *
    * @param dstore the Dstore that is being removed
    */
   public void removeDstore(DstoreModel dstore) {
     Logger.info("Removing Dstore {} from all files that reference it", dstore);
-    getFilesByDstore(dstore).forEach(f -> f.removeDstore(dstore));
+    var files = getFilesByDstore(dstore);
+    files.forEach(f -> dropReplica(f, dstore));
+    services.getTombstoneService().removeDstore(dstore);
+
+    services.getRepairService().enqueue(files);
   }
 
   /**
-   * Handles a Dstore acknowledging a successful store operation.
+   * Records that a Dstore no longer has a copy of a file, and ends the leases clients hold on the
+   * file's locations.
    *
-   * @param name the name of the file
+   * @param file   the file
+   * @param dstore the Dstore that no longer has a copy
    */
-  public void acknowledgeSuccessfulStore(String name) {
-    var file = getFileByName(name);
+  void dropReplica(IndexedFile file, DstoreModel dstore) {
+    file.removeDstore(dstore);
+    services.getLeaseService().invalidate(file);
 
-    if (file == null) {
-      Logger.error("Cannot successfully store nonexistent file {}", name);
-      return;
+    // the file was lost with its last copy
+    if (file.getState() == IndexedFileState.GONE) {
+      forget(file);
     }
+  }
 
-    Logger.info("Successful store for file {} (latch +1)", name);
-    file.getStoreLatch().countDown();
+  /**
+   * Marks a file as gone and drops it from the index.
+   *
+   * @param file the file
+   */
+  private void markGone(IndexedFile file) {
+    file.setState(IndexedFileState.GONE);
+    forget(file);
   }
 
   /**
-   * Handles a Dstore acknowledging a successful remove operation.
+   * Drops a file that is gone from the index. A newer file stored under the same name is kept.
    *
-   * @param name       the name of the file
-   * @param dstorePort the port of the Dstore that has removed the file
+   * @param file the file
    */
-  public void acknowledgeSuccessfulRemove(String name, int dstorePort) {
-    var file = getFileByName(name);
+  private void forget(IndexedFile file) {
+    filesByName.remove(getNameKey(file.getName()), file);
 
-    if (file == null) {
-      Logger.error("Cannot successfully remove nonexistent file {}", name);
-      return;
+    synchronized (this) {
+      index.remove(file);
     }
+  }
 
-    var dstore = services.getDstoreService().getDstore(dstorePort);
-
-    if (dstore == null) {
-      Logger.warn("Received RemoveAck message from a Dstore we do not know about, ignoring.");
-      return;
-    }
+  /**
+   * Handles a Dstore acknowledging a successful store operation.
+   *
+   * @param name       the name of the file
+   * @param dstorePort the port of the Dstore that has stored the file
+   */
+  public void acknowledgeSuccessfulStore(String name, int dstorePort) {
+    var file = getFileByName(name);
 
-    if (!file.getDstores().contains(dstore)) {
-      Logger.warn("Dstore acknowledged removal for orphaned file, ignoring it");
+    if (file == null) {
+      Logger.error("Cannot successfully store nonexistent file {}", name);
       return;
     }
 
-    Logger.info("Successful remove for file {} (latch +1)", name);
-    file.getDstores().remove(dstore);
-    file.getRemoveLatch().countDown();
+    Logger.info("Successful store for file {} (latch +1)", name);
+    file.acknowledgeStore(dstorePort);
   }
 
   /**
@@ -247,7 +496,7 @@ public class IndexService {
    * @return whether the file exists
    */
   public synchronized boolean fileExists(String name) {
-    return getAllFiles().stream().anyMatch(f -> f.getName().equalsIgnoreCase(name));
+    return getFileByName(name) != null;
   }
 
   /**
@@ -287,8 +536,8 @@ public class IndexService {
    * @return the file, or null if it does not exist
    */
   public IndexedFile getAvailableFileByName(String name) {
-    return getFiles().stream().filter(f -> f.getName().equalsIgnoreCase(name))
-        .findFirst().orElse(null);
+    var file = filesByName.get(getNameKey(name));
+    return file != null && file.getState() == IndexedFileState.AVAILABLE ? file : null;
   }
 
   /**
@@ -298,8 +547,58 @@ public class IndexService {
    * @return the file, or null if it does not exist
    */
   public IndexedFile getFileByName(String name) {
-    return getAllFiles().stream().filter(f -> f.getName().equalsIgnoreCase(name))
-        .findFirst().orElse(null);
+    var file = filesByName.get(getNameKey(name));
+    return file != null && file.getState() != IndexedFileState.GONE ? file : null;
+  }
+
+  /**
+   * Returns the available files whose names start with a prefix, ignoring case.
+   *
+   * @param prefix the prefix
+   * @return the files
+   */
+  public List<IndexedFile> getAvailableFilesByPrefix(String prefix) {
+    return getAvailableFilesPage(prefix, null, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns a page of the available files whose names start with a prefix, in order of their
+   * {@link #getNameKey(String) name keys}. Only the part of the sorted index that holds the page
+   * is visited, so the cost is in proportion to the page rather than to the whole index.
+   *
+   * @param prefix the prefix, which may be empty
+   * @param after  the name key of the last file on the previous page, or null for the first page
+   * @param limit  the most files to return
+   * @return the files
+   */
+  public List<IndexedFile> getAvailableFilesPage(String prefix, String after, int limit) {
+    var key = getNameKey(prefix);
+    var range = after != null && after.compareTo(key) >= 0
+        ? filesByName.tailMap(after, false) : filesByName.tailMap(key, true);
+    var page = new ArrayList<IndexedFile>();
+
+    for (var entry : range.entrySet()) {
+      if (page.size() >= limit || !entry.getKey().startsWith(key)) {
+        break;
+      }
+
+      if (entry.getValue().getState() == IndexedFileState.AVAILABLE) {
+        page.add(entry.getValue());
+      }
+    }
+
+    return page;
+  }
+
+  /**
+   * Returns the key a file name is stored under in {@link #filesByName}, and in other maps keyed
+   * by file name. File names are not case sensitive.
+   *
+   * @param name the name of the file
+   * @return the key
+   */
+  public static String getNameKey(String name) {
+    return name.toLowerCase(Locale.ROOT);
   }
 
   /**
@@ -329,8 +628,10 @@ public class IndexService {
       loadOperations.remove(op);
     }
 
-    op = new LoadOperation(file, client);
+    op = new LoadOperation(file, client,
+        services.getReadRepairService().getSuspectDstores(file));
     loadOperations.add(op);
+    file.recordLoad();
 
     Logger.info("Started new load operation for file {}", op.getFile());
     return op;
@@ -361,15 +662,106 @@ public class IndexService {
   }
 
   /**
-   * Refreshes the indexed file list with the real state of affairs from each Dstore.
+   * Refreshes the indexed file list with the real state of affairs from each Dstore. By default
+   * this compares digests of the files each Dstore has, rather than asking for every file list.
    *
    * @throws InterruptedException if the operation is interrupted
    * @returns whether all Dstores responded
    */
   public boolean refreshFileList() throws InterruptedException {
-    var allResponses = true;
     Logger.info("File index refresh operation requested");
 
+    if (Settings.getBoolean(Settings.CONTROLLER_RECONCILE_DIGEST, true)) {
+      return refreshFileListByDigest();
+    }
+
+    return refreshFileListByList();
+  }
+
+  /**
+   * Refreshes the indexed file list by comparing a {@link FileDigestTree} of the files we expect
+   * each Dstore to have with the Dstore's own tree. The Dstores are reconciled in parallel.
+   *
+   * @throws InterruptedException if the operation is interrupted
+   * @returns whether all Dstores responded
+   */
+  private boolean refreshFileListByDigest() throws InterruptedException {
+    var dstores = services.getDstoreService().getAllDstores();
+    var expectedFiles = new HashMap<DstoreModel, Map<String, IndexedFile>>();
+    dstores.forEach(d -> expectedFiles.put(d, new HashMap<>()));
+
+    for (var file : getFiles()) {
+      for (var dstore : file.getDstores()) {
+        var files = expectedFiles.get(dstore);
+        if (files != null) {
+          files.put(file.getName(), file);
+        }
+      }
+    }
+
+    var deadline = System.nanoTime()
+        + TimeUnit.MILLISECONDS.toNanos(services.getController().getTimeoutMs());
+    var missingFiles = new ConcurrentHashMap<DstoreModel, Set<IndexedFile>>();
+    var failedDstores = ConcurrentHashMap.<DstoreModel>newKeySet();
+    var latch = new CountDownLatch(dstores.size());
+
+    for (var dstore : dstores) {
+      var reconciliation = new DstoreDigestReconciliation(dstore, expectedFiles.get(dstore));
+      digestReconciliations.put(dstore.getPort(), reconciliation);
+
+      Runnable task = () -> {
+        try {
+          var missing = reconciliation.run(deadline);
+          if (missing != null) {
+            missingFiles.put(dstore, missing);
+          } else {
+            // the Dstore is alive but out of step, so it is checked again next time
+            failedDstores.add(dstore);
+          }
+        } catch (TimeoutException e) {
+          Logger.warn("{} did not reply to digest requests in time", dstore);
+        } catch (InterruptedException e) {
+          Logger.error("Digest reconciliation of {} interrupted", dstore);
+        } finally {
+          digestReconciliations.remove(dstore.getPort());
+          latch.countDown();
+        }
+      };
+
+      new Thread(task, "CLR IS Digest Reconciliation " + dstore.getPort()).start();
+    }
+
+    // every reconciliation gives up at the deadline, so this does not wait much longer
+    latch.await();
+
+    var lostDstores = dstores.stream()
+        .filter(d -> !missingFiles.containsKey(d) && !failedDstores.contains(d)).toList();
+    if (!lostDstores.isEmpty()) {
+      Logger.warn("Not all Dstores replied in time!");
+      lostDstores.forEach(this::removeDstore);
+    }
+
+    missingFiles.forEach((dstore, files) -> {
+      Logger.info("Reconciliation for Dstore {}, {} files missing", dstore, files.size());
+      files.forEach(f -> {
+        Logger.info("Reconciliation discrepancy: {} does not have {} but we do", dstore,
+            f.getName());
+        dropReplica(f, dstore);
+      });
+    });
+
+    return lostDstores.isEmpty();
+  }
+
+  /**
+   * Refreshes the indexed file list by asking every Dstore for its full file list.
+   *
+   * @throws InterruptedException if the operation is interrupted
+   * @returns whether all Dstores responded
+   */
+  private boolean refreshFileListByList() throws InterruptedException {
+    var allResponses = true;
+
     if (refreshLatch != null) {
       Logger.warn("cannot start a file refresh request when one is already running");
     }
@@ -396,14 +788,15 @@ public class IndexService {
 
     for (ReportedDstoreFileList state : refreshFileLists) {
       var indexState = getFilesByDstore(state.getDstore());
+      var reportedFiles = new HashSet<>(state.getFiles());
       Logger.info("Reconciliation for Dstore {}, reported file count {}, indexed count {}",
-          state.getDstore(), state.getFiles().size(), indexState.size());
+          state.getDstore(), reportedFiles.size(), indexState.size());
 
       // files we have but the Dstore does not
-      indexState.stream().filter(f -> !state.getFiles().contains(f)).forEach(f -> {
+      indexState.stream().filter(f -> !reportedFiles.contains(f)).forEach(f -> {
         Logger.info("Reconciliation discrepancy: {} does not have {} but we do", state.getDstore(),
             f.getName());
-        f.removeDstore(state.getDstore());
+        dropReplica(f, state.getDstore());
       });
 
       Logger.info("Reconciled {}", state.getDstore());
@@ -415,6 +808,22 @@ public class IndexService {
     return allResponses;
   }
 
+  /**
+   * Handles a Dstore's reply to a digest reconciliation request.
+   *
+   * @param dstore  the Dstore that replied
+   * @param message the reply
+   */
+  public void handleDigestReply(DstoreModel dstore, Message message) {
+    var reconciliation = digestReconciliations.get(dstore.getPort());
+    if (reconciliation == null) {
+      Logger.info("Got a digest reply without a reconciliation to match it to. Is it too late?");
+      return;
+    }
+
+    reconciliation.handleReply(message);
+  }
+
   /**
    * Handles a Dstore's file list.
    *
@@ -442,50 +851,76 @@ public class IndexService {
 
   /**
    * Counts down the completion latch in the current rebalance operation.
+   *
+   * @param dstore the Dstore that completed part of the rebalance
+   * @param chunk  the chunk of the plan that was completed, or 0 if it was sent whole
    */
-  public void handleRebalanceComplete(DstoreModel dstore) {
+  public void handleRebalanceComplete(DstoreModel dstore, int chunk) {
     if (currentRebalanceOperation == null) {
       Logger.info("Cannot complete a rebalance that is not running.");
       return;
     }
 
-    currentRebalanceOperation.handleCompleteMessage(dstore);
+    currentRebalanceOperation.handleCompleteMessage(dstore, chunk);
   }
 
   /**
-   * Request an ad-hoc rebalance operation is started on a new thread.
+   * Commits one reported step of a rebalance to the index. Steps are committed as soon as they
+   * are reported, so the work a Dstore has done is kept even if the rebalance it was part of
+   * times out before the Dstore finishes.
+   *
+   * @param dstore   the Dstore that reported the progress
+   * @param progress the progress message
    */
-  public void runAdHocRebalance() {
-    try {
-      services.getBlockingOperationsService().startRebalance();
-    } catch (AlreadyRebalancingException e) {
-      Logger.info("Refusing to start rebalancing as one is already happening.");
+  public void handleRebalanceProgress(DstoreModel dstore, RebalanceProgressMessage progress) {
+    var file = getFileByName(progress.getFileName());
+    if (file == null || file.getState() != IndexedFileState.AVAILABLE) {
+      Logger.warn("Ignoring rebalance progress for file {} which is not available",
+          progress.getFileName());
       return;
-    } catch (InterruptedException e) {
-      Logger.error("Rebalance operation interrupted. This will probably lead to errors!");
+    }
+
+    if (RebalanceProgressMessage.REMOVED.equals(progress.getAction())) {
+      Logger.info("Committing removal of {} from {}", file.getName(), dstore);
+      dropReplica(file, dstore);
+      services.getMetricsService().increment("rebalance.removals-committed");
+      return;
+    }
+
+    var target = services.getDstoreService().getDstore(progress.getPort());
+    if (target == null) {
+      Logger.warn("Ignoring rebalance progress to unknown Dstore at port {}", progress.getPort());
       return;
     }
 
-    Logger.info("Submitting ad-hoc rebalance task");
-    new Thread(getNewRebalanceOperation(), "CLR IS Ad-Hoc Rebalance Task").start();
+    Logger.info("Committing copy of {} to {}", file.getName(), target);
+    file.addDstore(target);
+    services.getMetricsService().increment("rebalance.copies-committed");
+    services.getRepairService().handleCopied(file, target);
   }
 
   /**
-   * Request a scheduled rebalance operation is started on a new thread.
+   * Starts a rebalance operation on a new thread, unless one is already running. This blocks until
+   * any running store and remove operations have finished.
+   *
+   * @param trigger why the rebalance is being started, for the logs
+   * @return whether the rebalance was started
+   * @see RebalanceScheduler
    */
-  private void runScheduledRebalance() {
+  public boolean startRebalance(String trigger) {
     try {
       services.getBlockingOperationsService().startRebalance();
     } catch (AlreadyRebalancingException e) {
       Logger.info("Refusing to start rebalancing as one is already happening.");
-      return;
+      return false;
     } catch (InterruptedException e) {
       Logger.error("Rebalance operation interrupted. This will probably lead to errors!");
-      return;
+      return false;
     }
 
-    Logger.info("Submitting scheduled rebalance task");
-    new Thread(getNewRebalanceOperation(), "CLR IS Scheduled Rebalance Task").start();
+    Logger.info("Submitting rebalance task ({})", trigger);
+    new Thread(getNewRebalanceOperation(), "CLR IS Rebalance Task").start();
+    return true;
   }
 
   /**
@@ -1,7 +1,11 @@
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A centrally indexed file.
@@ -10,6 +14,12 @@ import java.util.concurrent.CountDownLatch;
  */
 public class IndexedFile {
 
+  /**
+   * The next version given to a file, shared by all files so that a file that is removed and
+   * stored again never reuses a version.
+   */
+  private static final AtomicLong NEXT_VERSION = new AtomicLong();
+
   /**
    * The name of the file.
    */
@@ -26,14 +36,20 @@ public class IndexedFile {
   private final List<DstoreModel> dstores = new ArrayList<>();
 
   /**
-   * The latch that determines when the store operation has finished for this file.
+   * The latch that determines when the store operation has finished for this file, which is when
+   * enough Dstores to make a write quorum have stored it.
    */
   private final CountDownLatch storeLatch;
 
   /**
-   * The latch that determines when the file has been completely removed.
+   * The latch that determines when every Dstore the file was sent to has stored it.
    */
-  private CountDownLatch removeLatch;
+  private final CountDownLatch replicaLatch;
+
+  /**
+   * The ports of the Dstores the file was sent to that have not acknowledged storing it yet.
+   */
+  private final Set<Integer> pendingStores = new HashSet<>();
 
   /**
    * When the file was created.
@@ -45,20 +61,58 @@ public class IndexedFile {
    */
   private IndexedFileState state;
 
+  /**
+   * The number of copies of the file there should be, chosen when it was stored.
+   */
+  private final int replicationFactor;
+
+  /**
+   * The number of copies wanted on top of the replication factor, because the file is hot.
+   */
+  private volatile int extraReplicas = 0;
+
+  /**
+   * The number of loads of the file since its load rate was last updated.
+   */
+  private final AtomicInteger recentLoads = new AtomicInteger();
+
+  /**
+   * The moving average of the number of loads of the file per second.
+   */
+  private volatile double loadRate = 0;
+
+  /**
+   * The version of the file's locations, which changes whenever a Dstore gains or loses a copy.
+   */
+  private volatile long version = NEXT_VERSION.incrementAndGet();
+
+  /**
+   * The size in bytes of each part of the file if it was stored in parts, or 0 if it was stored
+   * whole. The last part may be shorter.
+   */
+  private volatile int partSize = 0;
+
   /**
    * Creates a new file, with a store latch and the {@link IndexedFileState#STORE_IN_PROGRESS}
    * state.
    *
-   * @param name    the name of the file
-   * @param size    the size in bytes of the file
-   * @param dstores the list of Dstores that will initially hold this file
+   * @param name              the name of the file
+   * @param size              the size in bytes of the file
+   * @param dstores           the list of Dstores that will initially hold this file
+   * @param replicationFactor the number of copies of the file there should be
+   * @param writeQuorum       the number of Dstores that must store the file before the store
+   *                          operation has finished
    */
-  public IndexedFile(String name, int size, List<DstoreModel> dstores) {
+  public IndexedFile(String name, int size, List<DstoreModel> dstores, int replicationFactor,
+      int writeQuorum) {
     this.name = name;
     this.size = size;
+    this.replicationFactor = replicationFactor;
     this.dstores.addAll(dstores);
 
-    this.storeLatch = new CountDownLatch(this.dstores.size());
+    this.storeLatch = new CountDownLatch(Math.min(writeQuorum, this.dstores.size()));
+    this.replicaLatch = new CountDownLatch(this.dstores.size());
+    this.dstores.forEach(d -> pendingStores.add(d.getPort()));
     this.state = IndexedFileState.STORE_IN_PROGRESS;
   }
 
@@ -77,10 +131,11 @@ public class IndexedFile {
   }
 
   /**
-   * Returns the Dstores that have this file.
+   * Returns a copy of the Dstores that have this file, so that it can be read while Dstores are
+   * added and removed.
    */
-  public List<DstoreModel> getDstores() {
-    return dstores;
+  public synchronized List<DstoreModel> getDstores() {
+    return List.copyOf(dstores);
   }
 
   /**
@@ -91,34 +146,55 @@ public class IndexedFile {
   }
 
   /**
-   * Returns the state of this file.
+   * Returns the latch that is released when every Dstore the file was sent to has stored it.
    */
-  public synchronized IndexedFileState getState() {
-    return state;
+  public CountDownLatch getReplicaLatch() {
+    return replicaLatch;
   }
 
   /**
-   * Sets the state of this file.
+   * Handles a Dstore acknowledging that it has stored this file. Acknowledgements from Dstores
+   * that are not expected to, or have already, are ignored.
    *
-   * @param state the new state
+   * @param dstorePort the port of the Dstore
    */
-  public synchronized void setState(IndexedFileState state) {
-    this.state = state;
+  public synchronized void acknowledgeStore(int dstorePort) {
+    if (pendingStores.remove(dstorePort)) {
+      storeLatch.countDown();
+      replicaLatch.countDown();
+    }
+  }
+
+  /**
+   * Returns whether the file has been sent to a Dstore which has not acknowledged storing it yet.
+   *
+   * @param dstore the Dstore
+   */
+  public synchronized boolean isStorePending(DstoreModel dstore) {
+    return pendingStores.contains(dstore.getPort());
   }
 
   /**
-   * Records the initiation of the removal of this file.
+   * Stops waiting for any Dstores to acknowledge storing the file.
    */
-  public synchronized void startRemove() {
-    setState(IndexedFileState.REMOVE_IN_PROGRESS);
-    removeLatch = new CountDownLatch(dstores.size());
+  public synchronized void clearPendingStores() {
+    pendingStores.clear();
   }
 
   /**
-   * Returns the remove latch.
+   * Returns the state of this file.
+   */
+  public synchronized IndexedFileState getState() {
+    return state;
+  }
+
+  /**
+   * Sets the state of this file.
+   *
+   * @param state the new state
    */
-  public CountDownLatch getRemoveLatch() {
-    return removeLatch;
+  public synchronized void setState(IndexedFileState state) {
+    this.state = state;
   }
 
   /**
@@ -127,7 +203,10 @@ public class IndexedFile {
    * @param dstore the dstore that now holds the file
    */
   public synchronized void addDstore(DstoreModel dstore) {
-    dstores.add(dstore);
+    if (!dstores.contains(dstore)) {
+      dstores.add(dstore);
+      version = NEXT_VERSION.incrementAndGet();
+    }
   }
 
   /**
@@ -136,11 +215,99 @@ public class IndexedFile {
    * @param dstore the dstore that no longer holds this file
    */
   public synchronized void removeDstore(DstoreModel dstore) {
-    dstores.remove(dstore);
+    if (dstores.remove(dstore)) {
+      version = NEXT_VERSION.incrementAndGet();
+    }
 
     if (dstores.size() < 1) {
       Logger.warn("File {} has been lost as no Dstores have a copy, so marking as gone", getName());
       setState(IndexedFileState.GONE);
     }
   }
+
+  /**
+   * Returns the number of copies wanted on top of the replication factor.
+   */
+  public int getExtraReplicas() {
+    return extraReplicas;
+  }
+
+  /**
+   * Sets the number of copies wanted on top of the replication factor.
+   *
+   * @param extraReplicas the number of extra copies
+   */
+  public void setExtraReplicas(int extraReplicas) {
+    this.extraReplicas = extraReplicas;
+  }
+
+  /**
+   * Returns the number of copies of the file there should be, chosen when it was stored.
+   */
+  public int getReplicationFactor() {
+    return replicationFactor;
+  }
+
+  /**
+   * Returns the number of copies of the file there should be, including any extra copies for a
+   * hot file.
+   */
+  public int getReplicaTarget() {
+    return replicationFactor + extraReplicas;
+  }
+
+  /**
+   * Records that a client has started loading the file.
+   */
+  public void recordLoad() {
+    recentLoads.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of loads since the last call, and starts counting again.
+   */
+  public int takeRecentLoads() {
+    return recentLoads.getAndSet(0);
+  }
+
+  /**
+   * Returns the moving average of the number of loads of the file per second.
+   */
+  public double getLoadRate() {
+    return loadRate;
+  }
+
+  /**
+   * Sets the moving average of the number of loads of the file per second.
+   *
+   * @param loadRate the loads per second
+   */
+  public void setLoadRate(double loadRate) {
+    this.loadRate = loadRate;
+  }
+
+  /**
+   * Returns the version of the file's locations, which changes whenever a Dstore gains or loses a
+   * copy.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns the size in bytes of each part of the file if it was stored in parts, or 0 if it was
+   * stored whole.
+   */
+  public int getPartSize() {
+    return partSize;
+  }
+
+  /**
+   * Sets the size in bytes of each part of the file.
+   *
+   * @param partSize the size of each part, or 0 if the file is stored whole
+   */
+  public void setPartSize(int partSize) {
+    this.partSize = partSize;
+  }
 }
@@ -13,11 +13,6 @@ public enum IndexedFileState {
    */
   AVAILABLE,
 
-  /**
-   * Files where a remove operation is in progress.
-   */
-  REMOVE_IN_PROGRESS,
-
   /**
    * Files that are no longer stored anywhere we know of. This is also known in some places as
    * REMOVE_COMPLETE.
@@ -0,0 +1,38 @@
+/**
+ * A message telling a client that the locations of a file it holds a lease on have changed, so it
+ * should stop using them. This is an extension to the specification.
+ *
+ * @author George Peppard
+ */
+public class InvalidateMessage extends Message {
+
+  private final String fileName;
+  private final long version;
+
+  public InvalidateMessage(String fileName, long version) {
+    super(Protocol.INVALIDATE);
+
+    this.fileName = fileName;
+    this.version = version;
+  }
+
+  public static InvalidateMessage parse(String[] args) {
+    return new InvalidateMessage(args[0], Long.parseLong(args[1]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName + " " + version;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  /**
+   * Returns the version of the file's locations after the change.
+   */
+  public long getVersion() {
+    return version;
+  }
+}
@@ -0,0 +1,159 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service that gives clients leases on the locations of files, so that they can cache them and
+ * load straight from the Dstores without asking the controller each time. A client that is sent
+ * the locations of a file with LOCATE may use them until its lease expires. If a copy the client
+ * may be using is removed before then, such as by a REMOVE or a rebalance, the client is sent an
+ * INVALIDATE message and should drop the file from its cache. Copies being added do not invalidate
+ * leases, as the cached locations are still correct. An INVALIDATE can overtake the reply to a
+ * LOCATE, so a client should ignore locations older than the version of an INVALIDATE it has seen.
+ * INVALIDATE messages are sent on a thread of their own, as leases are ended while the index is
+ * locked and a client that has stopped reading must not hold it up. Expired leases are pruned in
+ * the background, so files that are never located again do not keep them.
+ *
+ * @author George Peppard
+ */
+public class LeaseService {
+
+  /**
+   * The default length of a lease, in milliseconds.
+   */
+  private static final long DEFAULT_DURATION_MS = 10000;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The length of a lease, in milliseconds.
+   */
+  private final long durationMs = Math.max(0,
+      Settings.getLong(Settings.CONTROLLER_LEASE_DURATION_MS, DEFAULT_DURATION_MS));
+
+  /**
+   * When each client's lease on each file expires, in milliseconds, by lower case file name.
+   */
+  private final Map<String, Map<ControllerConnectionHandler, Long>> leases =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The executor that sends INVALIDATE messages.
+   */
+  private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+    var thread = new Thread(r, "CLR Lease Invalidator");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * The executor that prunes expired leases.
+   */
+  private final ScheduledExecutorService pruner = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "CLR Lease Pruner");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * Initialises the service.
+   *
+   * @param services the service container
+   */
+  public LeaseService(ControllerServiceContainer services) {
+    this.services = services;
+
+    var periodMs = Math.max(1000, durationMs);
+    pruner.scheduleWithFixedDelay(this::prune, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    services.getMetricsService().registerGauge("lease.files", leases::size);
+  }
+
+  /**
+   * Gives a client a lease on the locations of a file, replacing any it already has.
+   *
+   * @param client the client
+   * @param file   the file
+   * @return the length of the lease in milliseconds
+   */
+  public long grant(ControllerConnectionHandler client, IndexedFile file) {
+    var now = System.currentTimeMillis();
+
+    // done in one step, so that the lease cannot land in a map that invalidate() has just removed
+    leases.compute(IndexService.getNameKey(file.getName()), (key, holders) -> {
+      if (holders == null) {
+        holders = new ConcurrentHashMap<>();
+      }
+
+      holders.values().removeIf(expiry -> expiry <= now);
+      holders.put(client, now + durationMs);
+      return holders;
+    });
+
+    services.getMetricsService().increment("lease.granted");
+    return durationMs;
+  }
+
+  /**
+   * Ends every lease on a file whose locations are no longer all correct, and queues an INVALIDATE
+   * for each client that still holds one. This never blocks on a client.
+   *
+   * @param file the file
+   */
+  public void invalidate(IndexedFile file) {
+    var holders = leases.remove(IndexService.getNameKey(file.getName()));
+    if (holders == null) {
+      return;
+    }
+
+    var now = System.currentTimeMillis();
+    var message = new InvalidateMessage(file.getName(), file.getVersion());
+    var clients = holders.entrySet().stream().filter(e -> e.getValue() > now)
+        .map(Map.Entry::getKey).toList();
+    if (clients.isEmpty()) {
+      return;
+    }
+
+    sender.execute(() -> clients.forEach(client -> {
+      client.send(message);
+      services.getMetricsService().increment("lease.invalidated");
+    }));
+  }
+
+  /**
+   * Drops every lease held by a client, such as when it disconnects.
+   *
+   * @param client the client
+   */
+  public void release(ControllerConnectionHandler client) {
+    for (var key : leases.keySet()) {
+      leases.computeIfPresent(key, (k, holders) -> {
+        holders.remove(client);
+        return holders.isEmpty() ? null : holders;
+      });
+    }
+  }
+
+  /**
+   * Drops every expired lease, and the files that no longer have any.
+   */
+  private void prune() {
+    try {
+      var now = System.currentTimeMillis();
+      for (var key : leases.keySet()) {
+        leases.computeIfPresent(key, (k, holders) -> {
+          holders.values().removeIf(expiry -> expiry <= now);
+          return holders.isEmpty() ? null : holders;
+        });
+      }
+    } catch (RuntimeException e) {
+      Logger.error("Failed to prune expired leases: {}", e.getMessage());
+    }
+  }
+}
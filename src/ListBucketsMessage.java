@@ -0,0 +1,36 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A message from the controller asking a Dstore for the files in some buckets of its
+ * {@link FileDigestTree}.
+ *
+ * @author George Peppard
+ */
+public class ListBucketsMessage extends Message {
+
+  private final List<Integer> buckets;
+
+  public ListBucketsMessage(List<Integer> buckets) {
+    super(Protocol.LIST_BUCKETS);
+
+    this.buckets = buckets;
+  }
+
+  public static ListBucketsMessage parse(String[] args) {
+    var count = Integer.parseInt(args[0]);
+    return new ListBucketsMessage(
+        Arrays.stream(args, 1, 1 + count).map(Integer::parseInt).toList());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + buckets.size() + " " + buckets.stream().map(String::valueOf)
+        .collect(Collectors.joining(" "));
+  }
+
+  public List<Integer> getBuckets() {
+    return buckets;
+  }
+}
@@ -0,0 +1,31 @@
+import java.util.Map;
+
+/**
+ * A message from a Dstore containing the name and size of every file it has in the buckets the
+ * controller asked for.
+ *
+ * @author George Peppard
+ */
+public class ListBucketsResponseMessage extends Message {
+
+  private final Map<String, Integer> files;
+
+  public ListBucketsResponseMessage(Map<String, Integer> files) {
+    super(Protocol.LIST_BUCKETS);
+
+    this.files = files;
+  }
+
+  public static ListBucketsResponseMessage parse(String[] args) {
+    return new ListBucketsResponseMessage(RebalanceResumeMessage.parsePairs(args));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + RebalanceResumeMessage.formatPairs(files);
+  }
+
+  public Map<String, Integer> getFiles() {
+    return files;
+  }
+}
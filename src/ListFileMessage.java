@@ -0,0 +1,28 @@
+/**
+ * A message from the controller asking a Dstore whether it has a readable copy of one file.
+ *
+ * @author George Peppard
+ */
+public class ListFileMessage extends Message {
+
+  private final String fileName;
+
+  public ListFileMessage(String fileName) {
+    super(Protocol.LIST_FILE);
+
+    this.fileName = fileName;
+  }
+
+  public static ListFileMessage parse(String[] args) {
+    return new ListFileMessage(args[0]);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+}
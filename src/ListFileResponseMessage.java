@@ -0,0 +1,35 @@
+/**
+ * A message from a Dstore containing the size of its copy of a file on disk, or -1 if it does not
+ * have a copy.
+ *
+ * @author George Peppard
+ */
+public class ListFileResponseMessage extends Message {
+
+  private final String fileName;
+  private final long size;
+
+  public ListFileResponseMessage(String fileName, long size) {
+    super(Protocol.LIST_FILE);
+
+    this.fileName = fileName;
+    this.size = size;
+  }
+
+  public static ListFileResponseMessage parse(String[] args) {
+    return new ListFileResponseMessage(args[0], Long.parseLong(args[1]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName + " " + size;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public long getSize() {
+    return size;
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * A message asking for one page of the file list, as {@code key=value} options: {@code prefix}
+ * to only list files whose names start with it, {@code limit} for the most files on the page, and
+ * {@code after} for the continuation token from the previous page. This is an extension to the
+ * specification.
+ *
+ * @author George Peppard
+ */
+public class ListPageMessage extends Message {
+
+  private final String prefix;
+  private final int limit;
+  private final String after;
+
+  public ListPageMessage(String prefix, int limit, String after) {
+    super(Protocol.LIST_PAGE);
+
+    this.prefix = prefix;
+    this.limit = limit;
+    this.after = after;
+  }
+
+  public static ListPageMessage parse(String[] args) {
+    var prefix = "";
+    var limit = 0;
+    String after = null;
+
+    for (var arg : args) {
+      var split = arg.indexOf('=');
+      if (split < 0) {
+        throw new IllegalArgumentException("expected key=value, got " + arg);
+      }
+
+      var value = arg.substring(split + 1);
+      switch (arg.substring(0, split)) {
+        case "prefix" -> prefix = value;
+        case "limit" -> limit = Integer.parseInt(value);
+        case "after" -> after = value.isEmpty() ? null : value;
+        default -> throw new IllegalArgumentException("unknown option " + arg);
+      }
+    }
+
+    return new ListPageMessage(prefix, limit, after);
+  }
+
+  @Override
+  public String toString() {
+    var string = super.toString();
+    if (!prefix.isEmpty()) {
+      string += " prefix=" + prefix;
+    }
+
+    if (limit > 0) {
+      string += " limit=" + limit;
+    }
+
+    return after != null ? string + " after=" + after : string;
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * Returns the most files the client wants on the page, or 0 for the controller's default.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Returns the continuation token from the previous page, or null for the first page.
+   */
+  public String getAfter() {
+    return after;
+  }
+}
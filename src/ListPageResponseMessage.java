@@ -0,0 +1,37 @@
+import java.util.List;
+
+/**
+ * A message containing one page of the file list. The first argument is {@code next=token}, where
+ * the token is passed as {@code after} to get the next page, or is empty on the last page.
+ *
+ * @author George Peppard
+ */
+public class ListPageResponseMessage extends Message {
+
+  private final String next;
+  private final List<String> files;
+
+  public ListPageResponseMessage(String next, List<String> files) {
+    super(Protocol.LIST_PAGE);
+
+    this.next = next;
+    this.files = files;
+  }
+
+  @Override
+  public String toString() {
+    var string = super.toString() + " next=" + (next != null ? next : "");
+    return files.isEmpty() ? string : string + " " + String.join(" ", files);
+  }
+
+  /**
+   * Returns the continuation token for the next page, or null if this is the last page.
+   */
+  public String getNext() {
+    return next;
+  }
+
+  public List<String> getFiles() {
+    return files;
+  }
+}
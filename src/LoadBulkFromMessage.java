@@ -0,0 +1,36 @@
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A message telling a client where each of the files in a bulk load lookup can be loaded from.
+ * Each file is given as {@code name:port,size}, or as {@code name:ERROR_...} if it cannot be
+ * loaded.
+ *
+ * @author George Peppard
+ */
+public class LoadBulkFromMessage extends Message {
+
+  private final Map<String, Message> replies;
+
+  public LoadBulkFromMessage(Map<String, Message> replies) {
+    super(Protocol.LOAD_BULK_FROM);
+
+    this.replies = replies;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + replies.entrySet().stream()
+        .map(e -> e.getKey() + ":" + (e.getValue() instanceof LoadFromMessage loadFrom
+            ? loadFrom.getPort() + "," + loadFrom.getFileSize()
+            : e.getValue().toString()))
+        .collect(Collectors.joining(" "));
+  }
+
+  /**
+   * Returns the {@link LoadFromMessage} or error for each file, by name.
+   */
+  public Map<String, Message> getReplies() {
+    return replies;
+  }
+}
@@ -0,0 +1,31 @@
+import java.util.List;
+
+/**
+ * A message asking where many files can be loaded from at once. This is an extension to the
+ * specification.
+ *
+ * @author George Peppard
+ */
+public class LoadBulkMessage extends Message {
+
+  private final List<String> fileNames;
+
+  public LoadBulkMessage(List<String> fileNames) {
+    super(Protocol.LOAD_BULK);
+
+    this.fileNames = fileNames;
+  }
+
+  public static LoadBulkMessage parse(String[] args) {
+    return new LoadBulkMessage(List.of(args));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + String.join(" ", fileNames);
+  }
+
+  public List<String> getFileNames() {
+    return fileNames;
+  }
+}
@@ -1,28 +1,70 @@
 /**
- * A message requesting the data contained in a file to be sent.
+ * A message requesting the data contained in a file to be sent. As an extension to the
+ * specification, an offset and length may be given to request only part of the file.
  *
  * @author George Peppard
  */
 public class LoadDataMessage extends Message {
   
   private final String fileName;
+  private final int offset;
+  private final int length;
+  private final boolean range;
 
   public LoadDataMessage(String fileName) {
     super(Protocol.LOAD_DATA);
 
     this.fileName = fileName;
+    this.offset = -1;
+    this.length = -1;
+    this.range = false;
+  }
+
+  public LoadDataMessage(String fileName, int offset, int length) {
+    super(Protocol.LOAD_DATA);
+
+    this.fileName = fileName;
+    this.offset = offset;
+    this.length = length;
+    this.range = true;
   }
 
   public static LoadDataMessage parse(String[] args) {
+    if (args.length > 2) {
+      return new LoadDataMessage(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+    }
+
     return new LoadDataMessage(args[0]);
   }
 
   @Override
   public String toString() {
-    return super.toString() + " " + fileName;
+    var string = super.toString() + " " + fileName;
+    return isRange() ? string + " " + offset + " " + length : string;
   }
 
   public String getFileName() {
     return fileName;
   }
+
+  /**
+   * Returns whether only part of the file was requested.
+   */
+  public boolean isRange() {
+    return range;
+  }
+
+  /**
+   * Returns the offset of the first byte requested, or -1 if the whole file was requested.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns the number of bytes requested, or -1 if the whole file was requested.
+   */
+  public int getLength() {
+    return length;
+  }
 }
@@ -0,0 +1,29 @@
+/**
+ * A message asking for the Dstores to load a file from with hedged reads. This is an extension to
+ * the specification.
+ *
+ * @author George Peppard
+ */
+public class LoadHedgedMessage extends Message {
+
+  private final String fileName;
+
+  public LoadHedgedMessage(String fileName) {
+    super(Protocol.LOAD_HEDGED);
+
+    this.fileName = fileName;
+  }
+
+  public static LoadHedgedMessage parse(String[] args) {
+    return new LoadHedgedMessage(args[0]);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+}
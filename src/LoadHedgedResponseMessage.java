@@ -0,0 +1,50 @@
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * A message giving the Dstores to load a file from with hedged reads, as
+ * {@code LOAD_HEDGED size hedge-ms port...}. The client loads from the first port, and if no data
+ * has arrived after the hedge delay, it also loads from the next. The first to finish is used.
+ *
+ * @author George Peppard
+ */
+public class LoadHedgedResponseMessage extends Message {
+
+  private final int fileSize;
+  private final long hedgeMs;
+  private final int[] ports;
+
+  public LoadHedgedResponseMessage(int fileSize, long hedgeMs, int[] ports) {
+    super(Protocol.LOAD_HEDGED);
+
+    this.fileSize = fileSize;
+    this.hedgeMs = hedgeMs;
+    this.ports = ports;
+  }
+
+  public static LoadHedgedResponseMessage parse(String[] args) {
+    return new LoadHedgedResponseMessage(Integer.parseInt(args[0]), Long.parseLong(args[1]),
+        Arrays.stream(args, 2, args.length).mapToInt(Integer::parseInt).toArray());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + String.format(" %d %d ", fileSize, hedgeMs)
+        + Arrays.stream(ports).mapToObj(String::valueOf).collect(Collectors.joining(" "));
+  }
+
+  public int getFileSize() {
+    return fileSize;
+  }
+
+  /**
+   * Returns how long to wait for the first Dstore before also asking the next, in milliseconds.
+   */
+  public long getHedgeMs() {
+    return hedgeMs;
+  }
+
+  public int[] getPorts() {
+    return ports;
+  }
+}
@@ -1,6 +1,8 @@
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * An operation in which a client loads a file from a Dstore.
@@ -9,6 +11,12 @@ import java.util.List;
  */
 public class LoadOperation {
 
+  /**
+   * Orders Dstores from least to most busy, using heartbeat latency to break ties.
+   */
+  private static final Comparator<DstoreModel> LOAD_ORDER = Comparator
+      .comparingInt(DstoreModel::getLoad).thenComparingDouble(DstoreModel::getLatencyMs);
+
   /**
    * The file being loaded.
    */
@@ -20,14 +28,19 @@ public class LoadOperation {
   private final ControllerConnectionHandler client;
 
   /**
-   * The next Dstore index to load from.
+   * The Dstores that have not been tried yet and are not suspect.
    */
-  private int nextDstore = 0;
+  private final List<DstoreModel> preferred = new ArrayList<>();
 
   /**
-   * The Dstores that will be used to serve this request.
+   * The Dstores that have not been tried yet, but should only be used if all the others fail.
    */
-  private final List<DstoreModel> dstores;
+  private final List<DstoreModel> fallback = new ArrayList<>();
+
+  /**
+   * The Dstore the client was last sent to, if any.
+   */
+  private DstoreModel lastDstore;
 
   /**
    * Initialises a new load operation.
@@ -36,11 +49,26 @@ public class LoadOperation {
    * @param client the client that is loading the file
    */
   public LoadOperation(IndexedFile file, ControllerConnectionHandler client) {
+    this(file, client, List.of());
+  }
+
+  /**
+   * Initialises a new load operation that only uses some Dstores if all the others fail. Dstores
+   * that have not yet stored a file which completed on a write quorum are also tried last.
+   *
+   * @param file    the file to load
+   * @param client  the client that is loading the file
+   * @param suspect the Dstores to try last
+   */
+  public LoadOperation(IndexedFile file, ControllerConnectionHandler client,
+      Collection<DstoreModel> suspect) {
     this.file = file;
     this.client = client;
 
-    this.dstores = new ArrayList<>(file.getDstores());
-    Collections.shuffle(dstores);
+    for (var dstore : file.getDstores()) {
+      (suspect.contains(dstore) || file.isStorePending(dstore) ? fallback : preferred)
+          .add(dstore);
+    }
   }
 
   /**
@@ -61,15 +89,56 @@ public class LoadOperation {
    * Get the next Dstore that can serve the file. If there are no Dstores remaining, null is
    * returned.
    *
+   * <p>Two of the remaining Dstores are picked at random and the less busy one is used. Comparing
+   * only two, rather than always taking the least busy, stops every load that arrives between two
+   * heartbeats from herding onto the same Dstore.
+   *
    * @return the next Dstore to fetch from, or null if there are none left
    */
   public DstoreModel getNextDstore() {
-    if (nextDstore >= dstores.size()) {
+    var candidates = !preferred.isEmpty() ? preferred : fallback;
+    if (candidates.isEmpty()) {
       Logger.warn("Ran out of Dstores to serve file from!");
       return null;
     }
 
-    Logger.info("File will be served from Dstore with index {}", nextDstore);
-    return dstores.get(nextDstore++);
+    var random = ThreadLocalRandom.current();
+    var chosen = candidates.get(random.nextInt(candidates.size()));
+
+    if (candidates.size() > 1) {
+      var other = candidates.get(random.nextInt(candidates.size() - 1));
+      if (other == chosen) {
+        other = candidates.get(candidates.size() - 1);
+      }
+
+      if (LOAD_ORDER.compare(other, chosen) < 0) {
+        chosen = other;
+      }
+    }
+
+    candidates.remove(chosen);
+    chosen.recordAssignment();
+
+    Logger.info("File will be served from {} (load {})", chosen, chosen.getLoad());
+    return lastDstore = chosen;
+  }
+
+  /**
+   * Returns the Dstores that have not been chosen yet, in the order they should be tried: the
+   * least busy preferred Dstores first, then the fallbacks. They are not counted as assigned.
+   */
+  public List<DstoreModel> getRemainingDstores() {
+    var remaining = new ArrayList<DstoreModel>(preferred);
+    remaining.sort(LOAD_ORDER);
+    remaining.addAll(fallback);
+
+    return remaining;
+  }
+
+  /**
+   * Returns the Dstore the client was last sent to, or null if it has not been sent to one.
+   */
+  public DstoreModel getLastDstore() {
+    return lastDstore;
   }
 }
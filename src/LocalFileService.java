@@ -1,10 +1,17 @@
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A service that manages locally stored files at a Dstore.
@@ -13,6 +20,18 @@ import java.util.List;
  */
 public class LocalFileService {
 
+  /**
+   * The name of the directory, inside the file storage directory, that holds partially received
+   * files.
+   */
+  private static final String PARTIAL_DIRECTORY = ".partial";
+
+  /**
+   * The name of the directory, inside the file storage directory, that holds files being received
+   * in parts.
+   */
+  private static final String MULTIPART_DIRECTORY = ".multipart";
+
   /**
    * The service container.
    */
@@ -23,6 +42,22 @@ public class LocalFileService {
    */
   private final List<LocalFile> files = new ArrayList<>();
 
+  /**
+   * The hash tree over the names and sizes of the local files, which lets the controller check
+   * which files this Dstore has without asking for all of them.
+   */
+  private final FileDigestTree digestTree = new FileDigestTree();
+
+  /**
+   * The files being received in parts, by name.
+   */
+  private final Map<String, LocalMultipartUpload> multipartUploads = new HashMap<>();
+
+  /**
+   * The total size of the local files in bytes.
+   */
+  private volatile long bytesStored = 0;
+
   /**
    * Creates an instance of this service.
    *
@@ -40,12 +75,15 @@ public class LocalFileService {
    * @param content the content of the file as a byte array
    * @throws IOException if there is an error storing the file
    */
-  public void addFile(String name, int size, byte[] content) throws IOException {
+  public synchronized void addFile(String name, int size, byte[] content) throws IOException {
     var file = new LocalFile(name, size);
-    files.add(file);
+    indexFile(file);
 
     var path = getPathToLocalFile(file);
+    var start = System.nanoTime();
     Files.write(path, content);
+    recordIo(start);
+    Files.deleteIfExists(getPathToPartialFile(name));
   }
 
   /**
@@ -54,31 +92,300 @@ public class LocalFileService {
    * @param file the file to remove
    * @throws IOException if there is an error removing the file
    */
-  public void removeFile(LocalFile file) throws IOException {
+  public synchronized void removeFile(LocalFile file) throws IOException {
     var path = getPathToLocalFile(file);
     Files.deleteIfExists(path);
+    Files.deleteIfExists(getPathToPartialFile(file.getName()));
+
+    var index = files.indexOf(file);
+    if (index >= 0) {
+      var removed = files.remove(index);
+      digestTree.remove(removed.getName(), removed.getSize());
+      bytesStored -= removed.getSize();
+    }
+  }
+
+  /**
+   * Returns the number of bytes of a partially received file that have been stored so far.
+   *
+   * @param name the name of the file
+   * @param size the size of the whole file in bytes
+   * @return the number of bytes stored, or 0 if there is no usable partial file
+   * @throws IOException if there is an error inspecting the partial file
+   */
+  public synchronized int getPartialLength(String name, int size) throws IOException {
+    var path = getPathToPartialFile(name);
+    if (!Files.exists(path)) {
+      return 0;
+    }
+
+    var length = Files.size(path);
+    if (length > size) {
+      Logger.warn("Partial file {} is longer than expected, discarding it", name);
+      Files.delete(path);
+      return 0;
+    }
+
+    return (int) length;
+  }
+
+  /**
+   * Appends a segment to a partially received file. When the final segment has been appended, the
+   * file is moved into the storage directory and added to the local index. A segment that does
+   * not start where the partial file ends is rejected, apart from one at offset 0, which restarts
+   * the file.
+   *
+   * @param name    the name of the file
+   * @param size    the size of the whole file in bytes
+   * @param offset  the offset the segment starts at
+   * @param content the content of the segment
+   * @return whether the segment was stored
+   * @throws IOException if there is an error storing the segment
+   */
+  public synchronized boolean appendPartial(String name, int size, int offset, byte[] content)
+      throws IOException {
+    if (offset == 0 && content.length == size) {
+      addFile(name, size, content);
+      return true;
+    }
+
+    var path = getPathToPartialFile(name);
+    Files.createDirectories(path.getParent());
+
+    var start = System.nanoTime();
+    if (offset == 0) {
+      Files.write(path, content);
+    } else if (getPartialLength(name, size) == offset) {
+      Files.write(path, content, StandardOpenOption.APPEND);
+    } else {
+      Logger.warn("Segment of {} at offset {} does not follow the partial file, rejecting it",
+          name, offset);
+      return false;
+    }
+    recordIo(start);
+
+    if (offset + content.length == size) {
+      var file = new LocalFile(name, size);
+      Files.move(path, getPathToLocalFile(file), StandardCopyOption.REPLACE_EXISTING);
+      indexFile(file);
+    }
+
+    return true;
+  }
+
+  /**
+   * Writes one part of a file being received in parts, at its place in the file. Parts are
+   * written outside the lock on this service, so that the parts of a file can be written in
+   * parallel. Each upload has its own backing file, so a part from an abandoned upload that is
+   * still being written can never land in a newer one. When the final part has been written, the
+   * file is moved into the storage directory and added to the local index. A part from a newer
+   * upload of the file discards the parts written so far, as the earlier upload must have been
+   * abandoned, and a part from an older upload is rejected.
+   *
+   * @param name     the name of the file
+   * @param uploadId the ID the controller gave the upload
+   * @param size     the size of the whole file in bytes
+   * @param partSize the size of each part in bytes
+   * @param index    the index of the part
+   * @param content  the content of the part
+   * @return whether the file is now complete
+   * @throws IOException if there is an error storing the part, or it is from an older upload
+   */
+  public boolean storePart(String name, long uploadId, int size, int partSize, int index,
+      byte[] content) throws IOException {
+    var path = getPathToMultipartFile(name, uploadId);
+    LocalMultipartUpload upload;
+
+    synchronized (this) {
+      upload = multipartUploads.get(name);
+      if (upload != null && uploadId < upload.getUploadId()) {
+        throw new IOException("part is from an earlier upload of " + name);
+      }
+
+      if (upload == null || !upload.matches(uploadId, size, partSize)) {
+        if (upload != null) {
+          Logger.info("Discarding the parts of {} from an earlier upload", name);
+          Files.deleteIfExists(getPathToMultipartFile(name, upload.getUploadId()));
+        }
+
+        upload = new LocalMultipartUpload(uploadId, size, partSize);
+        multipartUploads.put(name, upload);
+        Files.createDirectories(path.getParent());
+        Files.deleteIfExists(path);
+      }
+    }
+
+    var start = System.nanoTime();
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE)) {
+      var buffer = ByteBuffer.wrap(content);
+      var offset = (long) index * partSize;
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, offset + buffer.position());
+      }
+    }
+    recordIo(start);
+
+    synchronized (this) {
+      // the upload may have been replaced while the part was being written
+      if (multipartUploads.get(name) != upload) {
+        Files.deleteIfExists(path);
+        return false;
+      }
+
+      if (!upload.markReceived(index)) {
+        return false;
+      }
+
+      multipartUploads.remove(name);
+      var file = new LocalFile(name, size);
+      Files.move(path, getPathToLocalFile(file), StandardCopyOption.REPLACE_EXISTING);
+      indexFile(file);
+      return true;
+    }
+  }
+
+  /**
+   * Discards the parts written so far of a multipart upload that the controller has abandoned.
+   * Parts of a newer upload of the file are kept.
+   *
+   * @param name     the name of the file
+   * @param uploadId the ID of the abandoned upload
+   * @throws IOException if the parts cannot be deleted
+   */
+  public synchronized void abortMultipart(String name, long uploadId) throws IOException {
+    var upload = multipartUploads.get(name);
+    if (upload == null || upload.getUploadId() != uploadId) {
+      return;
+    }
+
+    Logger.info("Discarding the parts of {} from abandoned upload {}", name, uploadId);
+    multipartUploads.remove(name);
+    Files.deleteIfExists(getPathToMultipartFile(name, uploadId));
+  }
+
+  /**
+   * Adds a file to the local index and the digest tree. A file sent again, such as by a rebalance,
+   * replaces the old copy.
+   *
+   * @param file the file to add
+   */
+  private void indexFile(LocalFile file) {
+    var index = files.indexOf(file);
+    if (index >= 0) {
+      var old = files.remove(index);
+      digestTree.remove(old.getName(), old.getSize());
+      bytesStored -= old.getSize();
+    }
+
+    files.add(file);
+    digestTree.add(file.getName(), file.getSize());
+    bytesStored += file.getSize();
+  }
 
-    files.remove(file);
+  /**
+   * Records how long a read or write of a file took in the {@code io.ops} and {@code io.time-us}
+   * metrics.
+   *
+   * @param startNanos when the read or write started, from {@link System#nanoTime()}
+   */
+  private void recordIo(long startNanos) {
+    services.getMetricsService().increment("io.ops");
+    services.getMetricsService().add("io.time-us", (System.nanoTime() - startNanos) / 1000);
   }
 
   /**
-   * Returns all local files.
+   * Returns the total size of the local files in bytes.
    */
-  public List<LocalFile> getLocalFiles() {
-    return Collections.unmodifiableList(files);
+  public long getBytesStored() {
+    return bytesStored;
   }
 
   /**
-   * Returns a specific local file.
+   * Returns the number of bytes free on the disk holding the file storage directory.
+   *
+   * @return the number of bytes, or -1 if it cannot be found
+   */
+  public long getFreeSpace() {
+    try {
+      return Files.getFileStore(services.getDstore().getFileStorageDirectory()).getUsableSpace();
+    } catch (IOException e) {
+      Logger.warn("Cannot check free space: {}", e.getMessage());
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the size of the disk holding the file storage directory.
+   *
+   * @return the size in bytes, or -1 if it cannot be found
+   */
+  public long getTotalSpace() {
+    try {
+      return Files.getFileStore(services.getDstore().getFileStorageDirectory()).getTotalSpace();
+    } catch (IOException e) {
+      Logger.warn("Cannot check disk size: {}", e.getMessage());
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the hash tree over the local files.
+   */
+  public FileDigestTree getDigestTree() {
+    return digestTree;
+  }
+
+  /**
+   * Returns the local files that are in some buckets of the digest tree.
+   *
+   * @param buckets the numbers of the buckets
+   * @return the files in those buckets
+   */
+  public synchronized List<LocalFile> getLocalFilesInBuckets(Collection<Integer> buckets) {
+    var wanted = new HashSet<>(buckets);
+    return files.stream().filter(f -> wanted.contains(FileDigestTree.getBucket(f.getName())))
+        .toList();
+  }
+
+  /**
+   * Returns a copy of all local files, taken under the lock so that files being added at the same
+   * time cannot break it.
+   */
+  public synchronized List<LocalFile> getLocalFiles() {
+    return List.copyOf(files);
+  }
+
+  /**
+   * Returns a specific local file. This is synchronized so that files being added at the same
+   * time cannot break the search.
    *
    * @param name the name of the file
    * @return the requested file, or null if it does not exist
    */
-  public LocalFile getLocalFileByName(String name) {
-    return getLocalFiles().stream().filter(f -> f.getName().equalsIgnoreCase(name)).findFirst()
+  public synchronized LocalFile getLocalFileByName(String name) {
+    return files.stream().filter(f -> f.getName().equalsIgnoreCase(name)).findFirst()
         .orElse(null);
   }
 
+  /**
+   * Returns the size of a file on disk, which differs from its recorded size if the file has been
+   * damaged.
+   *
+   * @param file the file to check
+   * @return the size in bytes, or -1 if the file cannot be read
+   */
+  public long getSizeOnDisk(LocalFile file) {
+    var path = getPathToLocalFile(file);
+
+    try {
+      return Files.isReadable(path) ? Files.size(path) : -1;
+    } catch (IOException e) {
+      Logger.warn("Cannot check size of {}: {}", file.getName(), e.getMessage());
+      return -1;
+    }
+  }
+
   /**
    * Returns the content of a file.
    *
@@ -88,7 +395,36 @@ public class LocalFileService {
    */
   public byte[] getFileContent(LocalFile file) throws IOException {
     var path = getPathToLocalFile(file);
-    return Files.readAllBytes(path);
+    var start = System.nanoTime();
+    var content = Files.readAllBytes(path);
+    recordIo(start);
+
+    return content;
+  }
+
+  /**
+   * Returns part of the content of a file, using a positional read so the rest of the file is
+   * never loaded.
+   *
+   * @param file   the file to fetch content for
+   * @param offset the offset of the first byte to read
+   * @param length the number of bytes to read
+   * @return the requested content as a byte array
+   * @throws IOException if there is an error fetching the file
+   */
+  public byte[] getFileContent(LocalFile file, int offset, int length) throws IOException {
+    var start = System.nanoTime();
+    try (var channel = FileChannel.open(getPathToLocalFile(file), StandardOpenOption.READ)) {
+      var buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new IOException("file is shorter than expected");
+        }
+      }
+
+      recordIo(start);
+      return buffer.array();
+    }
   }
 
   /**
@@ -100,4 +436,28 @@ public class LocalFileService {
   private Path getPathToLocalFile(LocalFile file) {
     return Paths.get(services.getDstore().getFileStorageDirectory().toString(), file.getName());
   }
+
+  /**
+   * Returns the qualified path to the partially received copy of a file.
+   *
+   * @param name the name of the file
+   * @return the qualified path to the partial file
+   */
+  private Path getPathToPartialFile(String name) {
+    return Paths.get(services.getDstore().getFileStorageDirectory().toString(), PARTIAL_DIRECTORY,
+        name);
+  }
+
+  /**
+   * Returns the qualified path to the copy of a file that is being received in parts by one
+   * upload.
+   *
+   * @param name     the name of the file
+   * @param uploadId the ID of the upload
+   * @return the qualified path to the file
+   */
+  private Path getPathToMultipartFile(String name, long uploadId) {
+    return Paths.get(services.getDstore().getFileStorageDirectory().toString(),
+        MULTIPART_DIRECTORY, name + "." + uploadId);
+  }
 }
@@ -0,0 +1,79 @@
+import java.util.BitSet;
+
+/**
+ * A file being received in parts by a Dstore, recording which parts have been written.
+ *
+ * @author George Peppard
+ */
+public class LocalMultipartUpload {
+
+  /**
+   * The ID the controller gave the upload.
+   */
+  private final long uploadId;
+
+  /**
+   * The size of the whole file in bytes.
+   */
+  private final int size;
+
+  /**
+   * The size of each part in bytes.
+   */
+  private final int partSize;
+
+  /**
+   * The number of parts in the file.
+   */
+  private final int partCount;
+
+  /**
+   * The parts that have been written.
+   */
+  private final BitSet received;
+
+  /**
+   * Creates a new upload with no parts written.
+   *
+   * @param uploadId the ID the controller gave the upload
+   * @param size     the size of the whole file in bytes
+   * @param partSize the size of each part in bytes
+   */
+  public LocalMultipartUpload(long uploadId, int size, int partSize) {
+    this.uploadId = uploadId;
+    this.size = size;
+    this.partSize = partSize;
+    this.partCount = Math.max(1, (int) (((long) size + partSize - 1) / partSize));
+    this.received = new BitSet(partCount);
+  }
+
+  /**
+   * Records that a part has been written.
+   *
+   * @param index the index of the part
+   * @return whether every part has now been written
+   */
+  public boolean markReceived(int index) {
+    received.set(index);
+    return received.cardinality() == partCount;
+  }
+
+  /**
+   * Returns whether a part belongs to this upload, which it does not if the file's layout differs.
+   *
+   * @param uploadId the ID of the upload the part is for
+   * @param size     the size of the whole file in bytes
+   * @param partSize the size of each part in bytes
+   */
+  public boolean matches(long uploadId, int size, int partSize) {
+    return this.uploadId == uploadId && this.size == size && this.partSize == partSize;
+  }
+
+  public long getUploadId() {
+    return uploadId;
+  }
+
+  public int getPartCount() {
+    return partCount;
+  }
+}
@@ -0,0 +1,29 @@
+/**
+ * A message asking for every location of a file along with a lease on them, so that the client
+ * can cache them. This is an extension to the specification.
+ *
+ * @author George Peppard
+ */
+public class LocateMessage extends Message {
+
+  private final String fileName;
+
+  public LocateMessage(String fileName) {
+    super(Protocol.LOCATE);
+
+    this.fileName = fileName;
+  }
+
+  public static LocateMessage parse(String[] args) {
+    return new LocateMessage(args[0]);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+}
@@ -0,0 +1,77 @@
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * A message giving every location of a file, as
+ * {@code LOCATE name size version lease-ms part-size port...}. The ports are in the order they
+ * should be tried. The client may load the file from them without asking the controller until the
+ * lease has run out, unless it is sent an INVALIDATE message for the file first. The part size is
+ * 0 unless the file was stored in parts, in which case it is fastest to load a part at a time from
+ * several Dstores.
+ *
+ * @author George Peppard
+ */
+public class LocateResponseMessage extends Message {
+
+  private final String fileName;
+  private final int fileSize;
+  private final long version;
+  private final long leaseMs;
+  private final int partSize;
+  private final int[] ports;
+
+  public LocateResponseMessage(String fileName, int fileSize, long version, long leaseMs,
+      int partSize, int[] ports) {
+    super(Protocol.LOCATE);
+
+    this.fileName = fileName;
+    this.fileSize = fileSize;
+    this.version = version;
+    this.leaseMs = leaseMs;
+    this.partSize = partSize;
+    this.ports = ports;
+  }
+
+  public static LocateResponseMessage parse(String[] args) {
+    return new LocateResponseMessage(args[0], Integer.parseInt(args[1]), Long.parseLong(args[2]),
+        Long.parseLong(args[3]), Integer.parseInt(args[4]),
+        Arrays.stream(args, 5, args.length).mapToInt(Integer::parseInt).toArray());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString()
+        + String.format(" %s %d %d %d %d ", fileName, fileSize, version, leaseMs, partSize)
+        + Arrays.stream(ports).mapToObj(String::valueOf).collect(Collectors.joining(" "));
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public int getFileSize() {
+    return fileSize;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns how long the client may use the locations for, in milliseconds.
+   */
+  public long getLeaseMs() {
+    return leaseMs;
+  }
+
+  /**
+   * Returns the size of each part of the file in bytes, or 0 if it was stored whole.
+   */
+  public int getPartSize() {
+    return partSize;
+  }
+
+  public int[] getPorts() {
+    return ports;
+  }
+}
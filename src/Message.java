@@ -17,6 +17,14 @@ public class Message {
     this.token = token;
   }
 
+  /**
+   * Returns whether the message is sent so often that it should not be logged, such as a
+   * heartbeat.
+   */
+  public boolean isQuiet() {
+    return false;
+  }
+
   /**
    * Serializes the message for sending over the communication protocol.
    *
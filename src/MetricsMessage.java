@@ -0,0 +1,46 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A message requesting the metrics of a process, or containing them as {@code name=value} pairs.
+ *
+ * @author George Peppard
+ */
+public class MetricsMessage extends Message {
+
+  private final Map<String, Number> metrics;
+
+  public MetricsMessage() {
+    this(Map.of());
+  }
+
+  public MetricsMessage(Map<String, Number> metrics) {
+    super(Protocol.METRICS);
+
+    this.metrics = metrics;
+  }
+
+  public static MetricsMessage parse(String[] args) {
+    var metrics = new LinkedHashMap<String, Number>();
+    Arrays.stream(args).map(a -> a.split("=", 2)).filter(a -> a.length == 2)
+        .forEach(a -> metrics.put(a[0], Double.parseDouble(a[1])));
+
+    return new MetricsMessage(metrics);
+  }
+
+  @Override
+  public String toString() {
+    if (metrics.isEmpty()) {
+      return super.toString();
+    }
+
+    return super.toString() + " " + metrics.entrySet().stream()
+        .map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining(" "));
+  }
+
+  public Map<String, Number> getMetrics() {
+    return metrics;
+  }
+}
@@ -0,0 +1,114 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A service that keeps named counters, gauges and histograms so they can be exported with the
+ * METRICS admin message.
+ *
+ * @author George Peppard
+ */
+public class MetricsService {
+
+  /**
+   * The counters, which only ever go up.
+   */
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+  /**
+   * The gauges, which are sampled when a snapshot is taken.
+   */
+  private final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+
+  /**
+   * The histograms, which are exported as their count and percentiles.
+   */
+  private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+  /**
+   * Increments a counter by one.
+   *
+   * @param name the name of the counter
+   */
+  public void increment(String name) {
+    add(name, 1);
+  }
+
+  /**
+   * Adds a value to a counter.
+   *
+   * @param name  the name of the counter
+   * @param delta the amount to add
+   */
+  public void add(String name, long delta) {
+    counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+  }
+
+  /**
+   * Returns the current value of a counter.
+   *
+   * @param name the name of the counter
+   * @return the value, or 0 if the counter has never been touched
+   */
+  public long get(String name) {
+    var counter = counters.get(name);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * Registers a gauge, replacing any gauge with the same name.
+   *
+   * @param name  the name of the gauge
+   * @param gauge a supplier that returns the current value
+   */
+  public void registerGauge(String name, Supplier<Number> gauge) {
+    gauges.put(name, gauge);
+  }
+
+  /**
+   * Records a value, such as a latency, in a histogram.
+   *
+   * @param name  the name of the histogram
+   * @param value the value
+   */
+  public void record(String name, long value) {
+    histograms.computeIfAbsent(name, n -> new Histogram()).record(value);
+  }
+
+  /**
+   * Returns a percentile of the values recorded in a histogram.
+   *
+   * @param name       the name of the histogram
+   * @param percentile the percentile, between 0 and 100
+   * @return the percentile, or 0 if nothing has been recorded
+   */
+  public long getPercentile(String name, double percentile) {
+    var histogram = histograms.get(name);
+    return histogram != null ? histogram.getPercentile(percentile) : 0;
+  }
+
+  /**
+   * Returns a snapshot of every counter and gauge, and the count, median and 99th percentile of
+   * every histogram, sorted by name.
+   */
+  public Map<String, Number> snapshot() {
+    var snapshot = new TreeMap<String, Number>();
+    counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+    gauges.forEach((name, gauge) -> {
+      try {
+        snapshot.put(name, gauge.get());
+      } catch (Exception e) {
+        Logger.warn("Failed to sample gauge {}: {}", name, e.getMessage());
+      }
+    });
+    histograms.forEach((name, histogram) -> {
+      snapshot.put(name + ".count", histogram.getCount());
+      snapshot.put(name + ".p50", histogram.getPercentile(50));
+      snapshot.put(name + ".p99", histogram.getPercentile(99));
+    });
+
+    return snapshot;
+  }
+}
@@ -0,0 +1,125 @@
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A multipart store in progress, recording which parts each Dstore has stored.
+ *
+ * @author George Peppard
+ */
+public class MultipartUpload {
+
+  /**
+   * The ID of the upload, which the Dstores use to tell its parts from those of an earlier upload
+   * of a file with the same name.
+   */
+  private final long uploadId;
+
+  /**
+   * The file being stored.
+   */
+  private final IndexedFile file;
+
+  /**
+   * The number of parts in the file.
+   */
+  private final int partCount;
+
+  /**
+   * The parts each Dstore has stored, by port.
+   */
+  private final Map<Integer, BitSet> storedParts = new LinkedHashMap<>();
+
+  /**
+   * When the upload started, from {@link System#nanoTime()}.
+   */
+  private final long startNanos = System.nanoTime();
+
+  /**
+   * When a part was last stored, or the client last committed, from {@link System#nanoTime()}.
+   */
+  private volatile long lastProgressNanos = startNanos;
+
+  /**
+   * Creates a new upload.
+   *
+   * @param uploadId the ID of the upload
+   * @param file     the file being stored, which must have a part size
+   */
+  public MultipartUpload(long uploadId, IndexedFile file) {
+    this.uploadId = uploadId;
+    this.file = file;
+    this.partCount = Math.max(1,
+        (int) (((long) file.getSize() + file.getPartSize() - 1) / file.getPartSize()));
+
+    file.getDstores().forEach(d -> storedParts.put(d.getPort(), new BitSet(partCount)));
+  }
+
+  /**
+   * Records that a Dstore has stored a part. Parts from Dstores the file was not sent to are
+   * ignored.
+   *
+   * @param dstorePort the port of the Dstore
+   * @param index      the index of the part
+   */
+  public synchronized void markStored(int dstorePort, int index) {
+    var parts = storedParts.get(dstorePort);
+    if (parts != null && index >= 0 && index < partCount) {
+      parts.set(index);
+      touch();
+    }
+  }
+
+  /**
+   * Returns the parts that the Dstores still storing the file have not stored.
+   *
+   * @return the indexes of the missing parts, by Dstore port
+   */
+  public synchronized Map<Integer, List<Integer>> getMissingParts() {
+    var missing = new LinkedHashMap<Integer, List<Integer>>();
+
+    for (var dstore : file.getDstores()) {
+      var parts = storedParts.get(dstore.getPort());
+      if (parts == null || !file.isStorePending(dstore)) {
+        continue;
+      }
+
+      var absent = new BitSet(partCount);
+      absent.set(0, partCount);
+      absent.andNot(parts);
+      if (!absent.isEmpty()) {
+        missing.put(dstore.getPort(), absent.stream().boxed().toList());
+      }
+    }
+
+    return missing;
+  }
+
+  /**
+   * Records that the upload has made progress, so it is not abandoned.
+   */
+  public void touch() {
+    lastProgressNanos = System.nanoTime();
+  }
+
+  public long getUploadId() {
+    return uploadId;
+  }
+
+  public IndexedFile getFile() {
+    return file;
+  }
+
+  public int getPartCount() {
+    return partCount;
+  }
+
+  public long getStartNanos() {
+    return startNanos;
+  }
+
+  public long getLastProgressNanos() {
+    return lastProgressNanos;
+  }
+}
@@ -0,0 +1,190 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service that follows multipart stores. A client starts one with STORE_MULTIPART and is told
+ * which Dstores to send every part to. It sends the parts to them in parallel, over as many
+ * connections as it likes, and each Dstore tells the controller as it stores each part. When the
+ * client commits, the store is finished if a write quorum of Dstores has every part. If not, the
+ * client is told which parts each Dstore is missing, so a failure only costs the parts it hit
+ * rather than the whole file. A store that goes without progress for too long is abandoned, and
+ * its Dstores are told to discard its parts.
+ *
+ * @author George Peppard
+ */
+public class MultipartUploadService {
+
+  /**
+   * The default time a store may go without progress before it is abandoned, in milliseconds.
+   */
+  private static final long DEFAULT_IDLE_TIMEOUT_MS = 60000;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The stores in progress, by lower case file name.
+   */
+  private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+
+  /**
+   * The ID of the latest upload. This starts from the clock, so that IDs keep increasing when the
+   * controller restarts, as Dstores reject parts from an upload older than the one they have.
+   */
+  private final AtomicLong lastUploadId = new AtomicLong(System.currentTimeMillis());
+
+  /**
+   * The time a store may go without progress before it is abandoned, in milliseconds.
+   */
+  private final long idleTimeoutMs = Math.max(1,
+      Settings.getLong(Settings.CONTROLLER_MULTIPART_IDLE_TIMEOUT_MS, DEFAULT_IDLE_TIMEOUT_MS));
+
+  /**
+   * The executor that abandons idle stores.
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "CLR Multipart Reaper");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * Initialises the service.
+   *
+   * @param services the service container
+   */
+  public MultipartUploadService(ControllerServiceContainer services) {
+    this.services = services;
+
+    var periodMs = Math.max(1, idleTimeoutMs / 4);
+    executor.scheduleAtFixedRate(this::abandonIdle, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    services.getMetricsService().registerGauge("multipart.uploads", uploads::size);
+  }
+
+  /**
+   * Starts a multipart store, adding the file to the index.
+   *
+   * @param name              the name of the file
+   * @param size              the size of the file in bytes
+   * @param partSize          the size of each part in bytes
+   * @param replicationFactor the number of copies of the file to store
+   * @return the upload, or null if a file with the same name exists
+   */
+  public MultipartUpload start(String name, int size, int partSize, int replicationFactor) {
+    var file = services.getIndexService().addMultipartFile(name, size, partSize,
+        replicationFactor);
+    if (file == null) {
+      return null;
+    }
+
+    var upload = new MultipartUpload(lastUploadId.incrementAndGet(), file);
+    uploads.put(IndexService.getNameKey(name), upload);
+
+    Logger.info("Started multipart store {} of {} in {} parts", upload.getUploadId(), name,
+        upload.getPartCount());
+    services.getMetricsService().increment("multipart.started");
+    return upload;
+  }
+
+  /**
+   * Handles a Dstore storing one part of a file.
+   *
+   * @param name       the name of the file
+   * @param dstorePort the port of the Dstore
+   * @param index      the index of the part
+   */
+  public void handlePartStored(String name, int dstorePort, int index) {
+    var upload = uploads.get(IndexService.getNameKey(name));
+    if (upload == null) {
+      Logger.warn("Part {} of {} stored by {} without a multipart store, ignoring it", index,
+          name, dstorePort);
+      return;
+    }
+
+    upload.markStored(dstorePort, index);
+    services.getMetricsService().increment("multipart.parts");
+  }
+
+  /**
+   * Commits a multipart store. This waits, up to the controller's timeout, for a write quorum of
+   * Dstores to store the whole file, as the last parts may still be being written. The client is
+   * sent STORE_COMPLETE if they do, and the parts still missing if not. The commit counts as a
+   * store operation, so a rebalance waits for it rather than for the whole upload.
+   *
+   * @param name   the name of the file
+   * @param client the client committing the store
+   * @return false if there is no multipart store of the file in progress
+   * @throws InterruptedException if the wait is interrupted
+   */
+  public boolean commit(String name, ControllerConnectionHandler client)
+      throws InterruptedException {
+    var key = IndexService.getNameKey(name);
+    var upload = uploads.get(key);
+    if (upload == null) {
+      return false;
+    }
+
+    var blocking = services.getBlockingOperationsService();
+    blocking.startStore();
+    var completing = false;
+
+    try {
+      upload.touch();
+      var file = upload.getFile();
+      var stored = file.getStoreLatch().await(services.getController().getTimeoutMs(),
+          TimeUnit.MILLISECONDS);
+
+      if (!stored) {
+        var missing = upload.getMissingParts();
+        Logger.info("Multipart store of {} committed with parts missing on {} Dstores", name,
+            missing.size());
+        services.getMetricsService().increment("multipart.incomplete-commits");
+        client.send(new StoreMultipartMissingMessage(missing));
+        return true;
+      }
+
+      // the upload may have been abandoned while we were waiting
+      if (!uploads.remove(key, upload)) {
+        return false;
+      }
+
+      // the index finishes the store operation once the remaining copies are stored
+      completing = true;
+      services.getIndexService().completeMultipartStore(file, upload.getStartNanos(), client);
+      services.getMetricsService().increment("multipart.completed");
+      return true;
+    } finally {
+      if (!completing) {
+        blocking.finishStore();
+      }
+    }
+  }
+
+  /**
+   * Abandons every store that has gone without progress for longer than the idle timeout, and
+   * tells its Dstores to discard the parts they have written.
+   */
+  private void abandonIdle() {
+    var cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+
+    for (var entry : List.copyOf(uploads.entrySet())) {
+      var upload = entry.getValue();
+      if (upload.getLastProgressNanos() < cutoff && uploads.remove(entry.getKey(), upload)) {
+        var file = upload.getFile();
+        services.getIndexService().abandonMultipartStore(file);
+        services.getMetricsService().increment("multipart.abandoned");
+
+        var abort = new StoreMultipartAbortMessage(file.getName(), upload.getUploadId());
+        file.getDstores().forEach(d -> d.getHandler().sendBatched(abort));
+      }
+    }
+  }
+}
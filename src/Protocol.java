@@ -32,4 +32,44 @@ public class Protocol {
 	public static final String JOIN = "JOIN";
 	public static final String REBALANCE_STORE = "REBALANCE_STORE";
 	public static final String REBALANCE_COMPLETE = "REBALANCE_COMPLETE";
+
+	// Extensions (not part of the specification)
+	public static final String METRICS = "METRICS";
+	public static final String REBALANCE_RATE = "REBALANCE_RATE";
+	public static final String REBALANCE_MANIFEST = "REBALANCE_MANIFEST";
+	public static final String REBALANCE_STORE_ACK = "REBALANCE_STORE_ACK";
+	public static final String REBALANCE_RESUME = "REBALANCE_RESUME";
+	public static final String REBALANCE_RESUME_FROM = "REBALANCE_RESUME_FROM";
+	public static final String REBALANCE_PROGRESS = "REBALANCE_PROGRESS";
+	public static final String REBALANCE_PART = "REBALANCE_PART";
+	public static final String DIGEST = "DIGEST";
+	public static final String LIST_BUCKETS = "LIST_BUCKETS";
+	public static final String REPLICATE = "REPLICATE";
+	public static final String LIST_FILE = "LIST_FILE";
+	public static final String HEARTBEAT = "HEARTBEAT";
+	public static final String STATS = "STATS";
+	public static final String HOT = "HOT";
+	public static final String STORE_CHAIN = "STORE_CHAIN";
+	public static final String PURGE = "PURGE";
+	public static final String BATCH = "BATCH";
+	public static final String STORE_BULK = "STORE_BULK";
+	public static final String STORE_BULK_TO = "STORE_BULK_TO";
+	public static final String STORE_BULK_COMPLETE = "STORE_BULK_COMPLETE";
+	public static final String LOAD_BULK = "LOAD_BULK";
+	public static final String LOAD_BULK_FROM = "LOAD_BULK_FROM";
+	public static final String REMOVE_BULK = "REMOVE_BULK";
+	public static final String REMOVE_PREFIX = "REMOVE_PREFIX";
+	public static final String REMOVE_BULK_COMPLETE = "REMOVE_BULK_COMPLETE";
+	public static final String LIST_PAGE = "LIST_PAGE";
+	public static final String WATCH = "WATCH";
+	public static final String LOCATE = "LOCATE";
+	public static final String INVALIDATE = "INVALIDATE";
+	public static final String LOAD_HEDGED = "LOAD_HEDGED";
+	public static final String STORE_MULTIPART = "STORE_MULTIPART";
+	public static final String STORE_MULTIPART_TO = "STORE_MULTIPART_TO";
+	public static final String STORE_PART = "STORE_PART";
+	public static final String STORE_PART_ACK = "STORE_PART_ACK";
+	public static final String STORE_MULTIPART_COMMIT = "STORE_MULTIPART_COMMIT";
+	public static final String STORE_MULTIPART_MISSING = "STORE_MULTIPART_MISSING";
+	public static final String STORE_MULTIPART_ABORT = "STORE_MULTIPART_ABORT";
 }
@@ -0,0 +1,43 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A message from the controller asking a Dstore to delete a batch of removed files, or from the
+ * Dstore confirming which of them are gone. A file the Dstore did not have counts as gone. Each
+ * request carries an ID that the Dstore echoes in its confirmation, so that the controller can
+ * tell a reply to an earlier request from one to the latest.
+ *
+ * @author George Peppard
+ * @see TombstoneService
+ */
+public class PurgeMessage extends Message {
+
+  private final long askId;
+  private final List<String> fileNames;
+
+  public PurgeMessage(long askId, List<String> fileNames) {
+    super(Protocol.PURGE);
+
+    this.askId = askId;
+    this.fileNames = fileNames;
+  }
+
+  public static PurgeMessage parse(String[] args) {
+    var count = Integer.parseInt(args[1]);
+    return new PurgeMessage(Long.parseLong(args[0]), Arrays.asList(args).subList(2, 2 + count));
+  }
+
+  @Override
+  public String toString() {
+    var string = super.toString() + " " + askId + " " + fileNames.size();
+    return fileNames.isEmpty() ? string : string + " " + String.join(" ", fileNames);
+  }
+
+  public long getAskId() {
+    return askId;
+  }
+
+  public List<String> getFileNames() {
+    return fileNames;
+  }
+}
@@ -0,0 +1,234 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A service that uses failed loads to find damaged replicas. Each RELOAD counts against the Dstore
+ * the client was last sent to, and counts are forgotten once they are older than a window, so that
+ * occasional failures spread over a long time do not add up. When a replica has failed enough
+ * loads within the window, it is moved to the back of
+ * the routing order and the Dstore is asked for the size of its copy on disk. A replica that is
+ * missing or the wrong size is removed from the index and the file is queued in the
+ * {@link RepairService}, without waiting for the next rebalance.
+ *
+ * @author George Peppard
+ */
+public class ReadRepairService {
+
+  /**
+   * The default number of failed loads after which a replica is verified.
+   */
+  private static final int DEFAULT_THRESHOLD = 2;
+
+  /**
+   * The default time failed loads count for, in milliseconds.
+   */
+  private static final long DEFAULT_WINDOW_MS = 60_000;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The number of failed loads after which a replica is verified.
+   */
+  private final int threshold = Math.max(1,
+      Settings.getInt(Settings.CONTROLLER_READ_REPAIR_THRESHOLD, DEFAULT_THRESHOLD));
+
+  /**
+   * How long failed loads count for, in milliseconds.
+   */
+  private final long windowMs = Math.max(1,
+      Settings.getLong(Settings.CONTROLLER_READ_REPAIR_WINDOW_MS, DEFAULT_WINDOW_MS));
+
+  /**
+   * The failed loads of each replica within the window since it was last verified, by file name
+   * and port.
+   */
+  private final Map<String, FailureCount> failures = new ConcurrentHashMap<>();
+
+  /**
+   * When counts older than the window were last cleared out, in milliseconds.
+   */
+  private volatile long lastSweepMs = System.currentTimeMillis();
+
+  /**
+   * The replicas that are being verified, by file name and port.
+   */
+  private final Set<String> suspects = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The verifications waiting for a reply, by file name and port.
+   */
+  private final Map<String, CompletableFuture<Long>> pendingVerifications =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Initialises the service.
+   *
+   * @param services the service container
+   */
+  public ReadRepairService(ControllerServiceContainer services) {
+    this.services = services;
+
+    services.getMetricsService().registerGauge("read-repair.suspects", suspects::size);
+  }
+
+  /**
+   * Records that a client could not load a file from a Dstore, and starts verifying the replica
+   * if it has failed too many times.
+   *
+   * @param file   the file that could not be loaded
+   * @param dstore the Dstore it could not be loaded from
+   */
+  public void reportFailedLoad(IndexedFile file, DstoreModel dstore) {
+    var key = getReplicaKey(file.getName(), dstore);
+    var now = System.currentTimeMillis();
+    var count = failures.compute(key, (k, old) -> old == null || old.isExpired(now, windowMs)
+        ? new FailureCount(1, now) : new FailureCount(old.count + 1, old.sinceMs)).count;
+    services.getMetricsService().increment("read-repair.failed-loads");
+
+    if (now - lastSweepMs > windowMs) {
+      lastSweepMs = now;
+      failures.values().removeIf(f -> f.isExpired(now, windowMs));
+    }
+
+    if (count < threshold || !suspects.add(key)) {
+      return;
+    }
+
+    Logger.info("{} has failed {} loads of {}, verifying it", dstore, count, file.getName());
+    new Thread(() -> verify(file, dstore, key), "CLR Read Repair " + file.getName()).start();
+  }
+
+  /**
+   * Returns the Dstores whose copies of a file are being verified, or that are suspected of having
+   * failed, which should only be used if no other Dstore can serve the file.
+   *
+   * @param file the file
+   * @return the Dstores under suspicion
+   */
+  public List<DstoreModel> getSuspectDstores(IndexedFile file) {
+    return file.getDstores().stream().filter(d -> d.isSuspect()
+        || suspects.contains(getReplicaKey(file.getName(), d))).toList();
+  }
+
+  /**
+   * Handles a Dstore's reply to a verification.
+   *
+   * @param dstore  the Dstore that replied
+   * @param message the reply
+   */
+  public void handleVerification(DstoreModel dstore, ListFileResponseMessage message) {
+    var future = pendingVerifications.remove(getReplicaKey(message.getFileName(), dstore));
+    if (future == null) {
+      Logger.warn("Ignoring unexpected verification of {} from {}", message.getFileName(), dstore);
+      return;
+    }
+
+    future.complete(message.getSize());
+  }
+
+  /**
+   * Asks a Dstore for the size of its copy of a file, and drops the replica if it is damaged.
+   *
+   * @param file   the file to verify
+   * @param dstore the Dstore to verify
+   * @param key    the replica key
+   */
+  private void verify(IndexedFile file, DstoreModel dstore, String key) {
+    var metrics = services.getMetricsService();
+    var future = new CompletableFuture<Long>();
+    pendingVerifications.put(key, future);
+
+    try {
+      dstore.getHandler().sendBatched(new ListFileMessage(file.getName()));
+      var size = future.get(services.getController().getTimeoutMs(), TimeUnit.MILLISECONDS);
+
+      if (size == file.getSize()) {
+        Logger.info("{} has a good copy of {}, the failed loads were transient", dstore,
+            file.getName());
+        metrics.increment("read-repair.verified-good");
+        return;
+      }
+
+      if (file.getDstores().size() <= 1) {
+        Logger.warn("The only copy of {}, on {}, is damaged but cannot be replaced",
+            file.getName(), dstore);
+        metrics.increment("read-repair.unrecoverable");
+        return;
+      }
+
+      Logger.warn("{} has a damaged copy of {} ({} bytes, expected {}), dropping it", dstore,
+          file.getName(), size, file.getSize());
+      services.getIndexService().dropReplica(file, dstore);
+      metrics.increment("read-repair.replicas-dropped");
+
+      services.getRepairService().enqueue(List.of(file));
+    } catch (TimeoutException e) {
+      Logger.warn("{} did not verify {} in time", dstore, file.getName());
+      metrics.increment("read-repair.verify-timeouts");
+    } catch (InterruptedException | ExecutionException e) {
+      Logger.error("Verification of {} on {} failed", file.getName(), dstore);
+    } finally {
+      pendingVerifications.remove(key);
+      failures.remove(key);
+      suspects.remove(key);
+    }
+  }
+
+  /**
+   * Returns the key a replica is tracked under.
+   *
+   * @param fileName the name of the file
+   * @param dstore   the Dstore with the replica
+   * @return the key
+   */
+  private static String getReplicaKey(String fileName, DstoreModel dstore) {
+    return fileName + " " + dstore.getPort();
+  }
+
+  /**
+   * The failed loads of a replica within one window.
+   */
+  private static class FailureCount {
+
+    /**
+     * The number of failed loads.
+     */
+    private final int count;
+
+    /**
+     * When the first of the failed loads happened, in milliseconds.
+     */
+    private final long sinceMs;
+
+    /**
+     * Creates a new count.
+     *
+     * @param count   the number of failed loads
+     * @param sinceMs when the first of the failed loads happened, in milliseconds
+     */
+    private FailureCount(int count, long sinceMs) {
+      this.count = count;
+      this.sinceMs = sinceMs;
+    }
+
+    /**
+     * Returns whether the count is older than the window and should be started again.
+     *
+     * @param nowMs    the current time in milliseconds
+     * @param windowMs how long failed loads count for, in milliseconds
+     * @return whether the count has expired
+     */
+    private boolean isExpired(long nowMs, long windowMs) {
+      return nowMs - sinceMs > windowMs;
+    }
+  }
+}
@@ -1,11 +1,33 @@
 /**
- * A message representing the rebalance operation being complete.
+ * A message representing the rebalance operation being complete. When the plan was sent in
+ * several REBALANCE_PART chunks, one of these is sent for each chunk and carries its number.
  *
  * @author George Peppard
  */
 public class RebalanceCompleteMessage extends Message {
-  
+
+  private final int chunk;
+
   public RebalanceCompleteMessage() {
+    this(0);
+  }
+
+  public RebalanceCompleteMessage(int chunk) {
     super(Protocol.REBALANCE_COMPLETE);
+
+    this.chunk = chunk;
+  }
+
+  public static RebalanceCompleteMessage parse(String[] args) {
+    return new RebalanceCompleteMessage(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+  }
+
+  @Override
+  public String toString() {
+    return chunk == 0 ? super.toString() : super.toString() + " " + chunk;
+  }
+
+  public int getChunk() {
+    return chunk;
   }
 }
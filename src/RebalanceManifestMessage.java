@@ -0,0 +1,65 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message between Dstores listing a batch of file segments that are being moved as part of a
+ * rebalance. The content of every segment follows the message back-to-back, in the order they are
+ * listed. Small files are sent as a single segment, while large files are split so that an
+ * interrupted transfer can be resumed from the last segment the receiver stored. Each file is
+ * acknowledged with a {@link RebalanceStoreAckMessage} once its last segment has been stored.
+ *
+ * @author George Peppard
+ * @see RebalanceStoreMessage the equivalent message for a single file
+ */
+public class RebalanceManifestMessage extends Message implements StreamedMessage {
+
+  private final List<FileSegment> segments;
+
+  public RebalanceManifestMessage(List<FileSegment> segments) {
+    super(Protocol.REBALANCE_MANIFEST);
+
+    this.segments = segments;
+  }
+
+  public static RebalanceManifestMessage parse(String[] args) {
+    var count = Integer.parseInt(args[0]);
+    var segments = new ArrayList<FileSegment>(count);
+
+    for (int i = 0; i < count; i++) {
+      var offset = 1 + i * 4;
+      segments.add(new FileSegment(args[offset], Integer.parseInt(args[offset + 1]),
+          Integer.parseInt(args[offset + 2]), Integer.parseInt(args[offset + 3])));
+    }
+
+    return new RebalanceManifestMessage(segments);
+  }
+
+  @Override
+  public String toString() {
+    var args = new StringBuilder().append(segments.size());
+    for (var segment : segments) {
+      args.append(" ").append(segment.getName())
+          .append(" ").append(segment.getFileSize())
+          .append(" ").append(segment.getOffset())
+          .append(" ").append(segment.getLength());
+    }
+
+    return super.toString() + " " + args;
+  }
+
+  @Override
+  public int[] getPayloadSizes() {
+    return segments.stream().mapToInt(FileSegment::getLength).toArray();
+  }
+
+  @Override
+  public Message withPayload(int index, byte[] payload) {
+    var segment = segments.get(index);
+    return new RebalanceStoreMessage(segment.getName(), segment.getFileSize(),
+        segment.getOffset(), payload);
+  }
+
+  public List<FileSegment> getSegments() {
+    return segments;
+  }
+}
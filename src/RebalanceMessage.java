@@ -4,28 +4,45 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * A message instructing a Dstore to rebalance its files in a certain way.
+ * A message instructing a Dstore to rebalance its files in a certain way. A large plan is split
+ * into chunks, each sent as a REBALANCE_PART message carrying its chunk number, so that neither
+ * side has to hold the whole plan as one line. A chunk number of 0 means the message is a plain
+ * REBALANCE containing the whole plan.
  *
  * @author George Peppard
  */
 public class RebalanceMessage extends Message {
 
+  private final int chunk;
   private final Map<String, int[]> filesToSend;
   private final String[] filesToRemove;
 
   public RebalanceMessage(Map<String, int[]> filesToSend, String[] filesToRemove) {
-    super(Protocol.REBALANCE);
+    this(0, filesToSend, filesToRemove);
+  }
+
+  public RebalanceMessage(int chunk, Map<String, int[]> filesToSend, String[] filesToRemove) {
+    super(chunk == 0 ? Protocol.REBALANCE : Protocol.REBALANCE_PART);
 
+    this.chunk = chunk;
     this.filesToSend = filesToSend;
     this.filesToRemove = filesToRemove;
   }
 
   public static RebalanceMessage parse(String[] args) {
+    return parse(0, args, 0);
+  }
+
+  public static RebalanceMessage parsePart(String[] args) {
+    return parse(Integer.parseInt(args[0]), args, 1);
+  }
+
+  private static RebalanceMessage parse(int chunk, String[] args, int start) {
     var filesToSend = new HashMap<String, int[]>();
-    var toSendCount = Integer.parseInt(args[0]);
+    var offset = start;
+    var toSendCount = Integer.parseInt(args[offset++]);
 
     var i = 0;
-    var offset = 1;
     while (i < toSendCount) {
       var fileName = args[offset++];
       var nodeCount = Integer.parseInt(args[offset++]);
@@ -39,13 +56,17 @@ public class RebalanceMessage extends Message {
     var toDeleteCount = Integer.parseInt(args[offset++]);
     var filesToDelete = Arrays.copyOfRange(args, offset, offset + toDeleteCount);
 
-    return new RebalanceMessage(filesToSend, filesToDelete);
+    return new RebalanceMessage(chunk, filesToSend, filesToDelete);
   }
 
   @Override
   public String toString() {
     var args = new StringBuilder();
 
+    if (chunk != 0) {
+      args.append(chunk).append(" ");
+    }
+
     args.append(filesToSend.size());
     
     for (var fts : filesToSend.entrySet()) {
@@ -65,6 +86,10 @@ public class RebalanceMessage extends Message {
     return super.toString() + " " + args.toString().trim();
   }
 
+  public int getChunk() {
+    return chunk;
+  }
+
   public Map<String, int[]> getFilesToSend() {
     return filesToSend;
   }
@@ -72,4 +97,4 @@ public class RebalanceMessage extends Message {
   public String[] getFilesToRemove() {
     return filesToRemove;
   }
-}
\ No newline at end of file
+}
@@ -1,6 +1,10 @@
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -13,20 +17,75 @@ import java.util.concurrent.TimeUnit;
  */
 public class RebalanceOperation implements Runnable {
 
+  /**
+   * The default maximum number of files in each chunk of a Dstore's plan.
+   */
+  private static final int DEFAULT_CHUNK_FILES = 1000;
+
+  /**
+   * The default number of chunks each Dstore may have outstanding.
+   */
+  private static final int DEFAULT_CHUNK_WINDOW = 2;
+
+  /**
+   * The default longest a rebalance may hold up clients for, in milliseconds.
+   */
+  private static final long DEFAULT_MAX_DURATION_MS = 30000;
+
   /**
    * The service container.
    */
   private final ControllerServiceContainer services;
 
   /**
-   * The final list of rebalance resolution operations that will be performed.
+   * The final list of rebalance resolution operations that will be performed, or null until the
+   * plan has been worked out. It is set after {@link #completionLatch}, so a Dstore that finds it
+   * set can rely on the latch.
    */
-  private Map<DstoreModel, RebalanceResolutionOperation> finalOps;
+  private volatile Map<DstoreModel, RebalanceResolutionOperation> finalOps;
 
   /**
    * A latch used to track completion of the rebalance operation.
    */
-  private CountDownLatch completionLatch;
+  private volatile CountDownLatch completionLatch;
+
+  /**
+   * The maximum number of files in each chunk of a Dstore's plan.
+   */
+  private final int chunkSize = Math.max(1,
+      Settings.getInt(Settings.CONTROLLER_REBALANCE_CHUNK_FILES, DEFAULT_CHUNK_FILES));
+
+  /**
+   * The number of chunks each Dstore may have been sent but not yet completed.
+   */
+  private final int chunkWindow = Math.max(1,
+      Settings.getInt(Settings.CONTROLLER_REBALANCE_CHUNK_WINDOW, DEFAULT_CHUNK_WINDOW));
+
+  /**
+   * The longest the rebalance may hold up clients for, in milliseconds.
+   */
+  private final long maxDurationMs = Math.max(1,
+      Settings.getLong(Settings.CONTROLLER_REBALANCE_MAX_DURATION_MS, DEFAULT_MAX_DURATION_MS));
+
+  /**
+   * The chunks each Dstore has been sent but not yet completed. A plan sent whole is chunk 0.
+   */
+  private final Map<DstoreModel, Set<Integer>> sentChunks = new HashMap<>();
+
+  /**
+   * Whether the rebalance has stopped waiting, so no more chunks are sent.
+   */
+  private boolean stopped = false;
+
+  /**
+   * The number of chunks in each Dstore's plan.
+   */
+  private final Map<DstoreModel, Integer> chunkCounts = new HashMap<>();
+
+  /**
+   * The next chunk to send to each Dstore.
+   */
+  private final Map<DstoreModel, Integer> nextChunks = new HashMap<>();
 
   /**
    * Creates a new operation.
@@ -38,10 +97,32 @@ public class RebalanceOperation implements Runnable {
   }
 
   /**
-   * Executes the operation.
+   * Executes the operation. The queue hold is always released afterwards, even if the rebalance
+   * was aborted, and the scheduler is told how long the rebalance took.
    */
   @Override
   public void run() {
+    var start = System.nanoTime();
+
+    try {
+      rebalance();
+    } finally {
+      // This line MUST be here to ensure the blocking operation is cleared off.
+      // If the BOS is not told about the end of the rebalance operation, no messages will be
+      // handled again!
+      services.getBlockingOperationsService().finishRebalance();
+      services.getIndexService().finishRebalance();
+      services.getRebalanceScheduler()
+          .rebalanceFinished(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+      Logger.info("Done at {}", LocalDateTime.now().toString());
+    }
+  }
+
+  /**
+   * Works out and carries out the rebalance plan.
+   */
+  private void rebalance() {
     try {
       if (!services.getIndexService().refreshFileList()) {
         Logger.warn("Couldn't refresh file list for all Dstores, aborting rebalance");
@@ -63,12 +144,40 @@ public class RebalanceOperation implements Runnable {
     Logger.info("Target files for each Dstore is between {} and {}", targetFileCountLower,
         targetFileCountUpper);
 
+    var storeOps = new HashMap<DstoreModel, RebalanceResolutionOperation>();
+    dstores.forEach(d -> storeOps.put(d, new RebalanceResolutionOperation()));
+
+    var filesOnStores = new HashMap<DstoreModel, Integer>();
+    dstores.forEach(d -> filesOnStores.put(d,
+        services.getIndexService().getFilesByDstore(d).size()));
+
+    // Remove copies that files no longer want, such as the extra copies of a hot file that has
+    // cooled, from the Dstores that store the most files
+    var surplusCopies = 0;
+    for (var f : services.getIndexService().getFiles()) {
+      var surplus = f.getDstores().size() - getReplicaTarget(f);
+      if (surplus <= 0) {
+        continue;
+      }
+
+      var holders = f.getDstores().stream().filter(storeOps::containsKey)
+          .sorted(Comparator.comparingInt((DstoreModel d) -> filesOnStores.get(d)).reversed())
+          .limit(surplus).toList();
+      for (var store : holders) {
+        storeOps.get(store).deleteFile(f);
+        filesOnStores.merge(store, -1, Integer::sum);
+        surplusCopies++;
+      }
+    }
+
+    Logger.info("{} surplus copies of files will be removed", surplusCopies);
+
     // Find all Dstores that store too few files or too many files
     var dstoresWithShortage = new HashMap<DstoreModel, Integer>();
     var dstoresWithOverage = new HashMap<DstoreModel, Integer>();
 
     for (DstoreModel store : dstores) {
-      var filesOnStore = services.getIndexService().getFilesByDstore(store).size();
+      var filesOnStore = filesOnStores.get(store);
 
       if (filesOnStore < targetFileCountLower) { // shortage
         var diff = targetFileCountLower - filesOnStore;
@@ -86,17 +195,13 @@ public class RebalanceOperation implements Runnable {
     // Find all files that are not stored on enough Dstores
     var filesWithShortages = new HashMap<IndexedFile, Integer>();
     services.getIndexService().getFiles().forEach(f -> {
-      if (f.getDstores().size() < services.getController().getReplicationFactor()) {
-        filesWithShortages.put(f,
-            services.getController().getReplicationFactor() - f.getDstores().size());
+      if (f.getDstores().size() < getReplicaTarget(f)) {
+        filesWithShortages.put(f, getReplicaTarget(f) - f.getDstores().size());
       }
     });
 
     Logger.info("{} files have a replication shortage", filesWithShortages.size());
 
-    var storeOps = new HashMap<DstoreModel, RebalanceResolutionOperation>();
-    dstores.forEach(d -> storeOps.put(d, new RebalanceResolutionOperation()));
-
     Stack<StoredFile> fileStack = new Stack<>();
 
     // Add all files that need to be replicated more times to the stack n times
@@ -113,33 +218,62 @@ public class RebalanceOperation implements Runnable {
     });
 
     // Dstores with overage should push some arbitrary files to the stack
+    var movedFiles = new HashSet<StoredFile>();
     dstoresWithOverage.forEach((store, count) -> {
       var op = storeOps.get(store);
       var filesOnStore = services.getIndexService().getFilesByDstore(store);
-      filesOnStore.stream().limit(count).forEach(f -> {
-        fileStack.push(new StoredFile(store, f));
-        op.deleteFile(f);
-      });
+      filesOnStore.stream().filter(f -> !op.getFilesToRemove().contains(f)).limit(count)
+          .forEach(f -> {
+            var sf = new StoredFile(store, f);
+            fileStack.push(sf);
+            movedFiles.add(sf);
+            op.deleteFile(f);
+          });
     });
 
-    // Dstores with shortages should take files from the stack
-    dstoresWithShortage.forEach((store, count) -> {
-      for (int i = 0; i < count; i++) {
+    // Dstores with shortages should take files from the stack, the Dstores with the most free
+    // space first, skipping files they already have, are already being sent or have no room for,
+    // which are put back for another Dstore
+    var incoming = new HashMap<DstoreModel, Set<IndexedFile>>();
+    var shortageOrder = dstoresWithShortage.keySet().stream()
+        .sorted(Comparator.comparingLong(this::getFreeBytes).reversed()).toList();
+    for (var store : shortageOrder) {
+      var count = dstoresWithShortage.get(store);
+      var received = incoming.computeIfAbsent(store, k -> new HashSet<>());
+      var receivedBytes = 0L;
+      var skipped = new ArrayList<StoredFile>();
+
+      for (int i = 0; i < count && !fileStack.empty(); ) {
         var sf = fileStack.pop();
-        var sfOp = storeOps.get(sf.getStore());
-        sfOp.sendFileTo(sf.getFile(), store);
+        if (sf.getFile().getDstores().contains(store) || received.contains(sf.getFile())
+            || store.isLowOnSpace(receivedBytes + sf.getFile().getSize())) {
+          skipped.add(sf);
+          continue;
+        }
+
+        storeOps.get(sf.getStore()).sendFileTo(sf.getFile(), store);
+        received.add(sf.getFile());
+        receivedBytes += sf.getFile().getSize();
+        movedFiles.remove(sf);
+        i++;
       }
-    });
+
+      skipped.forEach(fileStack::push);
+    }
+
+    // Files pushed by Dstores with overage that no Dstore took must not be removed, or the copy
+    // would be lost
+    movedFiles.forEach(sf -> storeOps.get(sf.getStore()).keepFile(sf.getFile()));
 
     Logger.info("Rebalance Resolution Summary:");
-    finalOps = new HashMap<>();
+    var ops = new HashMap<DstoreModel, RebalanceResolutionOperation>();
     storeOps.forEach((store, op) -> {
       if (op.isNullOperation()) {
         Logger.info("{} will do nothing", store);
         return;
       }
 
-      finalOps.put(store, op);
+      ops.put(store, op);
       Logger.info("{} will send {} files and lose {} files", store, op.getFilesToSend().size(),
           op.getFilesToRemove().size());
     });
@@ -148,48 +282,131 @@ public class RebalanceOperation implements Runnable {
       Logger.warn("There are still {} files on the file stack!", fileStack.size());
     }
 
-    // Set up the latch
-    completionLatch = new CountDownLatch(finalOps.size());
+    // Set up the latch, which counts every chunk of every Dstore's plan
+    var totalChunks = 0;
+    for (var entry : ops.entrySet()) {
+      var chunks = entry.getValue().getChunkCount(chunkSize);
+      chunkCounts.put(entry.getKey(), chunks);
+      nextChunks.put(entry.getKey(), 1);
+      totalChunks += chunks;
+    }
 
-    // Send the messages
-    finalOps.forEach((store, op) -> store.getHandler().send(op.toRebalanceMessage()));
+    completionLatch = new CountDownLatch(totalChunks);
+    finalOps = ops;
+    Logger.info("Rebalance plan is {} chunks of up to {} files", totalChunks, chunkSize);
 
-    // Wait for completion
+    // Send the first chunks; each completion sends the next one
+    for (var store : ops.keySet()) {
+      for (int i = 0; i < chunkWindow; i++) {
+        sendNextChunk(store);
+      }
+    }
+
+    // Wait for completion, for as long as chunks keep completing, but no longer than the
+    // deadline, as clients are held up until the rebalance finishes
+    var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(
+        Math.max(maxDurationMs, services.getController().getTimeoutMs()));
     try {
-      if (!completionLatch.await(services.getController().getTimeoutMs(), TimeUnit.MILLISECONDS)) {
-        Logger.warn("Not all Dstores responded to rebalance in time!");
+      var remaining = completionLatch.getCount();
+      while (!completionLatch.await(Math.min(
+          TimeUnit.MILLISECONDS.toNanos(services.getController().getTimeoutMs()),
+          deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+        if (System.nanoTime() - deadline >= 0) {
+          Logger.warn("Rebalance ran out of time with {} chunks to go, leaving them for the next "
+              + "rebalance", completionLatch.getCount());
+          break;
+        }
+
+        if (completionLatch.getCount() == remaining) {
+          Logger.warn("Not all Dstores responded to rebalance in time!");
+          break;
+        }
+
+        remaining = completionLatch.getCount();
+        Logger.info("Rebalance still progressing, {} chunks to go", remaining);
       }
     } catch (InterruptedException e) {
       Logger.error("Completion timeout interrupted");
+    } finally {
+      synchronized (this) {
+        stopped = true;
+      }
     }
-
-    // This line MUST be here to ensure the blocking operation is cleared off.
-    // If the BOS is not told about the end of the rebalance operation, no messages will be
-    // handled again!
-    services.getBlockingOperationsService().finishRebalance();
-    services.getIndexService().finishRebalance();
-
-    Logger.info("Done at {}", LocalDateTime.now().toString());
   }
 
   /**
-   * Handles a REBALANCE_COMPLETE message.
+   * Handles a REBALANCE_COMPLETE message for one chunk, and sends the Dstore its next chunk if it
+   * has one. The index has already been updated from the REBALANCE_PROGRESS messages the Dstore
+   * sent for each file, so this only records that the chunk has finished.
    *
    * @param dstore the store that completed the rebalance
+   * @param chunk  the chunk that was completed, or 0 if the plan was sent whole
+   * @see IndexService#handleRebalanceProgress(DstoreModel, RebalanceProgressMessage)
    */
-  public void handleCompleteMessage(DstoreModel dstore) {
+  public void handleCompleteMessage(DstoreModel dstore, int chunk) {
+    var ops = finalOps;
+    if (ops == null) {
+      Logger.warn("{} completed a rebalance before it was planned, ignoring it", dstore);
+      return;
+    }
+
+    if (!ops.containsKey(dstore)) {
+      Logger.warn("{} completed a rebalance it was not part of", dstore);
+      return;
+    }
+
+    if (!markCompleted(dstore, chunk)) {
+      Logger.warn("{} completed rebalance chunk {} it was not sent, ignoring it", dstore, chunk);
+      return;
+    }
+
     completionLatch.countDown();
-    Logger.info("Got rebalance completion message, {} to go", completionLatch.getCount());
+    Logger.info("Got rebalance completion message for chunk {}, {} to go", chunk,
+        completionLatch.getCount());
 
-    var op = finalOps.get(dstore);
+    sendNextChunk(dstore);
+  }
 
-    op.getFilesToSend().forEach((file, stores) -> {
-      stores.forEach(file::addDstore);
-    });
+  /**
+   * Records that a Dstore has completed a chunk, if it was sent that chunk and has not completed it
+   * already. This stops a late REBALANCE_COMPLETE from an earlier rebalance being counted.
+   *
+   * @param dstore the Dstore
+   * @param chunk  the chunk, or 0 if the plan was sent whole
+   * @return whether the chunk was outstanding
+   */
+  private synchronized boolean markCompleted(DstoreModel dstore, int chunk) {
+    var sent = sentChunks.get(dstore);
+    return sent != null && sent.remove(chunk);
+  }
 
-    for (IndexedFile removedFile : op.getFilesToRemove()) {
-      removedFile.removeDstore(dstore);
+  /**
+   * Sends a Dstore the next chunk of its plan, if there are any left and the rebalance has not
+   * stopped waiting. A plan that fits in a single chunk is sent as a plain REBALANCE message.
+   *
+   * @param dstore the Dstore to send to
+   */
+  private synchronized void sendNextChunk(DstoreModel dstore) {
+    var chunk = nextChunks.get(dstore);
+    var chunks = chunkCounts.get(dstore);
+    if (stopped || chunk > chunks) {
+      return;
     }
+
+    nextChunks.put(dstore, chunk + 1);
+    sentChunks.computeIfAbsent(dstore, d -> new HashSet<>()).add(chunks == 1 ? 0 : chunk);
+
+    var op = finalOps.get(dstore);
+    dstore.getHandler().send(
+        chunks == 1 ? op.toRebalanceMessage() : op.toRebalanceMessage(chunk, chunkSize));
+  }
+
+  /**
+   * Returns how much free space a Dstore last reported, or the most possible if it hasn't.
+   */
+  private long getFreeBytes(DstoreModel dstore) {
+    var stats = dstore.getStats();
+    return stats == null || stats.getFreeBytes() < 0 ? Long.MAX_VALUE : stats.getFreeBytes();
   }
 
   /**
@@ -210,7 +427,19 @@ public class RebalanceOperation implements Runnable {
    * Returns the target file count.
    */
   private double getTargetFileCount() {
-    return (double) (services.getIndexService().getFiles().size() * services.getController()
-        .getReplicationFactor()) / services.getDstoreService().getAllDstores().size();
+    var copies = services.getIndexService().getFiles().stream()
+        .mapToLong(this::getReplicaTarget).sum();
+    return (double) copies / services.getDstoreService().getAllDstores().size();
+  }
+
+  /**
+   * Returns the number of copies a file should have, which is its own replication factor plus the
+   * extra copies of a hot file, but is never more than the number of Dstores.
+   *
+   * @param file the file
+   * @return the number of copies
+   */
+  private int getReplicaTarget(IndexedFile file) {
+    return Math.min(services.getDstoreService().getAllDstores().size(), file.getReplicaTarget());
   }
 }
@@ -0,0 +1,62 @@
+/**
+ * A message from a Dstore to the controller reporting that one step of a rebalance has finished:
+ * either a file has been stored by another Dstore, or the reporting Dstore has removed a file. The
+ * controller commits each step to the index as soon as it is reported.
+ *
+ * @author George Peppard
+ */
+public class RebalanceProgressMessage extends Message {
+
+  /**
+   * The action for a file that has been stored by another Dstore.
+   */
+  public static final String SENT = "SENT";
+
+  /**
+   * The action for a file that has been removed by the reporting Dstore.
+   */
+  public static final String REMOVED = "REMOVED";
+
+  private final String action;
+  private final String fileName;
+  private final int port;
+
+  public RebalanceProgressMessage(String action, String fileName, int port) {
+    super(Protocol.REBALANCE_PROGRESS);
+
+    this.action = action;
+    this.fileName = fileName;
+    this.port = port;
+  }
+
+  public static RebalanceProgressMessage sent(String fileName, int port) {
+    return new RebalanceProgressMessage(SENT, fileName, port);
+  }
+
+  public static RebalanceProgressMessage removed(String fileName) {
+    return new RebalanceProgressMessage(REMOVED, fileName, 0);
+  }
+
+  public static RebalanceProgressMessage parse(String[] args) {
+    return new RebalanceProgressMessage(args[0], args[1],
+        args.length > 2 ? Integer.parseInt(args[2]) : 0);
+  }
+
+  @Override
+  public String toString() {
+    var args = action + " " + fileName;
+    return super.toString() + " " + (SENT.equals(action) ? args + " " + port : args);
+  }
+
+  public String getAction() {
+    return action;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public int getPort() {
+    return port;
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * An admin message changing the rate limit of outgoing rebalance transfers on a Dstore.
+ *
+ * @author George Peppard
+ */
+public class RebalanceRateMessage extends Message {
+
+  private final long bytesPerSecond;
+
+  public RebalanceRateMessage(long bytesPerSecond) {
+    super(Protocol.REBALANCE_RATE);
+
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  public static RebalanceRateMessage parse(String[] args) {
+    return new RebalanceRateMessage(Long.parseLong(args[0]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + bytesPerSecond;
+  }
+
+  public long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+}
@@ -1,7 +1,9 @@
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * An operation that happens on a Dstore that consists of several actions, taken to resolve a
@@ -19,7 +21,12 @@ public class RebalanceResolutionOperation {
   /**
    * The files to remove.
    */
-  private final List<IndexedFile> filesToRemove = new ArrayList<>();
+  private final Set<IndexedFile> filesToRemove = new LinkedHashSet<>();
+
+  /**
+   * Every file that is sent or removed, built when the operation is first split into chunks.
+   */
+  private List<IndexedFile> affectedFiles;
 
   /**
    * Returns whether the operation is empty; that is, nothing needs to be done on this Dstore.
@@ -59,6 +66,18 @@ public class RebalanceResolutionOperation {
     return this;
   }
 
+  /**
+   * Stops tracking a file as to be removed.
+   *
+   * @param file the file to keep
+   * @return the operation
+   */
+  public RebalanceResolutionOperation keepFile(IndexedFile file) {
+    filesToRemove.remove(file);
+
+    return this;
+  }
+
   /**
    * Returns the files to be sent, and to which Dstore they are to be sent to.
    */
@@ -69,7 +88,7 @@ public class RebalanceResolutionOperation {
   /**
    * Returns the files to be removed.
    */
-  public List<IndexedFile> getFilesToRemove() {
+  public Set<IndexedFile> getFilesToRemove() {
     return filesToRemove;
   }
 
@@ -84,4 +103,58 @@ public class RebalanceResolutionOperation {
 
     return new RebalanceMessage(sends, removes);
   }
+
+  /**
+   * Returns the number of chunks this operation is split into when no chunk may mention more than
+   * a certain number of files.
+   *
+   * @param chunkSize the maximum number of files in each chunk
+   * @return the number of chunks
+   */
+  public int getChunkCount(int chunkSize) {
+    return (getAffectedFiles().size() + chunkSize - 1) / chunkSize;
+  }
+
+  /**
+   * Returns a REBALANCE_PART message that performs one chunk of the operations. Every send and the
+   * removal of any one file are always in the same chunk, so a file is never removed before it
+   * has been sent.
+   *
+   * @param chunk     the number of the chunk, starting at 1
+   * @param chunkSize the maximum number of files in each chunk
+   * @return the message for the chunk
+   */
+  public RebalanceMessage toRebalanceMessage(int chunk, int chunkSize) {
+    var files = getAffectedFiles();
+    var chunkFiles = files.subList((chunk - 1) * chunkSize,
+        Math.min(chunk * chunkSize, files.size()));
+
+    var sends = new HashMap<String, int[]>();
+    var removes = new ArrayList<String>();
+    for (var file : chunkFiles) {
+      if (filesToSend.containsKey(file)) {
+        sends.put(file.getName(),
+            filesToSend.get(file).stream().mapToInt(DstoreModel::getPort).toArray());
+      }
+
+      if (filesToRemove.contains(file)) {
+        removes.add(file.getName());
+      }
+    }
+
+    return new RebalanceMessage(chunk, sends, removes.toArray(String[]::new));
+  }
+
+  /**
+   * Returns every file this operation sends or removes, in a stable order.
+   */
+  private List<IndexedFile> getAffectedFiles() {
+    if (affectedFiles == null) {
+      var files = new LinkedHashSet<IndexedFile>(filesToSend.keySet());
+      files.addAll(filesToRemove);
+      affectedFiles = new ArrayList<>(files);
+    }
+
+    return affectedFiles;
+  }
 }
@@ -0,0 +1,31 @@
+import java.util.Map;
+
+/**
+ * A message between Dstores answering a {@link RebalanceResumeMessage} with the offset each file
+ * should be resumed from.
+ *
+ * @author George Peppard
+ */
+public class RebalanceResumeFromMessage extends Message {
+
+  private final Map<String, Integer> offsets;
+
+  public RebalanceResumeFromMessage(Map<String, Integer> offsets) {
+    super(Protocol.REBALANCE_RESUME_FROM);
+
+    this.offsets = offsets;
+  }
+
+  public static RebalanceResumeFromMessage parse(String[] args) {
+    return new RebalanceResumeFromMessage(RebalanceResumeMessage.parsePairs(args));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + RebalanceResumeMessage.formatPairs(offsets);
+  }
+
+  public Map<String, Integer> getOffsets() {
+    return offsets;
+  }
+}
@@ -0,0 +1,62 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A message between Dstores asking how much of each listed file has already been received by an
+ * earlier, interrupted rebalance. It is answered with a {@link RebalanceResumeFromMessage}.
+ *
+ * @author George Peppard
+ */
+public class RebalanceResumeMessage extends Message {
+
+  private final Map<String, Integer> fileSizes;
+
+  public RebalanceResumeMessage(Map<String, Integer> fileSizes) {
+    super(Protocol.REBALANCE_RESUME);
+
+    this.fileSizes = fileSizes;
+  }
+
+  public static RebalanceResumeMessage parse(String[] args) {
+    return new RebalanceResumeMessage(parsePairs(args));
+  }
+
+  /**
+   * Parses a count followed by that many file name and number pairs.
+   *
+   * @param args the message arguments
+   * @return the file names mapped to their numbers, in order
+   */
+  static Map<String, Integer> parsePairs(String[] args) {
+    var count = Integer.parseInt(args[0]);
+    var pairs = new LinkedHashMap<String, Integer>();
+
+    for (int i = 0; i < count; i++) {
+      pairs.put(args[1 + i * 2], Integer.parseInt(args[2 + i * 2]));
+    }
+
+    return pairs;
+  }
+
+  /**
+   * Formats file name and number pairs, preceded by their count.
+   *
+   * @param pairs the pairs to format
+   * @return the formatted arguments
+   */
+  static String formatPairs(Map<String, Integer> pairs) {
+    var args = new StringBuilder().append(pairs.size());
+    pairs.forEach((name, value) -> args.append(" ").append(name).append(" ").append(value));
+
+    return args.toString();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + formatPairs(fileSizes);
+  }
+
+  public Map<String, Integer> getFileSizes() {
+    return fileSizes;
+  }
+}
@@ -0,0 +1,300 @@
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service that decides when the controller rebalances. Dstores joining are debounced, so a group
+ * of Dstores starting together causes a single rebalance. Periodic rebalances are skipped while the
+ * index is balanced enough, and are held back after a rebalance that took a long time, so that
+ * rebalancing cannot take up most of the controller's time. Each decision is counted in the
+ * metrics service under {@code rebalance.scheduler.*}.
+ *
+ * @author George Peppard
+ */
+public class RebalanceScheduler {
+
+  /**
+   * The default time to wait for more Dstores to join before rebalancing, in milliseconds.
+   */
+  private static final long DEFAULT_DEBOUNCE_MS = 1000;
+
+  /**
+   * The default longest time a rebalance can be put off by Dstores that keep joining, in
+   * milliseconds.
+   */
+  private static final long DEFAULT_MAX_DEBOUNCE_MS = 10000;
+
+  /**
+   * The default imbalance, as a fraction of all replicas, at or below which a periodic rebalance
+   * is skipped.
+   */
+  private static final double DEFAULT_IMBALANCE_THRESHOLD = 0;
+
+  /**
+   * The default number of periodic rebalances in a row that may be skipped because the index is
+   * balanced. The next one runs anyway, to catch files Dstores have lost.
+   */
+  private static final int DEFAULT_MAX_SKIPS = 10;
+
+  /**
+   * The default multiple of the last rebalance's duration to wait after it before running a
+   * periodic rebalance.
+   */
+  private static final double DEFAULT_BACKOFF_FACTOR = 4;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The executor that runs the scheduler's tasks.
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      r -> new Thread(r, "CLR Rebalance Scheduler"));
+
+  /**
+   * The time to wait for more Dstores to join before rebalancing, in milliseconds.
+   */
+  private final long debounceMs = Settings.getLong(Settings.CONTROLLER_REBALANCE_DEBOUNCE_MS,
+      DEFAULT_DEBOUNCE_MS);
+
+  /**
+   * The longest time a rebalance can be put off by Dstores that keep joining, in milliseconds.
+   */
+  private final long maxDebounceMs = Settings.getLong(
+      Settings.CONTROLLER_REBALANCE_MAX_DEBOUNCE_MS, DEFAULT_MAX_DEBOUNCE_MS);
+
+  /**
+   * The imbalance at or below which a periodic rebalance is skipped.
+   */
+  private final double imbalanceThreshold = Settings.getDouble(
+      Settings.CONTROLLER_REBALANCE_IMBALANCE_THRESHOLD, DEFAULT_IMBALANCE_THRESHOLD);
+
+  /**
+   * The number of periodic rebalances in a row that may be skipped because the index is balanced.
+   */
+  private final int maxSkips = Settings.getInt(Settings.CONTROLLER_REBALANCE_MAX_SKIPS,
+      DEFAULT_MAX_SKIPS);
+
+  /**
+   * The multiple of the last rebalance's duration to wait after it before a periodic rebalance.
+   */
+  private final double backoffFactor = Settings.getDouble(
+      Settings.CONTROLLER_REBALANCE_BACKOFF_FACTOR, DEFAULT_BACKOFF_FACTOR);
+
+  /**
+   * The debounced rebalance waiting to run, if any.
+   */
+  private ScheduledFuture<?> pendingRebalance;
+
+  /**
+   * When the first membership change that the pending rebalance is waiting on happened, from
+   * {@link System#nanoTime()}.
+   */
+  private long pendingSinceNanos;
+
+  /**
+   * Whether a membership change happened while a rebalance was running, so another should run
+   * when it finishes.
+   */
+  private boolean rerunAfterCurrent = false;
+
+  /**
+   * The number of periodic rebalances skipped in a row.
+   */
+  private int skipsInARow = 0;
+
+  /**
+   * How long the last rebalance took, in milliseconds.
+   */
+  private long lastDurationMs = 0;
+
+  /**
+   * When the last rebalance finished, from {@link System#nanoTime()}.
+   */
+  private long lastFinishedNanos = 0;
+
+  /**
+   * The imbalance measured at the last periodic check.
+   */
+  private double lastImbalance = 0;
+
+  /**
+   * Initialises the scheduler and starts the periodic checks.
+   *
+   * @param services the service container
+   */
+  public RebalanceScheduler(ControllerServiceContainer services) {
+    this.services = services;
+
+    var periodSecs = services.getController().getRebalancePeriodSecs();
+    Logger.info("Initialising periodic rebalance with period {}s", periodSecs);
+    executor.scheduleAtFixedRate(this::runPeriodicCheck, periodSecs, periodSecs, TimeUnit.SECONDS);
+
+    var metrics = services.getMetricsService();
+    metrics.registerGauge("rebalance.scheduler.imbalance", this::getLastImbalance);
+    metrics.registerGauge("rebalance.scheduler.last-duration-ms", this::getLastDurationMs);
+  }
+
+  /**
+   * Requests a rebalance because a Dstore has joined. The rebalance waits until no Dstore has
+   * joined for a short time, so that Dstores joining together share one rebalance.
+   */
+  public synchronized void requestMembershipRebalance() {
+    var now = System.nanoTime();
+
+    if (pendingRebalance != null && pendingRebalance.cancel(false)) {
+      services.getMetricsService().increment("rebalance.scheduler.joins-coalesced");
+    } else {
+      pendingSinceNanos = now;
+    }
+
+    var waitedMs = TimeUnit.NANOSECONDS.toMillis(now - pendingSinceNanos);
+    var delayMs = Math.max(0, Math.min(debounceMs, maxDebounceMs - waitedMs));
+
+    Logger.info("Rebalance requested by a Dstore joining, running in {}ms unless another joins",
+        delayMs);
+    pendingRebalance = executor.schedule(this::runMembershipRebalance, delayMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Records that a rebalance has finished, and starts another if Dstores joined while it ran.
+   *
+   * @param durationMs how long the rebalance took, in milliseconds
+   */
+  public synchronized void rebalanceFinished(long durationMs) {
+    lastDurationMs = durationMs;
+    lastFinishedNanos = System.nanoTime();
+    skipsInARow = 0;
+
+    if (rerunAfterCurrent) {
+      rerunAfterCurrent = false;
+      Logger.info("Dstores joined during the last rebalance, running another");
+      executor.execute(this::runMembershipRebalance);
+    }
+  }
+
+  /**
+   * Runs the rebalance that was waiting on membership changes.
+   */
+  private void runMembershipRebalance() {
+    synchronized (this) {
+      pendingRebalance = null;
+    }
+
+    if (!services.getDstoreService().hasEnoughDstores()) {
+      Logger.info("Not running rebalance as not enough Dstores");
+      return;
+    }
+
+    if (!services.getIndexService().startRebalance("membership")) {
+      synchronized (this) {
+        rerunAfterCurrent = true;
+      }
+
+      services.getMetricsService().increment("rebalance.scheduler.deferred-busy");
+      return;
+    }
+
+    services.getMetricsService().increment("rebalance.scheduler.runs-membership");
+  }
+
+  /**
+   * Decides whether the periodic rebalance should run this period, and runs it if so.
+   */
+  private void runPeriodicCheck() {
+    var metrics = services.getMetricsService();
+    String reason;
+
+    synchronized (this) {
+      var sinceLastMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastFinishedNanos);
+      if (lastFinishedNanos != 0 && sinceLastMs < lastDurationMs * backoffFactor) {
+        Logger.info("Skipping periodic rebalance, the last one took {}ms and finished {}ms ago",
+            lastDurationMs, sinceLastMs);
+        metrics.increment("rebalance.scheduler.skipped-backoff");
+        return;
+      }
+
+      lastImbalance = measureImbalance();
+      if (lastImbalance > imbalanceThreshold) {
+        reason = "imbalance";
+      } else if (skipsInARow >= maxSkips) {
+        reason = "forced";
+      } else {
+        skipsInARow++;
+        Logger.info("Skipping periodic rebalance, imbalance {} is within threshold {}",
+            lastImbalance, imbalanceThreshold);
+        metrics.increment("rebalance.scheduler.skipped-balanced");
+        return;
+      }
+    }
+
+    if (!services.getDstoreService().hasEnoughDstores()) {
+      metrics.increment("rebalance.scheduler.skipped-not-enough-dstores");
+      return;
+    }
+
+    if (!services.getIndexService().startRebalance("periodic, " + reason)) {
+      metrics.increment("rebalance.scheduler.skipped-busy");
+      return;
+    }
+
+    metrics.increment("rebalance.scheduler.runs-" + reason);
+  }
+
+  /**
+   * Measures how far the index is from balanced, without contacting any Dstores. This is the
+   * number of missing or surplus replicas plus the number of files each Dstore holds outside of
+   * its target range, as a fraction of the number of replicas there should be.
+   *
+   * @return the imbalance, where 0 is balanced
+   */
+  private double measureImbalance() {
+    var files = services.getIndexService().getFiles();
+    var dstores = services.getDstoreService().getAllDstores();
+
+    if (files.isEmpty() || dstores.isEmpty()) {
+      return 0;
+    }
+
+    var counts = new HashMap<DstoreModel, Integer>();
+    dstores.forEach(d -> counts.put(d, 0));
+
+    long misplaced = 0;
+    long copies = 0;
+    for (var file : files) {
+      var wanted = Math.min(dstores.size(), file.getReplicaTarget());
+      misplaced += Math.abs(wanted - file.getDstores().size());
+      copies += wanted;
+      file.getDstores().forEach(d -> counts.computeIfPresent(d, (k, v) -> v + 1));
+    }
+
+    var target = (double) copies / dstores.size();
+    var lower = (int) Math.floor(target);
+    var upper = (int) Math.ceil(target);
+
+    for (var count : counts.values()) {
+      misplaced += Math.max(0, lower - count) + Math.max(0, count - upper);
+    }
+
+    return (double) misplaced / copies;
+  }
+
+  /**
+   * Returns the imbalance measured at the last periodic check.
+   */
+  private synchronized double getLastImbalance() {
+    return lastImbalance;
+  }
+
+  /**
+   * Returns how long the last rebalance took, in milliseconds.
+   */
+  private synchronized long getLastDurationMs() {
+    return lastDurationMs;
+  }
+}
@@ -0,0 +1,29 @@
+/**
+ * A message between Dstores acknowledging that a file sent as part of a
+ * {@link RebalanceManifestMessage} has been stored.
+ *
+ * @author George Peppard
+ */
+public class RebalanceStoreAckMessage extends Message {
+
+  private final String fileName;
+
+  public RebalanceStoreAckMessage(String fileName) {
+    super(Protocol.REBALANCE_STORE_ACK);
+
+    this.fileName = fileName;
+  }
+
+  public static RebalanceStoreAckMessage parse(String[] args) {
+    return new RebalanceStoreAckMessage(args[0]);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+}
@@ -8,12 +8,30 @@ public class RebalanceStoreMessage extends Message {
 
   private final String fileName;
   private final int fileSize;
+  private final int offset;
+  private final byte[] content;
 
   public RebalanceStoreMessage(String fileName, int fileSize) {
+    this(fileName, fileSize, 0, null);
+  }
+
+  /**
+   * Creates a message for a file segment whose content has already been received as part of a
+   * {@link RebalanceManifestMessage}. The offset and content are never sent with the message
+   * itself.
+   *
+   * @param fileName the name of the file
+   * @param fileSize the size of the whole file in bytes
+   * @param offset   the offset in the file that the content starts at
+   * @param content  the content of the segment, or null if it is yet to be received
+   */
+  public RebalanceStoreMessage(String fileName, int fileSize, int offset, byte[] content) {
     super(Protocol.REBALANCE_STORE);
 
     this.fileName = fileName;
     this.fileSize = fileSize;
+    this.offset = offset;
+    this.content = content;
   }
 
   public static RebalanceStoreMessage parse(String[] args) {
@@ -32,4 +50,12 @@ public class RebalanceStoreMessage extends Message {
   public int getFileSize() {
     return fileSize;
   }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public byte[] getContent() {
+    return content;
+  }
 }
@@ -0,0 +1,155 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A service that runs the outgoing Dstore to Dstore transfers of a rebalance. Transfers run on a
+ * bounded pool of workers, and every byte they send is taken from a token bucket shared by the
+ * whole Dstore, so rebalancing cannot starve clients loading files from the same Dstore.
+ *
+ * @author George Peppard
+ */
+public class RebalanceTransferService {
+
+  /**
+   * The default number of concurrent transfers.
+   */
+  private static final int DEFAULT_CONCURRENCY = 4;
+
+  /**
+   * The size of each throttled write, in bytes.
+   */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * The service container.
+   */
+  private final DstoreServiceContainer services;
+
+  /**
+   * The bucket that limits the rate of outgoing rebalance bytes.
+   */
+  private final TokenBucket bucket;
+
+  /**
+   * The pool of transfer workers.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The executor that runs rebalance plans, one chunk at a time.
+   */
+  private final ExecutorService planExecutor =
+      Executors.newSingleThreadExecutor(r -> new Thread(r, "Rebalancer"));
+
+  /**
+   * The number of transfers that are currently running.
+   */
+  private final AtomicInteger activeTransfers = new AtomicInteger();
+
+  /**
+   * The throughput of the last file sent, in bytes per second.
+   */
+  private volatile long lastThroughput = 0;
+
+  /**
+   * Initialises the service.
+   *
+   * @param services the service container
+   */
+  public RebalanceTransferService(DstoreServiceContainer services) {
+    this.services = services;
+
+    var concurrency = Math.max(1,
+        Settings.getInt(Settings.DSTORE_REBALANCE_CONCURRENCY, DEFAULT_CONCURRENCY));
+    this.bucket = new TokenBucket(Settings.getLong(Settings.DSTORE_REBALANCE_RATE, 0));
+
+    var workerCount = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(),
+        r -> new Thread(r, "DS Rebalance Transfer Worker " + workerCount.incrementAndGet()));
+
+    var metrics = services.getMetricsService();
+    metrics.registerGauge("rebalance.transfers-active", activeTransfers::get);
+    metrics.registerGauge("rebalance.transfers-queued",
+        () -> ((ThreadPoolExecutor) executor).getQueue().size());
+    metrics.registerGauge("rebalance.rate-limit-bps", bucket::getRate);
+    metrics.registerGauge("rebalance.last-throughput-bps", () -> lastThroughput);
+
+    Logger.info("Rebalance transfers limited to {} concurrent, {} bytes/s (0 is unlimited)",
+        concurrency, bucket.getRate());
+  }
+
+  /**
+   * Submits a rebalance plan, or one chunk of it, to be run after any chunks that came before it.
+   *
+   * @param plan the plan to run
+   */
+  public void submitPlan(Runnable plan) {
+    planExecutor.submit(plan);
+  }
+
+  /**
+   * Submits a transfer to be run when a worker is free.
+   *
+   * @param transfer the transfer to run
+   * @return a future that completes when the transfer has finished
+   */
+  public Future<?> submit(Runnable transfer) {
+    return executor.submit(() -> {
+      activeTransfers.incrementAndGet();
+      try {
+        transfer.run();
+      } finally {
+        activeTransfers.decrementAndGet();
+      }
+    });
+  }
+
+  /**
+   * Returns the number of transfers that are running or waiting for a worker.
+   */
+  public int getPendingTransfers() {
+    return activeTransfers.get() + ((ThreadPoolExecutor) executor).getQueue().size();
+  }
+
+  /**
+   * Sends file content to another Dstore, in chunks that are each taken from the token bucket.
+   *
+   * @param handler the connection to the other Dstore
+   * @param content the bytes to send
+   * @throws InterruptedException if the transfer is interrupted while throttled
+   */
+  public void send(AbstractConnectionHandler handler, byte[] content)
+      throws InterruptedException {
+    var metrics = services.getMetricsService();
+    var start = System.nanoTime();
+
+    for (int offset = 0; offset < content.length; offset += CHUNK_SIZE) {
+      var length = Math.min(CHUNK_SIZE, content.length - offset);
+      metrics.add("rebalance.throttle-wait-ms", bucket.acquire(length));
+
+      handler.sendBytes(content, offset, length);
+      metrics.add("rebalance.bytes-sent", length);
+    }
+
+    var elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+    lastThroughput = content.length * 1000L / elapsedMs;
+    metrics.add("rebalance.transfer-ms", elapsedMs);
+    metrics.increment("rebalance.files-sent");
+  }
+
+  /**
+   * Changes the rate limit for outgoing rebalance bytes.
+   *
+   * @param bytesPerSecond the new limit, or 0 for no limit
+   */
+  public void setRate(long bytesPerSecond) {
+    bucket.setRate(bytesPerSecond);
+    Logger.info("Rebalance transfer rate limit is now {} bytes/s", bucket.getRate());
+  }
+}
@@ -0,0 +1,28 @@
+import java.util.List;
+
+/**
+ * A message telling a client which files from a bulk remove have been removed. Files that are not
+ * listed did not exist.
+ *
+ * @author George Peppard
+ */
+public class RemoveBulkCompleteMessage extends Message {
+
+  private final List<String> fileNames;
+
+  public RemoveBulkCompleteMessage(List<String> fileNames) {
+    super(Protocol.REMOVE_BULK_COMPLETE);
+
+    this.fileNames = fileNames;
+  }
+
+  @Override
+  public String toString() {
+    return fileNames.isEmpty() ? super.toString()
+        : super.toString() + " " + String.join(" ", fileNames);
+  }
+
+  public List<String> getFileNames() {
+    return fileNames;
+  }
+}
@@ -0,0 +1,51 @@
+import java.util.List;
+
+/**
+ * A message requesting removal of many files at once, either as a list of names or as every file
+ * whose name starts with a prefix. This is an extension to the specification.
+ *
+ * @author George Peppard
+ */
+public class RemoveBulkMessage extends Message {
+
+  private final List<String> fileNames;
+  private final String prefix;
+
+  public RemoveBulkMessage(List<String> fileNames) {
+    super(Protocol.REMOVE_BULK);
+
+    this.fileNames = fileNames;
+    this.prefix = null;
+  }
+
+  public RemoveBulkMessage(String prefix) {
+    super(Protocol.REMOVE_PREFIX);
+
+    this.fileNames = List.of();
+    this.prefix = prefix;
+  }
+
+  public static RemoveBulkMessage parse(String[] args) {
+    return new RemoveBulkMessage(List.of(args));
+  }
+
+  public static RemoveBulkMessage parsePrefix(String[] args) {
+    return new RemoveBulkMessage(args[0]);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + (prefix != null ? prefix : String.join(" ", fileNames));
+  }
+
+  public List<String> getFileNames() {
+    return fileNames;
+  }
+
+  /**
+   * Returns the prefix of the files to remove, or null if they were given by name.
+   */
+  public String getPrefix() {
+    return prefix;
+  }
+}
@@ -0,0 +1,219 @@
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service that copies files which have lost replicas to other Dstores as soon as the loss is
+ * noticed, rather than waiting for the next rebalance. Files with the fewest remaining copies are
+ * repaired first. A fixed number of workers each ask one Dstore with the file to send it to one
+ * without, so repairs run alongside client operations and never hold the message queues. Extra
+ * copies of hot files, wanted by the {@link HotFileService}, are made the same way, on the least
+ * busy Dstores.
+ *
+ * @author George Peppard
+ */
+public class RepairService {
+
+  /**
+   * The default number of copies that may be in progress at once.
+   */
+  private static final int DEFAULT_CONCURRENCY = 4;
+
+  /**
+   * The number of times copying a file is attempted before it is left to the next rebalance.
+   */
+  private static final int MAX_ATTEMPTS = 3;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The files waiting to be repaired, with the fewest copies first.
+   */
+  private final PriorityBlockingQueue<RepairTask> queue = new PriorityBlockingQueue<>();
+
+  /**
+   * The files that are queued or being repaired, so that a file is never queued twice.
+   */
+  private final Set<IndexedFile> queuedFiles = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The copies that are waiting to be reported, by file name and target port.
+   */
+  private final Map<String, CompletableFuture<Void>> pendingCopies = new ConcurrentHashMap<>();
+
+  /**
+   * The order in which tasks were queued.
+   */
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * Initialises the service and starts its workers.
+   *
+   * @param services the service container
+   */
+  public RepairService(ControllerServiceContainer services) {
+    this.services = services;
+
+    var concurrency = Math.max(1,
+        Settings.getInt(Settings.CONTROLLER_REPAIR_CONCURRENCY, DEFAULT_CONCURRENCY));
+    for (int i = 0; i < concurrency; i++) {
+      var worker = new Thread(this::work, "CLR Repair Worker " + (i + 1));
+      worker.setDaemon(true);
+      worker.start();
+    }
+
+    services.getMetricsService().registerGauge("repair.queued", queue::size);
+  }
+
+  /**
+   * Queues any of the given files that have fewer copies than they should.
+   *
+   * @param files the files that may need repairing
+   */
+  public void enqueue(Collection<IndexedFile> files) {
+    var queued = 0;
+
+    for (var file : files) {
+      if (file.getDstores().size() < file.getReplicaTarget() && queuedFiles.add(file)) {
+        queue.add(new RepairTask(file, 0, sequence.incrementAndGet()));
+        queued++;
+      }
+    }
+
+    if (queued > 0) {
+      Logger.info("Queued {} files for repair", queued);
+    }
+  }
+
+  /**
+   * Handles a Dstore reporting it has copied a file to another Dstore.
+   *
+   * @param file   the file that was copied
+   * @param target the Dstore the file was copied to
+   */
+  public void handleCopied(IndexedFile file, DstoreModel target) {
+    var future = pendingCopies.remove(getCopyKey(file, target));
+    if (future != null) {
+      future.complete(null);
+    }
+  }
+
+  /**
+   * Repairs queued files until the controller stops.
+   */
+  private void work() {
+    while (true) {
+      RepairTask task;
+      try {
+        task = queue.take();
+      } catch (InterruptedException e) {
+        Logger.error("Repair worker interrupted, stopping");
+        return;
+      }
+
+      try {
+        repair(task);
+      } catch (RuntimeException e) {
+        Logger.error("Failed to repair {}: {}", task.getFile().getName(), e.getMessage());
+        queuedFiles.remove(task.getFile());
+      }
+    }
+  }
+
+  /**
+   * Makes copies of a file until it is on enough Dstores, or a copy fails.
+   *
+   * @param task the task to carry out
+   */
+  private void repair(RepairTask task) {
+    var file = task.getFile();
+    var metrics = services.getMetricsService();
+
+    while (file.getState() == IndexedFileState.AVAILABLE
+        && file.getDstores().size() < file.getReplicaTarget()) {
+      var sources = file.getDstores();
+      if (sources.isEmpty()) {
+        Logger.warn("Cannot repair {} as no Dstores have it", file.getName());
+        metrics.increment("repair.unrecoverable");
+        break;
+      }
+
+      // lost copies are spread evenly, while extra copies go where they will take the most load
+      var target = sources.size() < file.getReplicationFactor()
+          ? services.getDstoreService().getNextExcluding(sources, file.getSize())
+          : services.getDstoreService().getLeastLoadedExcluding(sources, file.getSize());
+      if (target == null) {
+        Logger.info("No Dstore can take another copy of {}", file.getName());
+        break;
+      }
+
+      // try a different source each attempt, in case one has lost its copy
+      var source = sources.get(task.getAttempt() % sources.size());
+      if (!copy(file, source, target)) {
+        queuedFiles.remove(file);
+        metrics.increment("repair.failures");
+
+        if (task.getAttempt() + 1 < MAX_ATTEMPTS && queuedFiles.add(file)) {
+          queue.add(new RepairTask(file, task.getAttempt() + 1, sequence.incrementAndGet()));
+        }
+
+        return;
+      }
+
+      metrics.increment("repair.copies");
+    }
+
+    queuedFiles.remove(file);
+  }
+
+  /**
+   * Asks one Dstore to copy a file to another, and waits for the copy to be reported.
+   *
+   * @param file   the file to copy
+   * @param source the Dstore with the file
+   * @param target the Dstore to copy the file to
+   * @return whether the copy was made in time
+   */
+  private boolean copy(IndexedFile file, DstoreModel source, DstoreModel target) {
+    var key = getCopyKey(file, target);
+    var future = new CompletableFuture<Void>();
+    pendingCopies.put(key, future);
+
+    Logger.info("Repairing {} by copying it from {} to {}", file.getName(), source, target);
+    source.getHandler().sendBatched(new ReplicateMessage(file.getName(), target.getPort()));
+
+    try {
+      future.get(services.getController().getTimeoutMs(), TimeUnit.MILLISECONDS);
+      return true;
+    } catch (TimeoutException e) {
+      Logger.warn("Copying {} from {} to {} timed out", file.getName(), source, target);
+    } catch (InterruptedException | ExecutionException e) {
+      Logger.error("Copying {} from {} to {} failed", file.getName(), source, target);
+    } finally {
+      pendingCopies.remove(key);
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns the key a copy is waiting under in {@link #pendingCopies}.
+   *
+   * @param file   the file being copied
+   * @param target the Dstore it is being copied to
+   * @return the key
+   */
+  private static String getCopyKey(IndexedFile file, DstoreModel target) {
+    return file.getName() + " " + target.getPort();
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * A file waiting in the {@link RepairService} queue to be copied to another Dstore.
+ *
+ * @author George Peppard
+ */
+public class RepairTask implements Comparable<RepairTask> {
+
+  /**
+   * The file to copy.
+   */
+  private final IndexedFile file;
+
+  /**
+   * The number of copies of the file when it was queued.
+   */
+  private final int replicas;
+
+  /**
+   * The number of times copying the file has already failed.
+   */
+  private final int attempt;
+
+  /**
+   * The order the task was queued in, which breaks ties between files with the same number of
+   * copies.
+   */
+  private final long sequence;
+
+  /**
+   * Creates a new task.
+   *
+   * @param file     the file to copy
+   * @param attempt  the number of times copying the file has already failed
+   * @param sequence the order the task was queued in
+   */
+  public RepairTask(IndexedFile file, int attempt, long sequence) {
+    this.file = file;
+    this.replicas = file.getDstores().size();
+    this.attempt = attempt;
+    this.sequence = sequence;
+  }
+
+  /**
+   * Returns the file to copy.
+   */
+  public IndexedFile getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the number of times copying the file has already failed.
+   */
+  public int getAttempt() {
+    return attempt;
+  }
+
+  /**
+   * Orders tasks so that files with the fewest copies are repaired first.
+   */
+  @Override
+  public int compareTo(RepairTask other) {
+    if (replicas != other.replicas) {
+      return Integer.compare(replicas, other.replicas);
+    }
+
+    return Long.compare(sequence, other.sequence);
+  }
+}
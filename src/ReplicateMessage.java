@@ -0,0 +1,35 @@
+/**
+ * A message from the controller asking a Dstore to copy one of its files to another Dstore, to
+ * replace a copy that was lost with a Dstore.
+ *
+ * @author George Peppard
+ */
+public class ReplicateMessage extends Message {
+
+  private final String fileName;
+  private final int port;
+
+  public ReplicateMessage(String fileName, int port) {
+    super(Protocol.REPLICATE);
+
+    this.fileName = fileName;
+    this.port = port;
+  }
+
+  public static ReplicateMessage parse(String[] args) {
+    return new ReplicateMessage(args[0], Integer.parseInt(args[1]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName + " " + port;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public int getPort() {
+    return port;
+  }
+}
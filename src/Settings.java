@@ -0,0 +1,299 @@
+/**
+ * Optional tuning settings. These are read from system properties (for example
+ * {@code -Ddstore.rebalance.rate=1048576}) so that the positional arguments of the controller and
+ * Dstore stay exactly as the specification requires.
+ *
+ * @author George Peppard
+ */
+public class Settings {
+
+  /**
+   * The maximum number of bytes per second a Dstore may send to other Dstores while rebalancing,
+   * or 0 for no limit.
+   */
+  public static final String DSTORE_REBALANCE_RATE = "dstore.rebalance.rate";
+
+  /**
+   * The maximum number of concurrent outgoing rebalance transfers on a Dstore.
+   */
+  public static final String DSTORE_REBALANCE_CONCURRENCY = "dstore.rebalance.concurrency";
+
+  /**
+   * The maximum number of files, or segments of large files, a Dstore streams to another Dstore in
+   * one rebalance batch. A value of 1 disables batching, so each file waits for its own ACK before
+   * its content is sent.
+   */
+  public static final String DSTORE_REBALANCE_BATCH_FILES = "dstore.rebalance.batch-files";
+
+  /**
+   * The number of bytes after which a rebalance batch is closed, even if it has room for more
+   * files.
+   */
+  public static final String DSTORE_REBALANCE_BATCH_BYTES = "dstore.rebalance.batch-bytes";
+
+  /**
+   * The size of the segments that large files are split into when streamed to another Dstore
+   * during a rebalance. An interrupted transfer resumes from the last segment that was stored.
+   */
+  public static final String DSTORE_REBALANCE_SEGMENT_BYTES = "dstore.rebalance.segment-bytes";
+
+  /**
+   * The time between the statistics reports a Dstore sends to the controller, in milliseconds.
+   */
+  public static final String DSTORE_STATS_INTERVAL_MS = "dstore.stats.interval-ms";
+
+  /**
+   * How long a Dstore holds a message to the controller so it can be sent in a BATCH frame with
+   * others, in microseconds, or 0 to send every message on its own.
+   */
+  public static final String DSTORE_BATCH_WINDOW_US = "dstore.batch.window-us";
+
+  /**
+   * The maximum number of files mentioned in each chunk of the rebalance plan sent to a Dstore.
+   */
+  public static final String CONTROLLER_REBALANCE_CHUNK_FILES = "controller.rebalance.chunk-files";
+
+  /**
+   * The number of rebalance plan chunks a Dstore may have been sent but not yet completed.
+   */
+  public static final String CONTROLLER_REBALANCE_CHUNK_WINDOW =
+      "controller.rebalance.chunk-window";
+
+  /**
+   * The longest a rebalance may hold up clients for, in milliseconds. Chunks not completed by then
+   * are left for the next rebalance.
+   */
+  public static final String CONTROLLER_REBALANCE_MAX_DURATION_MS =
+      "controller.rebalance.max-duration-ms";
+
+  /**
+   * How long the controller waits for more Dstores to join before rebalancing, in milliseconds.
+   */
+  public static final String CONTROLLER_REBALANCE_DEBOUNCE_MS = "controller.rebalance.debounce-ms";
+
+  /**
+   * The longest time Dstores that keep joining can put off a rebalance, in milliseconds.
+   */
+  public static final String CONTROLLER_REBALANCE_MAX_DEBOUNCE_MS =
+      "controller.rebalance.max-debounce-ms";
+
+  /**
+   * The imbalance, as a fraction of all replicas that are missing or on a Dstore with too many
+   * files, at or below which the periodic rebalance is skipped.
+   */
+  public static final String CONTROLLER_REBALANCE_IMBALANCE_THRESHOLD =
+      "controller.rebalance.imbalance-threshold";
+
+  /**
+   * The number of periodic rebalances in a row that may be skipped because the index is balanced.
+   */
+  public static final String CONTROLLER_REBALANCE_MAX_SKIPS = "controller.rebalance.max-skips";
+
+  /**
+   * The multiple of the last rebalance's duration the controller waits after it finishes before
+   * running a periodic rebalance.
+   */
+  public static final String CONTROLLER_REBALANCE_BACKOFF_FACTOR =
+      "controller.rebalance.backoff-factor";
+
+  /**
+   * The number of copies the controller may have in progress at once to repair files that lost a
+   * replica when a Dstore was lost.
+   */
+  public static final String CONTROLLER_REPAIR_CONCURRENCY = "controller.repair.concurrency";
+
+  /**
+   * The number of times clients must fail to load a file from a Dstore before the controller
+   * checks the Dstore's copy of the file.
+   */
+  public static final String CONTROLLER_READ_REPAIR_THRESHOLD = "controller.read-repair.threshold";
+
+  /**
+   * How long failed loads of a Dstore's copy of a file count towards the read repair threshold, in
+   * milliseconds.
+   */
+  public static final String CONTROLLER_READ_REPAIR_WINDOW_MS = "controller.read-repair.window-ms";
+
+  /**
+   * The time between the heartbeats the controller sends to each Dstore, in milliseconds.
+   */
+  public static final String CONTROLLER_HEARTBEAT_INTERVAL_MS =
+      "controller.heartbeat.interval-ms";
+
+  /**
+   * The phi accrual suspicion level above which the controller suspects a Dstore has failed.
+   */
+  public static final String CONTROLLER_HEARTBEAT_PHI_THRESHOLD =
+      "controller.heartbeat.phi-threshold";
+
+  /**
+   * The load rate, in loads per second, at which a file is given one extra copy. A file is given
+   * another extra copy for each further multiple of the rate.
+   */
+  public static final String CONTROLLER_HOT_THRESHOLD = "controller.hot.threshold";
+
+  /**
+   * The most extra copies a hot file is given.
+   */
+  public static final String CONTROLLER_HOT_MAX_EXTRA_REPLICAS =
+      "controller.hot.max-extra-replicas";
+
+  /**
+   * The time between updates of file load rates, in milliseconds.
+   */
+  public static final String CONTROLLER_HOT_INTERVAL_MS = "controller.hot.interval-ms";
+
+  /**
+   * The number of most requested files the controller keeps track of.
+   */
+  public static final String CONTROLLER_HEAVY_HITTERS_TOP_K = "controller.heavy-hitters.top-k";
+
+  /**
+   * The number of cells in each row of the sketch that counts requests for each file.
+   */
+  public static final String CONTROLLER_HEAVY_HITTERS_WIDTH = "controller.heavy-hitters.width";
+
+  /**
+   * The number of rows in the sketch that counts requests for each file.
+   */
+  public static final String CONTROLLER_HEAVY_HITTERS_DEPTH = "controller.heavy-hitters.depth";
+
+  /**
+   * The length of the window that requests for each file are counted over, in milliseconds.
+   */
+  public static final String CONTROLLER_HEAVY_HITTERS_WINDOW_MS =
+      "controller.heavy-hitters.window-ms";
+
+  /**
+   * The number of Dstores that must store a file before the client is told the store is complete,
+   * or 0 for all of them. The remaining copies are waited for in the background, and repaired if
+   * they do not arrive in time.
+   */
+  public static final String CONTROLLER_STORE_WRITE_QUORUM = "controller.store.write-quorum";
+
+  /**
+   * The time between the batches of removed files sent to Dstores to delete, in milliseconds.
+   */
+  public static final String CONTROLLER_PURGE_INTERVAL_MS = "controller.purge.interval-ms";
+
+  /**
+   * The most removed files listed in one PURGE message.
+   */
+  public static final String CONTROLLER_PURGE_BATCH_SIZE = "controller.purge.batch-size";
+
+  /**
+   * How long the controller holds a message to a Dstore so it can be sent in a BATCH frame with
+   * others, in microseconds, or 0 to send every message on its own.
+   */
+  public static final String CONTROLLER_BATCH_WINDOW_US = "controller.batch.window-us";
+
+  /**
+   * The number of files on a LIST_PAGE page when the client does not give a limit.
+   */
+  public static final String CONTROLLER_LIST_PAGE_SIZE = "controller.list.page-size";
+
+  /**
+   * The most files on a LIST_PAGE page, whatever limit the client gives.
+   */
+  public static final String CONTROLLER_LIST_PAGE_MAX_SIZE = "controller.list.page-max-size";
+
+  /**
+   * The number of recent namespace changes kept for watching clients to resume from.
+   */
+  public static final String CONTROLLER_WATCH_HISTORY = "controller.watch.history";
+
+  /**
+   * The most namespace changes queued for one watching client before it is told to list the files
+   * again.
+   */
+  public static final String CONTROLLER_WATCH_QUEUE = "controller.watch.queue";
+
+  /**
+   * How long a client may cache the locations of a file it was sent with LOCATE, in milliseconds.
+   */
+  public static final String CONTROLLER_LEASE_DURATION_MS = "controller.lease.duration-ms";
+
+  /**
+   * The shortest delay the controller tells clients to wait before hedging a load, in
+   * milliseconds.
+   */
+  public static final String CONTROLLER_HEDGE_MIN_DELAY_MS = "controller.hedge.min-delay-ms";
+
+  /**
+   * How long a multipart store may go without a part being stored before it is abandoned, in
+   * milliseconds.
+   */
+  public static final String CONTROLLER_MULTIPART_IDLE_TIMEOUT_MS =
+      "controller.multipart.idle-timeout-ms";
+
+  /**
+   * Whether the controller reconciles its index by comparing digests of each Dstore's files,
+   * rather than asking every Dstore for its full file list.
+   */
+  public static final String CONTROLLER_RECONCILE_DIGEST = "controller.reconcile.digest";
+
+  /**
+   * Returns an integer setting.
+   *
+   * @param key          the name of the setting
+   * @param defaultValue the value to use if the setting is absent or invalid
+   * @return the value of the setting
+   */
+  public static int getInt(String key, int defaultValue) {
+    return (int) getLong(key, defaultValue);
+  }
+
+  /**
+   * Returns a long setting.
+   *
+   * @param key          the name of the setting
+   * @param defaultValue the value to use if the setting is absent or invalid
+   * @return the value of the setting
+   */
+  public static long getLong(String key, long defaultValue) {
+    var value = System.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      Logger.warn("Ignoring invalid value {} for setting {}", value, key);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Returns a decimal setting.
+   *
+   * @param key          the name of the setting
+   * @param defaultValue the value to use if the setting is absent or invalid
+   * @return the value of the setting
+   */
+  public static double getDouble(String key, double defaultValue) {
+    var value = System.getProperty(key);
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      Logger.warn("Ignoring invalid value {} for setting {}", value, key);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Returns a boolean setting.
+   *
+   * @param key          the name of the setting
+   * @param defaultValue the value to use if the setting is absent
+   * @return the value of the setting
+   */
+  public static boolean getBoolean(String key, boolean defaultValue) {
+    var value = System.getProperty(key);
+    return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+  }
+}
@@ -0,0 +1,37 @@
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A message asking the controller for the latest statistics of every Dstore, or containing them.
+ * Each Dstore is written as {@code port:name=value,name=value}.
+ *
+ * @author George Peppard
+ */
+public class StatsMessage extends Message {
+
+  private final Map<Integer, DstoreStats> stats;
+
+  public StatsMessage() {
+    this(Map.of());
+  }
+
+  public StatsMessage(Map<Integer, DstoreStats> stats) {
+    super(Protocol.STATS);
+
+    this.stats = stats;
+  }
+
+  @Override
+  public String toString() {
+    if (stats.isEmpty()) {
+      return super.toString();
+    }
+
+    return super.toString() + " " + stats.entrySet().stream()
+        .map(e -> e.getKey() + ":" + e.getValue()).collect(Collectors.joining(" "));
+  }
+
+  public Map<Integer, DstoreStats> getStats() {
+    return stats;
+  }
+}
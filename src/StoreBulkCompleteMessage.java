@@ -0,0 +1,28 @@
+import java.util.List;
+
+/**
+ * A message telling a client which files from a bulk store have been stored. Files that are not
+ * listed were not stored in time.
+ *
+ * @author George Peppard
+ */
+public class StoreBulkCompleteMessage extends Message {
+
+  private final List<String> fileNames;
+
+  public StoreBulkCompleteMessage(List<String> fileNames) {
+    super(Protocol.STORE_BULK_COMPLETE);
+
+    this.fileNames = fileNames;
+  }
+
+  @Override
+  public String toString() {
+    return fileNames.isEmpty() ? super.toString()
+        : super.toString() + " " + String.join(" ", fileNames);
+  }
+
+  public List<String> getFileNames() {
+    return fileNames;
+  }
+}
@@ -0,0 +1,46 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A message requesting many files to be stored at once, given as {@code name size} pairs. This is
+ * an extension to the specification.
+ *
+ * @author George Peppard
+ */
+public class StoreBulkMessage extends Message {
+
+  private final Map<String, Integer> files;
+
+  public StoreBulkMessage(Map<String, Integer> files) {
+    super(Protocol.STORE_BULK);
+
+    this.files = files;
+  }
+
+  public static StoreBulkMessage parse(String[] args) {
+    if (args.length % 2 != 0) {
+      throw new IllegalArgumentException("expected name and size pairs");
+    }
+
+    var files = new LinkedHashMap<String, Integer>();
+    for (int i = 0; i < args.length; i += 2) {
+      files.put(args[i], Integer.parseInt(args[i + 1]));
+    }
+
+    return new StoreBulkMessage(files);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + files.entrySet().stream()
+        .map(e -> e.getKey() + " " + e.getValue()).collect(Collectors.joining(" "));
+  }
+
+  /**
+   * Returns the sizes of the files to store, by name, in the order they were given.
+   */
+  public Map<String, Integer> getFiles() {
+    return files;
+  }
+}
@@ -0,0 +1,37 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A message telling a client where to send each of the files in a bulk store. Each file is given
+ * as {@code name:port,port,...}, or as {@code name:ERROR_...} if it cannot be stored.
+ *
+ * @author George Peppard
+ */
+public class StoreBulkToMessage extends Message {
+
+  private final Map<String, Message> replies;
+
+  public StoreBulkToMessage(Map<String, Message> replies) {
+    super(Protocol.STORE_BULK_TO);
+
+    this.replies = replies;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + replies.entrySet().stream()
+        .map(e -> e.getKey() + ":" + (e.getValue() instanceof StoreToMessage storeTo
+            ? Arrays.stream(storeTo.getPorts()).mapToObj(String::valueOf)
+                .collect(Collectors.joining(","))
+            : e.getValue().toString()))
+        .collect(Collectors.joining(" "));
+  }
+
+  /**
+   * Returns the {@link StoreToMessage} or error for each file, by name.
+   */
+  public Map<String, Message> getReplies() {
+    return replies;
+  }
+}
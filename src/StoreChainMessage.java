@@ -0,0 +1,124 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A message asking a Dstore to store a file and pass it on down a chain of other Dstores, so that
+ * the client only uploads the file once. The content follows the message back-to-back, split into
+ * segments of the given size. Each Dstore forwards every segment to the next Dstore in the chain
+ * as soon as it arrives, and tells the controller once it has stored the whole file, as it would
+ * for a STORE.
+ *
+ * @author George Peppard
+ * @see StoreMessage the equivalent message for storing a file on a single Dstore
+ */
+public class StoreChainMessage extends Message implements StreamedMessage {
+
+  private final String fileName;
+  private final int fileSize;
+  private final int segmentSize;
+  private final List<Integer> nextPorts;
+  private final int offset;
+  private final byte[] content;
+
+  public StoreChainMessage(String fileName, int fileSize, int segmentSize,
+      List<Integer> nextPorts) {
+    this(fileName, fileSize, segmentSize, nextPorts, 0, null);
+  }
+
+  /**
+   * Creates a message for a segment whose content has already been received. The offset and
+   * content are never sent with the message itself.
+   *
+   * @param fileName    the name of the file
+   * @param fileSize    the size of the whole file in bytes
+   * @param segmentSize the size of each segment in bytes
+   * @param nextPorts   the ports of the Dstores further down the chain, in order
+   * @param offset      the offset in the file that the content starts at
+   * @param content     the content of the segment, or null if it is yet to be received
+   */
+  public StoreChainMessage(String fileName, int fileSize, int segmentSize,
+      List<Integer> nextPorts, int offset, byte[] content) {
+    super(Protocol.STORE_CHAIN);
+
+    this.fileName = fileName;
+    this.fileSize = fileSize;
+    this.segmentSize = segmentSize;
+    this.nextPorts = nextPorts;
+    this.offset = offset;
+    this.content = content;
+  }
+
+  public static StoreChainMessage parse(String[] args) {
+    var segmentSize = Integer.parseInt(args[2]);
+    if (segmentSize < 1) {
+      throw new IllegalArgumentException("segment size must be positive");
+    }
+
+    var ports = Arrays.stream(args).skip(3).map(Integer::parseInt).toList();
+    return new StoreChainMessage(args[0], Integer.parseInt(args[1]), segmentSize, ports);
+  }
+
+  /**
+   * Returns the message to send to the next Dstore in the chain, or null if this is the last.
+   */
+  public StoreChainMessage forNextDstore() {
+    if (nextPorts.isEmpty()) {
+      return null;
+    }
+
+    return new StoreChainMessage(fileName, fileSize, segmentSize,
+        List.copyOf(nextPorts.subList(1, nextPorts.size())));
+  }
+
+  @Override
+  public int[] getPayloadSizes() {
+    var segments = Math.max(1, (fileSize + segmentSize - 1) / segmentSize);
+    var sizes = new int[segments];
+    for (int i = 0; i < segments; i++) {
+      sizes[i] = Math.min(segmentSize, fileSize - i * segmentSize);
+    }
+
+    return sizes;
+  }
+
+  @Override
+  public Message withPayload(int index, byte[] payload) {
+    return new StoreChainMessage(fileName, fileSize, segmentSize, nextPorts, index * segmentSize,
+        payload);
+  }
+
+  @Override
+  public String toString() {
+    var string = super.toString() + String.format(" %s %d %d", fileName, fileSize, segmentSize);
+    if (nextPorts.isEmpty()) {
+      return string;
+    }
+
+    return string + " " + nextPorts.stream().map(String::valueOf).collect(Collectors.joining(" "));
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public int getFileSize() {
+    return fileSize;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  public List<Integer> getNextPorts() {
+    return nextPorts;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public byte[] getContent() {
+    return content;
+  }
+}
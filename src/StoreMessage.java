@@ -7,21 +7,29 @@ public class StoreMessage extends Message {
   
   private final String fileName;
   private final int fileSize;
+  private final int replicationFactor;
 
   public StoreMessage(String fileName, int fileSize) {
+    this(fileName, fileSize, 0);
+  }
+
+  public StoreMessage(String fileName, int fileSize, int replicationFactor) {
     super(Protocol.STORE);
 
     this.fileName = fileName;
     this.fileSize = fileSize;
+    this.replicationFactor = replicationFactor;
   }
 
   public static StoreMessage parse(String[] args) {
-    return new StoreMessage(args[0], Integer.parseInt(args[1]));
+    return new StoreMessage(args[0], Integer.parseInt(args[1]),
+        args.length > 2 ? Integer.parseInt(args[2]) : 0);
   }
 
   @Override
   public String toString() {
-    return super.toString() + String.format(" %s %d", fileName, fileSize);
+    var string = super.toString() + String.format(" %s %d", fileName, fileSize);
+    return replicationFactor > 0 ? string + " " + replicationFactor : string;
   }
 
   public String getFileName() {
@@ -31,4 +39,12 @@ public class StoreMessage extends Message {
   public int getFileSize() {
     return fileSize;
   }
+
+  /**
+   * Returns the number of copies the client asked for, or 0 to use the controller's replication
+   * factor. This is an extension to the specification.
+   */
+  public int getReplicationFactor() {
+    return replicationFactor;
+  }
 }
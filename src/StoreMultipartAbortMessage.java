@@ -0,0 +1,35 @@
+/**
+ * A message from the controller telling a Dstore that a multipart store has been abandoned, so
+ * that it can discard the parts it has written.
+ *
+ * @author George Peppard
+ */
+public class StoreMultipartAbortMessage extends Message {
+
+  private final String fileName;
+  private final long uploadId;
+
+  public StoreMultipartAbortMessage(String fileName, long uploadId) {
+    super(Protocol.STORE_MULTIPART_ABORT);
+
+    this.fileName = fileName;
+    this.uploadId = uploadId;
+  }
+
+  public static StoreMultipartAbortMessage parse(String[] args) {
+    return new StoreMultipartAbortMessage(args[0], Long.parseLong(args[1]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName + " " + uploadId;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public long getUploadId() {
+    return uploadId;
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * A message from a client saying it has sent every part of a multipart store.
+ *
+ * @author George Peppard
+ */
+public class StoreMultipartCommitMessage extends Message {
+
+  private final String fileName;
+
+  public StoreMultipartCommitMessage(String fileName) {
+    super(Protocol.STORE_MULTIPART_COMMIT);
+
+    this.fileName = fileName;
+  }
+
+  public static StoreMultipartCommitMessage parse(String[] args) {
+    return new StoreMultipartCommitMessage(args[0]);
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+}
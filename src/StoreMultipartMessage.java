@@ -0,0 +1,43 @@
+/**
+ * A message requesting a file to be stored in parts, as
+ * {@code STORE_MULTIPART name size part-size}. The parts can be sent to the Dstores in parallel,
+ * and a part that fails can be sent again on its own. This is an extension to the specification.
+ *
+ * @author George Peppard
+ */
+public class StoreMultipartMessage extends Message {
+
+  private final String fileName;
+  private final int fileSize;
+  private final int partSize;
+
+  public StoreMultipartMessage(String fileName, int fileSize, int partSize) {
+    super(Protocol.STORE_MULTIPART);
+
+    this.fileName = fileName;
+    this.fileSize = fileSize;
+    this.partSize = partSize;
+  }
+
+  public static StoreMultipartMessage parse(String[] args) {
+    return new StoreMultipartMessage(args[0], Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + String.format(" %s %d %d", fileName, fileSize, partSize);
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public int getFileSize() {
+    return fileSize;
+  }
+
+  public int getPartSize() {
+    return partSize;
+  }
+}
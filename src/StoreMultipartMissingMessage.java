@@ -0,0 +1,35 @@
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A message telling a client which parts of a multipart store have not been stored, so that it
+ * can send just those again and commit again. Each Dstore is given as {@code port:index,index,...}.
+ *
+ * @author George Peppard
+ */
+public class StoreMultipartMissingMessage extends Message {
+
+  private final Map<Integer, List<Integer>> missingParts;
+
+  public StoreMultipartMissingMessage(Map<Integer, List<Integer>> missingParts) {
+    super(Protocol.STORE_MULTIPART_MISSING);
+
+    this.missingParts = missingParts;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + missingParts.entrySet().stream()
+        .map(e -> e.getKey() + ":" + e.getValue().stream().map(String::valueOf)
+            .collect(Collectors.joining(",")))
+        .collect(Collectors.joining(" "));
+  }
+
+  /**
+   * Returns the indexes of the parts each Dstore is missing, by port.
+   */
+  public Map<Integer, List<Integer>> getMissingParts() {
+    return missingParts;
+  }
+}
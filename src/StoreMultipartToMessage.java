@@ -0,0 +1,40 @@
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * A message telling a client which upload a multipart store is, and which Dstores to send every
+ * part to, as {@code STORE_MULTIPART_TO upload-id port...}.
+ *
+ * @author George Peppard
+ */
+public class StoreMultipartToMessage extends Message {
+
+  private final long uploadId;
+  private final int[] ports;
+
+  public StoreMultipartToMessage(long uploadId, int[] ports) {
+    super(Protocol.STORE_MULTIPART_TO);
+
+    this.uploadId = uploadId;
+    this.ports = ports;
+  }
+
+  public static StoreMultipartToMessage parse(String[] args) {
+    return new StoreMultipartToMessage(Long.parseLong(args[0]),
+        Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + uploadId + " "
+        + Arrays.stream(ports).mapToObj(String::valueOf).collect(Collectors.joining(" "));
+  }
+
+  public long getUploadId() {
+    return uploadId;
+  }
+
+  public int[] getPorts() {
+    return ports;
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * A message from a Dstore to the controller acknowledging that it has stored one part of a
+ * multipart store.
+ *
+ * @author George Peppard
+ */
+public class StorePartAckMessage extends Message {
+
+  private final String fileName;
+  private final int index;
+
+  public StorePartAckMessage(String fileName, int index) {
+    super(Protocol.STORE_PART_ACK);
+
+    this.fileName = fileName;
+    this.index = index;
+  }
+
+  public static StorePartAckMessage parse(String[] args) {
+    return new StorePartAckMessage(args[0], Integer.parseInt(args[1]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + " " + fileName + " " + index;
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+}
@@ -0,0 +1,56 @@
+/**
+ * A message sending one part of a multipart store to a Dstore, as
+ * {@code STORE_PART name upload-id size part-size index}. The Dstore replies with ACK, and the
+ * part's bytes follow.
+ *
+ * @author George Peppard
+ */
+public class StorePartMessage extends Message {
+
+  private final String fileName;
+  private final long uploadId;
+  private final int fileSize;
+  private final int partSize;
+  private final int index;
+
+  public StorePartMessage(String fileName, long uploadId, int fileSize, int partSize, int index) {
+    super(Protocol.STORE_PART);
+
+    this.fileName = fileName;
+    this.uploadId = uploadId;
+    this.fileSize = fileSize;
+    this.partSize = partSize;
+    this.index = index;
+  }
+
+  public static StorePartMessage parse(String[] args) {
+    return new StorePartMessage(args[0], Long.parseLong(args[1]), Integer.parseInt(args[2]),
+        Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + String.format(" %s %d %d %d %d", fileName, uploadId, fileSize,
+        partSize, index);
+  }
+
+  public String getFileName() {
+    return fileName;
+  }
+
+  public long getUploadId() {
+    return uploadId;
+  }
+
+  public int getFileSize() {
+    return fileSize;
+  }
+
+  public int getPartSize() {
+    return partSize;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+}
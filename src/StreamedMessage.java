@@ -0,0 +1,24 @@
+/**
+ * A message that is immediately followed on the wire by one or more raw payloads. The connection
+ * handler reads each payload as soon as the message has been parsed, without any further round
+ * trip, and queues the message returned by {@link #withPayload(int, byte[])} for processing.
+ *
+ * @author George Peppard
+ */
+public interface StreamedMessage {
+
+  /**
+   * Returns the size in bytes of each payload that follows the message, in the order they are
+   * sent.
+   */
+  int[] getPayloadSizes();
+
+  /**
+   * Returns the message that should be processed once a payload has been received.
+   *
+   * @param index   the index of the payload
+   * @param payload the payload
+   * @return the message to process
+   */
+  Message withPayload(int index, byte[] payload);
+}
@@ -0,0 +1,89 @@
+/**
+ * A token bucket used to limit the rate at which bytes are sent. Callers may take more tokens than
+ * are available, in which case the bucket goes into debt and the caller sleeps until the debt has
+ * been paid back. The rate can be changed at any time.
+ *
+ * @author George Peppard
+ */
+public class TokenBucket {
+
+  /**
+   * The number of tokens added per second, or 0 if the bucket is unlimited.
+   */
+  private long ratePerSecond;
+
+  /**
+   * The number of tokens currently available. This is negative when the bucket is in debt.
+   */
+  private double tokens;
+
+  /**
+   * When tokens were last added to the bucket, from {@link System#nanoTime()}.
+   */
+  private long lastRefillNanos = System.nanoTime();
+
+  /**
+   * Creates a new bucket.
+   *
+   * @param ratePerSecond the number of tokens added per second, or 0 for no limit
+   */
+  public TokenBucket(long ratePerSecond) {
+    setRate(ratePerSecond);
+  }
+
+  /**
+   * Changes the rate of the bucket. The bucket is refilled so a burst of at most one second's
+   * worth of tokens can follow the change.
+   *
+   * @param ratePerSecond the number of tokens added per second, or 0 for no limit
+   */
+  public synchronized void setRate(long ratePerSecond) {
+    refill();
+    this.ratePerSecond = Math.max(0, ratePerSecond);
+    this.tokens = Math.min(tokens, this.ratePerSecond);
+  }
+
+  /**
+   * Returns the number of tokens added per second, or 0 if the bucket is unlimited.
+   */
+  public synchronized long getRate() {
+    return ratePerSecond;
+  }
+
+  /**
+   * Takes tokens from the bucket, blocking until they are available.
+   *
+   * @param count the number of tokens to take
+   * @return the number of milliseconds spent waiting
+   * @throws InterruptedException if the wait is interrupted
+   */
+  public long acquire(long count) throws InterruptedException {
+    long waitNanos;
+
+    synchronized (this) {
+      if (ratePerSecond == 0) {
+        return 0;
+      }
+
+      refill();
+      tokens -= count;
+      waitNanos = tokens >= 0 ? 0 : (long) (-tokens * 1_000_000_000L / ratePerSecond);
+    }
+
+    if (waitNanos > 0) {
+      Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+    }
+
+    return waitNanos / 1_000_000;
+  }
+
+  /**
+   * Adds the tokens that have accumulated since the last refill, up to one second's worth.
+   */
+  private void refill() {
+    var now = System.nanoTime();
+    tokens = Math.min(ratePerSecond,
+        tokens + (double) (now - lastRefillNanos) * ratePerSecond / 1_000_000_000L);
+    lastRefillNanos = now;
+  }
+}
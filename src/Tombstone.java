@@ -0,0 +1,146 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A record that a file has been removed, kept until every Dstore that had a copy has deleted it.
+ *
+ * @author George Peppard
+ * @see TombstoneService
+ */
+public class Tombstone {
+
+  /**
+   * The name of the removed file.
+   */
+  private final String name;
+
+  /**
+   * When the file was removed, in milliseconds.
+   */
+  private final long createdAtMs = System.currentTimeMillis();
+
+  /**
+   * The Dstores that still have to delete their copies, and when each was last asked to, in
+   * milliseconds, or 0 if it has not been asked yet.
+   */
+  private final Map<DstoreModel, Long> pending = new HashMap<>();
+
+  /**
+   * The ID of the latest request sent to each Dstore in {@link #pending}. Dstores handle requests
+   * in order, so once the latest has been answered no earlier one is still waiting to be handled.
+   */
+  private final Map<DstoreModel, Long> lastAskIds = new HashMap<>();
+
+  /**
+   * The future that is completed once every copy has been deleted.
+   */
+  private final CompletableFuture<Void> purged = new CompletableFuture<>();
+
+  /**
+   * Creates a tombstone for a removed file.
+   *
+   * @param file the file
+   */
+  public Tombstone(IndexedFile file) {
+    this.name = file.getName();
+    file.getDstores().forEach(d -> pending.put(d, 0L));
+
+    if (pending.isEmpty()) {
+      purged.complete(null);
+    }
+  }
+
+  /**
+   * Returns the name of the removed file.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns when the file was removed, in milliseconds.
+   */
+  public long getCreatedAtMs() {
+    return createdAtMs;
+  }
+
+  /**
+   * Returns whether a Dstore should be asked to delete its copy: it has not deleted it yet, and
+   * has not been asked since the given time. If so, it is recorded as asked now.
+   *
+   * @param dstore     the Dstore
+   * @param askedSince the time before which an earlier request is treated as lost, in milliseconds
+   * @param nowMs      the current time in milliseconds
+   * @param askId      the ID of the request that will be sent
+   * @return whether to ask the Dstore
+   */
+  public synchronized boolean shouldAsk(DstoreModel dstore, long askedSince, long nowMs,
+      long askId) {
+    var lastAsked = pending.get(dstore);
+    if (lastAsked == null || lastAsked > askedSince) {
+      return false;
+    }
+
+    pending.put(dstore, nowMs);
+    lastAskIds.put(dstore, askId);
+    return true;
+  }
+
+  /**
+   * Records that a Dstore has deleted its copy. A reply to an earlier request is ignored while a
+   * later one is outstanding, as the later one could still delete a new file stored under the same
+   * name once the tombstone is dropped.
+   *
+   * @param dstore the Dstore
+   * @param askId  the ID of the request the Dstore answered
+   * @return whether this was the last copy, so the tombstone can be dropped
+   */
+  public synchronized boolean confirm(DstoreModel dstore, long askId) {
+    var lastAskId = lastAskIds.get(dstore);
+    if (lastAskId != null && askId < lastAskId) {
+      return false;
+    }
+
+    return confirm(dstore);
+  }
+
+  /**
+   * Records that a Dstore no longer has a copy because it was lost, so any request to it will
+   * never be answered.
+   *
+   * @param dstore the Dstore
+   * @return whether this was the last copy, so the tombstone can be dropped
+   */
+  public synchronized boolean confirm(DstoreModel dstore) {
+    lastAskIds.remove(dstore);
+    if (pending.remove(dstore) == null || !pending.isEmpty()) {
+      return false;
+    }
+
+    purged.complete(null);
+    return true;
+  }
+
+  /**
+   * Returns the Dstores that still have to delete their copies.
+   */
+  public synchronized Set<DstoreModel> getPendingDstores() {
+    return Set.copyOf(pending.keySet());
+  }
+
+  /**
+   * Returns the number of copies still to be deleted.
+   */
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Returns the future that is completed once every copy has been deleted.
+   */
+  public CompletableFuture<Void> getPurged() {
+    return purged;
+  }
+}
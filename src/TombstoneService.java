@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A service that deletes removed files from Dstores in the background. Removing a file only
+ * records a {@link Tombstone}, so the client is answered straight away. Every so often, each
+ * Dstore is sent one PURGE message listing the removed files it still has, and each tombstone is
+ * dropped once every Dstore with a copy has confirmed deleting it. Requests that are not confirmed
+ * within the timeout are sent again, and only a reply to the latest request counts, so that an
+ * earlier request still waiting on a slow Dstore cannot delete a new file with the same name.
+ *
+ * @author George Peppard
+ */
+public class TombstoneService {
+
+  /**
+   * The default time between batches, in milliseconds.
+   */
+  private static final long DEFAULT_INTERVAL_MS = 200;
+
+  /**
+   * The default most files listed in one PURGE message.
+   */
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * The service container.
+   */
+  private final ControllerServiceContainer services;
+
+  /**
+   * The executor that sends the batches.
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      r -> {
+        var thread = new Thread(r, "CLR Purge");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /**
+   * The threads that send the batches, so that a Dstore that is slow to read does not hold up the
+   * others.
+   */
+  private final ExecutorService sender = Executors.newCachedThreadPool(r -> {
+    var thread = new Thread(r, "CLR Purge Sender");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * The Dstores whose batches are still being sent. Each Dstore has at most one sender at a time,
+   * so its requests are sent in the order of their IDs.
+   */
+  private final Set<DstoreModel> sending = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The ID of the latest PURGE request.
+   */
+  private final AtomicLong lastAskId = new AtomicLong();
+
+  /**
+   * The most files listed in one PURGE message.
+   */
+  private final int batchSize = Math.max(1,
+      Settings.getInt(Settings.CONTROLLER_PURGE_BATCH_SIZE, DEFAULT_BATCH_SIZE));
+
+  /**
+   * The tombstones of removed files whose copies have not all been deleted, by lower case name.
+   */
+  private final Map<String, Tombstone> tombstones = new ConcurrentHashMap<>();
+
+  /**
+   * Initialises the service and starts sending batches.
+   *
+   * @param services the service container
+   */
+  public TombstoneService(ControllerServiceContainer services) {
+    this.services = services;
+
+    var intervalMs = Math.max(10,
+        Settings.getLong(Settings.CONTROLLER_PURGE_INTERVAL_MS, DEFAULT_INTERVAL_MS));
+    executor.scheduleWithFixedDelay(this::purge, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+
+    var metrics = services.getMetricsService();
+    metrics.registerGauge("purge.tombstones", tombstones::size);
+    metrics.registerGauge("purge.pending-copies",
+        () -> tombstones.values().stream().mapToInt(Tombstone::getPendingCount).sum());
+    metrics.registerGauge("purge.oldest-ms", () -> tombstones.values().stream()
+        .mapToLong(t -> System.currentTimeMillis() - t.getCreatedAtMs()).max().orElse(0));
+  }
+
+  /**
+   * Records that a file has been removed, so that its copies are deleted in the background.
+   *
+   * @param file the file
+   */
+  public void add(IndexedFile file) {
+    var tombstone = new Tombstone(file);
+    if (tombstone.getPendingCount() > 0) {
+      tombstones.put(IndexService.getNameKey(file.getName()), tombstone);
+    }
+  }
+
+  /**
+   * Waits until every copy of a removed file has been deleted, asking the Dstores that have not
+   * been asked within the timeout straight away rather than waiting for the next batch. This is
+   * needed before a file with the same name is stored, so that a late delete cannot remove the new
+   * copy.
+   *
+   * @param name the name of the file
+   * @return whether there are no copies left
+   */
+  public boolean awaitPurged(String name) {
+    var tombstone = tombstones.get(IndexService.getNameKey(name));
+    if (tombstone == null) {
+      return true;
+    }
+
+    var now = System.currentTimeMillis();
+    var askedSince = now - services.getController().getTimeoutMs();
+    for (var dstore : tombstone.getPendingDstores()) {
+      var askId = lastAskId.incrementAndGet();
+      if (tombstone.shouldAsk(dstore, askedSince, now, askId)) {
+        dstore.getHandler().sendBatched(new PurgeMessage(askId, List.of(tombstone.getName())));
+      }
+    }
+
+    try {
+      tombstone.getPurged().get(services.getController().getTimeoutMs(), TimeUnit.MILLISECONDS);
+      return true;
+    } catch (TimeoutException e) {
+      Logger.warn("Copies of removed file {} were not deleted in time", name);
+    } catch (InterruptedException | ExecutionException e) {
+      Logger.error("Waiting for copies of {} to be deleted failed", name);
+    }
+
+    return false;
+  }
+
+  /**
+   * Handles a Dstore confirming that it has deleted some removed files.
+   *
+   * @param dstore the Dstore
+   * @param askId  the ID of the request the Dstore answered
+   * @param names  the names of the files
+   */
+  public void handlePurged(DstoreModel dstore, long askId, List<String> names) {
+    for (var name : names) {
+      var key = IndexService.getNameKey(name);
+      var tombstone = tombstones.get(key);
+      if (tombstone != null && tombstone.confirm(dstore, askId)) {
+        drop(key, tombstone);
+      }
+    }
+
+    services.getMetricsService().add("purge.confirmed", names.size());
+  }
+
+  /**
+   * Handles a Dstore being lost, which no longer needs to delete anything.
+   *
+   * @param dstore the Dstore
+   */
+  public void removeDstore(DstoreModel dstore) {
+    tombstones.forEach((key, tombstone) -> {
+      if (tombstone.confirm(dstore)) {
+        drop(key, tombstone);
+      }
+    });
+  }
+
+  /**
+   * Sends each Dstore the removed files it has not been asked to delete, or was asked to delete
+   * too long ago. Dstores whose previous batches are still being sent are skipped until next time.
+   */
+  private void purge() {
+    try {
+      var now = System.currentTimeMillis();
+      var askedSince = now - services.getController().getTimeoutMs();
+      var askId = lastAskId.incrementAndGet();
+      var batches = new HashMap<DstoreModel, List<String>>();
+
+      for (var tombstone : tombstones.values()) {
+        for (var dstore : tombstone.getPendingDstores()) {
+          if (!sending.contains(dstore) && tombstone.shouldAsk(dstore, askedSince, now, askId)) {
+            batches.computeIfAbsent(dstore, d -> new ArrayList<>()).add(tombstone.getName());
+          }
+        }
+      }
+
+      batches.forEach((dstore, names) -> {
+        sending.add(dstore);
+        sender.execute(() -> send(dstore, askId, names));
+      });
+    } catch (RuntimeException e) {
+      Logger.error("Failed to send purge batches: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * Sends a Dstore the removed files it is to delete, in messages of at most the batch size.
+   *
+   * @param dstore the Dstore
+   * @param askId  the ID of the request
+   * @param names  the names of the files
+   */
+  private void send(DstoreModel dstore, long askId, List<String> names) {
+    try {
+      for (int i = 0; i < names.size(); i += batchSize) {
+        dstore.getHandler().send(
+            new PurgeMessage(askId, names.subList(i, Math.min(names.size(), i + batchSize))));
+      }
+
+      services.getMetricsService().add("purge.sent", names.size());
+    } catch (RuntimeException e) {
+      Logger.error("Failed to send purge batch to {}: {}", dstore, e.getMessage());
+    } finally {
+      sending.remove(dstore);
+    }
+  }
+
+  /**
+   * Drops a tombstone once every copy has been deleted, recording how long reclaiming the space
+   * took.
+   *
+   * @param key       the key of the tombstone
+   * @param tombstone the tombstone
+   */
+  private void drop(String key, Tombstone tombstone) {
+    if (tombstones.remove(key, tombstone)) {
+      services.getMetricsService().record("purge.lag-ms",
+          System.currentTimeMillis() - tombstone.getCreatedAtMs());
+    }
+  }
+
+}
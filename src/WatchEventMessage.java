@@ -0,0 +1,60 @@
+/**
+ * A message telling a watching client about a change to the namespace, as
+ * {@code WATCH seq kind [name]}. The kind is {@code STORE_COMPLETE} or {@code REMOVE_COMPLETE}
+ * for a file, {@code SUBSCRIBED} to confirm a subscription, or {@code RESET} if changes the client
+ * asked to resume from are no longer kept or it has fallen too far behind, in which case it should
+ * list the files again.
+ *
+ * @author George Peppard
+ */
+public class WatchEventMessage extends Message {
+
+  /**
+   * The kind of event confirming a subscription.
+   */
+  public static final String SUBSCRIBED = "SUBSCRIBED";
+
+  /**
+   * The kind of event telling a client that changes it missed are no longer kept, or that it has
+   * fallen too far behind.
+   */
+  public static final String RESET = "RESET";
+
+  private final long sequence;
+  private final String kind;
+  private final String fileName;
+
+  public WatchEventMessage(long sequence, String kind, String fileName) {
+    super(Protocol.WATCH);
+
+    this.sequence = sequence;
+    this.kind = kind;
+    this.fileName = fileName;
+  }
+
+  public static WatchEventMessage parse(String[] args) {
+    return new WatchEventMessage(Long.parseLong(args[0]), args[1],
+        args.length > 2 ? args[2] : null);
+  }
+
+  @Override
+  public String toString() {
+    var string = super.toString() + " " + sequence + " " + kind;
+    return fileName != null ? string + " " + fileName : string;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public String getKind() {
+    return kind;
+  }
+
+  /**
+   * Returns the name of the file that changed, or null if the event is not about a file.
+   */
+  public String getFileName() {
+    return fileName;
+  }
+}
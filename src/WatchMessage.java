@@ -0,0 +1,63 @@
+/**
+ * A message subscribing a client to changes to the namespace, as {@code key=value} options:
+ * {@code prefix} to only hear about files whose names start with it, and {@code from} for the
+ * sequence number of the last change the client saw, to resume after reconnecting. This is an
+ * extension to the specification.
+ *
+ * @author George Peppard
+ */
+public class WatchMessage extends Message {
+
+  private final String prefix;
+  private final long from;
+
+  public WatchMessage(String prefix, long from) {
+    super(Protocol.WATCH);
+
+    this.prefix = prefix;
+    this.from = from;
+  }
+
+  public static WatchMessage parse(String[] args) {
+    var prefix = "";
+    var from = -1L;
+
+    for (var arg : args) {
+      var split = arg.indexOf('=');
+      if (split < 0) {
+        throw new IllegalArgumentException("expected key=value, got " + arg);
+      }
+
+      var value = arg.substring(split + 1);
+      switch (arg.substring(0, split)) {
+        case "prefix" -> prefix = value;
+        case "from" -> from = Long.parseLong(value);
+        default -> throw new IllegalArgumentException("unknown option " + arg);
+      }
+    }
+
+    return new WatchMessage(prefix, from);
+  }
+
+  @Override
+  public String toString() {
+    var string = super.toString();
+    if (!prefix.isEmpty()) {
+      string += " prefix=" + prefix;
+    }
+
+    return from >= 0 ? string + " from=" + from : string;
+  }
+
+  public String getPrefix() {
+    return prefix;
+  }
+
+  /**
+   * Returns the sequence number of the last change the client saw, or -1 to only hear about
+   * changes from now on.
+   */
+  public long getFrom() {
+    return from;
+  }
+}
@@ -0,0 +1,133 @@
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A client that is watching the namespace for changes. Each subscription has a bounded queue of
+ * changes and a thread of its own that sends them, so a client that reads slowly only holds up
+ * itself. If the queue fills up, the changes in it are dropped and the client is sent a RESET
+ * instead, so it lists the files again.
+ *
+ * @author George Peppard
+ */
+public class WatchSubscription {
+
+  /**
+   * The client.
+   */
+  private final ControllerConnectionHandler client;
+
+  /**
+   * The name key prefix of the files the client is interested in.
+   */
+  private final String prefix;
+
+  /**
+   * The changes waiting to be sent to the client.
+   */
+  private final BlockingQueue<WatchEventMessage> queue;
+
+  /**
+   * The messages sent before any queued changes, such as the confirmation and missed changes.
+   */
+  private final List<WatchEventMessage> initial;
+
+  /**
+   * The thread that sends changes to the client.
+   */
+  private final Thread sender;
+
+  /**
+   * The sequence number of the last change queued for the client.
+   */
+  private long lastSequence;
+
+  /**
+   * Creates a new subscription. Call {@link #start()} to begin sending.
+   *
+   * @param client       the client
+   * @param prefix       the name key prefix of the files the client is interested in
+   * @param lastSequence the sequence number of the last change included in the initial messages
+   * @param initial      the messages to send before any queued changes
+   * @param capacity     the most changes that may be queued for the client
+   */
+  public WatchSubscription(ControllerConnectionHandler client, String prefix, long lastSequence,
+      List<WatchEventMessage> initial, int capacity) {
+    this.client = client;
+    this.prefix = prefix;
+    this.lastSequence = lastSequence;
+    this.initial = initial.stream().filter(this::isInterested).toList();
+    this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    this.sender = new Thread(this::send, "CLR Watch Sender");
+    this.sender.setDaemon(true);
+  }
+
+  /**
+   * Starts sending to the client.
+   */
+  public void start() {
+    sender.start();
+  }
+
+  /**
+   * Stops sending to the client.
+   */
+  public void stop() {
+    sender.interrupt();
+  }
+
+  /**
+   * Queues a change for the client, if it is interested and has not already been sent it. This
+   * never blocks. If the queue is full, it is emptied and a RESET is queued in its place.
+   *
+   * @param event the change
+   * @return false if the queue was full
+   */
+  public synchronized boolean offer(WatchEventMessage event) {
+    if (event.getSequence() <= lastSequence) {
+      return true;
+    }
+
+    lastSequence = event.getSequence();
+    if (!isInterested(event) || queue.offer(event)) {
+      return true;
+    }
+
+    queue.clear();
+    queue.offer(new WatchEventMessage(event.getSequence(), WatchEventMessage.RESET, null));
+    return false;
+  }
+
+  /**
+   * Returns whether the client is interested in a message, which it is unless the message is
+   * about a file outside its prefix.
+   *
+   * @param event the message
+   */
+  private boolean isInterested(WatchEventMessage event) {
+    return event.getFileName() == null
+        || IndexService.getNameKey(event.getFileName()).startsWith(prefix);
+  }
+
+  /**
+   * Sends the initial messages and then queued changes until the subscription is stopped.
+   */
+  private void send() {
+    initial.forEach(client::send);
+
+    while (true) {
+      try {
+        client.send(queue.take());
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the client.
+   */
+  public ControllerConnectionHandler getClient() {
+    return client;
+  }
+}
@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Tests for {@link CountMinSketch}, counting skewed streams of requests and checking the estimates
+ * against the true counts and the sketch's error bounds. Run with {@code ant test}.
+ *
+ * @author George Peppard
+ */
+public class CountMinSketchTest {
+
+  /**
+   * The number of cells in each row, matching the controller's default.
+   */
+  private static final int WIDTH = 2048;
+
+  /**
+   * The number of rows, matching the controller's default.
+   */
+  private static final int DEPTH = 4;
+
+  /**
+   * The failures seen so far.
+   */
+  private static final List<String> failures = new ArrayList<>();
+
+  /**
+   * Runs every test, exiting with a non-zero status if any fail.
+   *
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    emptySketchEstimatesZero();
+    loneKeyIsCountedExactly();
+    estimatesAreNeverTooLow();
+    estimatesAreWithinErrorBound();
+    heaviestKeysAreFound();
+    clearResetsEveryCount();
+
+    if (!failures.isEmpty()) {
+      failures.forEach(f -> System.err.println("FAIL: " + f));
+      System.exit(1);
+    }
+
+    System.out.println("CountMinSketchTest: all tests passed");
+  }
+
+  /**
+   * Nothing has been counted in a new sketch.
+   */
+  private static void emptySketchEstimatesZero() {
+    var sketch = new CountMinSketch(WIDTH, DEPTH);
+    check(sketch.estimate("a.txt") == 0, "new sketch should estimate 0");
+  }
+
+  /**
+   * With nothing else counted, a key's estimate is its count, whatever amounts it is added in.
+   */
+  private static void loneKeyIsCountedExactly() {
+    var sketch = new CountMinSketch(WIDTH, DEPTH);
+    sketch.add("a.txt", 1);
+    sketch.add("a.txt", 5);
+    check(sketch.estimate("a.txt") == 6, "lone key should be counted exactly, was "
+        + sketch.estimate("a.txt"));
+  }
+
+  /**
+   * No key's estimate is ever below its true count, even in a sketch too narrow for the stream.
+   */
+  private static void estimatesAreNeverTooLow() {
+    for (var width : new int[] {16, WIDTH}) {
+      var sketch = new CountMinSketch(width, DEPTH);
+      var counts = count(sketch, 100_000, 20_000, new Random(1));
+
+      counts.forEach((key, count) -> check(sketch.estimate(key) >= count, "width " + width
+          + ": " + key + " estimated " + sketch.estimate(key) + " below " + count));
+    }
+  }
+
+  /**
+   * Estimates are too high by at most e / width of the total count, for all but a fraction of
+   * about e^-depth of keys. The fraction allowed here is twice that, so that the test does not
+   * depend on the stream being typical.
+   */
+  private static void estimatesAreWithinErrorBound() {
+    var sketch = new CountMinSketch(WIDTH, DEPTH);
+    var total = 200_000;
+    var counts = count(sketch, total, 50_000, new Random(2));
+
+    var bound = Math.E / WIDTH * total;
+    var over = counts.entrySet().stream()
+        .filter(e -> sketch.estimate(e.getKey()) - e.getValue() > bound).count();
+    var allowed = 2 * Math.exp(-DEPTH) * counts.size();
+    check(over <= allowed, over + " of " + counts.size() + " keys over error bound " + bound
+        + ", at most " + allowed + " allowed");
+  }
+
+  /**
+   * In a skewed stream, the keys with the highest estimates are the most counted keys, in order.
+   */
+  private static void heaviestKeysAreFound() {
+    var sketch = new CountMinSketch(WIDTH, DEPTH);
+    var counts = count(sketch, 100_000, 10_000, new Random(3));
+
+    var byCount = top(counts, counts::get);
+    var byEstimate = top(counts, sketch::estimate);
+    check(byCount.equals(byEstimate), "top keys by estimate " + byEstimate + ", expected "
+        + byCount);
+  }
+
+  /**
+   * A cleared sketch estimates zero for everything it counted before.
+   */
+  private static void clearResetsEveryCount() {
+    var sketch = new CountMinSketch(WIDTH, DEPTH);
+    var counts = count(sketch, 10_000, 1_000, new Random(4));
+    sketch.clear();
+
+    counts.keySet().forEach(key -> check(sketch.estimate(key) == 0,
+        key + " still estimated " + sketch.estimate(key) + " after clear"));
+  }
+
+  /**
+   * Counts a stream of requests for file names, where the k-th most requested name is requested
+   * about 1 / k as often as the most requested one.
+   *
+   * @param sketch the sketch to count the requests in
+   * @param total  the number of requests
+   * @param names  the number of distinct names
+   * @param random the source of requests
+   * @return the true number of requests for each name
+   */
+  private static Map<String, Long> count(CountMinSketch sketch, int total, int names,
+      Random random) {
+    var weights = new double[names];
+    var sum = 0.0;
+    for (int k = 0; k < names; k++) {
+      sum += 1.0 / (k + 1);
+      weights[k] = sum;
+    }
+
+    var counts = new HashMap<String, Long>();
+    for (int i = 0; i < total; i++) {
+      var pick = random.nextDouble() * sum;
+      var k = 0;
+      var hi = names - 1;
+      while (k < hi) {
+        var mid = (k + hi) / 2;
+        if (weights[mid] < pick) {
+          k = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+
+      var key = "file-" + k + ".dat";
+      sketch.add(key, 1);
+      counts.merge(key, 1L, Long::sum);
+    }
+
+    return counts;
+  }
+
+  /**
+   * Returns the ten keys with the highest values, highest first.
+   *
+   * @param counts the keys
+   * @param value  the value of each key
+   * @return the keys
+   */
+  private static List<String> top(Map<String, Long> counts, Function<String, Long> value) {
+    return counts.keySet().stream()
+        .sorted(Comparator.comparing(value).reversed().thenComparing(Comparator.naturalOrder()))
+        .limit(10).toList();
+  }
+
+  /**
+   * Records a failure if a condition does not hold.
+   *
+   * @param condition the condition
+   * @param message   the failure to record
+   */
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      failures.add(message);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link FailureDetector}, feeding it simulated heartbeats and stalls. Times are given
+ * to the detector directly, so no test waits on the clock. Run with {@code ant test}.
+ *
+ * @author George Peppard
+ */
+public class FailureDetectorTest {
+
+  /**
+   * The heartbeat interval used, in milliseconds, matching the controller's default.
+   */
+  private static final long INTERVAL_MS = 1000;
+
+  /**
+   * The suspicion level above which the controller suspects a Dstore, matching its default.
+   */
+  private static final double THRESHOLD = 8;
+
+  /**
+   * The failures seen so far.
+   */
+  private static final List<String> failures = new ArrayList<>();
+
+  /**
+   * Runs every test, exiting with a non-zero status if any fail.
+   *
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    noSuspicionBeforeFirstHeartbeat();
+    regularHeartbeatsAreNotSuspected();
+    jitteredHeartbeatsAreNotSuspected();
+    stallIsSuspectedOnlyAfterExpectedDelay();
+    phiRisesSteadilyDuringStall();
+    phiFallsBackAfterRecovery();
+
+    if (!failures.isEmpty()) {
+      failures.forEach(f -> System.err.println("FAIL: " + f));
+      System.exit(1);
+    }
+
+    System.out.println("FailureDetectorTest: all tests passed");
+  }
+
+  /**
+   * A Dstore that has never answered is not suspected, as it has only just joined.
+   */
+  private static void noSuspicionBeforeFirstHeartbeat() {
+    var detector = new FailureDetector(INTERVAL_MS, INTERVAL_MS);
+    check(detector.phi(1_000_000) == 0, "phi should be 0 before any heartbeat");
+  }
+
+  /**
+   * Heartbeats that arrive on time never come near the threshold.
+   */
+  private static void regularHeartbeatsAreNotSuspected() {
+    var detector = new FailureDetector(INTERVAL_MS, INTERVAL_MS);
+    var now = feed(detector, 0, 50, 0, new Random(1));
+
+    for (int i = 0; i < 50; i++) {
+      var phi = detector.phi(now + INTERVAL_MS);
+      check(phi < 1, "phi just before an on-time heartbeat should be below 1, was " + phi);
+      now += INTERVAL_MS;
+      detector.heartbeat(now);
+    }
+  }
+
+  /**
+   * Heartbeats that arrive up to a fifth of an interval early or late are not suspected.
+   */
+  private static void jitteredHeartbeatsAreNotSuspected() {
+    var detector = new FailureDetector(INTERVAL_MS, INTERVAL_MS);
+    var random = new Random(2);
+    var now = feed(detector, 0, 20, INTERVAL_MS / 5, random);
+
+    for (int i = 0; i < 100; i++) {
+      var next = now + INTERVAL_MS + random.nextLong(-INTERVAL_MS / 5, INTERVAL_MS / 5 + 1);
+      var phi = detector.phi(next);
+      check(phi < THRESHOLD, "jittered heartbeat suspected with phi " + phi);
+      now = next;
+      detector.heartbeat(now);
+    }
+  }
+
+  /**
+   * After regular heartbeats stop, the Dstore is suspected only once the usual interval, the
+   * acceptable pause and a few standard deviations have passed, which is between 2.4 and 2.7
+   * seconds with these settings.
+   */
+  private static void stallIsSuspectedOnlyAfterExpectedDelay() {
+    var detector = new FailureDetector(INTERVAL_MS, INTERVAL_MS);
+    var last = feed(detector, 0, 50, 0, new Random(3));
+
+    for (long elapsed = 0; elapsed <= 2400; elapsed += 100) {
+      var phi = detector.phi(last + elapsed);
+      check(phi < THRESHOLD, "suspected too early, " + elapsed + " ms into stall, phi " + phi);
+    }
+
+    var phi = detector.phi(last + 2700);
+    check(phi > THRESHOLD, "not suspected 2700 ms into stall, phi " + phi);
+    phi = detector.phi(last + 10_000);
+    check(phi > THRESHOLD, "not suspected 10 s into stall, phi " + phi);
+  }
+
+  /**
+   * Suspicion never falls while a stall goes on.
+   */
+  private static void phiRisesSteadilyDuringStall() {
+    var detector = new FailureDetector(INTERVAL_MS, INTERVAL_MS);
+    var last = feed(detector, 0, 50, 0, new Random(4));
+
+    var previous = 0.0;
+    for (long elapsed = 0; elapsed <= 5000; elapsed += 50) {
+      var phi = detector.phi(last + elapsed);
+      check(phi >= previous, "phi fell from " + previous + " to " + phi + " at " + elapsed
+          + " ms into stall");
+      previous = phi;
+    }
+  }
+
+  /**
+   * Once heartbeats resume after a stall, suspicion drops straight away, and on-time heartbeats
+   * are no longer close to being suspected.
+   */
+  private static void phiFallsBackAfterRecovery() {
+    var detector = new FailureDetector(INTERVAL_MS, INTERVAL_MS);
+    var last = feed(detector, 0, 50, 0, new Random(5));
+
+    var stalled = last + 5000;
+    check(detector.phi(stalled) > THRESHOLD, "5 s stall should be suspected");
+
+    detector.heartbeat(stalled);
+    var phi = detector.phi(stalled);
+    check(phi < 1, "phi should drop as soon as a heartbeat arrives, was " + phi);
+
+    var now = feed(detector, stalled, 20, 0, new Random(6));
+    phi = detector.phi(now + INTERVAL_MS);
+    check(phi < 1, "phi for an on-time heartbeat after recovery should be below 1, was " + phi);
+    phi = detector.phi(now + 2000);
+    check(phi < THRESHOLD, "a short delay after recovery should not be suspected, phi " + phi);
+    phi = detector.phi(now + 10_000);
+    check(phi > THRESHOLD, "a second long stall should be suspected again, phi " + phi);
+  }
+
+  /**
+   * Feeds a detector heartbeats at the usual interval.
+   *
+   * @param detector the detector
+   * @param startMs  when the first heartbeat arrives
+   * @param count    the number of heartbeats
+   * @param jitterMs the most each heartbeat may be early or late by
+   * @param random   the source of jitter
+   * @return when the last heartbeat arrived
+   */
+  private static long feed(FailureDetector detector, long startMs, int count, long jitterMs,
+      Random random) {
+    var now = startMs;
+    detector.heartbeat(now);
+
+    for (int i = 1; i < count; i++) {
+      now += INTERVAL_MS + (jitterMs > 0 ? random.nextLong(-jitterMs, jitterMs + 1) : 0);
+      detector.heartbeat(now);
+    }
+
+    return now;
+  }
+
+  /**
+   * Records a failure if a condition does not hold.
+   *
+   * @param condition the condition
+   * @param message   the failure to record
+   */
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      failures.add(message);
+    }
+  }
+}
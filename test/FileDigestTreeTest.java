@@ -0,0 +1,292 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link FileDigestTree}, checking how files are placed in buckets and that walking two
+ * trees from the root finds exactly the buckets where they differ. Run with {@code ant test}.
+ *
+ * @author George Peppard
+ */
+public class FileDigestTreeTest {
+
+  /**
+   * The number of files put in the trees that are compared.
+   */
+  private static final int FILES = 5000;
+
+  /**
+   * The failures seen so far.
+   */
+  private static final List<String> failures = new ArrayList<>();
+
+  /**
+   * Runs every test, exiting with a non-zero status if any fail.
+   *
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    nodesAreNumberedFromTheRootDown();
+    fileChangesOnlyItsBucketAndAncestors();
+    nodeHashIsXorOfChildren();
+    orderOfAddsDoesNotMatter();
+    removeUndoesAdd();
+    sizeIsPartOfTheHash();
+    walkFindsOnlyDifferingBuckets();
+    identicalTreesNeedNoWalk();
+
+    if (!failures.isEmpty()) {
+      failures.forEach(f -> System.err.println("FAIL: " + f));
+      System.exit(1);
+    }
+
+    System.out.println("FileDigestTreeTest: all tests passed");
+  }
+
+  /**
+   * The buckets are the last nodes, in bucket order, and the children of the last node that is
+   * not a bucket are the last buckets.
+   */
+  private static void nodesAreNumberedFromTheRootDown() {
+    var lastNode = lastNode();
+    check(FileDigestTree.isNode(0) && FileDigestTree.isNode(lastNode),
+        "root and last node should be nodes");
+    check(!FileDigestTree.isNode(-1) && !FileDigestTree.isNode(lastNode + 1),
+        "nodes outside the tree should not be nodes");
+    check(!FileDigestTree.isBucket(0), "root should not be a bucket");
+    check(FileDigestTree.isBucket(lastNode), "last node should be a bucket");
+
+    var firstBucketNode = lastNode - FileDigestTree.BUCKET_COUNT + 1;
+    check(!FileDigestTree.isBucket(firstBucketNode - 1), "node before the buckets is a bucket");
+    check(FileDigestTree.getBucketOfNode(firstBucketNode) == 0,
+        "first bucket node should be bucket 0");
+    check(FileDigestTree.getBucketOfNode(lastNode) == FileDigestTree.BUCKET_COUNT - 1,
+        "last bucket node should be the last bucket");
+
+    var lastParent = firstBucketNode - 1;
+    check(FileDigestTree.getFirstChild(lastParent) + FileDigestTree.FANOUT - 1 == lastNode,
+        "children of the last parent should end at the last node");
+    check(FileDigestTree.getFirstChild(0) == 1, "first child of the root should be node 1");
+  }
+
+  /**
+   * Adding a file changes the hash of its own bucket and of the nodes above it, and no other.
+   */
+  private static void fileChangesOnlyItsBucketAndAncestors() {
+    var tree = new FileDigestTree();
+    tree.add("report.txt", 1234);
+
+    var bucketNode = bucketNode(FileDigestTree.getBucket("report.txt"));
+    var ancestors = new HashSet<Integer>();
+    for (int node = bucketNode; node > 0; node = (node - 1) / FileDigestTree.FANOUT) {
+      ancestors.add(node);
+    }
+    ancestors.add(0);
+
+    for (int node = 0; node <= lastNode(); node++) {
+      var changed = tree.getNodeHash(node) != 0;
+      check(changed == ancestors.contains(node), "node " + node + " changed: " + changed
+          + ", but is " + (ancestors.contains(node) ? "" : "not ") + "above the file");
+    }
+  }
+
+  /**
+   * Every node that is not a bucket hashes to the XOR of its children.
+   */
+  private static void nodeHashIsXorOfChildren() {
+    var tree = tree(0, FILES);
+    var firstBucketNode = lastNode() - FileDigestTree.BUCKET_COUNT + 1;
+
+    for (int node = 0; node < firstBucketNode; node++) {
+      var expected = 0L;
+      var firstChild = FileDigestTree.getFirstChild(node);
+      for (int i = 0; i < FileDigestTree.FANOUT; i++) {
+        expected ^= tree.getNodeHash(firstChild + i);
+      }
+
+      check(tree.getNodeHash(node) == expected, "node " + node + " is not the XOR of its children");
+    }
+  }
+
+  /**
+   * Trees holding the same files have the same hashes, whatever order they were added in.
+   */
+  private static void orderOfAddsDoesNotMatter() {
+    var forwards = tree(0, FILES);
+    var backwards = new FileDigestTree();
+    for (int i = FILES - 1; i >= 0; i--) {
+      backwards.add(name(i), size(i));
+    }
+
+    check(forwards.getNodeHash(0) == backwards.getNodeHash(0),
+        "root hashes should match when files are added in a different order");
+  }
+
+  /**
+   * Removing a file leaves the tree as it was before the file was added.
+   */
+  private static void removeUndoesAdd() {
+    var tree = tree(0, FILES);
+    var before = tree.getNodeHash(0);
+
+    tree.add("extra.bin", 99);
+    check(tree.getNodeHash(0) != before, "adding a file should change the root hash");
+    tree.remove("extra.bin", 99);
+    check(tree.getNodeHash(0) == before, "removing the file should restore the root hash");
+
+    var empty = new FileDigestTree();
+    empty.add("a", 1);
+    empty.remove("a", 1);
+    check(empty.getNodeHash(0) == 0, "a tree with every file removed should hash to 0");
+  }
+
+  /**
+   * A file stored with a different size is seen as a difference, in the file's bucket.
+   */
+  private static void sizeIsPartOfTheHash() {
+    var expected = tree(0, FILES);
+    var actual = tree(0, FILES);
+    actual.remove(name(7), size(7));
+    actual.add(name(7), size(7) + 1);
+
+    check(expected.getNodeHash(0) != actual.getNodeHash(0), "size change should change the root");
+    check(walk(expected, actual).equals(Set.of(FileDigestTree.getBucket(name(7)))),
+        "size change should be found in the file's bucket only");
+  }
+
+  /**
+   * Walking down from the root through the nodes whose hashes differ finds the buckets of the
+   * missing, extra and changed files, and no others.
+   */
+  private static void walkFindsOnlyDifferingBuckets() {
+    var expected = tree(0, FILES);
+    var actual = tree(0, FILES);
+    var differing = new HashSet<Integer>();
+
+    for (int i = 0; i < FILES; i += 500) {
+      actual.remove(name(i), size(i));
+      differing.add(FileDigestTree.getBucket(name(i)));
+    }
+    for (int i = FILES; i < FILES + 5; i++) {
+      actual.add(name(i), size(i));
+      differing.add(FileDigestTree.getBucket(name(i)));
+    }
+
+    var found = walk(expected, actual);
+    check(found.equals(differing), "walk found buckets " + found + ", expected " + differing);
+  }
+
+  /**
+   * Trees holding the same files differ nowhere, so only the root is compared.
+   */
+  private static void identicalTreesNeedNoWalk() {
+    check(walk(tree(0, FILES), tree(0, FILES)).isEmpty(), "identical trees should not differ");
+  }
+
+  /**
+   * Walks two trees from the root as a Dstore reconciliation does, descending only into nodes
+   * whose hashes differ.
+   *
+   * @param expected the tree of files that should be held
+   * @param actual   the tree of files that are held
+   * @return the buckets that differ
+   */
+  private static Set<Integer> walk(FileDigestTree expected, FileDigestTree actual) {
+    var buckets = new HashSet<Integer>();
+    var nodes = new ArrayDeque<Integer>();
+    nodes.add(0);
+
+    while (!nodes.isEmpty()) {
+      var node = nodes.poll();
+      if (expected.getNodeHash(node) == actual.getNodeHash(node)) {
+        continue;
+      }
+
+      if (FileDigestTree.isBucket(node)) {
+        buckets.add(FileDigestTree.getBucketOfNode(node));
+        continue;
+      }
+
+      var firstChild = FileDigestTree.getFirstChild(node);
+      for (int i = 0; i < FileDigestTree.FANOUT; i++) {
+        nodes.add(firstChild + i);
+      }
+    }
+
+    return buckets;
+  }
+
+  /**
+   * Builds a tree holding a range of the test files.
+   *
+   * @param from the first file
+   * @param to   the file after the last
+   * @return the tree
+   */
+  private static FileDigestTree tree(int from, int to) {
+    var tree = new FileDigestTree();
+    for (int i = from; i < to; i++) {
+      tree.add(name(i), size(i));
+    }
+
+    return tree;
+  }
+
+  /**
+   * Returns the name of a test file.
+   *
+   * @param i the number of the file
+   * @return the name
+   */
+  private static String name(int i) {
+    return "file-" + i + ".dat";
+  }
+
+  /**
+   * Returns the size of a test file.
+   *
+   * @param i the number of the file
+   * @return the size in bytes
+   */
+  private static int size(int i) {
+    return 100 + i % 37;
+  }
+
+  /**
+   * Returns the number of the node of a bucket.
+   *
+   * @param bucket the number of the bucket
+   * @return the number of the node
+   */
+  private static int bucketNode(int bucket) {
+    return lastNode() - FileDigestTree.BUCKET_COUNT + 1 + bucket;
+  }
+
+  /**
+   * Returns the number of the last node in the tree.
+   *
+   * @return the number of the node
+   */
+  private static int lastNode() {
+    var node = 0;
+    while (FileDigestTree.isNode(node + 1)) {
+      node++;
+    }
+
+    return node;
+  }
+
+  /**
+   * Records a failure if a condition does not hold.
+   *
+   * @param condition the condition
+   * @param message   the failure to record
+   */
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      failures.add(message);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link Tombstone}, checking when Dstores are asked to delete their copies and which
+ * replies are trusted. Times are given to the tombstone directly, so no test waits on the clock.
+ * Run with {@code ant test}.
+ *
+ * @author George Peppard
+ */
+public class TombstoneTest {
+
+  /**
+   * How long a request is given to be answered before it is treated as lost, in milliseconds.
+   */
+  private static final long RETRY_MS = 5000;
+
+  /**
+   * The failures seen so far.
+   */
+  private static final List<String> failures = new ArrayList<>();
+
+  /**
+   * Runs every test, exiting with a non-zero status if any fail.
+   *
+   * @param args unused
+   */
+  public static void main(String[] args) {
+    fileWithNoCopiesIsPurgedAtOnce();
+    onlyHoldersAreAsked();
+    askIsNotRepeatedUntilRetryIsDue();
+    confirmedDstoreIsNotAskedAgain();
+    purgedOnlyOnceEveryCopyIsConfirmed();
+    replyToEarlierAskIsIgnored();
+    replyToLatestAskIsTrusted();
+    lostDstoreIsConfirmedWhateverWasAsked();
+
+    if (!failures.isEmpty()) {
+      failures.forEach(f -> System.err.println("FAIL: " + f));
+      System.exit(1);
+    }
+
+    System.out.println("TombstoneTest: all tests passed");
+  }
+
+  /**
+   * A file that no Dstore held has nothing to delete.
+   */
+  private static void fileWithNoCopiesIsPurgedAtOnce() {
+    var tombstone = new Tombstone(file());
+    check(tombstone.getPendingCount() == 0, "no copies should be pending");
+    check(tombstone.getPurged().isDone(), "tombstone with no copies should be purged at once");
+  }
+
+  /**
+   * Only the Dstores that held the file are asked to delete it.
+   */
+  private static void onlyHoldersAreAsked() {
+    var holder = dstore(1);
+    var other = dstore(2);
+    var tombstone = new Tombstone(file(holder));
+
+    check(tombstone.getPendingDstores().equals(Set.of(holder)),
+        "only the holder should be pending");
+    check(tombstone.shouldAsk(holder, 0, RETRY_MS, 1), "holder should be asked");
+    check(!tombstone.shouldAsk(other, 0, RETRY_MS, 1), "a Dstore without a copy was asked");
+  }
+
+  /**
+   * A Dstore that has been asked is not asked again until its request is treated as lost.
+   */
+  private static void askIsNotRepeatedUntilRetryIsDue() {
+    var dstore = dstore(1);
+    var tombstone = new Tombstone(file(dstore));
+
+    var now = 100_000L;
+    check(tombstone.shouldAsk(dstore, now - RETRY_MS, now, 1), "first ask should be sent");
+    check(!tombstone.shouldAsk(dstore, now + 1000 - RETRY_MS, now + 1000, 2),
+        "ask repeated before the retry was due");
+    check(tombstone.shouldAsk(dstore, now, now + RETRY_MS, 3),
+        "ask should be repeated once the retry is due");
+  }
+
+  /**
+   * Once a Dstore has confirmed, it is no longer pending and is never asked again.
+   */
+  private static void confirmedDstoreIsNotAskedAgain() {
+    var first = dstore(1);
+    var second = dstore(2);
+    var tombstone = new Tombstone(file(first, second));
+
+    tombstone.shouldAsk(first, 0, 1000, 1);
+    tombstone.confirm(first, 1);
+    check(!tombstone.getPendingDstores().contains(first), "confirmed Dstore still pending");
+    check(!tombstone.shouldAsk(first, Long.MAX_VALUE, 1_000_000, 2),
+        "confirmed Dstore was asked again");
+  }
+
+  /**
+   * The tombstone can be dropped only when the last copy is confirmed, and only once.
+   */
+  private static void purgedOnlyOnceEveryCopyIsConfirmed() {
+    var first = dstore(1);
+    var second = dstore(2);
+    var tombstone = new Tombstone(file(first, second));
+    tombstone.shouldAsk(first, 0, 1000, 1);
+    tombstone.shouldAsk(second, 0, 1000, 1);
+
+    check(!tombstone.confirm(first, 1), "first of two copies should not drop the tombstone");
+    check(!tombstone.getPurged().isDone(), "purged with a copy still pending");
+    check(tombstone.confirm(second, 1), "last copy should drop the tombstone");
+    check(tombstone.getPurged().isDone(), "not purged once every copy was confirmed");
+    check(!tombstone.confirm(second, 1), "a repeated reply should not drop the tombstone again");
+  }
+
+  /**
+   * A reply to an earlier request is not trusted while a later one is outstanding, as the later
+   * one could still delete a new file stored under the same name.
+   */
+  private static void replyToEarlierAskIsIgnored() {
+    var dstore = dstore(1);
+    var tombstone = new Tombstone(file(dstore));
+    tombstone.shouldAsk(dstore, 0, 1000, 1);
+    tombstone.shouldAsk(dstore, 1000, 1000 + RETRY_MS, 2);
+
+    check(!tombstone.confirm(dstore, 1), "reply to an earlier ask dropped the tombstone");
+    check(tombstone.getPendingDstores().contains(dstore),
+        "reply to an earlier ask should leave the Dstore pending");
+    check(!tombstone.getPurged().isDone(), "purged on a reply to an earlier ask");
+  }
+
+  /**
+   * A reply to the latest request, or to a later one sent to other tombstones in the same round,
+   * is trusted.
+   */
+  private static void replyToLatestAskIsTrusted() {
+    var dstore = dstore(1);
+    var tombstone = new Tombstone(file(dstore));
+    tombstone.shouldAsk(dstore, 0, 1000, 1);
+    tombstone.shouldAsk(dstore, 1000, 1000 + RETRY_MS, 2);
+    tombstone.confirm(dstore, 1);
+    check(tombstone.confirm(dstore, 2), "reply to the latest ask should drop the tombstone");
+
+    var later = new Tombstone(file(dstore));
+    later.shouldAsk(dstore, 0, 1000, 3);
+    check(later.confirm(dstore, 4), "reply to a later ask should drop the tombstone");
+  }
+
+  /**
+   * A lost Dstore will never answer, so its copy is confirmed whatever it was asked.
+   */
+  private static void lostDstoreIsConfirmedWhateverWasAsked() {
+    var dstore = dstore(1);
+    var tombstone = new Tombstone(file(dstore));
+    tombstone.shouldAsk(dstore, 0, 1000, 5);
+
+    check(tombstone.confirm(dstore), "losing the last holder should drop the tombstone");
+    check(tombstone.getPurged().isDone(), "not purged after losing the last holder");
+  }
+
+  /**
+   * Returns a Dstore with no connection, which a tombstone never uses.
+   *
+   * @param port the Dstore's port
+   * @return the Dstore
+   */
+  private static DstoreModel dstore(int port) {
+    return new DstoreModel(port, null, new FailureDetector(1000, 1000));
+  }
+
+  /**
+   * Returns a removed file held by some Dstores.
+   *
+   * @param dstores the Dstores holding a copy
+   * @return the file
+   */
+  private static IndexedFile file(DstoreModel... dstores) {
+    return new IndexedFile("removed.txt", 10, List.of(dstores), dstores.length, dstores.length);
+  }
+
+  /**
+   * Records a failure if a condition does not hold.
+   *
+   * @param condition the condition
+   * @param message   the failure to record
+   */
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      failures.add(message);
+    }
+  }
+}